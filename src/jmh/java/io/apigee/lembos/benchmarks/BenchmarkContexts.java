@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks;
+
+import io.apigee.lembos.mapreduce.LembosConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.util.Progress;
+
+import java.io.File;
+import java.net.URISyntaxException;
+
+/**
+ * In-memory replacements for the Hadoop task plumbing, like MRUnit uses, so the Lembos components can be benchmarked
+ * without a running job.  Records written are counted and dropped.
+ */
+final class BenchmarkContexts {
+
+    /** The name of the Node.js module used by the benchmarks. */
+    static final String MODULE_NAME = "lembos-benchmarks";
+
+    /**
+     * Private constructor.
+     */
+    private BenchmarkContexts() { }
+
+    /**
+     * @return the location of the Node.js module used by the benchmarks
+     */
+    static File getModulePath() {
+        try {
+            return new File(BenchmarkContexts.class.getResource("/node_modules/" + MODULE_NAME).toURI());
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return a Hadoop configuration pointing the Lembos components at the Node.js module used by the benchmarks
+     */
+    static Configuration createConf() {
+        final Configuration conf = new Configuration();
+
+        conf.set(LembosConstants.MR_MODULE_NAME, MODULE_NAME);
+        conf.set(LembosConstants.MR_MODULE_PATH, getModulePath().getAbsolutePath());
+
+        return conf;
+    }
+
+    /**
+     * {@link RecordWriter} that counts the records written.
+     */
+    static final class CountingRecordWriter extends RecordWriter<WritableComparable<?>, Writable> {
+
+        private long count;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final WritableComparable<?> key, final Writable value) {
+            count++;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close(final TaskAttemptContext context) { }
+
+        /**
+         * @return the number of records written
+         */
+        long getCount() {
+            return count;
+        }
+
+    }
+
+    /**
+     * {@link StatusReporter} backed by in-memory counters.
+     */
+    static final class InMemoryStatusReporter extends StatusReporter {
+
+        private final Counters counters = new Counters();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Counter getCounter(final Enum<?> name) {
+            return counters.findCounter(name);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Counter getCounter(final String group, final String name) {
+            return counters.findCounter(group, name);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void progress() { }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setStatus(final String status) { }
+
+    }
+
+    /**
+     * Empty {@link RawKeyValueIterator}.  (The reducer benchmarks pass the values to reduce directly.)
+     */
+    static final class EmptyRawKeyValueIterator implements RawKeyValueIterator {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public DataInputBuffer getKey() {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public DataInputBuffer getValue() {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean next() {
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() { }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Progress getProgress() {
+            return new Progress();
+        }
+
+    }
+
+    /**
+     * @return the class used for the keys and values of the reducer context
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Class<T> textClass() {
+        return (Class<T>)(Class<?>)Text.class;
+    }
+
+}
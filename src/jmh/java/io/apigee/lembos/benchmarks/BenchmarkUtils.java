@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import io.apigee.lembos.io.JSObjectWritable;
+import org.apache.hadoop.io.ArrayWritable;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.ByteWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SortedMapWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.VIntWritable;
+import org.apache.hadoop.io.VLongWritable;
+import org.apache.hadoop.io.Writable;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Shared fixtures for the benchmarks.
+ */
+final class BenchmarkUtils {
+
+    /**
+     * Private constructor.
+     */
+    private BenchmarkUtils() { }
+
+    /**
+     * Creates a representative value for each {@link Writable} type with a registered converter.
+     *
+     * @param type the simple class name of the writable
+     *
+     * @return the writable
+     */
+    static Writable createWritable(final String type) {
+        switch (type) {
+            case "ArrayWritable":
+                return new ArrayWritable(Text.class, new Writable[] {
+                        new Text("a"), new Text("b"), new Text("c")
+                });
+            case "BooleanWritable":
+                return new BooleanWritable(true);
+            case "BytesWritable":
+                return new BytesWritable("Some bytes for the benchmark".getBytes());
+            case "ByteWritable":
+                return new ByteWritable((byte)1);
+            case "DoubleWritable":
+                return new DoubleWritable(1.1);
+            case "FloatWritable":
+                return new FloatWritable(1.1F);
+            case "IntWritable":
+                return new IntWritable(1);
+            case "JSObjectWritable":
+                return new JSObjectWritable(ImmutableMap.of("name", "lembos", "count", 1, "ratio", 0.5));
+            case "LongWritable":
+                return new LongWritable(1L);
+            case "MapWritable":
+                return createMapWritable(3);
+            case "NullWritable":
+                return NullWritable.get();
+            case "SortedMapWritable":
+                final SortedMapWritable sortedMapWritable = new SortedMapWritable();
+
+                sortedMapWritable.put(new Text("a"), new IntWritable(1));
+                sortedMapWritable.put(new Text("b"), new IntWritable(2));
+                sortedMapWritable.put(new Text("c"), new IntWritable(3));
+
+                return sortedMapWritable;
+            case "Text":
+                return new Text("Some text for the benchmark");
+            case "VIntWritable":
+                return new VIntWritable(1);
+            case "VLongWritable":
+                return new VLongWritable(1L);
+            default:
+                throw new IllegalArgumentException("Unsupported Writable type: " + type);
+        }
+    }
+
+    /**
+     * Creates a flat {@link MapWritable} of {@link Text} keys and {@link IntWritable} values.
+     *
+     * @param size the number of entries
+     *
+     * @return the map
+     */
+    static MapWritable createMapWritable(final int size) {
+        final MapWritable mapWritable = new MapWritable();
+
+        for (int i = 0; i < size; i++) {
+            mapWritable.put(new Text("key" + i), new IntWritable(i));
+        }
+
+        return mapWritable;
+    }
+
+    /**
+     * Reads every property of the JavaScript value, recursively, so lazily converted values are converted.
+     *
+     * @param value the JavaScript value
+     * @param blackhole the blackhole consuming the values read
+     */
+    static void readAll(final Object value, final Blackhole blackhole) {
+        if (value instanceof Scriptable) {
+            final Scriptable scriptable = (Scriptable)value;
+
+            for (final Object id : scriptable.getIds()) {
+                final Object property = id instanceof Integer
+                        ? ScriptableObject.getProperty(scriptable, (Integer)id)
+                        : ScriptableObject.getProperty(scriptable, id.toString());
+
+                readAll(property, blackhole);
+            }
+        } else {
+            blackhole.consume(value);
+        }
+    }
+
+}
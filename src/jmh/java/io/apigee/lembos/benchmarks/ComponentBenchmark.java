@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks;
+
+import io.apigee.lembos.mapreduce.LembosMapper;
+import io.apigee.lembos.mapreduce.LembosPartitioner;
+import io.apigee.lembos.mapreduce.LembosSortComparator;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-record cost of {@link LembosMapper}, {@link LembosSortComparator} and {@link LembosPartitioner}
+ * using in-memory task contexts.  (See {@link ReducerBenchmark} for {@link io.apigee.lembos.mapreduce.LembosReducer}.)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComponentBenchmark {
+
+    private final Text key1 = new Text("lembos");
+    private final Text key2 = new Text("hadoop");
+    private final Text value = new Text("A line of text to map");
+    private BenchmarkMapper mapper;
+    private LembosSortComparator sortComparator;
+    private LembosPartitioner partitioner;
+
+    /**
+     * Creates and sets up the components.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final Configuration conf = BenchmarkContexts.createConf();
+
+        mapper = new BenchmarkMapper(conf);
+        sortComparator = new LembosSortComparator();
+        partitioner = new LembosPartitioner();
+
+        sortComparator.setConf(conf);
+        partitioner.setConf(conf);
+
+        // The sort comparator and the partitioner are set up during their first call
+        sortComparator.compare(key1, key2);
+        partitioner.getPartition(key1, value, 10);
+    }
+
+    /**
+     * Cleans up the components.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        mapper.cleanup();
+        sortComparator.close();
+        partitioner.close();
+    }
+
+    /**
+     * @return the number of records written by the mapper
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Benchmark
+    public long map() throws Exception {
+        return mapper.map(key1, value);
+    }
+
+    /**
+     * @return the sort comparator result
+     */
+    @Benchmark
+    public int sortCompare() {
+        return sortComparator.compare(key1, key2);
+    }
+
+    /**
+     * @return the partition
+     */
+    @Benchmark
+    public int getPartition() {
+        return partitioner.getPartition(key1, value, 10);
+    }
+
+    /**
+     * {@link LembosMapper} driven by an in-memory context.
+     */
+    static final class BenchmarkMapper extends LembosMapper {
+
+        private final BenchmarkContexts.CountingRecordWriter writer = new BenchmarkContexts.CountingRecordWriter();
+        private final Context context;
+
+        /**
+         * Constructor.
+         *
+         * @param conf the Hadoop configuration
+         *
+         * @throws IOException if anything goes wrong
+         * @throws InterruptedException if anything goes wrong
+         */
+        BenchmarkMapper(final Configuration conf) throws IOException, InterruptedException {
+            context = new Context(conf, new TaskAttemptID(), null, writer, null,
+                                  new BenchmarkContexts.InMemoryStatusReporter(), null);
+
+            setup(context);
+        }
+
+        /**
+         * Maps the key/value pair.
+         *
+         * @param key the key
+         * @param value the value
+         *
+         * @return the number of records written so far
+         *
+         * @throws IOException if anything goes wrong
+         * @throws InterruptedException if anything goes wrong
+         */
+        long map(final Text key, final Text value) throws IOException, InterruptedException {
+            map(key, value, context);
+
+            return writer.getCount();
+        }
+
+        /**
+         * Cleans up the mapper.
+         *
+         * @throws IOException if anything goes wrong
+         * @throws InterruptedException if anything goes wrong
+         */
+        void cleanup() throws IOException, InterruptedException {
+            cleanup(context);
+        }
+
+    }
+
+}
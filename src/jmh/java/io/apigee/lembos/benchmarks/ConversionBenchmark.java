@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks;
+
+import io.apigee.lembos.utils.ConversionUtils;
+import org.apache.hadoop.io.Writable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ConversionUtils} for every {@link Writable} type with a registered converter.
+ *
+ * <b>Note:</b> The scope is a plain Rhino scope so {@link org.apache.hadoop.io.BytesWritable}s are converted to
+ * byte[] instead of Node.js Buffers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConversionBenchmark {
+
+    @Param({
+            "ArrayWritable", "BooleanWritable", "BytesWritable", "ByteWritable", "DoubleWritable", "FloatWritable",
+            "IntWritable", "JSObjectWritable", "LongWritable", "MapWritable", "NullWritable", "SortedMapWritable",
+            "Text", "VIntWritable", "VLongWritable"
+    })
+    public String type;
+
+    private Scriptable scope;
+    private Writable writable;
+    private Object jsValue;
+
+    /**
+     * Creates the scope and the values to convert.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        scope = Context.enter().initStandardObjects();
+        writable = BenchmarkUtils.createWritable(type);
+        jsValue = ConversionUtils.writableToJS(writable, scope);
+    }
+
+    /**
+     * Exits the context entered in {@link #setUp()}.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Context.exit();
+    }
+
+    /**
+     * @return the JavaScript equivalent of the writable
+     */
+    @Benchmark
+    public Object writableToJS() {
+        return ConversionUtils.writableToJS(writable, scope);
+    }
+
+    /**
+     * @return the writable equivalent of the JavaScript value
+     */
+    @Benchmark
+    public Writable jsToWritable() {
+        return ConversionUtils.jsToWritable(jsValue, scope);
+    }
+
+    /**
+     * @return the writable converted to JavaScript and back
+     */
+    @Benchmark
+    public Writable roundTrip() {
+        return ConversionUtils.jsToWritable(ConversionUtils.writableToJS(writable, scope), scope);
+    }
+
+}
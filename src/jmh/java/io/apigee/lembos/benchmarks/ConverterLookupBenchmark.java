@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks;
+
+import io.apigee.lembos.utils.ConversionUtils;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Writable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the converter lookup done by {@link ConversionUtils}.  Every lookup asks every registered converter
+ * whether it can convert the value, so the conversions below are chosen to be as cheap as possible and the worst case
+ * is a value no converter supports, which also pays for building the exception.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConverterLookupBenchmark {
+
+    private final Writable unconvertible = new MD5Hash();
+    private final Object unconvertibleJS = new Object();
+    private Scriptable scope;
+
+    /**
+     * Creates the scope.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        scope = Context.enter().initStandardObjects();
+    }
+
+    /**
+     * Exits the context entered in {@link #setUp()}.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Context.exit();
+    }
+
+    /**
+     * @return the JavaScript equivalent of {@link NullWritable}
+     */
+    @Benchmark
+    public Object writableToJSLookup() {
+        return ConversionUtils.writableToJS(NullWritable.get(), scope);
+    }
+
+    /**
+     * @return the writable equivalent of a boolean
+     */
+    @Benchmark
+    public Writable jsToWritableLookup() {
+        return ConversionUtils.jsToWritable(Boolean.TRUE, scope);
+    }
+
+    /**
+     * @return the error message for a writable without a converter
+     */
+    @Benchmark
+    public String writableToJSMiss() {
+        try {
+            return ConversionUtils.writableToJS(unconvertible, scope).toString();
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * @return the error message for a JavaScript value without a converter
+     */
+    @Benchmark
+    public String jsToWritableMiss() {
+        try {
+            return ConversionUtils.jsToWritable(unconvertibleJS, scope).toString();
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+}
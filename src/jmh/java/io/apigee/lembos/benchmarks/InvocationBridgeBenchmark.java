@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks;
+
+import io.apigee.lembos.mapreduce.LembosMapReduceEnvironment;
+import io.apigee.lembos.mapreduce.LembosNodeEnvironment;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link LembosNodeEnvironment#callFunctionSync(Function, Object[])}, the Java to JavaScript bridge every
+ * Lembos component call goes through.  The functions called are:
+ *
+ * <ul>
+ *   <li><b>trivial:</b> calls the callback right away</li>
+ *   <li><b>cpu:</b> does some CPU-bound work before calling the callback</li>
+ *   <li><b>setImmediate:</b> calls the callback using <code>setImmediate</code></li>
+ *   <li><b>nextTick:</b> calls the callback using <code>process.nextTick</code></li>
+ * </ul>
+ *
+ * Throughput is reported along with the sampled latency distribution.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InvocationBridgeBenchmark {
+
+    @Param({"trivial", "cpu", "setImmediate", "nextTick"})
+    public String function;
+
+    private LembosMapReduceEnvironment env;
+    private Function functionToCall;
+
+    /**
+     * Creates the Node.js environment.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        env = LembosMapReduceEnvironment.fromConf(BenchmarkContexts.createConf());
+        functionToCall = (Function)ScriptableObject.getProperty(env.getModule(), function);
+    }
+
+    /**
+     * Cleans up the Node.js environment.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.cleanup();
+    }
+
+    /**
+     * @return the value passed to the callback
+     */
+    @Benchmark
+    public Object callFunctionSync() {
+        return env.callFunctionSync(functionToCall, new Object[] {});
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks;
+
+import io.apigee.lembos.utils.ConversionUtils;
+import org.apache.hadoop.io.ArrayWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks converting nested {@link MapWritable}/{@link ArrayWritable} values of different shapes and sizes to
+ * JavaScript and converting the resulting JavaScript values back to {@link Writable}s.
+ *
+ * The shapes are:
+ * <ul>
+ *   <li><b>flat:</b> a map of <code>size</code> {@link Text} to {@link IntWritable} entries</li>
+ *   <li><b>nested:</b> a map of <code>size</code> records, each a map with a name, a count and an array of tags</li>
+ *   <li><b>array:</b> an array of <code>size</code> records</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NestedConversionBenchmark {
+
+    @Param({"flat", "nested", "array"})
+    public String shape;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private Scriptable scope;
+    private Writable writable;
+    private Object jsValue;
+
+    /**
+     * Creates the scope and the values to convert.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        scope = Context.enter().initStandardObjects();
+
+        switch (shape) {
+            case "flat":
+                writable = BenchmarkUtils.createMapWritable(size);
+
+                break;
+            case "nested":
+                final MapWritable records = new MapWritable();
+
+                for (int i = 0; i < size; i++) {
+                    records.put(new Text("record" + i), createRecord(i));
+                }
+
+                writable = records;
+
+                break;
+            case "array":
+                final Writable[] items = new Writable[size];
+
+                for (int i = 0; i < size; i++) {
+                    items[i] = createRecord(i);
+                }
+
+                writable = new ArrayWritable(MapWritable.class, items);
+
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported shape: " + shape);
+        }
+
+        // The lazily converted entries are converted, and kept, during the warmup of jsToWritable
+        jsValue = ConversionUtils.writableToJS(writable, scope);
+    }
+
+    /**
+     * Exits the context entered in {@link #setUp()}.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Context.exit();
+    }
+
+    /**
+     * Converts the writable without reading the result.  (Map entries are converted lazily.)
+     *
+     * @return the JavaScript equivalent of the writable
+     */
+    @Benchmark
+    public Object writableToJS() {
+        return ConversionUtils.writableToJS(writable, scope);
+    }
+
+    /**
+     * Converts the writable and reads every value of the result.
+     *
+     * @param blackhole the blackhole consuming the values read
+     */
+    @Benchmark
+    public void writableToJSAndReadAll(final Blackhole blackhole) {
+        BenchmarkUtils.readAll(ConversionUtils.writableToJS(writable, scope), blackhole);
+    }
+
+    /**
+     * @return the writable equivalent of the JavaScript value
+     */
+    @Benchmark
+    public Writable jsToWritable() {
+        return ConversionUtils.jsToWritable(jsValue, scope);
+    }
+
+    /**
+     * Creates a record map.
+     *
+     * @param index the record index
+     *
+     * @return the record
+     */
+    private static MapWritable createRecord(final int index) {
+        final MapWritable record = new MapWritable();
+
+        record.put(new Text("name"), new Text("name" + index));
+        record.put(new Text("count"), new IntWritable(index));
+        record.put(new Text("tags"), new ArrayWritable(Text.class, new Writable[] {
+                new Text("a"), new Text("b"), new Text("c")
+        }));
+
+        return record;
+    }
+
+}
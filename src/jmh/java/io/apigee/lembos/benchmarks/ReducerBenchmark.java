@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks;
+
+import io.apigee.lembos.mapreduce.LembosReducer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-key cost of {@link LembosReducer} for different numbers of values per key using an in-memory
+ * task context.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReducerBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int valueCount;
+
+    private final Text key = new Text("lembos");
+    private final List<Writable> values = new ArrayList<>();
+    private BenchmarkReducer reducer;
+
+    /**
+     * Creates and sets up the reducer.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        for (int i = 0; i < valueCount; i++) {
+            values.add(new Text("value" + i));
+        }
+
+        reducer = new BenchmarkReducer(BenchmarkContexts.createConf());
+    }
+
+    /**
+     * Cleans up the reducer.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        reducer.cleanup();
+    }
+
+    /**
+     * @return the number of records written by the reducer
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Benchmark
+    public long reduce() throws Exception {
+        return reducer.reduce(key, values);
+    }
+
+    /**
+     * {@link LembosReducer} driven by an in-memory context.
+     */
+    static final class BenchmarkReducer extends LembosReducer {
+
+        private final BenchmarkContexts.CountingRecordWriter writer = new BenchmarkContexts.CountingRecordWriter();
+        private final Context context;
+
+        /**
+         * Constructor.
+         *
+         * @param conf the Hadoop configuration
+         *
+         * @throws IOException if anything goes wrong
+         * @throws InterruptedException if anything goes wrong
+         */
+        BenchmarkReducer(final Configuration conf) throws IOException, InterruptedException {
+            final Counters counters = new Counters();
+
+            context = new Context(conf, new TaskAttemptID(), new BenchmarkContexts.EmptyRawKeyValueIterator(),
+                                  counters.findCounter("Benchmark", "Input Keys"),
+                                  counters.findCounter("Benchmark", "Input Values"), writer, null,
+                                  new BenchmarkContexts.InMemoryStatusReporter(), null,
+                                  BenchmarkContexts.<WritableComparable<?>>textClass(),
+                                  BenchmarkContexts.<Writable>textClass());
+
+            setup(context);
+        }
+
+        /**
+         * Reduces the values of the key.
+         *
+         * @param key the key
+         * @param values the values
+         *
+         * @return the number of records written so far
+         *
+         * @throws IOException if anything goes wrong
+         * @throws InterruptedException if anything goes wrong
+         */
+        long reduce(final Text key, final List<Writable> values) throws IOException, InterruptedException {
+            reduce(key, values, context);
+
+            return writer.getCount();
+        }
+
+        /**
+         * Cleans up the reducer.
+         *
+         * @throws IOException if anything goes wrong
+         * @throws InterruptedException if anything goes wrong
+         */
+        void cleanup() throws IOException, InterruptedException {
+            cleanup(context);
+        }
+
+    }
+
+}
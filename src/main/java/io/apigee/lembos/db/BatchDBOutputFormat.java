@@ -0,0 +1,460 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.db;
+
+import io.apigee.lembos.io.JSObjectWritable;
+import io.apigee.lembos.mapreduce.LembosConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.ArrayWritable;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.db.DBConfiguration;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link OutputFormat} that inserts the records emitted by JavaScript into a database table, without requiring a
+ * <code>DBWritable</code>.  Each record is a JavaScript object, whose properties are mapped onto the configured field
+ * names, or an array whose items are the field values in order.  The record is the key, or the value when the key is
+ * null, like <code>context.write(row, null)</code>.  The connection is configured like Hadoop's
+ * <code>DBOutputFormat</code>, using {@link DBConfiguration}.
+ *
+ * Rows are written using JDBC batches of {@link LembosConstants#DB_BATCH_SIZE} rows and, when
+ * {@link LembosConstants#DB_ROWS_PER_INSERT} is greater than 1, multi-row <code>INSERT ... VALUES (...), (...)</code>
+ * statements.  Each task commits once when it completes or, when {@link LembosConstants#DB_COMMIT_INTERVAL} is set,
+ * every that many rows.
+ *
+ * <b>Note:</b> Periodic commits make rows visible before the task completes, so a failed and retried task, or a
+ * speculative one, inserts those rows again.
+ */
+public class BatchDBOutputFormat extends OutputFormat<Writable, Writable> {
+
+    /** The default number of rows per JDBC batch. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Configures the job to insert its output into the table.
+     *
+     * @param job the job
+     * @param tableName the table name
+     * @param fieldNames the field names
+     */
+    public static void setOutput(final Job job, final String tableName, final String... fieldNames) {
+        final DBConfiguration dbConf = new DBConfiguration(job.getConfiguration());
+
+        job.setOutputFormatClass(BatchDBOutputFormat.class);
+        job.setReduceSpeculativeExecution(false);
+
+        dbConf.setOutputTableName(tableName);
+        dbConf.setOutputFieldNames(fieldNames);
+    }
+
+    /**
+     * Sets the number of rows per JDBC batch.
+     *
+     * @param job the job
+     * @param batchSize the number of rows per batch
+     */
+    public static void setBatchSize(final Job job, final int batchSize) {
+        job.getConfiguration().setInt(LembosConstants.DB_BATCH_SIZE, batchSize);
+    }
+
+    /**
+     * Sets the number of rows per <code>INSERT</code> statement.
+     *
+     * @param job the job
+     * @param rowsPerInsert the number of rows per statement
+     */
+    public static void setRowsPerInsert(final Job job, final int rowsPerInsert) {
+        job.getConfiguration().setInt(LembosConstants.DB_ROWS_PER_INSERT, rowsPerInsert);
+    }
+
+    /**
+     * Sets the number of rows after which the transaction is committed.
+     *
+     * @param job the job
+     * @param commitInterval the number of rows per commit (0 to only commit when the task completes)
+     */
+    public static void setCommitInterval(final Job job, final long commitInterval) {
+        job.getConfiguration().setLong(LembosConstants.DB_COMMIT_INTERVAL, commitInterval);
+    }
+
+    /**
+     * Returns the insert statement for the table.
+     *
+     * @param tableName the table name
+     * @param fieldNames the field names
+     * @param rows the number of rows inserted by the statement
+     *
+     * @return the insert statement
+     */
+    public static String constructQuery(final String tableName, final String[] fieldNames, final int rows) {
+        final StringBuilder query = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        final StringBuilder row = new StringBuilder("(");
+
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (i > 0) {
+                query.append(", ");
+                row.append(", ");
+            }
+
+            query.append(fieldNames[i]);
+            row.append('?');
+        }
+
+        query.append(") VALUES ");
+        row.append(')');
+
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                query.append(", ");
+            }
+
+            query.append(row);
+        }
+
+        return query.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordWriter<Writable, Writable> getRecordWriter(final TaskAttemptContext context) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final DBConfiguration dbConf = new DBConfiguration(conf);
+
+        if (dbConf.getOutputFieldNames() == null || dbConf.getOutputFieldNames().length == 0) {
+            throw new IOException("The output field names must be configured");
+        }
+
+        try {
+            return new BatchDBRecordWriter(dbConf.getConnection(), dbConf.getOutputTableName(),
+                                           dbConf.getOutputFieldNames(),
+                                           conf.getInt(LembosConstants.DB_BATCH_SIZE, DEFAULT_BATCH_SIZE),
+                                           conf.getInt(LembosConstants.DB_ROWS_PER_INSERT, 1),
+                                           conf.getLong(LembosConstants.DB_COMMIT_INTERVAL, 0));
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void checkOutputSpecs(final JobContext context) { }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputCommitter getOutputCommitter(final TaskAttemptContext context) throws IOException {
+        return new FileOutputCommitter(FileOutputFormat.getOutputPath(context), context);
+    }
+
+    /**
+     * Converts a field value to its JDBC equivalent.
+     *
+     * @param value the field value
+     *
+     * @return the JDBC value, JavaScript objects and arrays being converted to JSON
+     */
+    static Object toJdbc(final Object value) {
+        if (value == null || value instanceof NullWritable) {
+            return null;
+        } else if (value instanceof Text) {
+            return value.toString();
+        } else if (value instanceof IntWritable) {
+            return ((IntWritable)value).get();
+        } else if (value instanceof LongWritable) {
+            return ((LongWritable)value).get();
+        } else if (value instanceof DoubleWritable) {
+            return ((DoubleWritable)value).get();
+        } else if (value instanceof FloatWritable) {
+            return ((FloatWritable)value).get();
+        } else if (value instanceof BooleanWritable) {
+            return ((BooleanWritable)value).get();
+        } else if (value instanceof BytesWritable) {
+            return Arrays.copyOf(((BytesWritable)value).getBytes(), ((BytesWritable)value).getLength());
+        } else if (value instanceof JSObjectWritable) {
+            return toJdbc(((JSObjectWritable)value).get());
+        } else if (value instanceof Map || value instanceof List) {
+            return new JSObjectWritable(value).toString();
+        } else if (value instanceof Writable) {
+            return value.toString();
+        }
+
+        return value;
+    }
+
+    /**
+     * {@link RecordWriter} inserting the records in batches.
+     */
+    public static class BatchDBRecordWriter extends RecordWriter<Writable, Writable> {
+
+        private final Connection connection;
+        private final String tableName;
+        private final String[] fieldNames;
+        private final int batchSize;
+        private final int rowsPerInsert;
+        private final long commitInterval;
+        private final PreparedStatement statement;
+        private final List<Object[]> pendingRows = new ArrayList<>();
+        private int[] parameterTypes;
+        private int batchedRows;
+        private long uncommittedRows;
+
+        /**
+         * Constructor.
+         *
+         * @param connection the database connection
+         * @param tableName the table name
+         * @param fieldNames the field names
+         * @param batchSize the number of rows per JDBC batch
+         * @param rowsPerInsert the number of rows per insert statement
+         * @param commitInterval the number of rows per commit (0 to commit once, when closed)
+         *
+         * @throws SQLException if the statement cannot be prepared
+         */
+        public BatchDBRecordWriter(final Connection connection, final String tableName, final String[] fieldNames,
+                                   final int batchSize, final int rowsPerInsert, final long commitInterval)
+                throws SQLException {
+            this.connection = connection;
+            this.tableName = tableName;
+            this.fieldNames = fieldNames.clone();
+            this.batchSize = Math.max(1, batchSize);
+            this.rowsPerInsert = Math.max(1, rowsPerInsert);
+            this.commitInterval = commitInterval;
+
+            connection.setAutoCommit(false);
+
+            this.statement = connection.prepareStatement(constructQuery(tableName, fieldNames, this.rowsPerInsert));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final Writable key, final Writable value) throws IOException {
+            pendingRows.add(toRow(key == null || key instanceof NullWritable ? value : key));
+
+            try {
+                if (pendingRows.size() == rowsPerInsert) {
+                    bind(statement, pendingRows);
+                    statement.addBatch();
+
+                    batchedRows += pendingRows.size();
+
+                    pendingRows.clear();
+                }
+
+                if (batchedRows >= batchSize) {
+                    executeBatch();
+                }
+
+                if (commitInterval > 0 && ++uncommittedRows >= commitInterval) {
+                    flush();
+                    connection.commit();
+
+                    uncommittedRows = 0;
+                }
+            } catch (SQLException e) {
+                throw failed(e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close(final TaskAttemptContext context) throws IOException {
+            try {
+                flush();
+                connection.commit();
+            } catch (SQLException e) {
+                throw failed(e);
+            } finally {
+                try {
+                    statement.close();
+                    connection.close();
+                } catch (SQLException e) {
+                    System.err.println("Unable to close the database connection: " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Converts the record to the field values.
+         *
+         * @param record the record
+         *
+         * @return the field values
+         *
+         * @throws IOException if the record is not an object or an array
+         */
+        private Object[] toRow(final Writable record) throws IOException {
+            final Object[] row = new Object[fieldNames.length];
+            final Object value = record instanceof JSObjectWritable ? ((JSObjectWritable)record).get() : record;
+
+            if (value instanceof Map) {
+                for (int i = 0; i < fieldNames.length; i++) {
+                    row[i] = toJdbc(((Map<?, ?>)value).get(fieldNames[i]));
+                }
+            } else if (value instanceof MapWritable) {
+                for (int i = 0; i < fieldNames.length; i++) {
+                    row[i] = toJdbc(((MapWritable)value).get(new Text(fieldNames[i])));
+                }
+            } else if (value instanceof List || value instanceof ArrayWritable) {
+                final List<?> items = value instanceof List ?
+                        (List<?>)value :
+                        Arrays.asList(((ArrayWritable)value).get());
+
+                for (int i = 0; i < fieldNames.length && i < items.size(); i++) {
+                    row[i] = toJdbc(items.get(i));
+                }
+            } else {
+                throw new IOException("Database records must be objects or arrays, not: "
+                                              + (record == null ? null : record.getClass().getName()));
+            }
+
+            return row;
+        }
+
+        /**
+         * Binds the rows to the statement parameters.
+         *
+         * @param toBind the statement
+         * @param rows the rows
+         *
+         * @throws SQLException if anything goes wrong
+         */
+        private void bind(final PreparedStatement toBind, final List<Object[]> rows) throws SQLException {
+            int index = 1;
+
+            for (final Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    if (row[i] == null) {
+                        toBind.setNull(index, getParameterType(i));
+                    } else {
+                        toBind.setObject(index, row[i]);
+                    }
+
+                    index++;
+                }
+            }
+        }
+
+        /**
+         * Returns the SQL type of a field, which some drivers need to bind nulls.
+         *
+         * @param field the field index
+         *
+         * @return the SQL type of the field
+         */
+        private int getParameterType(final int field) {
+            if (parameterTypes == null) {
+                parameterTypes = new int[fieldNames.length];
+
+                for (int i = 0; i < fieldNames.length; i++) {
+                    try {
+                        parameterTypes[i] = statement.getParameterMetaData().getParameterType(i + 1);
+                    } catch (SQLException e) {
+                        parameterTypes[i] = Types.VARCHAR;
+                    }
+                }
+            }
+
+            return parameterTypes[field];
+        }
+
+        /**
+         * Executes the pending batch.
+         *
+         * @throws SQLException if anything goes wrong
+         */
+        private void executeBatch() throws SQLException {
+            if (batchedRows > 0) {
+                statement.executeBatch();
+
+                batchedRows = 0;
+            }
+        }
+
+        /**
+         * Executes the pending batch and inserts the rows that do not fill a multi-row insert.
+         *
+         * @throws SQLException if anything goes wrong
+         */
+        private void flush() throws SQLException {
+            executeBatch();
+
+            if (!pendingRows.isEmpty()) {
+                try (final PreparedStatement remainder =
+                             connection.prepareStatement(constructQuery(tableName, fieldNames, pendingRows.size()))) {
+                    bind(remainder, pendingRows);
+                    remainder.executeUpdate();
+                }
+
+                pendingRows.clear();
+            }
+        }
+
+        /**
+         * Rolls the transaction back.
+         *
+         * @param e the failure
+         *
+         * @return the failure as an {@link IOException}
+         */
+        private IOException failed(final SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                System.err.println("Unable to roll the transaction back: " + rollbackException.getMessage());
+            }
+
+            return new IOException(e.getNextException() == null ? e : e.getNextException());
+        }
+
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.db;
+
+import io.apigee.lembos.io.JSObjectWritable;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Writable} holding a database row as the Java values of its columns, which is converted to a JavaScript object
+ * keyed by column name without serializing it first.  (Dates become JavaScript <code>Date</code>s.)
+ *
+ * <b>Note:</b> The row is only serialized when it is written by Hadoop, in which case dates are stored as milliseconds
+ * since the epoch.
+ */
+public class DBRowWritable implements Writable {
+
+    private String[] columnNames = new String[0];
+    private Object[] values = new Object[0];
+
+    /**
+     * Constructor.  (The row will be empty.)
+     */
+    public DBRowWritable() { }
+
+    /**
+     * Constructor.
+     *
+     * @param columnNames the column names
+     * @param values the column values
+     */
+    public DBRowWritable(final String[] columnNames, final Object[] values) {
+        set(columnNames, values);
+    }
+
+    /**
+     * Sets the row.
+     *
+     * @param columnNames the column names
+     * @param values the column values, in column order
+     */
+    public void set(final String[] columnNames, final Object[] values) {
+        if (columnNames.length != values.length) {
+            throw new IllegalArgumentException("There must be as many values as columns");
+        }
+
+        this.columnNames = columnNames;
+        this.values = values;
+    }
+
+    /**
+     * Returns the column names.
+     *
+     * @return the column names
+     */
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Returns the column values.
+     *
+     * @return the column values, in column order
+     */
+    public Object[] getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the row as a map of column name to value.
+     *
+     * @return the row
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> row = new LinkedHashMap<>();
+
+        for (int i = 0; i < columnNames.length; i++) {
+            row.put(columnNames[i], values[i] instanceof Date ? ((Date)values[i]).getTime() : values[i]);
+        }
+
+        return row;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final DataOutput out) throws IOException {
+        new JSObjectWritable(toMap()).write(out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readFields(final DataInput in) throws IOException {
+        final JSObjectWritable row = new JSObjectWritable();
+
+        row.readFields(in);
+
+        final List<String> names = new ArrayList<>();
+        final List<Object> rowValues = new ArrayList<>();
+
+        for (final Map.Entry<?, ?> column : ((Map<?, ?>)row.get()).entrySet()) {
+            names.add(column.getKey().toString());
+            rowValues.add(column.getValue());
+        }
+
+        set(names.toArray(new String[names.size()]), rowValues.toArray());
+    }
+
+    /**
+     * Returns the JSON representation of the row.
+     *
+     * @return the JSON row
+     */
+    @Override
+    public String toString() {
+        return new JSObjectWritable(toMap()).toString();
+    }
+
+}
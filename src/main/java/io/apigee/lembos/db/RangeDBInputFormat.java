@@ -0,0 +1,996 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.db;
+
+import io.apigee.lembos.mapreduce.LembosConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.db.DBConfiguration;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * {@link InputFormat} that reads a database table in parallel, one range of a numeric or date column per split, and
+ * returns each row as a {@link DBRowWritable} that JavaScript receives as an object keyed by column name.
+ *
+ * The range boundaries are the quantiles of the split column so skewed columns still produce splits of similar
+ * sizes.  They are searched for on the database side: Starting from the <code>MIN</code> and <code>MAX</code> of the
+ * split column, each round counts the rows below evenly spaced values of the ranges holding the quantiles, in a single
+ * query restricted to those ranges, until the ranges hold few enough rows.  With
+ * {@link LembosConstants#DB_SAMPLE_FULL_SCAN}, the boundaries are instead the quantiles of a random sample of up to
+ * {@link LembosConstants#DB_SAMPLE_SIZE} values, taken by reading the split column of every matching row.  Rows whose
+ * split column is null are read by the first split.  Rows are streamed using a forward-only result set with a fetch
+ * size of {@link LembosConstants#DB_FETCH_SIZE}.  (MySQL only streams with a fetch size of
+ * <code>Integer.MIN_VALUE</code>.)  The number of splits is the number of map tasks and the connection, table, fields,
+ * conditions and split column are configured using {@link DBConfiguration}, the split column being its order by.
+ *
+ * The record keys are row indexes offset by the index of the first row of the split, like for
+ * {@link org.apache.hadoop.mapreduce.lib.db.DBInputFormat}.  (Estimated from the sample with a full scan.)
+ */
+public class RangeDBInputFormat extends InputFormat<LongWritable, DBRowWritable> {
+
+    /** The default fetch size. */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    /** The default number of split column values sampled. */
+    public static final int DEFAULT_SAMPLE_SIZE = 10000;
+
+    private static final int MAX_PROBES = 512;
+    private static final int MAX_PROBES_PER_RANGE = 64;
+    private static final int MAX_PROBE_ROUNDS = 16;
+    private static final int PROBE_PRECISION = 100;
+
+    /**
+     * Configures the job to read the table.
+     *
+     * @param job the job
+     * @param tableName the table name
+     * @param conditions the <code>WHERE</code> conditions (Can be null)
+     * @param splitColumn the numeric or date column to split by
+     * @param fieldNames the field names (All fields if empty)
+     */
+    public static void setInput(final Job job, final String tableName, final String conditions,
+                                final String splitColumn, final String... fieldNames) {
+        final DBConfiguration dbConf = new DBConfiguration(job.getConfiguration());
+
+        job.setInputFormatClass(RangeDBInputFormat.class);
+
+        dbConf.setInputTableName(tableName);
+        dbConf.setInputConditions(conditions);
+        dbConf.setInputOrderBy(splitColumn);
+        dbConf.setInputFieldNames(fieldNames);
+    }
+
+    /**
+     * Sets the JDBC fetch size.
+     *
+     * @param job the job
+     * @param fetchSize the number of rows fetched per round trip
+     */
+    public static void setFetchSize(final Job job, final int fetchSize) {
+        job.getConfiguration().setInt(LembosConstants.DB_FETCH_SIZE, fetchSize);
+    }
+
+    /**
+     * Sets the number of split column values sampled to compute the ranges with full scan sampling.
+     *
+     * @param job the job
+     * @param sampleSize the number of values sampled
+     */
+    public static void setSampleSize(final Job job, final int sampleSize) {
+        job.getConfiguration().setInt(LembosConstants.DB_SAMPLE_SIZE, sampleSize);
+    }
+
+    /**
+     * Sets whether the ranges are computed from a sample of the split column read by the client instead of on the
+     * database side.
+     *
+     * @param job the job
+     * @param fullScan whether or not to read the split column of every matching row
+     */
+    public static void setFullScanSampling(final Job job, final boolean fullScan) {
+        job.getConfiguration().setBoolean(LembosConstants.DB_SAMPLE_FULL_SCAN, fullScan);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<InputSplit> getSplits(final JobContext context) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final DBConfiguration dbConf = new DBConfiguration(conf);
+        final String splitColumn = dbConf.getInputOrderBy();
+        final int numSplits = Math.max(1, conf.getInt("mapred.map.tasks", 1));
+
+        if (splitColumn == null || splitColumn.isEmpty()) {
+            throw new IOException("The split column must be configured");
+        }
+
+        try {
+            return conf.getBoolean(LembosConstants.DB_SAMPLE_FULL_SCAN, false) ?
+                    scanSplits(conf, dbConf, numSplits) :
+                    probeSplits(conf, dbConf, numSplits);
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Creates the splits by searching for the quantiles of the split column on the database side.
+     *
+     * @param conf the configuration
+     * @param dbConf the database configuration
+     * @param numSplits the number of splits wanted
+     *
+     * @return the splits
+     *
+     * @throws ClassNotFoundException if the JDBC driver cannot be loaded
+     * @throws SQLException if anything goes wrong querying the database
+     */
+    private static List<InputSplit> probeSplits(final Configuration conf, final DBConfiguration dbConf,
+                                                final int numSplits) throws ClassNotFoundException, SQLException {
+        final String splitColumn = dbConf.getInputOrderBy();
+
+        try (Connection connection = dbConf.getConnection()) {
+            final Comparable<Object> min;
+            final Comparable<Object> max;
+            final long rows;
+            final long nulls;
+
+            try (PreparedStatement statement = prepare(connection, "SELECT MIN(" + splitColumn + "), MAX("
+                    + splitColumn + "), COUNT(" + splitColumn + "), COUNT(*) FROM " + dbConf.getInputTableName()
+                    + " WHERE 1 = 1" + getConditions(dbConf), conf);
+                 ResultSet results = statement.executeQuery()) {
+                results.next();
+
+                rows = results.getLong(3);
+                nulls = results.getLong(4) - rows;
+
+                if (rows == 0) {
+                    return createSplits(new ArrayList<Comparable<Object>>(), 0, 1);
+                }
+
+                min = toBoundary(results.getObject(1));
+                max = toBoundary(results.getObject(2));
+            }
+
+            // Each quantile is searched for within a range whose lower bound has at most as many rows below it as
+            // wanted and whose upper bound (null being above the maximum) has at least as many
+            final int quantiles = numSplits - 1;
+            final long tolerance = Math.max(1, rows / ((long)numSplits * PROBE_PRECISION));
+            final List<Comparable<Object>> lows = new ArrayList<>();
+            final List<Comparable<Object>> highs = new ArrayList<>();
+            final long[] lowCounts = new long[quantiles];
+            final long[] highCounts = new long[quantiles];
+            final long[] targets = new long[quantiles];
+            final boolean[] found = new boolean[quantiles];
+
+            for (int i = 0; i < quantiles; i++) {
+                lows.add(min);
+                highs.add(null);
+                highCounts[i] = rows;
+                targets[i] = rows * (i + 1) / numSplits;
+            }
+
+            for (int round = 0; round < MAX_PROBE_ROUNDS; round++) {
+                final TreeSet<Comparable<Object>> probes = new TreeSet<>();
+                int open = 0;
+
+                for (int i = 0; i < quantiles; i++) {
+                    found[i] = found[i] || highCounts[i] - lowCounts[i] <= tolerance;
+
+                    if (!found[i]) {
+                        open++;
+                    }
+                }
+
+                final int probesPerRange = Math.max(2, Math.min(MAX_PROBES_PER_RANGE, MAX_PROBES / Math.max(1, open)));
+                Comparable<Object> lowest = null;
+                long lowestCount = 0;
+                Comparable<Object> highest = null;
+                boolean unbounded = false;
+
+                for (int i = 0; i < quantiles; i++) {
+                    if (found[i]) {
+                        continue;
+                    }
+
+                    final Comparable<Object> high = highs.get(i);
+                    boolean probed = false;
+
+                    // Without an upper bound, the last value probed is the maximum itself
+                    for (int j = 1; j < (high == null ? probesPerRange + 1 : probesPerRange); j++) {
+                        final Comparable<Object> probe = interpolate(lows.get(i), high == null ? max : high,
+                                                                     (double)j / probesPerRange);
+
+                        if (probe.compareTo(lows.get(i)) > 0 && (high == null || probe.compareTo(high) < 0)) {
+                            probes.add(probe);
+                            probed = true;
+                        }
+                    }
+
+                    // The range cannot be divided any further
+                    if (!probed) {
+                        found[i] = true;
+
+                        continue;
+                    }
+
+                    if (lowest == null || lows.get(i).compareTo(lowest) < 0) {
+                        lowest = lows.get(i);
+                        lowestCount = lowCounts[i];
+                    }
+
+                    if (high == null) {
+                        unbounded = true;
+                    } else if (highest == null || high.compareTo(highest) > 0) {
+                        highest = high;
+                    }
+                }
+
+                if (probes.isEmpty()) {
+                    break;
+                }
+
+                final List<Comparable<Object>> values = new ArrayList<>(probes);
+                final long[] counts = countBelow(connection, conf, dbConf, values, lowest, lowestCount,
+                                                 unbounded ? null : highest);
+
+                for (int i = 0; i < quantiles; i++) {
+                    for (int j = 0; j < values.size(); j++) {
+                        final Comparable<Object> value = values.get(j);
+
+                        if (value.compareTo(lows.get(i)) <= 0
+                                || (highs.get(i) != null && value.compareTo(highs.get(i)) >= 0)) {
+                            continue;
+                        }
+
+                        if (counts[j] <= targets[i]) {
+                            lows.set(i, value);
+                            lowCounts[i] = counts[j];
+                        }
+
+                        if (counts[j] >= targets[i] && (highs.get(i) == null || value.compareTo(highs.get(i)) < 0)) {
+                            highs.set(i, value);
+                            highCounts[i] = counts[j];
+                        }
+                    }
+                }
+            }
+
+            // Each boundary is the bound of its range closest to the quantile, repeated values would create empty
+            // ranges
+            final List<InputSplit> splits = new ArrayList<>();
+            Comparable<Object> lower = null;
+            long lowerCount = 0;
+
+            for (int i = 0; i < quantiles; i++) {
+                final boolean useLow = highs.get(i) == null || targets[i] - lowCounts[i] <= highCounts[i] - targets[i];
+                final Comparable<Object> boundary = useLow ? lows.get(i) : highs.get(i);
+                final long boundaryCount = useLow ? lowCounts[i] : highCounts[i];
+
+                if (boundary.compareTo(min) > 0 && (lower == null || boundary.compareTo(lower) > 0)) {
+                    // The first range also reads the null values
+                    splits.add(new RangeSplit(lower, boundary, lower == null ? 0 : nulls + lowerCount,
+                                              boundaryCount - lowerCount + (lower == null ? nulls : 0)));
+
+                    lower = boundary;
+                    lowerCount = boundaryCount;
+                }
+            }
+
+            splits.add(new RangeSplit(lower, null, lower == null ? 0 : nulls + lowerCount,
+                                      rows - lowerCount + (lower == null ? nulls : 0)));
+
+            return splits;
+        }
+    }
+
+    /**
+     * Counts the rows whose split column is below each of the values, in a single query reading the rows of the
+     * range probed.
+     *
+     * @param connection the database connection
+     * @param conf the configuration
+     * @param dbConf the database configuration
+     * @param values the sorted values
+     * @param lower the inclusive lower bound of the range probed
+     * @param lowerCount the number of rows below the lower bound
+     * @param upper the exclusive upper bound of the range probed (null for no upper bound)
+     *
+     * @return the number of rows below each value
+     *
+     * @throws SQLException if anything goes wrong querying the database
+     */
+    private static long[] countBelow(final Connection connection, final Configuration conf,
+                                     final DBConfiguration dbConf, final List<Comparable<Object>> values,
+                                     final Comparable<Object> lower, final long lowerCount,
+                                     final Comparable<Object> upper) throws SQLException {
+        final String splitColumn = dbConf.getInputOrderBy();
+        final StringBuilder query = new StringBuilder("SELECT ");
+        final long[] counts = new long[values.size()];
+
+        for (int i = 0; i < values.size(); i++) {
+            query.append(i > 0 ? ", " : "").append("SUM(CASE WHEN ").append(splitColumn)
+                 .append(" < ? THEN 1 ELSE 0 END)");
+        }
+
+        query.append(" FROM ").append(dbConf.getInputTableName())
+             .append(" WHERE ").append(splitColumn).append(" >= ?")
+             .append(upper == null ? "" : " AND " + splitColumn + " < ?")
+             .append(getConditions(dbConf));
+
+        try (PreparedStatement statement = prepare(connection, query.toString(), conf)) {
+            int index = 1;
+
+            for (final Comparable<Object> value : values) {
+                statement.setObject(index++, value);
+            }
+
+            statement.setObject(index++, lower);
+
+            if (upper != null) {
+                statement.setObject(index, upper);
+            }
+
+            try (ResultSet results = statement.executeQuery()) {
+                results.next();
+
+                for (int i = 0; i < counts.length; i++) {
+                    // SUM is null when the range holds no rows
+                    counts[i] = lowerCount + results.getLong(i + 1);
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Creates the splits from a sample of the split column read by reading the split column of every matching row.
+     *
+     * @param conf the configuration
+     * @param dbConf the database configuration
+     * @param numSplits the number of splits wanted
+     *
+     * @return the splits
+     *
+     * @throws ClassNotFoundException if the JDBC driver cannot be loaded
+     * @throws SQLException if anything goes wrong querying the database
+     */
+    private static List<InputSplit> scanSplits(final Configuration conf, final DBConfiguration dbConf,
+                                               final int numSplits) throws ClassNotFoundException, SQLException {
+        final String splitColumn = dbConf.getInputOrderBy();
+        final int sampleSize = Math.max(1, conf.getInt(LembosConstants.DB_SAMPLE_SIZE, DEFAULT_SAMPLE_SIZE));
+        final List<Comparable<Object>> sample = new ArrayList<>();
+        final Random random = new Random(sampleSize);
+        long rows = 0;
+
+        try (Connection connection = dbConf.getConnection();
+             PreparedStatement statement = prepare(connection, "SELECT " + splitColumn + " FROM "
+                     + dbConf.getInputTableName() + " WHERE " + splitColumn + " IS NOT NULL"
+                     + getConditions(dbConf), conf);
+             ResultSet results = statement.executeQuery()) {
+            // Reservoir sampling
+            while (results.next()) {
+                final Comparable<Object> value = toBoundary(results.getObject(1));
+
+                if (sample.size() < sampleSize) {
+                    sample.add(value);
+                } else {
+                    final long index = (long)(random.nextDouble() * (rows + 1));
+
+                    if (index < sampleSize) {
+                        sample.set((int)index, value);
+                    }
+                }
+
+                rows++;
+            }
+        }
+
+        return createSplits(sample, rows, numSplits);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordReader<LongWritable, DBRowWritable> createRecordReader(final InputSplit split,
+                                                                        final TaskAttemptContext context) {
+        return new RangeRecordReader();
+    }
+
+    /**
+     * Creates the splits whose boundaries are the quantiles of the sample.
+     *
+     * @param sample the sampled split column values
+     * @param rows the number of rows whose split column is not null
+     * @param numSplits the number of splits wanted
+     *
+     * @return the splits
+     */
+    static List<InputSplit> createSplits(final List<Comparable<Object>> sample, final long rows,
+                                         final int numSplits) {
+        final List<Comparable<Object>> boundaries = new ArrayList<>();
+        final List<InputSplit> splits = new ArrayList<>();
+
+        Collections.sort(sample);
+
+        for (int i = 1; i < numSplits && !sample.isEmpty(); i++) {
+            final Comparable<Object> boundary = sample.get((int)((long)i * sample.size() / numSplits));
+
+            // Repeated values would create empty ranges
+            if (boundary.compareTo(sample.get(0)) > 0
+                    && (boundaries.isEmpty() || boundary.compareTo(boundaries.get(boundaries.size() - 1)) > 0)) {
+                boundaries.add(boundary);
+            }
+        }
+
+        long start = 0;
+
+        for (int i = 0; i <= boundaries.size(); i++) {
+            final Comparable<Object> lower = i == 0 ? null : boundaries.get(i - 1);
+            final Comparable<Object> upper = i == boundaries.size() ? null : boundaries.get(i);
+            long estimate = rows / (boundaries.size() + 1);
+
+            if (!sample.isEmpty()) {
+                // Estimate the rows in the range using the share of the sample it contains
+                final int from = lower == null ? 0 : lowerBound(sample, lower);
+                final int to = upper == null ? sample.size() : lowerBound(sample, upper);
+
+                estimate = rows * (to - from) / sample.size();
+            }
+
+            splits.add(new RangeSplit(lower, upper, start, estimate));
+
+            start += estimate;
+        }
+
+        return splits;
+    }
+
+    /**
+     * Returns the index of the first sample value greater than or equal to the value.
+     *
+     * @param sample the sorted sample
+     * @param value the value
+     *
+     * @return the index
+     */
+    private static int lowerBound(final List<Comparable<Object>> sample, final Comparable<Object> value) {
+        int low = 0;
+        int high = sample.size();
+
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+
+            if (sample.get(middle).compareTo(value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns the split column value as a boundary that can be compared, serialized and bound to a statement.
+     *
+     * @param value the split column value
+     *
+     * @return the boundary
+     *
+     * @throws SQLException if the split column is neither numeric nor a date
+     */
+    @SuppressWarnings("unchecked")
+    static Comparable<Object> toBoundary(final Object value) throws SQLException {
+        final Object boundary;
+
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            boundary = ((Number)value).longValue();
+        } else if (value instanceof Double || value instanceof Float) {
+            boundary = ((Number)value).doubleValue();
+        } else if (value instanceof BigDecimal) {
+            boundary = value;
+        } else if (value instanceof BigInteger) {
+            boundary = new BigDecimal((BigInteger)value);
+        } else if (value instanceof Timestamp) {
+            boundary = value;
+        } else if (value instanceof Date) {
+            boundary = new Timestamp(((Date)value).getTime());
+        } else {
+            throw new SQLException("The split column must be numeric or a date, not: "
+                                           + (value == null ? null : value.getClass().getName()));
+        }
+
+        return (Comparable<Object>)boundary;
+    }
+
+    /**
+     * Returns the value at the fraction of the way between two boundaries.
+     *
+     * @param lower the lower boundary
+     * @param upper the upper boundary
+     * @param fraction the fraction, between 0 and 1
+     *
+     * @return the value, of the same type as the boundaries
+     */
+    @SuppressWarnings("unchecked")
+    static Comparable<Object> interpolate(final Object lower, final Object upper, final double fraction) {
+        final Object value;
+
+        if (lower instanceof Long) {
+            // The difference of the bounds can overflow a long, the value cannot
+            value = (Long)lower + BigDecimal.valueOf((Long)upper).subtract(BigDecimal.valueOf((Long)lower))
+                                            .multiply(BigDecimal.valueOf(fraction)).longValue();
+        } else if (lower instanceof Double) {
+            value = (Double)lower + ((Double)upper - (Double)lower) * fraction;
+        } else if (lower instanceof BigDecimal) {
+            value = ((BigDecimal)lower).add(((BigDecimal)upper).subtract((BigDecimal)lower)
+                                                               .multiply(BigDecimal.valueOf(fraction)),
+                                            MathContext.DECIMAL64);
+        } else {
+            final long lowerMillis = ((Timestamp)lower).getTime();
+
+            value = new Timestamp(lowerMillis + (long)((((Timestamp)upper).getTime() - lowerMillis) * fraction));
+        }
+
+        return (Comparable<Object>)value;
+    }
+
+    /**
+     * Returns the configured conditions as a <code>WHERE</code> clause continuation.
+     *
+     * @param dbConf the database configuration
+     *
+     * @return the conditions
+     */
+    private static String getConditions(final DBConfiguration dbConf) {
+        final String conditions = dbConf.getInputConditions();
+
+        return conditions == null || conditions.isEmpty() ? "" : " AND (" + conditions + ")";
+    }
+
+    /**
+     * Prepares a streaming, read-only, query.
+     *
+     * @param connection the database connection
+     * @param query the query
+     * @param conf the configuration
+     *
+     * @return the statement
+     *
+     * @throws SQLException if anything goes wrong
+     */
+    private static PreparedStatement prepare(final Connection connection, final String query,
+                                             final Configuration conf) throws SQLException {
+        // Some drivers, like PostgreSQL's, only use the fetch size outside of auto-commit mode
+        connection.setAutoCommit(false);
+
+        final PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+                                                                        ResultSet.CONCUR_READ_ONLY);
+
+        statement.setFetchSize(conf.getInt(LembosConstants.DB_FETCH_SIZE, DEFAULT_FETCH_SIZE));
+
+        return statement;
+    }
+
+    /**
+     * Returns the column value as one of the Java types supported by JavaScript.
+     *
+     * @param value the column value
+     *
+     * @return the Java value
+     *
+     * @throws SQLException if the value cannot be read
+     */
+    static Object toJava(final Object value) throws SQLException {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Double || value instanceof byte[]) {
+            return value;
+        } else if (value instanceof Short || value instanceof Byte) {
+            return ((Number)value).intValue();
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            final BigDecimal decimal = value instanceof BigDecimal ?
+                    (BigDecimal)value :
+                    new BigDecimal((BigInteger)value);
+
+            try {
+                return decimal.longValueExact();
+            } catch (ArithmeticException e) {
+                return decimal.doubleValue();
+            }
+        } else if (value instanceof Number) {
+            return ((Number)value).doubleValue();
+        } else if (value instanceof Date) {
+            return new Date(((Date)value).getTime());
+        } else if (value instanceof Clob) {
+            return ((Clob)value).getSubString(1, (int)((Clob)value).length());
+        } else if (value instanceof Blob) {
+            return ((Blob)value).getBytes(1, (int)((Blob)value).length());
+        }
+
+        return value.toString();
+    }
+
+    /**
+     * {@link InputSplit} reading one range of the split column.
+     */
+    public static class RangeSplit extends InputSplit implements Writable {
+
+        private static final byte TYPE_NONE = 0;
+        private static final byte TYPE_LONG = 1;
+        private static final byte TYPE_DOUBLE = 2;
+        private static final byte TYPE_DECIMAL = 3;
+        private static final byte TYPE_TIMESTAMP = 4;
+
+        private Object lower;
+        private Object upper;
+        private long start;
+        private long length;
+
+        /**
+         * Constructor.  (Used when deserializing the split.)
+         */
+        public RangeSplit() { }
+
+        /**
+         * Constructor.
+         *
+         * @param lower the inclusive lower bound (null for the first range, which also reads null values)
+         * @param upper the exclusive upper bound (null for the last range)
+         * @param length the estimated number of rows
+         */
+        public RangeSplit(final Object lower, final Object upper, final long length) {
+            this(lower, upper, 0, length);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param lower the inclusive lower bound (null for the first range, which also reads null values)
+         * @param upper the exclusive upper bound (null for the last range)
+         * @param start the (estimated) index of the first row of the range
+         * @param length the estimated number of rows
+         */
+        public RangeSplit(final Object lower, final Object upper, final long start, final long length) {
+            this.lower = lower;
+            this.upper = upper;
+            this.start = start;
+            this.length = length;
+        }
+
+        /**
+         * Returns the inclusive lower bound.
+         *
+         * @return the lower bound or null if this is the first range
+         */
+        public Object getLower() {
+            return lower;
+        }
+
+        /**
+         * Returns the exclusive upper bound.
+         *
+         * @return the upper bound or null if this is the last range
+         */
+        public Object getUpper() {
+            return upper;
+        }
+
+        /**
+         * Returns the index of the first row of the range, which the record keys are offset by.
+         *
+         * @return the (estimated) index of the first row
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Returns the estimated number of rows.
+         *
+         * @return the estimated number of rows
+         */
+        @Override
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getLocations() {
+            return new String[0];
+        }
+
+        /**
+         * Returns the <code>WHERE</code> clause selecting the rows of the range.
+         *
+         * @param splitColumn the split column
+         *
+         * @return the <code>WHERE</code> clause, whose parameters are the non null bounds
+         */
+        String getRangeClause(final String splitColumn) {
+            if (lower == null && upper == null) {
+                return "1 = 1";
+            } else if (lower == null) {
+                return "(" + splitColumn + " < ? OR " + splitColumn + " IS NULL)";
+            } else if (upper == null) {
+                return splitColumn + " >= ?";
+            }
+
+            return splitColumn + " >= ? AND " + splitColumn + " < ?";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final DataOutput out) throws IOException {
+            writeBound(out, lower);
+            writeBound(out, upper);
+            out.writeLong(start);
+            out.writeLong(length);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void readFields(final DataInput in) throws IOException {
+            lower = readBound(in);
+            upper = readBound(in);
+            start = in.readLong();
+            length = in.readLong();
+        }
+
+        /**
+         * Writes a bound.
+         *
+         * @param out the output
+         * @param bound the bound
+         *
+         * @throws IOException if anything goes wrong
+         */
+        private static void writeBound(final DataOutput out, final Object bound) throws IOException {
+            if (bound == null) {
+                out.writeByte(TYPE_NONE);
+            } else if (bound instanceof Long) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong((Long)bound);
+            } else if (bound instanceof Double) {
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble((Double)bound);
+            } else if (bound instanceof BigDecimal) {
+                out.writeByte(TYPE_DECIMAL);
+                out.writeUTF(bound.toString());
+            } else {
+                out.writeByte(TYPE_TIMESTAMP);
+                out.writeLong(((Timestamp)bound).getTime());
+                out.writeInt(((Timestamp)bound).getNanos());
+            }
+        }
+
+        /**
+         * Reads a bound.
+         *
+         * @param in the input
+         *
+         * @return the bound
+         *
+         * @throws IOException if anything goes wrong
+         */
+        private static Object readBound(final DataInput in) throws IOException {
+            final byte type = in.readByte();
+
+            switch (type) {
+                case TYPE_NONE:
+                    return null;
+                case TYPE_LONG:
+                    return in.readLong();
+                case TYPE_DOUBLE:
+                    return in.readDouble();
+                case TYPE_DECIMAL:
+                    return new BigDecimal(in.readUTF());
+                case TYPE_TIMESTAMP:
+                    final Timestamp timestamp = new Timestamp(in.readLong());
+
+                    timestamp.setNanos(in.readInt());
+
+                    return timestamp;
+                default:
+                    throw new IOException("Unknown range bound type: " + type);
+            }
+        }
+
+    }
+
+    /**
+     * {@link RecordReader} streaming the rows of a {@link RangeSplit}.
+     */
+    public static class RangeRecordReader extends RecordReader<LongWritable, DBRowWritable> {
+
+        private final LongWritable key = new LongWritable();
+        private final DBRowWritable value = new DBRowWritable();
+        private Connection connection;
+        private PreparedStatement statement;
+        private ResultSet results;
+        private String[] columnNames;
+        private long start;
+        private long length;
+        private long pos;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void initialize(final InputSplit split, final TaskAttemptContext context) throws IOException {
+            final Configuration conf = context.getConfiguration();
+            final DBConfiguration dbConf = new DBConfiguration(conf);
+            final RangeSplit range = (RangeSplit)split;
+            final String[] fieldNames = dbConf.getInputFieldNames();
+            final StringBuilder query = new StringBuilder("SELECT ");
+
+            if (fieldNames == null || fieldNames.length == 0) {
+                query.append('*');
+            } else {
+                for (int i = 0; i < fieldNames.length; i++) {
+                    query.append(i > 0 ? ", " : "").append(fieldNames[i]);
+                }
+            }
+
+            query.append(" FROM ").append(dbConf.getInputTableName())
+                 .append(" WHERE ").append(range.getRangeClause(dbConf.getInputOrderBy()))
+                 .append(getConditions(dbConf));
+
+            start = range.getStart();
+            length = range.getLength();
+
+            try {
+                int index = 1;
+
+                connection = dbConf.getConnection();
+                statement = prepare(connection, query.toString(), conf);
+
+                if (range.getLower() != null) {
+                    statement.setObject(index++, range.getLower());
+                }
+
+                if (range.getUpper() != null) {
+                    statement.setObject(index, range.getUpper());
+                }
+
+                results = statement.executeQuery();
+
+                final ResultSetMetaData metaData = results.getMetaData();
+
+                columnNames = new String[metaData.getColumnCount()];
+
+                for (int i = 0; i < columnNames.length; i++) {
+                    columnNames[i] = metaData.getColumnLabel(i + 1);
+                }
+            } catch (ClassNotFoundException | SQLException e) {
+                close();
+
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            try {
+                if (!results.next()) {
+                    return false;
+                }
+
+                final Object[] values = new Object[columnNames.length];
+
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = toJava(results.getObject(i + 1));
+                }
+
+                key.set(start + pos++);
+                value.set(columnNames, values);
+
+                return true;
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public DBRowWritable getCurrentValue() {
+            return value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public float getProgress() {
+            return length <= 0 ? 0.0f : Math.min(1.0f, pos / (float)length);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (results != null) {
+                    results.close();
+                }
+
+                if (statement != null) {
+                    statement.close();
+                }
+
+                if (connection != null) {
+                    connection.commit();
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+
+    }
+
+}
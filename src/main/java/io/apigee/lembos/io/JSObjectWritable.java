@@ -0,0 +1,641 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.io;
+
+import io.apigee.lembos.utils.JavaScriptUtils;
+import io.apigee.trireme.core.modules.Buffer;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link WritableComparable} that stores a JavaScript value (object, array, string, number, boolean or null) in a
+ * compact, tagged binary format.
+ *
+ * Unlike {@link org.apache.hadoop.io.MapWritable}, no class information is written per entry.  Integers are written
+ * as variable length integers and each object key is written once per value, with later occurrences written as a
+ * reference into the key dictionary built while serializing.  The value is kept in its serialized form so writing,
+ * comparing and hashing never have to decode it.
+ *
+ * <b>Note:</b> Ordering is the byte-wise ordering of the serialized form.  It is deterministic but two objects with
+ * the same properties added in a different order are not equal.
+ */
+public class JSObjectWritable implements WritableComparable<JSObjectWritable> {
+
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_FALSE = 1;
+    static final byte TYPE_TRUE = 2;
+    static final byte TYPE_INTEGER = 3;
+    static final byte TYPE_DOUBLE = 4;
+    static final byte TYPE_STRING = 5;
+    static final byte TYPE_BYTES = 6;
+    static final byte TYPE_ARRAY = 7;
+    static final byte TYPE_OBJECT = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] EMPTY_BYTES = new byte[] {TYPE_NULL};
+
+    static {
+        WritableComparator.define(JSObjectWritable.class, new Comparator());
+    }
+
+    private byte[] bytes = EMPTY_BYTES;
+    private int length = EMPTY_BYTES.length;
+
+    /**
+     * Constructor.  (The value will be null.)
+     */
+    public JSObjectWritable() { }
+
+    /**
+     * Constructor.
+     *
+     * @param value the JavaScript/Java value to store
+     */
+    public JSObjectWritable(final Object value) {
+        set(value);
+    }
+
+    /**
+     * Serializes and stores the value.
+     *
+     * @param value the JavaScript/Java value to store
+     */
+    public void set(final Object value) {
+        final DataOutputBuffer out = new DataOutputBuffer();
+
+        try {
+            encode(value, out, new HashMap<String, Integer>());
+        } catch (IOException e) {
+            // DataOutputBuffer does not throw IOException but the API requires us to handle it
+            throw new RuntimeException(e);
+        }
+
+        bytes = out.getData();
+        length = out.getLength();
+    }
+
+    /**
+     * Returns the stored value as Java types.  (Objects are {@link Map}s, arrays are {@link List}s.)
+     *
+     * @return the Java equivalent of the stored value
+     */
+    public Object get() {
+        return decode(null, null);
+    }
+
+    /**
+     * Returns the stored value as JavaScript types.
+     *
+     * @param scope the JavaScript scope
+     *
+     * @return the JavaScript equivalent of the stored value
+     */
+    public Object toJavaScript(final Scriptable scope) {
+        Context ctx = Context.getCurrentContext();
+        final boolean entered = ctx == null;
+
+        if (entered) {
+            ctx = Context.enter();
+        }
+
+        try {
+            return decode(ctx, scope);
+        } finally {
+            if (entered) {
+                Context.exit();
+            }
+        }
+    }
+
+    /**
+     * @return the backing array of the serialized value (Only the first {@link #getLength()} bytes are valid)
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the length of the serialized value
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, length);
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readFields(final DataInput in) throws IOException {
+        final int newLength = WritableUtils.readVInt(in);
+
+        if (bytes == EMPTY_BYTES || bytes.length < newLength) {
+            bytes = new byte[newLength];
+        }
+
+        in.readFully(bytes, 0, newLength);
+
+        length = newLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(final JSObjectWritable other) {
+        return WritableComparator.compareBytes(bytes, 0, length, other.bytes, 0, other.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof JSObjectWritable && compareTo((JSObjectWritable)other) == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return WritableComparator.hashBytes(bytes, length);
+    }
+
+    /**
+     * Returns the JSON representation of the stored value.  (Useful for text based output formats.)
+     *
+     * @return the JSON string
+     */
+    @Override
+    public String toString() {
+        final StringBuilder json = new StringBuilder();
+
+        appendJSON(json, get());
+
+        return json.toString();
+    }
+
+    /**
+     * Writes the value, and its children, to the output.
+     *
+     * @param value the value to write
+     * @param out the output
+     * @param keys the object key dictionary (key to index)
+     *
+     * @throws IOException if something goes wrong writing the value
+     */
+    private static void encode(final Object value, final DataOutputBuffer out, final Map<String, Integer> keys)
+            throws IOException {
+        final Object realValue = value instanceof Wrapper ? ((Wrapper)value).unwrap() : value;
+
+        if (realValue == null || realValue == Undefined.instance || realValue == Scriptable.NOT_FOUND) {
+            out.writeByte(TYPE_NULL);
+        } else if (realValue instanceof Boolean) {
+            out.writeByte((Boolean)realValue ? TYPE_TRUE : TYPE_FALSE);
+        } else if (realValue instanceof Integer || realValue instanceof Long || realValue instanceof Short
+                || realValue instanceof Byte) {
+            out.writeByte(TYPE_INTEGER);
+            WritableUtils.writeVLong(out, ((Number)realValue).longValue());
+        } else if (realValue instanceof Number) {
+            // JavaScript numbers are always doubles so store integral values as integers
+            final double doubleValue = ((Number)realValue).doubleValue();
+
+            if (doubleValue % 1 == 0 && doubleValue >= Long.MIN_VALUE && doubleValue < Long.MAX_VALUE) {
+                out.writeByte(TYPE_INTEGER);
+                WritableUtils.writeVLong(out, (long)doubleValue);
+            } else {
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble(doubleValue);
+            }
+        } else if (realValue instanceof CharSequence) {
+            final byte[] stringBytes = realValue.toString().getBytes(UTF_8);
+
+            out.writeByte(TYPE_STRING);
+            WritableUtils.writeVInt(out, stringBytes.length);
+            out.write(stringBytes);
+        } else if (realValue instanceof byte[]) {
+            final byte[] rawBytes = (byte[])realValue;
+
+            out.writeByte(TYPE_BYTES);
+            WritableUtils.writeVInt(out, rawBytes.length);
+            out.write(rawBytes);
+        } else if (JavaScriptUtils.isBuffer(realValue)) {
+            final Buffer.BufferImpl buffer = (Buffer.BufferImpl)realValue;
+
+            out.writeByte(TYPE_BYTES);
+            WritableUtils.writeVInt(out, buffer.getLength());
+            out.write(buffer.getArray(), buffer.getArrayOffset(), buffer.getLength());
+        } else if (realValue instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>)realValue;
+
+            out.writeByte(TYPE_OBJECT);
+            WritableUtils.writeVInt(out, map.size());
+
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                final String key = entry.getKey().toString();
+                final Integer keyIndex = keys.get(key);
+
+                if (keyIndex == null) {
+                    // New keys are written as (length << 1) followed by the key
+                    final byte[] keyBytes = key.getBytes(UTF_8);
+
+                    WritableUtils.writeVInt(out, keyBytes.length << 1);
+                    out.write(keyBytes);
+
+                    keys.put(key, keys.size());
+                } else {
+                    // Previously seen keys are written as (index << 1) | 1
+                    WritableUtils.writeVInt(out, (keyIndex << 1) | 1);
+                }
+
+                encode(entry.getValue(), out, keys);
+            }
+        } else if (realValue instanceof Collection) {
+            final Collection<?> collection = (Collection<?>)realValue;
+
+            out.writeByte(TYPE_ARRAY);
+            WritableUtils.writeVInt(out, collection.size());
+
+            for (final Object item : collection) {
+                encode(item, out, keys);
+            }
+        } else if (realValue.getClass().isArray()) {
+            final int arrayLength = Array.getLength(realValue);
+
+            out.writeByte(TYPE_ARRAY);
+            WritableUtils.writeVInt(out, arrayLength);
+
+            for (int i = 0; i < arrayLength; i++) {
+                encode(Array.get(realValue, i), out, keys);
+            }
+        } else {
+            throw new RuntimeException("Unable to serialize JavaScript value of type: "
+                                               + realValue.getClass().getCanonicalName());
+        }
+    }
+
+    /**
+     * Reads the stored value.
+     *
+     * @param ctx the JavaScript context (When null, Java types are created instead of JavaScript types)
+     * @param scope the JavaScript scope
+     *
+     * @return the value
+     */
+    private Object decode(final Context ctx, final Scriptable scope) {
+        final DataInputBuffer in = new DataInputBuffer();
+
+        in.reset(bytes, 0, length);
+
+        try {
+            return decode(in, new ArrayList<String>(), ctx, scope);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to deserialize JavaScript value", e);
+        }
+    }
+
+    /**
+     * Reads a value, and its children, from the input.
+     *
+     * @param in the input
+     * @param keys the object key dictionary (index to key)
+     * @param ctx the JavaScript context (When null, Java types are created instead of JavaScript types)
+     * @param scope the JavaScript scope
+     *
+     * @return the value
+     *
+     * @throws IOException if something goes wrong reading the value
+     */
+    private static Object decode(final DataInputBuffer in, final List<String> keys, final Context ctx,
+                                 final Scriptable scope) throws IOException {
+        final byte type = in.readByte();
+        final Object value;
+
+        switch (type) {
+            case TYPE_NULL:
+                value = null;
+
+                break;
+
+            case TYPE_FALSE:
+                value = Boolean.FALSE;
+
+                break;
+
+            case TYPE_TRUE:
+                value = Boolean.TRUE;
+
+                break;
+
+            case TYPE_INTEGER:
+                final long longValue = WritableUtils.readVLong(in);
+
+                if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+                    value = (int)longValue;
+                } else {
+                    value = longValue;
+                }
+
+                break;
+
+            case TYPE_DOUBLE:
+                value = in.readDouble();
+
+                break;
+
+            case TYPE_STRING:
+                value = new String(readBytes(in, WritableUtils.readVInt(in)), UTF_8);
+
+                break;
+
+            case TYPE_BYTES:
+                final byte[] rawBytes = readBytes(in, WritableUtils.readVInt(in));
+
+                value = ctx == null ? rawBytes : JavaScriptUtils.asBuffer(scope, rawBytes, rawBytes.length);
+
+                break;
+
+            case TYPE_ARRAY:
+                final Object[] items = new Object[WritableUtils.readVInt(in)];
+
+                for (int i = 0; i < items.length; i++) {
+                    items[i] = decode(in, keys, ctx, scope);
+                }
+
+                value = ctx == null ? new ArrayList<>(Arrays.asList(items)) : ctx.newArray(scope, items);
+
+                break;
+
+            case TYPE_OBJECT:
+                final int size = WritableUtils.readVInt(in);
+                final Map<String, Object> javaObject = ctx == null ? new LinkedHashMap<String, Object>() : null;
+                final Scriptable jsObject = ctx == null ? null : ctx.newObject(scope);
+
+                for (int i = 0; i < size; i++) {
+                    final int keyRef = WritableUtils.readVInt(in);
+                    final String key;
+
+                    if ((keyRef & 1) == 1) {
+                        key = keys.get(keyRef >>> 1);
+                    } else {
+                        key = new String(readBytes(in, keyRef >>> 1), UTF_8);
+
+                        keys.add(key);
+                    }
+
+                    final Object propValue = decode(in, keys, ctx, scope);
+
+                    if (jsObject == null) {
+                        javaObject.put(key, propValue);
+                    } else {
+                        jsObject.put(key, jsObject, propValue);
+                    }
+                }
+
+                value = jsObject == null ? javaObject : jsObject;
+
+                break;
+
+            default:
+                throw new IOException("Unknown JavaScript value type: " + type);
+        }
+
+        return value;
+    }
+
+    /**
+     * Reads the requested number of bytes.
+     *
+     * @param in the input
+     * @param count the number of bytes to read
+     *
+     * @return the bytes read
+     *
+     * @throws IOException if something goes wrong reading the bytes
+     */
+    private static byte[] readBytes(final DataInput in, final int count) throws IOException {
+        final byte[] read = new byte[count];
+
+        in.readFully(read);
+
+        return read;
+    }
+
+    /**
+     * Returns the JSON representation of a JavaScript value, the same as {@link #toString()} would return for a
+     * {@link JSObjectWritable} storing it, without serializing it first.
+     *
+     * @param value the JavaScript/Java value
+     *
+     * @return the JSON
+     */
+    public static String toJSON(final Object value) {
+        final StringBuilder json = new StringBuilder();
+
+        appendJSON(json, value);
+
+        return json.toString();
+    }
+
+    /**
+     * Appends the JSON representation of a JavaScript value or of a Java value created by {@link #get()}.
+     *
+     * @param json the JSON being built
+     * @param value the value to append
+     */
+    private static void appendJSON(final StringBuilder json, final Object value) {
+        final Object realValue = value instanceof Wrapper ? ((Wrapper)value).unwrap() : value;
+
+        if (realValue == null || realValue == Undefined.instance || realValue == Scriptable.NOT_FOUND) {
+            json.append("null");
+        } else if (realValue instanceof CharSequence) {
+            appendJSONString(json, realValue.toString());
+        } else if (realValue instanceof Integer || realValue instanceof Long || realValue instanceof Short
+                || realValue instanceof Byte) {
+            json.append(((Number)realValue).longValue());
+        } else if (realValue instanceof Number) {
+            // Integral values are stored, so printed, as integers
+            final double doubleValue = ((Number)realValue).doubleValue();
+
+            if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+                // JSON has no non-finite numbers, JSON.stringify writes them as null
+                json.append("null");
+            } else if (doubleValue % 1 == 0 && doubleValue >= Long.MIN_VALUE && doubleValue < Long.MAX_VALUE) {
+                json.append((long)doubleValue);
+            } else {
+                json.append(doubleValue);
+            }
+        } else if (realValue instanceof byte[]) {
+            appendJSON(json, Arrays.asList(toObjects((byte[])realValue)));
+        } else if (JavaScriptUtils.isBuffer(realValue)) {
+            final Buffer.BufferImpl buffer = (Buffer.BufferImpl)realValue;
+
+            appendJSON(json, Arrays.copyOfRange(buffer.getArray(), buffer.getArrayOffset(),
+                                                buffer.getArrayOffset() + buffer.getLength()));
+        } else if (realValue instanceof Map) {
+            boolean first = true;
+
+            json.append('{');
+
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>)realValue).entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+
+                appendJSONString(json, entry.getKey().toString());
+                json.append(':');
+                appendJSON(json, entry.getValue());
+
+                first = false;
+            }
+
+            json.append('}');
+        } else if (realValue instanceof Collection || realValue.getClass().isArray()) {
+            final int size = realValue instanceof Collection
+                    ? ((Collection<?>)realValue).size()
+                    : Array.getLength(realValue);
+            final Iterator<?> items = realValue instanceof Collection ? ((Collection<?>)realValue).iterator() : null;
+
+            json.append('[');
+
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+
+                appendJSON(json, items == null ? Array.get(realValue, i) : items.next());
+            }
+
+            json.append(']');
+        } else {
+            json.append(realValue.toString());
+        }
+    }
+
+    /**
+     * Appends a quoted and escaped JSON string.
+     *
+     * @param json the JSON being built
+     * @param value the string to append
+     */
+    private static void appendJSONString(final StringBuilder json, final String value) {
+        json.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+
+        json.append('"');
+    }
+
+    /**
+     * Boxes a byte array.
+     *
+     * @param raw the bytes
+     *
+     * @return the boxed bytes
+     */
+    private static Object[] toObjects(final byte[] raw) {
+        final Object[] boxed = new Object[raw.length];
+
+        for (int i = 0; i < raw.length; i++) {
+            boxed[i] = (int)raw[i];
+        }
+
+        return boxed;
+    }
+
+    /**
+     * Raw comparator for {@link JSObjectWritable} that compares the serialized bytes without deserializing them.
+     */
+    public static class Comparator extends WritableComparator {
+
+        /**
+         * Constructor.
+         */
+        public Comparator() {
+            super(JSObjectWritable.class);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compare(final byte[] b1, final int s1, final int l1, final byte[] b2, final int s2, final int l2) {
+            final int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+            final int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+
+            return compareBytes(b1, s1 + n1, l1 - n1, b2, s2 + n2, l2 - n2);
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apigee.lembos.io;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Map output key of reduce-side joins: the join key, stored as a {@link JSObjectWritable}, followed by the tag of the
+ * input the record was read from.
+ *
+ * Keys sort by join key and then by tag, so the values of a key reach the reducer grouped by input, while
+ * {@link #hashCode()} and the {@link GroupComparator} only look at the join key so all the records of a key, whatever
+ * their input, go to the same reduce call.
+ */
+public class TaggedKeyWritable implements WritableComparable<TaggedKeyWritable> {
+
+    static {
+        WritableComparator.define(TaggedKeyWritable.class, new Comparator());
+    }
+
+    private JSObjectWritable key = new JSObjectWritable();
+    private byte tag;
+
+    /**
+     * Constructor.  (The key will be null and the tag 0.)
+     */
+    public TaggedKeyWritable() { }
+
+    /**
+     * Constructor.
+     *
+     * @param key the join key
+     * @param tag the input tag
+     */
+    public TaggedKeyWritable(final JSObjectWritable key, final byte tag) {
+        set(key, tag);
+    }
+
+    /**
+     * Sets the join key and the input tag.
+     *
+     * @param key the join key
+     * @param tag the input tag
+     */
+    public void set(final JSObjectWritable key, final byte tag) {
+        this.key = key;
+        this.tag = tag;
+    }
+
+    /**
+     * @return the join key
+     */
+    public JSObjectWritable getKey() {
+        return key;
+    }
+
+    /**
+     * @return the input tag
+     */
+    public byte getTag() {
+        return tag;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final DataOutput out) throws IOException {
+        key.write(out);
+        out.writeByte(tag);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readFields(final DataInput in) throws IOException {
+        key.readFields(in);
+        tag = in.readByte();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(final TaggedKeyWritable other) {
+        final int keyCompare = key.compareTo(other.key);
+
+        return keyCompare == 0 ? tag - other.tag : keyCompare;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof TaggedKeyWritable && compareTo((TaggedKeyWritable)other) == 0;
+    }
+
+    /**
+     * Returns the hash code of the join key only, so the default partitioner sends all the records of a join key to
+     * the same reducer.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return key + "\t" + tag;
+    }
+
+    /**
+     * Compares the serialized join key, and then the tag, without deserializing them.
+     */
+    public static class Comparator extends WritableComparator {
+
+        /**
+         * Constructor.
+         */
+        public Comparator() {
+            super(TaggedKeyWritable.class);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compare(final byte[] b1, final int s1, final int l1, final byte[] b2, final int s2, final int l2) {
+            final int keyCompare = compareKeys(b1, s1, b2, s2);
+
+            if (keyCompare != 0) {
+                return keyCompare;
+            }
+
+            return b1[s1 + l1 - 1] - b2[s2 + l2 - 1];
+        }
+
+    }
+
+    /**
+     * Compares the serialized join key only, so the values of all the inputs of a key are grouped in one reduce call.
+     */
+    public static class GroupComparator extends WritableComparator {
+
+        /**
+         * Constructor.
+         */
+        public GroupComparator() {
+            super(TaggedKeyWritable.class);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compare(final byte[] b1, final int s1, final int l1, final byte[] b2, final int s2, final int l2) {
+            return compareKeys(b1, s1, b2, s2);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        @SuppressWarnings("rawtypes")
+        public int compare(final WritableComparable a, final WritableComparable b) {
+            return ((TaggedKeyWritable)a).key.compareTo(((TaggedKeyWritable)b).key);
+        }
+
+    }
+
+    /**
+     * Compares the serialized join keys at the start of two serialized {@link TaggedKeyWritable}s.
+     *
+     * @param b1 the first byte array
+     * @param s1 the offset of the first key
+     * @param b2 the second byte array
+     * @param s2 the offset of the second key
+     *
+     * @return the comparison result
+     */
+    private static int compareKeys(final byte[] b1, final int s1, final byte[] b2, final int s2) {
+        final int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+        final int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+
+        try {
+            return WritableComparator.compareBytes(b1, s1 + n1, WritableComparator.readVInt(b1, s1),
+                                                   b2, s2 + n2, WritableComparator.readVInt(b2, s2));
+        } catch (IOException e) {
+            // The bytes were written by TaggedKeyWritable#write so this should never happen
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+}
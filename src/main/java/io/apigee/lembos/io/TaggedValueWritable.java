@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apigee.lembos.io;
+
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Map output value of reduce-side joins: a single tag byte, identifying the input the record was read from, followed
+ * by the value stored as a {@link JSObjectWritable}.
+ */
+public class TaggedValueWritable implements Writable {
+
+    private JSObjectWritable value = new JSObjectWritable();
+    private byte tag;
+
+    /**
+     * Constructor.  (The value will be null and the tag 0.)
+     */
+    public TaggedValueWritable() { }
+
+    /**
+     * Constructor.
+     *
+     * @param tag the input tag
+     * @param value the value
+     */
+    public TaggedValueWritable(final byte tag, final JSObjectWritable value) {
+        set(tag, value);
+    }
+
+    /**
+     * Sets the input tag and the value.
+     *
+     * @param tag the input tag
+     * @param value the value
+     */
+    public void set(final byte tag, final JSObjectWritable value) {
+        this.tag = tag;
+        this.value = value;
+    }
+
+    /**
+     * @return the input tag
+     */
+    public byte getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the value
+     */
+    public JSObjectWritable getValue() {
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final DataOutput out) throws IOException {
+        out.writeByte(tag);
+        value.write(out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readFields(final DataInput in) throws IOException {
+        tag = in.readByte();
+        value.readFields(in);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return tag + "\t" + value;
+    }
+
+}
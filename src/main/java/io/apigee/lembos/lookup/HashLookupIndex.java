@@ -0,0 +1,284 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.lookup;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * {@link LookupIndex} built from a delimited text file (one <code>key{separator}value</code> entry per line) into a
+ * memory-mapped, open addressing hash index.
+ *
+ * The index file is made of two regions:
+ * <ul>
+ *   <li><b>Entries:</b> <code>int keyLength, int valueLength, key, value</code> for each line, in file order</li>
+ *   <li><b>Slots:</b> a power of two sized table of longs, each holding 24 bits of the key hash and the entry offset
+ *   (plus one so that zero means empty)</li>
+ * </ul>
+ *
+ * Since the index is memory-mapped, the data lives in the operating system's page cache instead of the heap.  When a
+ * key is in the file more than once, the last value wins.  Lines without the separator are stored with an empty
+ * value and empty lines are skipped.
+ */
+public final class HashLookupIndex implements LookupIndex {
+
+    private static final long OFFSET_MASK = (1L << 40) - 1;
+    private static final int ENTRY_HEADER_LENGTH = 8;
+    private static final int MIN_SLOTS = 16;
+
+    private final MappedFile mappedFile;
+    private final long slotsStart;
+    private final long slotMask;
+    private final long size;
+
+    /**
+     * Constructor.
+     *
+     * @param mappedFile the mapped index file
+     * @param slotsStart the position of the slots
+     * @param slotCount the number of slots
+     * @param size the number of keys
+     */
+    private HashLookupIndex(final MappedFile mappedFile, final long slotsStart, final long slotCount,
+                            final long size) {
+        this.mappedFile = mappedFile;
+        this.slotsStart = slotsStart;
+        this.slotMask = slotCount - 1;
+        this.size = size;
+    }
+
+    /**
+     * Builds the index for the delimited text file.
+     *
+     * <b>Note:</b> The index file is deleted once it is mapped so it does not outlive the JVM.
+     *
+     * @param source the delimited text file
+     * @param indexFile the file to write the index to
+     * @param separator the key/value separator
+     *
+     * @return the index
+     *
+     * @throws IOException if the index cannot be built
+     */
+    public static HashLookupIndex build(final File source, final File indexFile, final byte[] separator)
+            throws IOException {
+        final Text line = new Text();
+        long entriesLength = 0;
+        long entryCount = 0;
+
+        // Pass 1: Write the entries
+        try (InputStream in = new FileInputStream(source);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile),
+                                                                                  64 * 1024))) {
+            final LineReader reader = new LineReader(in);
+
+            while (reader.readLine(line) > 0) {
+                if (line.getLength() == 0) {
+                    continue;
+                }
+
+                final byte[] lineBytes = line.getBytes();
+                final int lineLength = line.getLength();
+                final int separatorPos = indexOf(lineBytes, lineLength, separator);
+                final int keyLength = separatorPos == -1 ? lineLength : separatorPos;
+                final int valueStart = separatorPos == -1 ? lineLength : separatorPos + separator.length;
+                final int valueLength = lineLength - valueStart;
+
+                out.writeInt(keyLength);
+                out.writeInt(valueLength);
+                out.write(lineBytes, 0, keyLength);
+                out.write(lineBytes, valueStart, valueLength);
+
+                entriesLength += ENTRY_HEADER_LENGTH + keyLength + valueLength;
+                entryCount++;
+            }
+        }
+
+        if (entriesLength >= OFFSET_MASK) {
+            throw new IOException("Lookup file is too large to index: " + source);
+        }
+
+        final long slotsStart = (entriesLength + 7) & ~7L;
+        long slotCount = MIN_SLOTS;
+
+        while (slotCount < entryCount * 2) {
+            slotCount <<= 1;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+            raf.setLength(slotsStart + slotCount * 8);
+        }
+
+        final MappedFile mappedFile = new MappedFile(indexFile, true);
+
+        if (!indexFile.delete()) {
+            indexFile.deleteOnExit();
+        }
+
+        // Pass 2: Index the entries
+        final HashLookupIndex index = new HashLookupIndex(mappedFile, slotsStart, slotCount, 0);
+        long position = 0;
+        long keyCount = 0;
+
+        while (position < entriesLength) {
+            final int keyLength = mappedFile.getInt(position);
+            final int valueLength = mappedFile.getInt(position + 4);
+
+            if (index.insert(position, mappedFile.getBytes(position + ENTRY_HEADER_LENGTH, keyLength))) {
+                keyCount++;
+            }
+
+            position += ENTRY_HEADER_LENGTH + keyLength + valueLength;
+        }
+
+        return new HashLookupIndex(mappedFile, slotsStart, slotCount, keyCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] get(final byte[] key) {
+        final long hash = hash(key);
+        final long tag = hash >>> 40;
+        long slotIndex = hash & slotMask;
+
+        while (true) {
+            final long slot = mappedFile.getLong(slotsStart + (slotIndex << 3));
+
+            if (slot == 0) {
+                return null;
+            } else if (slot >>> 40 == tag) {
+                final long entry = (slot & OFFSET_MASK) - 1;
+
+                if (keyEquals(entry, key)) {
+                    final int valueLength = mappedFile.getInt(entry + 4);
+
+                    return mappedFile.getBytes(entry + ENTRY_HEADER_LENGTH + key.length, valueLength);
+                }
+            }
+
+            slotIndex = (slotIndex + 1) & slotMask;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Adds the entry to the slots, replacing the entry for the same key if there is one.
+     *
+     * @param entry the entry position
+     * @param key the entry key
+     *
+     * @return true if the key was not in the slots already
+     */
+    private boolean insert(final long entry, final byte[] key) {
+        final long hash = hash(key);
+        final long tag = hash >>> 40;
+        long slotIndex = hash & slotMask;
+
+        while (true) {
+            final long slotPosition = slotsStart + (slotIndex << 3);
+            final long slot = mappedFile.getLong(slotPosition);
+
+            if (slot == 0 || (slot >>> 40 == tag && keyEquals((slot & OFFSET_MASK) - 1, key))) {
+                mappedFile.putLong(slotPosition, (tag << 40) | (entry + 1));
+
+                return slot == 0;
+            }
+
+            slotIndex = (slotIndex + 1) & slotMask;
+        }
+    }
+
+    /**
+     * Returns whether the entry's key is the same as the key.
+     *
+     * @param entry the entry position
+     * @param key the key
+     *
+     * @return true if the keys are equal
+     */
+    private boolean keyEquals(final long entry, final byte[] key) {
+        return mappedFile.getInt(entry) == key.length && mappedFile.matches(entry + ENTRY_HEADER_LENGTH, key);
+    }
+
+    /**
+     * Returns the 64-bit hash of the key.  (64-bit FNV-1a followed by the MurmurHash3 finalizer.)
+     *
+     * @param key the key
+     *
+     * @return the hash
+     */
+    static long hash(final byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (final byte b : key) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+    /**
+     * Returns the position of the separator in the line.
+     *
+     * @param line the line
+     * @param length the line length
+     * @param separator the separator
+     *
+     * @return the position or -1 if the line does not contain the separator
+     */
+    private static int indexOf(final byte[] line, final int length, final byte[] separator) {
+        for (int i = 0; i <= length - separator.length; i++) {
+            int matched = 0;
+
+            while (matched < separator.length && line[i + matched] == separator[matched]) {
+                matched++;
+            }
+
+            if (matched == separator.length) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.lookup;
+
+import io.apigee.lembos.mapreduce.LembosConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * {@link FileOutputFormat} that writes each task's output as a {@link SortedLookupFile}, ready to be shipped through
+ * the DistributedCache and opened with the <code>hadoop-lookup</code> module.
+ *
+ * {@link Text} and {@link BytesWritable} keys/values are written as is and every other {@link Writable} is written
+ * as the UTF-8 bytes of its string representation.  Since the file is sorted by the key bytes, the keys must reach
+ * the output format in that order, which is the case for {@link Text} reducer output keys.
+ *
+ * <b>Note:</b> Each reducer writes its own file so use a single reducer to get a single lookup file.  The output is
+ * never compressed since it is memory-mapped as is.
+ */
+public class LookupFileOutputFormat extends FileOutputFormat<Writable, Writable> {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordWriter<Writable, Writable> getRecordWriter(final TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        final Configuration conf = context.getConfiguration();
+        final Path file = getDefaultWorkFile(context, "");
+        final SortedLookupFile.Writer writer =
+                new SortedLookupFile.Writer(file.getFileSystem(conf).create(file, false),
+                                            conf.getInt(LembosConstants.LOOKUP_BLOCK_SIZE,
+                                                        SortedLookupFile.DEFAULT_BLOCK_SIZE));
+
+        return new RecordWriter<Writable, Writable>() {
+            @Override
+            public void write(final Writable key, final Writable value) throws IOException {
+                final BytesWritable keyBytes = toBytes(key);
+                final BytesWritable valueBytes = toBytes(value);
+
+                writer.append(keyBytes.getBytes(), keyBytes.getLength(), valueBytes.getBytes(),
+                              valueBytes.getLength());
+            }
+
+            @Override
+            public void close(final TaskAttemptContext taskContext) throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    /**
+     * Returns the bytes of the writable, without copying them for {@link Text} and {@link BytesWritable}.
+     *
+     * @param writable the writable
+     *
+     * @return the bytes
+     */
+    private static BytesWritable toBytes(final Writable writable) {
+        if (writable == null || writable instanceof NullWritable) {
+            return new BytesWritable();
+        } else if (writable instanceof BytesWritable) {
+            return (BytesWritable)writable;
+        } else if (writable instanceof Text) {
+            final BytesWritable bytes = new BytesWritable(((Text)writable).getBytes());
+
+            bytes.setSize(((Text)writable).getLength());
+
+            return bytes;
+        } else {
+            return new BytesWritable(writable.toString().getBytes(UTF_8));
+        }
+    }
+
+}
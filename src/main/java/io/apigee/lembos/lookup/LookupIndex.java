@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.lookup;
+
+/**
+ * Read-only key/value index whose data lives outside of the Java/JavaScript heap.
+ *
+ * <b>Note:</b> Implementations must be safe to use from multiple threads as a single index is shared by every Lembos
+ * runtime in the JVM.
+ */
+public interface LookupIndex {
+
+    /**
+     * Returns the value for the key.
+     *
+     * @param key the key
+     *
+     * @return the value or null if the key is not in the index
+     */
+    byte[] get(byte[] key);
+
+    /**
+     * @return the number of keys in the index
+     */
+    long size();
+
+}
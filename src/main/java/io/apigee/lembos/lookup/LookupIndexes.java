@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.lookup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * JVM-wide registry of {@link LookupIndex}es.  Each side-data file is indexed at most once per JVM and the index is
+ * shared by every Lembos runtime created in the JVM, including the runtimes of later tasks when the JVM is reused.
+ */
+public final class LookupIndexes {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final ConcurrentMap<String, FutureTask<LookupIndex>> INDEXES = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor.
+     */
+    private LookupIndexes() { }
+
+    /**
+     * Returns the index for the side-data file, opening it if this is the first request for the file in the JVM.
+     * {@link SortedLookupFile}s are memory-mapped as is and delimited text files are indexed into a
+     * {@link HashLookupIndex}.  Concurrent requests for the same file wait for the index to be opened once.
+     *
+     * @param source the side-data file
+     * @param separator the key/value separator (Only used for delimited text files)
+     * @param indexDir the directory to build the index in
+     *
+     * @return the index
+     *
+     * @throws IOException if the index cannot be built
+     */
+    public static LookupIndex open(final File source, final String separator, final File indexDir)
+            throws IOException {
+        // The size and last modified time make sure a changed file is indexed again
+        final String indexKey = source.getCanonicalPath() + ':' + source.length() + ':' + source.lastModified()
+                + ':' + separator;
+        FutureTask<LookupIndex> indexTask = INDEXES.get(indexKey);
+
+        if (indexTask == null) {
+            final FutureTask<LookupIndex> newTask = new FutureTask<>(new Callable<LookupIndex>() {
+                @Override
+                public LookupIndex call() throws Exception {
+                    // Sorted lookup files are already indexed so they are just mapped
+                    if (SortedLookupFile.isSortedLookupFile(source)) {
+                        return SortedLookupFile.open(source);
+                    }
+
+                    final File indexFile = File.createTempFile("lembos-lookup-", ".idx", indexDir);
+
+                    return HashLookupIndex.build(source, indexFile, separator.getBytes(UTF_8));
+                }
+            });
+
+            indexTask = INDEXES.putIfAbsent(indexKey, newTask);
+
+            if (indexTask == null) {
+                indexTask = newTask;
+
+                indexTask.run();
+            }
+        }
+
+        try {
+            return indexTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted while waiting for the lookup index of " + source, e);
+        } catch (ExecutionException e) {
+            // Forget the failure so the next request tries again
+            INDEXES.remove(indexKey, indexTask);
+
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+
+            throw new IOException("Unable to build the lookup index of " + source, cause);
+        }
+    }
+
+}
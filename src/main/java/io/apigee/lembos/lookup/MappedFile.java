@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.lookup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped view of a file that can be larger than the 2GB limit of a single {@link MappedByteBuffer}.  The file
+ * is mapped in 1GB segments and all reads are absolute so the view can be shared between threads.
+ *
+ * <b>Note:</b> Long values must be aligned to 8 bytes so they never span two segments.
+ */
+final class MappedFile {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final long length;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file to map
+     * @param writable whether or not the mapping can be written to
+     *
+     * @throws IOException if the file cannot be mapped
+     */
+    MappedFile(final File file, final boolean writable) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+             FileChannel channel = raf.getChannel()) {
+            final FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+
+            length = channel.size();
+            segments = new MappedByteBuffer[(int)((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+
+            for (int i = 0; i < segments.length; i++) {
+                final long start = (long)i << SEGMENT_SHIFT;
+
+                segments[i] = channel.map(mode, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+        }
+    }
+
+    /**
+     * @return the length of the mapped file
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * Returns the byte at the position.
+     *
+     * @param position the position
+     *
+     * @return the byte
+     */
+    byte get(final long position) {
+        return segments[(int)(position >>> SEGMENT_SHIFT)].get((int)(position & SEGMENT_MASK));
+    }
+
+    /**
+     * Returns the big-endian int at the position.  (The int may span two segments.)
+     *
+     * @param position the position
+     *
+     * @return the int
+     */
+    int getInt(final long position) {
+        final int offset = (int)(position & SEGMENT_MASK);
+
+        if (offset <= SEGMENT_SIZE - 4) {
+            return segments[(int)(position >>> SEGMENT_SHIFT)].getInt(offset);
+        }
+
+        return ((get(position) & 0xFF) << 24) | ((get(position + 1) & 0xFF) << 16)
+                | ((get(position + 2) & 0xFF) << 8) | (get(position + 3) & 0xFF);
+    }
+
+    /**
+     * Returns the long at the (8 byte aligned) position.
+     *
+     * @param position the position
+     *
+     * @return the long
+     */
+    long getLong(final long position) {
+        return segments[(int)(position >>> SEGMENT_SHIFT)].getLong((int)(position & SEGMENT_MASK));
+    }
+
+    /**
+     * Writes the long at the (8 byte aligned) position.
+     *
+     * @param position the position
+     * @param value the value to write
+     */
+    void putLong(final long position, final long value) {
+        segments[(int)(position >>> SEGMENT_SHIFT)].putLong((int)(position & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Reads bytes starting at the position.
+     *
+     * @param position the position
+     * @param count the number of bytes to read
+     *
+     * @return the bytes read
+     */
+    byte[] getBytes(final long position, final int count) {
+        final byte[] bytes = new byte[count];
+        long current = position;
+        int read = 0;
+
+        while (read < count) {
+            // Duplicate the segment so concurrent readers do not share a buffer position
+            final ByteBuffer segment = segments[(int)(current >>> SEGMENT_SHIFT)].duplicate();
+            final int offset = (int)(current & SEGMENT_MASK);
+            final int chunk = Math.min(count - read, segment.limit() - offset);
+
+            segment.position(offset);
+            segment.get(bytes, read, chunk);
+
+            read += chunk;
+            current += chunk;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Returns whether the bytes starting at the position are the same as the expected bytes.
+     *
+     * @param position the position
+     * @param expected the expected bytes
+     *
+     * @return true if the bytes match
+     */
+    boolean matches(final long position, final byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Compares the bytes starting at the position with the key, the same way
+     * {@link org.apache.hadoop.io.WritableComparator#compareBytes(byte[], int, int, byte[], int, int)} does.
+     *
+     * @param position the position
+     * @param count the number of bytes at the position
+     * @param key the key to compare to
+     *
+     * @return negative, zero or positive if the bytes at the position sort before, the same or after the key
+     */
+    int compare(final long position, final int count, final byte[] key) {
+        final int common = Math.min(count, key.length);
+
+        for (int i = 0; i < common; i++) {
+            final int diff = (get(position + i) & 0xFF) - (key[i] & 0xFF);
+
+            if (diff != 0) {
+                return diff;
+            }
+        }
+
+        return count - key.length;
+    }
+
+    /**
+     * Flushes any changes made to the mapping to the file.
+     */
+    void force() {
+        for (final MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.lookup;
+
+import org.apache.hadoop.io.WritableComparator;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, sorted, block-indexed key/value file that is memory-mapped as is, so opening it costs nothing and lookups
+ * are a binary search over the block index followed by a scan of a single block.
+ *
+ * The file layout is:
+ * <ul>
+ *   <li><b>Header:</b> the {@link #MAGIC} bytes followed by an int version and an unused int</li>
+ *   <li><b>Blocks:</b> <code>int keyLength, int valueLength, key, value</code> entries in strictly increasing key order
+ *   (unsigned byte-wise, like {@link WritableComparator#compareBytes(byte[], int, int, byte[], int, int)}), split into
+ *   blocks of roughly the configured block size</li>
+ *   <li><b>Block index:</b> <code>int keyLength, key</code> for the first key of each block</li>
+ *   <li><b>Block index offsets:</b> the (8 byte aligned) long position of each block followed by the long position
+ *   of its block index entry</li>
+ *   <li><b>Trailer:</b> the longs block index position, block index offsets position, block count and entry count</li>
+ * </ul>
+ *
+ * Files are written with {@link Writer}, usually through {@link LookupFileOutputFormat}.
+ */
+public final class SortedLookupFile implements LookupIndex {
+
+    /** The bytes every sorted lookup file starts with. */
+    public static final byte[] MAGIC = new byte[] {'L', 'E', 'M', 'B', 'O', 'S', 'L', 'K'};
+    /** The default target block size. */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 16;
+    private static final int TRAILER_LENGTH = 32;
+    private static final int ENTRY_HEADER_LENGTH = 8;
+
+    private final MappedFile mappedFile;
+    private final long indexStart;
+    private final long indexOffsetsStart;
+    private final long blockCount;
+    private final long entryCount;
+
+    /**
+     * Constructor.
+     *
+     * @param mappedFile the mapped file
+     *
+     * @throws IOException if the file is not a valid sorted lookup file
+     */
+    private SortedLookupFile(final MappedFile mappedFile) throws IOException {
+        final long trailerStart = mappedFile.length() - TRAILER_LENGTH;
+
+        if (trailerStart < HEADER_LENGTH || mappedFile.getInt(MAGIC.length) != VERSION) {
+            throw new IOException("Unsupported sorted lookup file");
+        }
+
+        this.mappedFile = mappedFile;
+        this.indexStart = mappedFile.getLong(trailerStart);
+        this.indexOffsetsStart = mappedFile.getLong(trailerStart + 8);
+        this.blockCount = mappedFile.getLong(trailerStart + 16);
+        this.entryCount = mappedFile.getLong(trailerStart + 24);
+    }
+
+    /**
+     * Memory-maps the sorted lookup file.
+     *
+     * @param file the file
+     *
+     * @return the sorted lookup file
+     *
+     * @throws IOException if the file cannot be mapped or is not a sorted lookup file
+     */
+    public static SortedLookupFile open(final File file) throws IOException {
+        if (!isSortedLookupFile(file)) {
+            throw new IOException("Not a sorted lookup file: " + file);
+        }
+
+        return new SortedLookupFile(new MappedFile(file, false));
+    }
+
+    /**
+     * Returns whether or not the file starts with the {@link #MAGIC} bytes.
+     *
+     * @param file the file to check
+     *
+     * @return true if the file is a sorted lookup file
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isSortedLookupFile(final File file) throws IOException {
+        final byte[] magic = new byte[MAGIC.length];
+        int read = 0;
+
+        try (InputStream in = new FileInputStream(file)) {
+            int count;
+
+            while (read < magic.length && (count = in.read(magic, read, magic.length - read)) != -1) {
+                read += count;
+            }
+        }
+
+        return read == magic.length && Arrays.equals(MAGIC, magic);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] get(final byte[] key) {
+        // Find the last block whose first key is not greater than the key
+        long low = 0;
+        long high = blockCount - 1;
+        long block = -1;
+
+        while (low <= high) {
+            final long middle = (low + high) >>> 1;
+            final long indexEntry = mappedFile.getLong(indexOffsetsStart + (middle << 4) + 8);
+
+            if (mappedFile.compare(indexEntry + 4, mappedFile.getInt(indexEntry), key) <= 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        if (block == -1) {
+            return null;
+        }
+
+        long position = blockOffset(block);
+        final long blockEnd = block + 1 < blockCount ? blockOffset(block + 1) : indexStart;
+
+        while (position < blockEnd) {
+            final int keyLength = mappedFile.getInt(position);
+            final int valueLength = mappedFile.getInt(position + 4);
+            final int comparison = mappedFile.compare(position + ENTRY_HEADER_LENGTH, keyLength, key);
+
+            if (comparison == 0) {
+                return mappedFile.getBytes(position + ENTRY_HEADER_LENGTH + keyLength, valueLength);
+            } else if (comparison > 0) {
+                break;
+            }
+
+            position += ENTRY_HEADER_LENGTH + keyLength + valueLength;
+        }
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long size() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the position of the block.
+     *
+     * @param block the block number
+     *
+     * @return the block position
+     */
+    private long blockOffset(final long block) {
+        return mappedFile.getLong(indexOffsetsStart + (block << 4));
+    }
+
+    /**
+     * Writes a sorted lookup file in a single pass.  Only the first key of each block is kept in memory.
+     */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final int blockSize;
+        private final List<byte[]> blockKeys = new ArrayList<>();
+        private final List<Long> blockOffsets = new ArrayList<>();
+        private byte[] lastKey;
+        private long position;
+        private long blockStart;
+        private long entryCount;
+
+        /**
+         * Constructor.
+         *
+         * @param out the stream to write the file to
+         * @param blockSize the target block size
+         *
+         * @throws IOException if the header cannot be written
+         */
+        public Writer(final OutputStream out, final int blockSize) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+            this.blockSize = blockSize;
+
+            this.out.write(MAGIC);
+            this.out.writeInt(VERSION);
+            this.out.writeInt(0);
+
+            position = HEADER_LENGTH;
+        }
+
+        /**
+         * Appends the entry.  Keys must be appended in strictly increasing order.
+         *
+         * @param key the key bytes
+         * @param keyLength the number of valid key bytes
+         * @param value the value bytes
+         * @param valueLength the number of valid value bytes
+         *
+         * @throws IOException if the key is out of order or the entry cannot be written
+         */
+        public void append(final byte[] key, final int keyLength, final byte[] value, final int valueLength)
+                throws IOException {
+            if (lastKey != null
+                    && WritableComparator.compareBytes(lastKey, 0, lastKey.length, key, 0, keyLength) >= 0) {
+                throw new IOException("Keys must be appended in strictly increasing order");
+            }
+
+            lastKey = Arrays.copyOf(key, keyLength);
+
+            // Start a new block when the current block is full
+            if (blockKeys.isEmpty() || position - blockStart >= blockSize) {
+                blockStart = position;
+                blockKeys.add(lastKey);
+                blockOffsets.add(position);
+            }
+
+            out.writeInt(keyLength);
+            out.writeInt(valueLength);
+            out.write(key, 0, keyLength);
+            out.write(value, 0, valueLength);
+
+            position += ENTRY_HEADER_LENGTH + keyLength + valueLength;
+            entryCount++;
+        }
+
+        /**
+         * Writes the block index and the trailer and closes the stream.
+         *
+         * @throws IOException if the index cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            final long indexStart = position;
+            final long[] indexEntries = new long[blockKeys.size()];
+
+            for (int i = 0; i < indexEntries.length; i++) {
+                final byte[] blockKey = blockKeys.get(i);
+
+                indexEntries[i] = position;
+
+                out.writeInt(blockKey.length);
+                out.write(blockKey);
+
+                position += 4 + blockKey.length;
+            }
+
+            // Align the longs so they never span two mapped segments
+            while (position % 8 != 0) {
+                out.writeByte(0);
+
+                position++;
+            }
+
+            final long indexOffsetsStart = position;
+
+            for (int i = 0; i < indexEntries.length; i++) {
+                out.writeLong(blockOffsets.get(i));
+                out.writeLong(indexEntries[i]);
+            }
+
+            out.writeLong(indexStart);
+            out.writeLong(indexOffsetsStart);
+            out.writeLong(indexEntries.length);
+            out.writeLong(entryCount);
+            out.close();
+        }
+
+    }
+
+}
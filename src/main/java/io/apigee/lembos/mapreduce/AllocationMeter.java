@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the memory allocated by threads, using the per-thread allocation accounting of the HotSpot
+ * <code>com.sun.management.ThreadMXBean</code>, and the time spent in garbage collection.  On JVMs without per-thread
+ * allocation accounting, or unless enabled by {@link LembosConstants#MR_ALLOCATION_ENABLED}, the allocated bytes are
+ * always 0.
+ */
+public final class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+
+    private static volatile boolean enabled;
+
+    /**
+     * Private constructor.
+     */
+    private AllocationMeter() { }
+
+    /**
+     * @return true if the JVM supports per-thread allocation accounting
+     */
+    public static boolean isSupported() {
+        return THREAD_BEAN != null;
+    }
+
+    /**
+     * Enables or disables the allocation measures from {@link LembosConstants#MR_ALLOCATION_ENABLED}.
+     *
+     * @param conf the Hadoop configuration
+     */
+    public static void configure(final Configuration conf) {
+        enabled = THREAD_BEAN != null && conf.getBoolean(LembosConstants.MR_ALLOCATION_ENABLED, false);
+    }
+
+    /**
+     * @return true if the allocation measures are enabled, which requires per-thread allocation accounting
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the bytes allocated by the current thread since it started (0 if unsupported or disabled)
+     */
+    public static long getAllocatedBytes() {
+        return getAllocatedBytes(Thread.currentThread());
+    }
+
+    /**
+     * @param thread the thread
+     *
+     * @return the bytes allocated by the thread since it started (0 if unsupported, disabled or if the thread is not
+     *         alive)
+     */
+    public static long getAllocatedBytes(final Thread thread) {
+        return enabled ? Math.max(0, THREAD_BEAN.getThreadAllocatedBytes(thread.getId())) : 0;
+    }
+
+    /**
+     * @return the accumulated garbage collection time of the JVM in milliseconds
+     */
+    public static long getGcMillis() {
+        long millis = 0;
+
+        for (final GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gcBean.getCollectionTime());
+        }
+
+        return millis;
+    }
+
+    /**
+     * @return the HotSpot thread bean with allocation accounting enabled or null if not supported
+     */
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        try {
+            final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+            if (threadBean instanceof com.sun.management.ThreadMXBean) {
+                final com.sun.management.ThreadMXBean hotSpotBean = (com.sun.management.ThreadMXBean)threadBean;
+
+                if (hotSpotBean.isThreadAllocatedMemorySupported()) {
+                    hotSpotBean.setThreadAllocatedMemoryEnabled(true);
+
+                    return hotSpotBean;
+                }
+            }
+        } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+            System.err.println("Per-thread allocation accounting is not available: " + e.getMessage());
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Job-level compression policy choosing the codec of the map output, which is shuffled over the network and should be
+ * fast, separately from the codec of the job output, which is stored and should be dense.
+ *
+ * Each codec is <code>none</code>, <code>auto</code>, a short name (<code>snappy</code>, <code>lz4</code>,
+ * <code>deflate</code>, <code>gzip</code> or <code>bzip2</code>) or a codec class name.  With <code>auto</code>, the
+ * available codecs are benchmarked on a sample of the job input: the map output uses the fastest codec that shrinks the
+ * sample, if any, and the job output uses the densest one.  When there is no file input to sample, the first available
+ * codec is used.  SequenceFile job outputs use block compression.
+ *
+ * <b>Note:</b> The input is a stand-in for the map output, which does not exist before the job runs.
+ */
+public final class CompressionPolicy {
+
+    /** The codec value that disables compression. */
+    public static final String NONE = "none";
+    /** The codec value that benchmarks the available codecs. */
+    public static final String AUTO = "auto";
+
+    private static final int DEFAULT_SAMPLE_SIZE = 1024 * 1024;
+    private static final int BENCHMARK_RUNS = 3;
+    private static final Map<String, String> CODECS = new HashMap<>();
+    private static final List<String> MAP_OUTPUT_CANDIDATES = Arrays.asList("snappy", "lz4", "deflate");
+    private static final List<String> OUTPUT_CANDIDATES = Arrays.asList("gzip", "deflate", "bzip2");
+
+    static {
+        CODECS.put("bzip2", "org.apache.hadoop.io.compress.BZip2Codec");
+        CODECS.put("deflate", "org.apache.hadoop.io.compress.DefaultCodec");
+        CODECS.put("gzip", "org.apache.hadoop.io.compress.GzipCodec");
+        CODECS.put("lz4", "org.apache.hadoop.io.compress.Lz4Codec");
+        CODECS.put("snappy", "org.apache.hadoop.io.compress.SnappyCodec");
+    }
+
+    /**
+     * Private constructor.
+     */
+    private CompressionPolicy() { }
+
+    /**
+     * Sets the compression policy of the job.  (Applied by {@link #apply(Job)}.)
+     *
+     * @param conf the job configuration
+     * @param mapOutputCodec the map output codec
+     * @param outputCodec the job output codec
+     */
+    public static void set(final Configuration conf, final String mapOutputCodec, final String outputCodec) {
+        validate(mapOutputCodec);
+        validate(outputCodec);
+
+        conf.set(LembosConstants.MR_COMPRESSION_MAP_OUTPUT, mapOutputCodec);
+        conf.set(LembosConstants.MR_COMPRESSION_OUTPUT, outputCodec);
+    }
+
+    /**
+     * Configures the compression of the job based on its policy, if any.
+     *
+     * @param job the job
+     *
+     * @throws IOException if the input cannot be sampled
+     */
+    public static void apply(final Job job) throws IOException {
+        final Configuration conf = job.getConfiguration();
+        final String mapOutputCodec = conf.get(LembosConstants.MR_COMPRESSION_MAP_OUTPUT);
+        final String outputCodec = conf.get(LembosConstants.MR_COMPRESSION_OUTPUT);
+        byte[] sample = null;
+
+        if (AUTO.equalsIgnoreCase(mapOutputCodec) || AUTO.equalsIgnoreCase(outputCodec)) {
+            sample = readSample(job);
+        }
+
+        if (mapOutputCodec != null) {
+            final Class<? extends CompressionCodec> codec = resolve(conf, mapOutputCodec, MAP_OUTPUT_CANDIDATES,
+                                                                    sample, true);
+
+            conf.setBoolean("mapred.compress.map.output", codec != null);
+
+            if (codec != null) {
+                conf.setClass("mapred.map.output.compression.codec", codec, CompressionCodec.class);
+            }
+
+            System.out.println("Map output compression: " + (codec == null ? NONE : codec.getName()));
+        }
+
+        if (outputCodec != null) {
+            final Class<? extends CompressionCodec> codec = resolve(conf, outputCodec, OUTPUT_CANDIDATES, sample,
+                                                                    false);
+
+            FileOutputFormat.setCompressOutput(job, codec != null);
+
+            if (codec != null) {
+                FileOutputFormat.setOutputCompressorClass(job, codec);
+
+                if (isSequenceFileOutput(job)) {
+                    SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
+                }
+            }
+
+            System.out.println("Job output compression: " + (codec == null ? NONE : codec.getName()));
+        }
+    }
+
+    /**
+     * Returns the codec class of a codec value.
+     *
+     * @param conf the configuration
+     * @param name the codec value
+     * @param candidates the codecs benchmarked when the value is <code>auto</code>
+     * @param sample the benchmark sample (Can be null)
+     * @param fast whether the fastest, instead of the densest, codec is chosen
+     *
+     * @return the codec class or null for no compression, which is also what the fastest codec is when none of the
+     *         codecs shrinks the sample
+     */
+    static Class<? extends CompressionCodec> resolve(final Configuration conf, final String name,
+                                                     final List<String> candidates, final byte[] sample,
+                                                     final boolean fast) {
+        if (NONE.equalsIgnoreCase(name)) {
+            return null;
+        } else if (!AUTO.equalsIgnoreCase(name)) {
+            return getCodecClass(name);
+        }
+
+        Class<? extends CompressionCodec> best = null;
+        long bestScore = Long.MAX_VALUE;
+
+        for (final String candidate : candidates) {
+            final Class<? extends CompressionCodec> codecClass;
+
+            try {
+                codecClass = getCodecClass(candidate);
+            } catch (IllegalArgumentException e) {
+                // Not part of this version of Hadoop
+                continue;
+            }
+
+            final long[] result = benchmark(conf, codecClass, sample == null ? new byte[0] : sample);
+
+            if (result == null) {
+                continue;
+            } else if (sample == null) {
+                // Nothing to compare so use the first available codec
+                return codecClass;
+            } else if (fast && result[0] >= sample.length) {
+                // The fastest codec has to compress the sample, the densest only has to be the smallest
+                continue;
+            }
+
+            final long score = fast ? result[1] : result[0];
+
+            if (best == null || score < bestScore) {
+                best = codecClass;
+                bestScore = score;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Compresses the sample using the codec.  The first run warms the codec up, loading its classes and native library,
+     * and is not timed.  The compression time is the fastest of the timed runs.
+     *
+     * @param conf the configuration
+     * @param codecClass the codec class
+     * @param sample the sample
+     *
+     * @return the compressed size and the compression time in nanoseconds, or null if the codec is unusable
+     */
+    static long[] benchmark(final Configuration conf, final Class<? extends CompressionCodec> codecClass,
+                            final byte[] sample) {
+        try {
+            final CompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+            final long size = compress(codec, sample);
+            long bestNanos = Long.MAX_VALUE;
+
+            for (int i = 0; i < BENCHMARK_RUNS; i++) {
+                final long start = System.nanoTime();
+
+                compress(codec, sample);
+
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            }
+
+            return new long[] {size, bestNanos};
+        } catch (IOException | RuntimeException | LinkageError e) {
+            // Typically a codec whose native library is not loaded
+            return null;
+        }
+    }
+
+    /**
+     * Compresses the sample using the codec.
+     *
+     * @param codec the codec
+     * @param sample the sample
+     *
+     * @return the compressed size
+     *
+     * @throws IOException if the sample cannot be compressed
+     */
+    private static long compress(final CompressionCodec codec, final byte[] sample) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try (OutputStream out = codec.createOutputStream(compressed)) {
+            out.write(sample);
+        }
+
+        return compressed.size();
+    }
+
+    /**
+     * Returns the codec class of a short name or a class name.
+     *
+     * @param name the codec name
+     *
+     * @return the codec class
+     */
+    static Class<? extends CompressionCodec> getCodecClass(final String name) {
+        final String className = CODECS.containsKey(name.toLowerCase(Locale.ENGLISH)) ?
+                CODECS.get(name.toLowerCase(Locale.ENGLISH)) :
+                name;
+
+        try {
+            return Class.forName(className).asSubclass(CompressionCodec.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown compression codec: " + name);
+        }
+    }
+
+    /**
+     * Validates a codec value.
+     *
+     * @param name the codec value
+     */
+    private static void validate(final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("The compression codec cannot be null");
+        } else if (!NONE.equalsIgnoreCase(name) && !AUTO.equalsIgnoreCase(name)) {
+            getCodecClass(name);
+        }
+    }
+
+    /**
+     * Returns whether the job writes SequenceFiles.
+     *
+     * @param job the job
+     *
+     * @return whether the job writes SequenceFiles
+     */
+    private static boolean isSequenceFileOutput(final Job job) {
+        try {
+            return SequenceFileOutputFormat.class.isAssignableFrom(job.getOutputFormatClass());
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the beginning of the first input file, uncompressed.
+     *
+     * @param job the job
+     *
+     * @return the sample or null if the job has no file input
+     *
+     * @throws IOException if the input cannot be read
+     */
+    static byte[] readSample(final Job job) throws IOException {
+        final Configuration conf = job.getConfiguration();
+        final int sampleSize = conf.getInt(LembosConstants.MR_COMPRESSION_SAMPLE_SIZE, DEFAULT_SAMPLE_SIZE);
+        final Path file = findFile(conf, Arrays.asList(FileInputFormat.getInputPaths(job)));
+
+        if (file == null) {
+            return null;
+        }
+
+        final CompressionCodec inputCodec = new CompressionCodecFactory(conf).getCodec(file);
+        final InputStream rawIn = file.getFileSystem(conf).open(file);
+        final ByteArrayOutputStream sample = new ByteArrayOutputStream();
+
+        try (InputStream in = inputCodec == null ? rawIn : inputCodec.createInputStream(rawIn)) {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+
+            while (sample.size() < sampleSize
+                    && (read = in.read(buffer, 0, Math.min(buffer.length, sampleSize - sample.size()))) != -1) {
+                sample.write(buffer, 0, read);
+            }
+        }
+
+        return sample.size() == 0 ? null : sample.toByteArray();
+    }
+
+    /**
+     * Returns the first non-empty file of the paths, skipping hidden files like Hadoop does.
+     *
+     * @param conf the configuration
+     * @param paths the input paths
+     *
+     * @return the file or null if there are none
+     *
+     * @throws IOException if the file system cannot be listed
+     */
+    private static Path findFile(final Configuration conf, final List<Path> paths) throws IOException {
+        for (final Path path : paths) {
+            final FileSystem fs = path.getFileSystem(conf);
+            final FileStatus[] statuses = fs.globStatus(path);
+
+            for (final FileStatus status : statuses == null ? new FileStatus[0] : statuses) {
+                final String name = status.getPath().getName();
+
+                if (name.startsWith("_") || name.startsWith(".")) {
+                    continue;
+                } else if (!status.isDir() && status.getLen() > 0) {
+                    return status.getPath();
+                } else if (status.isDir()) {
+                    final FileStatus[] children = fs.listStatus(status.getPath());
+                    final Path[] childPaths = new Path[children == null ? 0 : children.length];
+
+                    for (int i = 0; i < childPaths.length; i++) {
+                        childPaths[i] = children[i].getPath();
+                    }
+
+                    final Path child = findFile(conf, Arrays.asList(childPaths));
+
+                    if (child != null) {
+                        return child;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sampling profiler for the JavaScript code of a Lembos MapReduce component.  When enabled using
+ * {@link LembosConstants#MR_PROFILE_INTERVAL}, a daemon thread samples the stack of the thread running the module's
+ * JavaScript code at the configured interval and aggregates the JavaScript frames into collapsed stacks
+ * <i>(one <code>outermost;...;innermost count</code> line per distinct stack)</i>, the input format of
+ * <a href="https://github.com/brendangregg/FlameGraph">flamegraph.pl</a> and most flame graph viewers.  Samples taken
+ * while no JavaScript is running, like while Hadoop reads the next record, are not recorded.
+ */
+public final class JavaScriptProfiler implements Runnable {
+
+    /** The name of the merged profile file written to the job output directory. */
+    public static final String MERGED_PROFILE_NAME = "_lembos-profile.collapsed";
+    /** The prefix of the task profile files. */
+    private static final String PROFILE_PREFIX = "_lembos-profile-";
+    /** The suffix of the profile files. */
+    private static final String PROFILE_SUFFIX = ".collapsed";
+    /** The name of the work output directory property. */
+    private static final String WORK_OUTPUT_DIR = "mapred.work.output.dir";
+
+    private final LembosNodeEnvironment env;
+    private final long intervalMillis;
+    private final Map<String, Long> stacks = new HashMap<>();
+    private volatile boolean running;
+    private Thread sampler;
+
+    /**
+     * Constructor.
+     *
+     * @param env the environment whose JavaScript code is profiled
+     * @param intervalMillis the sampling interval in milliseconds (0 disables profiling)
+     */
+    public JavaScriptProfiler(final LembosNodeEnvironment env, final long intervalMillis) {
+        this.env = env;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Creates the profiler configured by {@link LembosConstants#MR_PROFILE_INTERVAL}.
+     *
+     * @param conf the Hadoop configuration
+     * @param env the environment whose JavaScript code is profiled
+     *
+     * @return the profiler
+     */
+    public static JavaScriptProfiler fromConf(final Configuration conf, final LembosNodeEnvironment env) {
+        return new JavaScriptProfiler(env, conf.getLong(LembosConstants.MR_PROFILE_INTERVAL, 0));
+    }
+
+    /**
+     * Starts sampling, unless profiling is disabled.
+     *
+     * @param name the name of the profiled component, used to name the sampling thread
+     */
+    public synchronized void start(final String name) {
+        if (intervalMillis <= 0 || sampler != null) {
+            return;
+        }
+
+        running = true;
+        sampler = new Thread(this, "Lembos JavaScript Profiler (" + name + ")");
+
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stops sampling and waits for the sampling thread to finish.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        final Thread toJoin;
+
+        synchronized (this) {
+            running = false;
+            toJoin = sampler;
+        }
+
+        if (toJoin != null) {
+            toJoin.interrupt();
+            toJoin.join();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        while (running) {
+            final Thread scriptThread = env.getScriptThread();
+
+            if (scriptThread != null) {
+                record(scriptThread.getStackTrace());
+            }
+
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records a sample of the JavaScript frames of the Java stack.
+     *
+     * @param stack the Java stack, innermost frame first
+     *
+     * @return true if the stack had JavaScript frames and was recorded
+     */
+    public boolean record(final StackTraceElement[] stack) {
+        final List<StackTraceElement> frames = LembosNodeEnvironment.getJavaScriptFrames(stack);
+
+        if (frames.isEmpty()) {
+            return false;
+        }
+
+        final StringBuilder collapsed = new StringBuilder();
+
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            if (collapsed.length() > 0) {
+                collapsed.append(';');
+            }
+
+            // Semicolons separate the frames
+            collapsed.append(LembosNodeEnvironment.getFrameName(frames.get(i)).replace(';', ','));
+        }
+
+        addSamples(stacks, collapsed.toString(), 1);
+
+        return true;
+    }
+
+    /**
+     * @return the number of samples per collapsed stack
+     */
+    public Map<String, Long> getStacks() {
+        synchronized (stacks) {
+            return new TreeMap<>(stacks);
+        }
+    }
+
+    /**
+     * Writes the collapsed stacks to the <code>_lembos-profile-&lt;component&gt;-&lt;task id&gt;.collapsed</code> file
+     * of the task work output directory, which is committed to the job output directory with the rest of the task
+     * output.  Nothing is written if there are no samples or if the task has no work output directory.  Since Hadoop
+     * runs a combiner for each spill and merge of a task, the files written after the first one by a task get a
+     * <code>-&lt;run&gt;</code> suffix and are merged like the others by {@link #merge(Configuration, Path)}.
+     *
+     * @param context the task context
+     * @param component the component name
+     *
+     * @return the file written or null if nothing was written
+     *
+     * @throws IOException if anything goes wrong
+     */
+    public Path write(final TaskInputOutputContext<?, ?, ?, ?> context, final String component) throws IOException {
+        final String workOutputDir = context.getConfiguration().get(WORK_OUTPUT_DIR);
+        final Map<String, Long> samples = getStacks();
+
+        if (workOutputDir == null || samples.isEmpty()) {
+            return null;
+        }
+
+        final Path file = SlowRecords.getTaskFile(context, workOutputDir, PROFILE_PREFIX, component, PROFILE_SUFFIX);
+
+        writeStacks(file.getFileSystem(context.getConfiguration()), file, samples);
+
+        return file;
+    }
+
+    /**
+     * Merges the task profiles found in the job output directory into the {@link #MERGED_PROFILE_NAME} file of the
+     * job output directory.
+     *
+     * @param conf the Hadoop configuration
+     * @param outputDir the job output directory
+     *
+     * @return the merged profile or null if there were no task profiles
+     *
+     * @throws IOException if anything goes wrong
+     */
+    public static Path merge(final Configuration conf, final Path outputDir) throws IOException {
+        final FileSystem fs = outputDir.getFileSystem(conf);
+        final FileStatus[] profiles = fs.globStatus(new Path(outputDir, PROFILE_PREFIX + "*" + PROFILE_SUFFIX));
+        final Map<String, Long> merged = new TreeMap<>();
+
+        if (profiles == null || profiles.length == 0) {
+            return null;
+        }
+
+        for (final FileStatus profile : profiles) {
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(profile.getPath()),
+                                                                                        StandardCharsets.UTF_8))) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    final int countStart = line.lastIndexOf(' ');
+
+                    if (countStart > 0) {
+                        addSamples(merged, line.substring(0, countStart),
+                                   Long.parseLong(line.substring(countStart + 1)));
+                    }
+                }
+            }
+        }
+
+        final Path file = new Path(outputDir, MERGED_PROFILE_NAME);
+
+        writeStacks(fs, file, merged);
+
+        return file;
+    }
+
+    /**
+     * Adds samples to a collapsed stack.
+     *
+     * @param stacks the number of samples per collapsed stack
+     * @param stack the collapsed stack
+     * @param count the number of samples to add
+     */
+    private static void addSamples(final Map<String, Long> stacks, final String stack, final long count) {
+        synchronized (stacks) {
+            final Long current = stacks.get(stack);
+
+            stacks.put(stack, current == null ? count : current + count);
+        }
+    }
+
+    /**
+     * Writes collapsed stacks.
+     *
+     * @param fs the file system
+     * @param file the file to write
+     * @param stacks the number of samples per collapsed stack
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private static void writeStacks(final FileSystem fs, final Path file, final Map<String, Long> stacks)
+            throws IOException {
+        try (final OutputStream out = fs.create(file, true)) {
+            for (final Map.Entry<String, Long> entry : stacks.entrySet()) {
+                out.write((entry.getKey() + " " + entry.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+}
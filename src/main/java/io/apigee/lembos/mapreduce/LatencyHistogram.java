@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log-linear histogram of latencies, in the spirit of HdrHistogram, with a relative error below 1.6%.  Values below
+ * 128 are recorded exactly and larger values are recorded in buckets keeping their 7 most significant bits, so the
+ * histogram has a fixed size no matter how many values it records.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_LIMIT = SUB_BUCKET_COUNT * 2;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long max;
+
+    /**
+     * Records a value.
+     *
+     * @param value the value (negative values are recorded as 0)
+     */
+    public synchronized void record(final long value) {
+        final long safeValue = Math.max(0, value);
+
+        counts[indexOf(safeValue)]++;
+        count++;
+        max = Math.max(max, safeValue);
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the largest value recorded
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the value at the percentile, which is the highest value equivalent to the recorded value at the
+     * percentile and never more than the largest value recorded.
+     *
+     * @param percentile the percentile (0 to 100)
+     *
+     * @return the value at the percentile or 0 if nothing was recorded
+     */
+    public synchronized long getValueAtPercentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long)Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if (seen >= rank) {
+                return Math.min(max, highestValueOf(i));
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Returns a summary of the histogram, which is expected to contain nanoseconds, in microseconds.
+     *
+     * @return the summary
+     */
+    public synchronized String toSummary() {
+        return "count=" + count
+                + ", p50=" + TimeUnit.NANOSECONDS.toMicros(getValueAtPercentile(50)) + "us"
+                + ", p99=" + TimeUnit.NANOSECONDS.toMicros(getValueAtPercentile(99)) + "us"
+                + ", max=" + TimeUnit.NANOSECONDS.toMicros(max) + "us";
+    }
+
+    /**
+     * @param value the value
+     *
+     * @return the index of the bucket of the value
+     */
+    static int indexOf(final long value) {
+        if (value < EXACT_LIMIT) {
+            return (int)value;
+        }
+
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return (shift << SUB_BUCKET_BITS) + (int)(value >>> shift);
+    }
+
+    /**
+     * @param index the index of the bucket
+     *
+     * @return the highest value recorded in the bucket
+     */
+    static long highestValueOf(final int index) {
+        if (index < EXACT_LIMIT) {
+            return index;
+        }
+
+        final int shift = (index >> SUB_BUCKET_BITS) - 1;
+        final long mantissa = index - ((long)shift << SUB_BUCKET_BITS);
+
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apigee.lembos.mapreduce;
+
+import io.apigee.lembos.io.JSObjectWritable;
+import io.apigee.lembos.node.types.TaskInputOutputContextWrap;
+import io.apigee.lembos.utils.ConversionUtils;
+import io.apigee.trireme.core.Utils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Map-side hash join of the inputs added with {@link LembosJoin#addInput(Job, String, Path)}, used instead of the
+ * reduce-side join when the module exports a <code>joinMap</code> function and the inputs before the last one are
+ * smaller than {@link LembosConstants#MR_JOIN_BROADCAST_THRESHOLD}.
+ *
+ * The small inputs are shipped to the map tasks through the DistributedCache and run through the map function, what it
+ * writes filling one hash table per input, once per JVM.  The job then only reads the last input and, for each record
+ * the map function writes, calls <code>joinMap(key, value, matches..., context, cb)</code> with an array of the
+ * matching values of each small input.  (The arrays are empty when there is no match, for outer joins.)  The tables
+ * keep the keys and values in their {@link JSObjectWritable} form so they are not tied to a JavaScript runtime.
+ *
+ * <b>Note:</b> Like chained map functions, <code>joinMap</code> is called from <code>context.write</code> so it should
+ * call its callback before returning.
+ */
+public final class LembosBroadcastJoin {
+
+    /** The default broadcast threshold. (25 MB) */
+    public static final long DEFAULT_THRESHOLD = 25 * 1024 * 1024;
+
+    // Only the tables of the current job are kept, the tasks of a reused JVM share them
+    private static final ConcurrentMap<String, List<Map<JSObjectWritable, List<JSObjectWritable>>>> TABLES =
+            new ConcurrentHashMap<>();
+
+    private final LembosMapReduceEnvironment env;
+    private final TaskInputOutputContextWrap output;
+    private final LembosMultipleOutputs multipleOutputs;
+    private final LembosChain.LinkCallback callback = new LembosChain.LinkCallback();
+    private List<Map<JSObjectWritable, List<JSObjectWritable>>> tables;
+    private int loadingTag = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param env the MapReduce environment
+     * @param output the context wrapper of the task, which <code>joinMap</code> writes to
+     * @param multipleOutputs the named outputs of the task (can be null)
+     */
+    public LembosBroadcastJoin(final LembosMapReduceEnvironment env, final TaskInputOutputContextWrap output,
+                               @Nullable final LembosMultipleOutputs multipleOutputs) {
+        this.env = env;
+        this.output = output;
+        this.multipleOutputs = multipleOutputs;
+    }
+
+    /**
+     * Returns whether or not the job broadcasts its small join inputs.
+     *
+     * @param conf the job configuration
+     *
+     * @return true if the job joins its inputs in the map tasks
+     */
+    public static boolean isBroadcast(final Configuration conf) {
+        return conf.getBoolean(LembosConstants.MR_JOIN_BROADCAST, false);
+    }
+
+    /**
+     * Configures a map-side join if the join inputs before the last one are smaller than the broadcast threshold:
+     * Their files are added to the DistributedCache, the job only reads the last input and has no reducers.  Since
+     * their size is only known once they exist, inputs produced by an upstream stage of a job graph are joined
+     * reduce-side.
+     *
+     * @param job the job
+     *
+     * @return true if the inputs are broadcast, false if the job should fall back to a reduce-side join
+     *
+     * @throws IOException if the input sizes cannot be read
+     */
+    public static boolean configure(final Job job) throws IOException {
+        final Configuration conf = job.getConfiguration();
+        final long threshold = conf.getLong(LembosConstants.MR_JOIN_BROADCAST_THRESHOLD, DEFAULT_THRESHOLD);
+
+        LembosJoin.checkInputs(conf);
+
+        if (threshold <= 0) {
+            return false;
+        }
+
+        final List<String> tags = LembosJoin.getInputs(conf);
+        final List<Path> smallPaths = new ArrayList<>();
+        long size = 0;
+
+        for (final String tag : tags.subList(0, tags.size() - 1)) {
+            for (final Path path : LembosJoin.getInputPaths(conf, tag)) {
+                final FileSystem fs = path.getFileSystem(conf);
+
+                if (!fs.exists(path)) {
+                    System.out.println("Join input " + tag + " (" + path + ") does not exist yet, using a reduce-side "
+                                               + "join");
+
+                    return false;
+                }
+
+                size += fs.getContentSummary(path).getLength();
+                smallPaths.add(path);
+            }
+        }
+
+        if (size > threshold) {
+            System.out.println("Join inputs " + tags.subList(0, tags.size() - 1) + " are too large to broadcast ("
+                                       + size + " bytes), using a reduce-side join");
+
+            return false;
+        }
+
+        for (final Path path : smallPaths) {
+            addCacheFiles(path.getFileSystem(conf), path, conf);
+        }
+
+        final List<Path> largePaths = LembosJoin.getInputPaths(conf, tags.get(tags.size() - 1));
+
+        FileInputFormat.setInputPaths(job, largePaths.toArray(new Path[largePaths.size()]));
+
+        conf.setBoolean(LembosConstants.MR_JOIN_BROADCAST, true);
+        job.setNumReduceTasks(0);
+
+        System.out.println("Broadcasting join inputs " + tags.subList(0, tags.size() - 1) + " (" + size
+                                   + " bytes) to a map-side join");
+
+        return true;
+    }
+
+    /**
+     * Returns a new context wrapper whose <code>write</code> probes the hash tables, for the map function or the last
+     * function of the map chain to write to.
+     *
+     * @return the context wrapper
+     */
+    public TaskInputOutputContextWrap createContextWrapper() {
+        final TaskInputOutputContextWrap contextWrapper =
+                TaskInputOutputContextWrap.getInstance(env.getModule(), env.getRuntime(), output.getContext());
+
+        contextWrapper.setMultipleOutputs(multipleOutputs);
+        contextWrapper.setBroadcastJoin(this);
+
+        return contextWrapper;
+    }
+
+    /**
+     * Loads the hash tables of the small join inputs, unless a previous task of the JVM already did, by running their
+     * records through the map function.
+     *
+     * @param context the map task context
+     * @param mapFunction the map function, or the first function of the map chain
+     * @param mapCtxWrapper the context wrapper the map function is called with
+     * @param chain the map chain (can be null)
+     *
+     * @throws IOException if the small join inputs cannot be read
+     * @throws InterruptedException if reading the small join inputs is interrupted
+     */
+    public void load(final MapContext<?, ?, ?, ?> context, final Function mapFunction,
+                     final TaskInputOutputContextWrap mapCtxWrapper, @Nullable final LembosChain chain)
+            throws IOException, InterruptedException {
+        final Configuration conf = context.getConfiguration();
+        final URI[] cacheFiles = DistributedCache.getCacheFiles(conf);
+        final String tablesKey = context.getJobID() + "/" + conf.get(LembosConstants.MR_STAGE, "") + "/"
+                + Arrays.toString(cacheFiles);
+
+        tables = TABLES.get(tablesKey);
+
+        if (tables != null) {
+            context.getCounter(LembosTimers.COUNTER_GROUP, "Broadcast Join Tables Reused").increment(1);
+
+            return;
+        }
+
+        final Path[] localFiles = DistributedCache.getLocalCacheFiles(conf);
+        final int smallInputs = LembosJoin.getInputs(conf).size() - 1;
+        final InputFormat<?, ?> inputFormat;
+        long records = 0;
+
+        try {
+            inputFormat = ReflectionUtils.newInstance(context.getInputFormatClass(), conf);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+
+        tables = new ArrayList<>(smallInputs);
+
+        for (int i = 0; i < smallInputs; i++) {
+            tables.add(new HashMap<JSObjectWritable, List<JSObjectWritable>>());
+        }
+
+        for (int i = 0; cacheFiles != null && i < cacheFiles.length; i++) {
+            final int tag = LembosJoin.getTag(conf, new Path(cacheFiles[i]));
+
+            if (tag == -1 || tag >= smallInputs) {
+                continue;
+            }
+
+            // Read the localized copy when the DistributedCache localized the files, the original file otherwise
+            final Path file = localFiles != null && localFiles.length == cacheFiles.length ?
+                    FileSystem.getLocal(conf).makeQualified(localFiles[i]) :
+                    new Path(cacheFiles[i]);
+
+            loadingTag = tag;
+
+            try {
+                records += read(context, inputFormat, file, mapFunction, mapCtxWrapper, chain);
+            } finally {
+                loadingTag = -1;
+            }
+        }
+
+        TABLES.clear();
+        TABLES.put(tablesKey, tables);
+
+        context.getCounter(LembosTimers.COUNTER_GROUP, "Broadcast Join Records Loaded").increment(records);
+    }
+
+    /**
+     * Handles a key and value written by the map function: While loading, they are added to the hash table of the
+     * small join input being read, otherwise <code>joinMap</code> is called with the matching values.  Since the tables
+     * are loaded after the map setup functions ran, so the map function can use what they set up, writing from a setup
+     * function is an error.
+     *
+     * @param ctx the JavaScript context
+     * @param key the JavaScript key
+     * @param value the JavaScript value
+     */
+    public void write(final Context ctx, final Object key, final Object value) {
+        if (tables == null) {
+            throw Utils.makeError(ctx, env.getModule(), LembosMessages.JOIN_TABLES_NOT_LOADED);
+        }
+
+        final JSObjectWritable joinKey = new JSObjectWritable(key);
+
+        if (loadingTag != -1) {
+            List<JSObjectWritable> values = tables.get(loadingTag).get(joinKey);
+
+            if (values == null) {
+                values = new ArrayList<>();
+
+                tables.get(loadingTag).put(joinKey, values);
+            }
+
+            values.add(new JSObjectWritable(value));
+
+            return;
+        }
+
+        final Scriptable scope = env.getModule();
+        final Object[] args = new Object[tables.size() + 4];
+
+        args[0] = key;
+        args[1] = value;
+
+        for (int i = 0; i < tables.size(); i++) {
+            final List<JSObjectWritable> matches = tables.get(i).get(joinKey);
+            final List<Object> jsMatches = new ArrayList<>();
+
+            for (final JSObjectWritable match : matches == null ? Collections.<JSObjectWritable>emptyList() : matches) {
+                jsMatches.add(match.toJavaScript(scope));
+            }
+
+            args[i + 2] = ctx.newArray(scope, jsMatches.toArray());
+        }
+
+        args[args.length - 2] = output;
+        args[args.length - 1] = callback;
+
+        env.getJoinMapFunction().call(ctx, scope, scope, args);
+
+        final String error = callback.takeError();
+
+        if (error != null) {
+            throw Utils.makeError(ctx, scope, error);
+        }
+    }
+
+    /**
+     * Fails if <code>joinMap</code> passed an error to its callback after returning.
+     */
+    public void checkErrors() {
+        final String error = callback.takeError();
+
+        if (error != null) {
+            throw new RuntimeException(error);
+        }
+    }
+
+    /**
+     * Runs the records of a small join input file through the map function.
+     *
+     * @param context the map task context
+     * @param inputFormat the input format of the job
+     * @param file the file to read
+     * @param mapFunction the map function
+     * @param mapCtxWrapper the context wrapper the map function is called with
+     * @param chain the map chain (can be null)
+     *
+     * @return the number of records read
+     *
+     * @throws IOException if the file cannot be read
+     * @throws InterruptedException if reading the file is interrupted
+     */
+    private long read(final MapContext<?, ?, ?, ?> context, final InputFormat<?, ?> inputFormat, final Path file,
+                      final Function mapFunction, final TaskInputOutputContextWrap mapCtxWrapper,
+                      @Nullable final LembosChain chain) throws IOException, InterruptedException {
+        final Configuration conf = context.getConfiguration();
+        final FileSplit split = new FileSplit(file, 0, file.getFileSystem(conf).getFileStatus(file).getLen(),
+                                              new String[0]);
+        final TaskAttemptContext readerContext = new TaskAttemptContext(conf, context.getTaskAttemptID());
+        final RecordReader<?, ?> reader = inputFormat.createRecordReader(split, readerContext);
+        long records = 0;
+
+        try {
+            reader.initialize(split, readerContext);
+
+            while (reader.nextKeyValue()) {
+                env.callFunctionSync(mapFunction, new Object[] {
+                        ConversionUtils.writableComparableToJS((WritableComparable<?>)reader.getCurrentKey(),
+                                                               env.getModule()),
+                        ConversionUtils.writableToJS((Writable)reader.getCurrentValue(), env.getModule()),
+                        mapCtxWrapper
+                });
+
+                if (chain != null) {
+                    chain.checkErrors();
+                }
+
+                records++;
+            }
+        } finally {
+            reader.close();
+        }
+
+        return records;
+    }
+
+    /**
+     * Adds the files of a path, skipping hidden files like <code>_SUCCESS</code>, to the DistributedCache.
+     *
+     * @param fs the file system of the path
+     * @param path the file or directory
+     * @param conf the job configuration
+     *
+     * @throws IOException if the path cannot be listed
+     */
+    private static void addCacheFiles(final FileSystem fs, final Path path, final Configuration conf)
+            throws IOException {
+        final FileStatus status = fs.getFileStatus(path);
+
+        if (!status.isDir()) {
+            DistributedCache.addCacheFile(status.getPath().toUri(), conf);
+
+            return;
+        }
+
+        for (final FileStatus child : fs.listStatus(path)) {
+            if (!child.getPath().getName().startsWith("_") && !child.getPath().getName().startsWith(".")) {
+                addCacheFiles(fs, child.getPath(), conf);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apigee.lembos.mapreduce;
+
+import io.apigee.lembos.node.types.TaskInputOutputContextWrap;
+import io.apigee.lembos.utils.JavaScriptUtils;
+import io.apigee.trireme.core.Utils;
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chain of JavaScript map functions fused in a single task, like Hadoop's <code>ChainMapper</code> and
+ * <code>ChainReducer</code>.  Each link gets its own context whose <code>write</code> calls the next link with the
+ * JavaScript key and value as is, so records flow through the chain without being converted to {@link
+ * org.apache.hadoop.io.Writable}s, and only the last link writes to Hadoop.
+ *
+ * Each link is either a map function or an object with a <code>map</code> function and optional <code>setup</code>
+ * and <code>cleanup</code> functions, called with the link context in chain order.
+ *
+ * <b>Note:</b> The links after the first one are called from the <code>context.write</code> of the previous link so
+ * they should call their callback before returning.  Errors passed to their callback later fail the task once the
+ * current record is processed.
+ */
+public final class LembosChain {
+
+    private final LembosMapReduceEnvironment env;
+    private final TaskInputOutputContextWrap output;
+    private final LembosMultipleOutputs multipleOutputs;
+    private final List<Link> links = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param env the MapReduce environment
+     * @param functions the chained functions, or objects, as exported by the module
+     * @param output the context wrapper of the task, which the last link writes to
+     * @param multipleOutputs the named outputs of the task (can be null)
+     */
+    public LembosChain(final LembosMapReduceEnvironment env, final NativeArray functions,
+                       final TaskInputOutputContextWrap output, @Nullable final LembosMultipleOutputs multipleOutputs) {
+        if (functions.isEmpty()) {
+            throw new RuntimeException("MapReduce chain cannot be empty");
+        }
+
+        this.env = env;
+        this.output = output;
+        this.multipleOutputs = multipleOutputs;
+
+        for (int i = 0; i < functions.size(); i++) {
+            final Object link = functions.get(i);
+
+            if (link instanceof Function) {
+                links.add(new Link(env.getModule(), (Function)link, null, null));
+            } else if (link instanceof NativeObject
+                    && ScriptableObject.getProperty((NativeObject)link, "map") instanceof Function) {
+                links.add(new Link(env.getModule(),
+                                   (Function)ScriptableObject.getProperty((NativeObject)link, "map"),
+                                   getOptionalFunction((NativeObject)link, "setup", i),
+                                   getOptionalFunction((NativeObject)link, "cleanup", i)));
+            } else {
+                throw new RuntimeException("MapReduce chain link (" + i + ") must be a function or an object with a "
+                                                   + "map function");
+            }
+        }
+
+        // Wire each link to the next one, the last link writes to Hadoop
+        for (int i = links.size() - 1; i >= 0; i--) {
+            links.get(i).contextWrapper = i == links.size() - 1 ? output : createContextWrapper(links.get(i + 1));
+        }
+    }
+
+    /**
+     * Returns a new context wrapper whose <code>write</code> feeds the first link of the chain, for the components
+     * whose output goes through the chain like the reducer.
+     *
+     * @return the context wrapper
+     */
+    public TaskInputOutputContextWrap createContextWrapper() {
+        return createContextWrapper(links.get(0));
+    }
+
+    /**
+     * @return the first link of the chain
+     */
+    public Link getHead() {
+        return links.get(0);
+    }
+
+    /**
+     * @return the number of links in the chain
+     */
+    public int size() {
+        return links.size();
+    }
+
+    /**
+     * Calls the setup functions of the links, in chain order.
+     */
+    public void setup() {
+        for (final Link link : links) {
+            if (link.setupFunction != null) {
+                env.callFunctionSync(link.setupFunction, new Object[] {
+                        link.contextWrapper
+                });
+            }
+        }
+
+        checkErrors();
+    }
+
+    /**
+     * Calls the cleanup functions of the links, in chain order, so that what a link writes during its cleanup still
+     * goes through the links after it.
+     */
+    public void cleanup() {
+        for (final Link link : links) {
+            if (link.cleanupFunction != null) {
+                env.callFunctionSync(link.cleanupFunction, new Object[] {
+                        link.contextWrapper
+                });
+            }
+        }
+
+        checkErrors();
+    }
+
+    /**
+     * Fails if a link passed an error to its callback after returning.
+     */
+    public void checkErrors() {
+        for (final Link link : links) {
+            final String error = link.callback.takeError();
+
+            if (error != null) {
+                throw new RuntimeException(error);
+            }
+        }
+    }
+
+    /**
+     * Creates a context wrapper whose <code>write</code> calls the link.
+     *
+     * @param next the link to call
+     *
+     * @return the context wrapper
+     */
+    private TaskInputOutputContextWrap createContextWrapper(final Link next) {
+        final TaskInputOutputContextWrap contextWrapper =
+                TaskInputOutputContextWrap.getInstance(env.getModule(), env.getRuntime(), output.getContext());
+
+        contextWrapper.setMultipleOutputs(multipleOutputs);
+        contextWrapper.setChainedLink(next);
+
+        return contextWrapper;
+    }
+
+    /**
+     * Returns the optional function of a chain link object.
+     *
+     * @param link the chain link object
+     * @param name the property name
+     * @param index the link index
+     *
+     * @return the function or null if it's not defined
+     */
+    private static Function getOptionalFunction(final NativeObject link, final String name, final int index) {
+        final Object value = ScriptableObject.getProperty(link, name);
+
+        if (!JavaScriptUtils.isDefined(value)) {
+            return null;
+        } else if (!(value instanceof Function)) {
+            throw new RuntimeException("MapReduce chain link (" + index + ") " + name + " is not a function");
+        }
+
+        return (Function)value;
+    }
+
+    /**
+     * A function of the chain along with its context.
+     */
+    public static final class Link {
+
+        private final Scriptable scope;
+        private final Function function;
+        private final Function setupFunction;
+        private final Function cleanupFunction;
+        private final LinkCallback callback = new LinkCallback();
+        private TaskInputOutputContextWrap contextWrapper;
+
+        /**
+         * Constructor.
+         *
+         * @param scope the JavaScript scope
+         * @param function the map function
+         * @param setupFunction the setup function (can be null)
+         * @param cleanupFunction the cleanup function (can be null)
+         */
+        private Link(final Scriptable scope, final Function function, @Nullable final Function setupFunction,
+                     @Nullable final Function cleanupFunction) {
+            this.scope = scope;
+            this.function = function;
+            this.setupFunction = setupFunction;
+            this.cleanupFunction = cleanupFunction;
+        }
+
+        /**
+         * Calls the map function of the link on the JavaScript thread, from the <code>context.write</code> of the
+         * previous link.
+         *
+         * @param ctx the JavaScript context
+         * @param key the JavaScript key
+         * @param value the JavaScript value
+         */
+        public void call(final Context ctx, final Object key, final Object value) {
+            function.call(ctx, scope, scope, new Object[] {
+                    key,
+                    value,
+                    contextWrapper,
+                    callback
+            });
+
+            final String error = callback.takeError();
+
+            if (error != null) {
+                throw Utils.makeError(ctx, scope, error);
+            }
+        }
+
+        /**
+         * @return the map function
+         */
+        public Function getFunction() {
+            return function;
+        }
+
+        /**
+         * @return the context wrapper the map function writes to
+         */
+        public TaskInputOutputContextWrap getContextWrapper() {
+            return contextWrapper;
+        }
+
+    }
+
+    /**
+     * Callback of the functions called from <code>context.write</code>, which only keeps the errors passed to it.
+     */
+    static final class LinkCallback extends BaseFunction {
+
+        private static final long serialVersionUID = 2853610461279337154L;
+        private volatile String error;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object call(final Context ctx, final Scriptable scope, final Scriptable thisObj, final Object[] args) {
+            if (args.length > 0 && args[0] instanceof ScriptableObject) {
+                final ScriptableObject pError = (ScriptableObject)args[0];
+                final Object pName = ScriptableObject.getProperty(pError, "name");
+
+                if (pName != null && pName.toString().endsWith("Error")) {
+                    error = ScriptableObject.getProperty(pError, "message").toString();
+                }
+            }
+
+            return Undefined.instance;
+        }
+
+        /**
+         * Returns the error passed to the callback, if any, and forgets it.
+         *
+         * @return the error message or null
+         */
+        String takeError() {
+            final String taken = error;
+
+            error = null;
+
+            return taken;
+        }
+
+    }
+
+}
@@ -37,9 +37,14 @@ public class LembosCombiner extends Reducer<WritableComparable<?>, Writable, Wri
 
     // TODO: Rewrite this to not be a copy/paste/refactor version of LembosReducer
 
+    private final LembosTimers timers = new LembosTimers("Combine");
+    private final LembosMetrics metrics = LembosMetrics.get(timers.getComponent());
     private Function combineFunction;
     private LembosMapReduceEnvironment env;
     private TaskInputOutputContextWrap ctxWrapper;
+    private SlowRecords slowRecords;
+    private SkipPolicy skipPolicy;
+    private JavaScriptProfiler profiler;
 
     /**
      * {@inheritDoc}
@@ -48,11 +53,25 @@ public class LembosCombiner extends Reducer<WritableComparable<?>, Writable, Wri
     protected void reduce(final WritableComparable<?> key, final Iterable<Writable> values, final Context context)
             throws IOException, InterruptedException {
 
-        env.callFunctionSync(combineFunction, new Object[] {
+        final long conversionStart = System.nanoTime();
+        final long conversionBytes = AllocationMeter.getAllocatedBytes();
+        final Object[] args = new Object[] {
                 ConversionUtils.writableComparableToJS(key, env.getModule()),
                 ReducerValuesIterableWrap.getInstance(env.getModule(), values),
                 ctxWrapper
-        });
+        };
+
+        timers.record(LembosTimers.Phase.CONVERSION, conversionStart);
+        timers.recordAllocation(LembosTimers.Phase.CONVERSION, conversionBytes);
+
+        try {
+            env.callFunctionSync(combineFunction, args);
+        } catch (LembosTimeoutException e) {
+            skipPolicy.skip(context, key, e);
+        }
+
+        metrics.recordProcessed();
+        slowRecords.offer(System.nanoTime() - conversionStart, key, null);
 
     }
 
@@ -63,8 +82,11 @@ public class LembosCombiner extends Reducer<WritableComparable<?>, Writable, Wri
     protected void setup(final Context context) throws IOException, InterruptedException {
         super.setup(context);
 
+        slowRecords = SlowRecords.fromConf(context.getConfiguration());
+        skipPolicy = new SkipPolicy(context.getConfiguration(), timers.getComponent());
+
         try {
-            env = LembosMapReduceEnvironment.fromConf(context.getConfiguration());
+            env = LembosMapReduceEnvironment.fromConf(context.getConfiguration(), timers);
             combineFunction = env.getCombineFunction();
 
             if (!JavaScriptUtils.isDefined(combineFunction)) {
@@ -73,12 +95,24 @@ public class LembosCombiner extends Reducer<WritableComparable<?>, Writable, Wri
 
             // Create the context wrapper
             ctxWrapper = TaskInputOutputContextWrap.getInstance(env.getModule(), env.getRuntime(), context);
+            ctxWrapper.setTimers(timers);
+
+            // Report progress while waiting on functions with a timeout
+            env.setProgressable(context);
+
+            // Sample the JavaScript stack when profiling is enabled
+            profiler = JavaScriptProfiler.fromConf(context.getConfiguration(), env);
+            profiler.start(timers.getComponent());
 
             // Call the setup if available
             if (JavaScriptUtils.isDefined(env.getCombineSetupFunction())) {
+                final Object setupEvent = LembosEvents.begin(LembosEvents.Type.SETUP);
+
                 env.callFunctionSync(env.getCombineSetupFunction(), new Object[] {
                         ctxWrapper
                 });
+
+                LembosEvents.commit(setupEvent, timers.getComponent());
             }
         } catch (ExecutionException | NodeException e) {
             throw new RuntimeException(e);
@@ -92,13 +126,37 @@ public class LembosCombiner extends Reducer<WritableComparable<?>, Writable, Wri
     protected void cleanup(final Context context) throws IOException, InterruptedException {
         super.cleanup(context);
 
+        final long cleanupStart = System.nanoTime();
+
         if (JavaScriptUtils.isDefined(env.getCombineCleanupFunction())) {
+            final Object cleanupEvent = LembosEvents.begin(LembosEvents.Type.CLEANUP);
+
             env.callFunctionSync(env.getCombineCleanupFunction(), new Object[] {
                     ctxWrapper
             });
+
+            LembosEvents.commit(cleanupEvent, timers.getComponent());
         }
 
+        profiler.stop();
         env.cleanup();
+
+        timers.record(LembosTimers.Phase.CLEANUP, cleanupStart);
+
+        // Publish the timers, along with the ones of the partitioner and comparators used by this task
+        timers.publish(context);
+        LembosTimers.publishShared(context);
+
+        slowRecords.write(context, timers.getComponent());
+        profiler.write(context, timers.getComponent());
+        LembosMetricsReporter.report();
+    }
+
+    /**
+     * @return the timers of this component
+     */
+    public LembosTimers getTimers() {
+        return timers;
     }
 
     /**
@@ -21,9 +21,120 @@ package io.apigee.lembos.mapreduce;
  */
 public final class LembosConstants {
 
+    /** This is the number of rows inserted per JDBC batch by the batched database output format. (Defaults to 1000) */
+    public static final String DB_BATCH_SIZE = "io.apigee.lembos.db.batchSize";
+
+    /**
+     * This is the number of rows after which the batched database output format commits. (Defaults to 0, which only
+     * commits when the task completes)
+     */
+    public static final String DB_COMMIT_INTERVAL = "io.apigee.lembos.db.commitInterval";
+
+    /** This is the JDBC fetch size of the range-split database input format. (Defaults to 1000) */
+    public static final String DB_FETCH_SIZE = "io.apigee.lembos.db.fetchSize";
+
+    /**
+     * This is the number of rows per <code>INSERT</code> statement of the batched database output format, for
+     * databases supporting multi-row inserts. (Defaults to 1)
+     */
+    public static final String DB_ROWS_PER_INSERT = "io.apigee.lembos.db.rowsPerInsert";
+
+    /**
+     * This is whether or not the range-split database input format computes its ranges from a sample of the split
+     * column read by the client, which reads the split column of every matching row, instead of on the database side.
+     * (Defaults to false)
+     */
+    public static final String DB_SAMPLE_FULL_SCAN = "io.apigee.lembos.db.sampleFullScan";
+
+    /**
+     * This is the number of split column values sampled by the range-split database input format to compute its
+     * ranges, when sampling with a full scan. (Defaults to 10000)
+     */
+    public static final String DB_SAMPLE_SIZE = "io.apigee.lembos.db.sampleSize";
+
+    /** This is the target block size of the sorted lookup files written by the lookup file output format. */
+    public static final String LOOKUP_BLOCK_SIZE = "io.apigee.lembos.lookup.blockSize";
+
+    /** This is the local directory lookup indexes are built in. (Defaults to <code>java.io.tmpdir</code>) */
+    public static final String LOOKUP_INDEX_DIR = "io.apigee.lembos.lookup.indexDir";
+
+    /**
+     * This is whether or not the memory allocated by the mapper, reducer, combiner, partitioner and comparators is
+     * measured and published as counters.  Each measure reads the allocation accounting of a thread, which takes a JVM
+     * wide lock on JDK 7 and 8, so it is meant for profiling runs. (Defaults to false)
+     */
+    public static final String MR_ALLOCATION_ENABLED = "io.apigee.lembos.mapreduce.allocation.enabled";
+
+    /**
+     * This is the map output codec of the job compression policy: <code>none</code>, <code>auto</code>, a codec short
+     * name or a codec class name. (Unset by default, leaving the map output compression as configured)
+     */
+    public static final String MR_COMPRESSION_MAP_OUTPUT = "io.apigee.lembos.mapreduce.compression.mapOutput";
+
+    /**
+     * This is the job output codec of the job compression policy: <code>none</code>, <code>auto</code>, a codec short
+     * name or a codec class name. (Unset by default, leaving the job output compression as configured)
+     */
+    public static final String MR_COMPRESSION_OUTPUT = "io.apigee.lembos.mapreduce.compression.output";
+
+    /** This is the number of input bytes the <code>auto</code> compression policy benchmarks codecs on. (1 MB) */
+    public static final String MR_COMPRESSION_SAMPLE_SIZE = "io.apigee.lembos.mapreduce.compression.sampleSize";
+
     /** This is the symlink name used for the MapReduce Node.js DistributedCache archive. */
     public static final String MR_DISTRIBUTED_CACHE_SYMLINK = "MR_MODULE_ROOT";
 
+    /**
+     * This is the time, in milliseconds, above which function calls and <code>context.write</code> calls are recorded
+     * as Flight Recorder events. (Defaults to 10)
+     */
+    public static final String MR_EVENTS_THRESHOLD = "io.apigee.lembos.mapreduce.events.threshold";
+
+    /**
+     * This is whether or not the join inputs before the last one are broadcast to the map tasks of the job through
+     * the DistributedCache.  (Set by the runner based on {@link #MR_JOIN_BROADCAST_THRESHOLD})
+     */
+    public static final String MR_JOIN_BROADCAST = "io.apigee.lembos.mapreduce.join.broadcast";
+
+    /**
+     * This is the total size, in bytes, of the join inputs before the last one below which the runner broadcasts them
+     * to a map-side hash join when the module exports a <code>joinMap</code> function.  (Defaults to 26214400, 0
+     * disables broadcasting)
+     */
+    public static final String MR_JOIN_BROADCAST_THRESHOLD = "io.apigee.lembos.mapreduce.join.broadcast.threshold";
+
+    /**
+     * This is the comma-separated list of the join input tags of the job, in the order the <code>join</code> function
+     * receives their values, configured by the job setup function.
+     */
+    public static final String MR_JOIN_INPUTS = "io.apigee.lembos.mapreduce.join.inputs";
+
+    /**
+     * This is the size, in bytes, of the output buffer of {@link LembosTextOutputFormat}, used by map-only jobs writing
+     * text.  (Defaults to 262144)
+     */
+    public static final String MR_MAP_ONLY_BUFFER_SIZE = "io.apigee.lembos.mapreduce.mapOnly.bufferSize";
+
+    /**
+     * This is whether map-only jobs writing text use {@link LembosTextOutputFormat} and have their records formatted
+     * directly to text.  (Defaults to true)
+     */
+    public static final String MR_MAP_ONLY_DIRECT = "io.apigee.lembos.mapreduce.mapOnly.direct";
+
+    /** This is the number of records per task that can be skipped when their function times out. (Defaults to 0) */
+    public static final String MR_MAX_SKIPPED_RECORDS = "io.apigee.lembos.mapreduce.maxSkippedRecords";
+
+    /**
+     * This is the comma separated list of live metrics reporters, <code>jmx</code> and/or <code>file</code>. (Defaults to
+     * none)
+     */
+    public static final String MR_METRICS = "io.apigee.lembos.mapreduce.metrics";
+
+    /** This is the directory the <code>file</code> metrics reporter writes to. (Defaults to lembos-metrics) */
+    public static final String MR_METRICS_DIR = "io.apigee.lembos.mapreduce.metrics.dir";
+
+    /** This is the interval, in milliseconds, at which the metrics files are written. (Defaults to 10000) */
+    public static final String MR_METRICS_INTERVAL = "io.apigee.lembos.mapreduce.metrics.interval";
+
     /** This are the CLI arguments to pass to the Node.js module. */
     public static final String MR_MODULE_ARGS = "io.apigee.lembos.node.moduleArgs";
 
@@ -33,6 +144,82 @@ public final class LembosConstants {
     /** This is the path to the Node.js module. (Only useful for testing and LembosMapReduceRunner) */
     public static final String MR_MODULE_PATH = "io.apigee.lembos.mapreduce.modulePath";
 
+    /** This is the comma-separated list of the named outputs of the job, configured by the job setup function. */
+    public static final String MR_NAMED_OUTPUTS = "io.apigee.lembos.mapreduce.namedOutputs";
+
+    /** This is the maximum number of named output record writers a task keeps open. (Defaults to 64) */
+    public static final String MR_NAMED_OUTPUTS_MAX_OPEN = "io.apigee.lembos.mapreduce.namedOutputs.maxOpen";
+
+    /**
+     * This is the interval, in milliseconds, at which the JavaScript profiler samples the JavaScript stack. (Defaults
+     * to 0, profiling disabled)
+     */
+    public static final String MR_PROFILE_INTERVAL = "io.apigee.lembos.mapreduce.profile.interval";
+
+    /** This is whether the runner merges the task profiles once the job completes. (Defaults to false) */
+    public static final String MR_PROFILE_MERGE = "io.apigee.lembos.mapreduce.profile.merge";
+
+    /**
+     * This is the comma-separated list of the salted keys of the skew mode, the escaped string form of their map output
+     * keys, configured by the job setup function and the sampling pass.
+     */
+    public static final String MR_SKEW_KEYS = "io.apigee.lembos.mapreduce.skew.keys";
+
+    /** This is whether the job merges the partial results of the salted keys of a job.  (Set by the runner) */
+    public static final String MR_SKEW_MERGE = "io.apigee.lembos.mapreduce.skew.merge";
+
+    /** This is the partitioner of the keys that are not salted in skew mode.  (Set by the runner) */
+    public static final String MR_SKEW_PARTITIONER = "io.apigee.lembos.mapreduce.skew.partitioner";
+
+    /**
+     * This is the number of reducers the records of a salted key are spread across, skew mode being enabled when it is
+     * at least 2.  (Unset by default, the skew mode being disabled)
+     */
+    public static final String MR_SKEW_SALTS = "io.apigee.lembos.mapreduce.skew.salts";
+
+    /**
+     * This is the number of input records the skew mode sampling pass runs through the map function before the job is
+     * submitted.  (Defaults to 0, no sampling pass)
+     */
+    public static final String MR_SKEW_SAMPLE_SIZE = "io.apigee.lembos.mapreduce.skew.sampleSize";
+
+    /** This is the share of the records above which the skew mode considers a key heavy.  (Defaults to 0.05) */
+    public static final String MR_SKEW_THRESHOLD = "io.apigee.lembos.mapreduce.skew.threshold";
+
+    /** This is the number of slowest records each component keeps track of. (Defaults to 10, 0 disables it) */
+    public static final String MR_SLOW_RECORDS_COUNT = "io.apigee.lembos.mapreduce.slowRecords.count";
+
+    /** This is the maximum length of the slow record values kept. (Defaults to 256) */
+    public static final String MR_SLOW_RECORDS_VALUE_LENGTH = "io.apigee.lembos.mapreduce.slowRecords.valueLength";
+
+    /** This is the name of the exported stage a job runs, set by the runner for modules exporting stages. */
+    public static final String MR_STAGE = "io.apigee.lembos.mapreduce.stage";
+
+    /**
+     * This is whether or not a stage writes its output as {@link io.apigee.lembos.io.JSObjectWritable}s, set by the
+     * runner for the stages of binary intermediate outputs.  (Defaults to false)
+     */
+    public static final String MR_STAGE_BINARY_OUTPUT = "io.apigee.lembos.mapreduce.stage.binaryOutput";
+
+    /**
+     * This is the directory the stages write their intermediate output to, unless their job setup function sets an
+     * output path.  (Defaults to <code>lembos-stages/&lt;module name&gt;-&lt;timestamp&gt;</code>, relative to the home
+     * directory of the default file system)
+     */
+    public static final String MR_STAGES_INTERMEDIATE_DIR = "io.apigee.lembos.mapreduce.stages.intermediateDir";
+
+    /**
+     * This is the format of the intermediate stage outputs: <code>text</code> or <code>binary</code>, for block
+     * compressed SequenceFiles of {@link io.apigee.lembos.io.JSObjectWritable} keys and values.  (Defaults to text)
+     */
+    public static final String MR_STAGES_INTERMEDIATE_FORMAT = "io.apigee.lembos.mapreduce.stages.intermediateFormat";
+
+    /**
+     * This is the time, in milliseconds, a JavaScript function has to call its callback. (Defaults to 0, no timeout)
+     * It can be set per component by suffixing it with the component name, like <code>.map</code>.
+     */
+    public static final String MR_TIMEOUT = "io.apigee.lembos.mapreduce.timeout";
+
     /**
      * Private constructor.
      */
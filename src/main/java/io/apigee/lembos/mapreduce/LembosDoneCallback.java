@@ -18,12 +18,16 @@ package io.apigee.lembos.mapreduce;
 
 import io.apigee.lembos.utils.JavaScriptUtils;
 import io.apigee.trireme.core.Utils;
+import org.apache.hadoop.util.Progressable;
 import org.mozilla.javascript.BaseFunction;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
+import javax.annotation.Nullable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Implementation of {@link BaseFunction} to be used as the "done" callback.
@@ -31,8 +35,11 @@ import java.util.concurrent.CountDownLatch;
 public class LembosDoneCallback extends BaseFunction {
 
     private static final long serialVersionUID = -6464376989605227444L;
+    private static final long PROGRESS_INTERVAL_MILLIS = 10000;
     private transient CountDownLatch doneLatch;
     private Object response;
+    private long calledNanos;
+    private transient Thread calledThread;
 
     /**
      * {@inheritDoc}
@@ -54,6 +61,9 @@ public class LembosDoneCallback extends BaseFunction {
             }
         }
 
+        calledNanos = System.nanoTime();
+        calledThread = Thread.currentThread();
+
         doneLatch.countDown();
 
         return super.call(ctx, scope, thisObj, args);
@@ -74,10 +84,57 @@ public class LembosDoneCallback extends BaseFunction {
      * @throws InterruptedException if something goes wrong
      */
     public Object await() throws InterruptedException {
-        // TODO: We should enable some sort of timeout mechanism
         doneLatch.await();
 
         return response;
     }
 
+    /**
+     * Must be called after the function the {@link LembosDoneCallback} is being passed to.  Progress is reported
+     * while waiting so that Hadoop does not kill the task before the timeout is reached.
+     *
+     * @param timeoutMillis the time to wait for the callback in milliseconds
+     * @param progressable the progressable to report progress to (can be null)
+     *
+     * @return the object passed to the callback
+     *
+     * @throws InterruptedException if something goes wrong
+     * @throws TimeoutException if the callback was not called in time
+     */
+    public Object await(final long timeoutMillis, @Nullable final Progressable progressable)
+            throws InterruptedException, TimeoutException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        while (!doneLatch.await(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL_MILLIS)),
+                                TimeUnit.NANOSECONDS)) {
+            remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0) {
+                throw new TimeoutException("Callback was not called within " + timeoutMillis + "ms");
+            }
+
+            if (progressable != null) {
+                progressable.progress();
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * @return the value of {@link System#nanoTime()} when the callback was called (only valid after {@link #await()})
+     */
+    public long getCalledNanos() {
+        return calledNanos;
+    }
+
+    /**
+     * @return the thread the callback was called on, which is the thread running the JavaScript code (only valid after
+     * {@link #await()})
+     */
+    public Thread getCalledThread() {
+        return calledThread;
+    }
+
 }
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Emits JDK Flight Recorder events, in the <code>Lembos</code> category, for the Lembos lifecycle and for the hot path
+ * operations that take longer than {@link LembosConstants#MR_EVENTS_THRESHOLD}, so Lembos activity can be correlated
+ * with GC, I/O and lock contention in a single recording.  Since Lembos runs on JVMs without Flight Recorder, the
+ * events are defined at runtime using <code>jdk.jfr.EventFactory</code> and every method is a no-op when it is not
+ * available.
+ *
+ * Events are used like this:
+ *
+ * <pre>
+ * final Object event = LembosEvents.begin(LembosEvents.Type.MODULE_LOAD);
+ *
+ * // Do the work
+ *
+ * LembosEvents.commit(event, moduleName);
+ * </pre>
+ *
+ * The enabled state of the event types is cached and refreshed every second, so beginning an event on the hot path
+ * costs no reflective call when its type is disabled and recordings started while a task runs are picked up.
+ */
+public final class LembosEvents {
+
+    /** The default threshold, in milliseconds, above which hot path operations are recorded. */
+    public static final long DEFAULT_THRESHOLD_MILLIS = 10;
+
+    private static volatile long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+
+    /**
+     * Private constructor.
+     */
+    private LembosEvents() { }
+
+    /**
+     * Sets the threshold above which hot path operations are recorded from {@link LembosConstants#MR_EVENTS_THRESHOLD}.
+     *
+     * @param conf the Hadoop configuration
+     */
+    public static void configure(final Configuration conf) {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(conf.getLong(LembosConstants.MR_EVENTS_THRESHOLD,
+                                                                    DEFAULT_THRESHOLD_MILLIS));
+    }
+
+    /**
+     * @return true if Flight Recorder events can be emitted
+     */
+    public static boolean isAvailable() {
+        return Jfr.available;
+    }
+
+    /**
+     * Begins an event, if the event type is enabled.
+     *
+     * @param type the event type
+     *
+     * @return the event or null if Flight Recorder is not available or the event type is disabled
+     */
+    public static Object begin(final Type type) {
+        return Jfr.available ? Jfr.begin(type) : null;
+    }
+
+    /**
+     * Ends and commits an event.
+     *
+     * @param event the event returned by {@link #begin(Type)} (can be null)
+     * @param values the values of the event fields, in the order of {@link Type#getFields()}
+     */
+    public static void commit(final Object event, final Object... values) {
+        if (event != null) {
+            Jfr.commit(event, values);
+        }
+    }
+
+    /**
+     * Ends and commits an event if the operation took longer than the threshold.
+     *
+     * @param event the event returned by {@link #begin(Type)} (can be null)
+     * @param elapsedNanos the time the operation took in nanoseconds
+     * @param values the values of the event fields, in the order of {@link Type#getFields()}
+     */
+    public static void commitIfSlow(final Object event, final long elapsedNanos, final Object... values) {
+        if (event != null && elapsedNanos >= thresholdNanos) {
+            Jfr.commit(event, values);
+        }
+    }
+
+    /**
+     * Records the converter selected for a class of values, only the first time it is selected for that class.
+     *
+     * @param conversion the conversion direction
+     * @param valueClass the class of the values converted
+     * @param converter the converter selected
+     */
+    public static void converterSelected(final Conversion conversion, final Class<?> valueClass,
+                                         final Object converter) {
+        if (Jfr.available && conversion.selected.get(valueClass).compareAndSet(false, true)) {
+            commit(begin(Type.CONVERTER_SELECTION), conversion.label, valueClass.getName(),
+                   converter.getClass().getName());
+        }
+    }
+
+    /**
+     * The conversion directions, each keeping track of the classes it already reported a converter selection for.
+     */
+    public enum Conversion {
+
+        /** The conversion of {@link org.apache.hadoop.io.Writable}s to JavaScript. */
+        WRITABLE_TO_JS("Writable to JavaScript"),
+        /** The conversion of JavaScript objects to {@link org.apache.hadoop.io.Writable}s. */
+        JS_TO_WRITABLE("JavaScript to Writable");
+
+        private final String label;
+        private final ClassValue<AtomicBoolean> selected = new ClassValue<AtomicBoolean>() {
+            @Override
+            protected AtomicBoolean computeValue(final Class<?> type) {
+                return new AtomicBoolean();
+            }
+        };
+
+        /**
+         * Constructor.
+         *
+         * @param label the label of the conversion direction in the events
+         */
+        Conversion(final String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return the label of the conversion direction in the events
+         */
+        public String getLabel() {
+            return label;
+        }
+
+    }
+
+    /**
+     * The Lembos event types.
+     */
+    public enum Type {
+
+        /** Creating a Node.js environment for a component. */
+        RUNTIME_CREATION("RuntimeCreation", "Runtime Creation", "Creating the Node.js environment of a component",
+                         "component", "module"),
+        /** Loading the Node.js module. */
+        MODULE_LOAD("ModuleLoad", "Module Load", "Loading the Node.js module", "module"),
+        /** Calling the setup function of a component. */
+        SETUP("Setup", "Setup", "Calling the setup function of a component", "component"),
+        /** Calling the cleanup function of a component. */
+        CLEANUP("Cleanup", "Cleanup", "Calling the cleanup function of a component", "component"),
+        /** A JavaScript function call that took longer than the threshold. */
+        SLOW_CALL("SlowCall", "Slow Function Call", "A JavaScript function call that took longer than the threshold",
+                  "component"),
+        /** A <code>context.write</code> that took longer than the threshold, typically because of a map-side spill. */
+        SLOW_WRITE("SlowWrite", "Slow Context Write",
+                   "A context.write that took longer than the threshold, typically blocked by a spill", "component"),
+        /** The first selection of a converter for a class of values. */
+        CONVERTER_SELECTION("ConverterSelection", "Converter Selection",
+                            "The converter selected for a class of values", "direction", "valueClass", "converter");
+
+        private final String name;
+        private final String label;
+        private final String description;
+        private final String[] fields;
+
+        /**
+         * Constructor.
+         *
+         * @param name the event name, prefixed with <code>io.apigee.lembos.</code>
+         * @param label the event label
+         * @param description the event description
+         * @param fields the names of the event fields, which are all strings
+         */
+        Type(final String name, final String label, final String description, final String... fields) {
+            this.name = "io.apigee.lembos." + name;
+            this.label = label;
+            this.description = description;
+            this.fields = fields;
+        }
+
+        /**
+         * @return the event name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the names of the event fields
+         */
+        public String[] getFields() {
+            return fields.clone();
+        }
+
+    }
+
+    /**
+     * Reflective access to the Flight Recorder API, so that Lembos builds and runs without it.
+     */
+    private static final class Jfr {
+
+        /** How often the enabled state of the event types is refreshed. */
+        private static final long ENABLED_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private static boolean available;
+        private static volatile boolean[] enabled;
+        private static volatile long enabledRefreshNanos;
+        private static Method newEvent;
+        private static Method isEnabled;
+        private static Method begin;
+        private static Method end;
+        private static Method set;
+        private static Method commit;
+        private static Object[] factories;
+        private static Object[] eventTypes;
+
+        static {
+            try {
+                final Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+                final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                final Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+                final Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+                final Constructor<?> newAnnotationElement = annotationElementClass.getConstructor(Class.class,
+                                                                                                  Object.class);
+                final Constructor<?> newValueDescriptor = valueDescriptorClass.getConstructor(Class.class,
+                                                                                              String.class);
+                final Method create = eventFactoryClass.getMethod("create", List.class, List.class);
+                final Method getEventType = eventFactoryClass.getMethod("getEventType");
+
+                factories = new Object[Type.values().length];
+                eventTypes = new Object[Type.values().length];
+
+                for (final Type type : Type.values()) {
+                    final List<Object> annotations = new ArrayList<>();
+                    final List<Object> fields = new ArrayList<>();
+
+                    annotations.add(newAnnotationElement.newInstance(annotation("jdk.jfr.Name"), type.name));
+                    annotations.add(newAnnotationElement.newInstance(annotation("jdk.jfr.Label"), type.label));
+                    annotations.add(newAnnotationElement.newInstance(annotation("jdk.jfr.Description"),
+                                                                     type.description));
+                    annotations.add(newAnnotationElement.newInstance(annotation("jdk.jfr.Category"),
+                                                                     (Object)new String[] {"Lembos"}));
+
+                    for (final String field : type.fields) {
+                        fields.add(newValueDescriptor.newInstance(String.class, field));
+                    }
+
+                    factories[type.ordinal()] = create.invoke(null, annotations, fields);
+                    eventTypes[type.ordinal()] = getEventType.invoke(factories[type.ordinal()]);
+                }
+
+                newEvent = eventFactoryClass.getMethod("newEvent");
+                isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+                begin = eventClass.getMethod("begin");
+                end = eventClass.getMethod("end");
+                set = eventClass.getMethod("set", int.class, Object.class);
+                commit = eventClass.getMethod("commit");
+                refreshEnabled(System.nanoTime());
+                available = true;
+            } catch (ClassNotFoundException e) {
+                // Flight Recorder is not available, nothing to report
+                available = false;
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+                System.err.println("Unable to define the Lembos Flight Recorder events: " + e);
+                available = false;
+            }
+        }
+
+        /**
+         * Private constructor.
+         */
+        private Jfr() { }
+
+        /**
+         * @param className the annotation class name
+         *
+         * @return the annotation class
+         *
+         * @throws ClassNotFoundException if the annotation does not exist
+         */
+        private static Class<? extends Annotation> annotation(final String className) throws ClassNotFoundException {
+            return Class.forName(className).asSubclass(Annotation.class);
+        }
+
+        /**
+         * Refreshes the cached enabled state of the event types.
+         *
+         * @param nowNanos the current {@link System#nanoTime()}
+         */
+        private static void refreshEnabled(final long nowNanos) {
+            final boolean[] current = new boolean[eventTypes.length];
+
+            for (int i = 0; i < eventTypes.length; i++) {
+                try {
+                    current[i] = (Boolean)isEnabled.invoke(eventTypes[i]);
+                } catch (ReflectiveOperationException e) {
+                    current[i] = false;
+                }
+            }
+
+            enabled = current;
+            enabledRefreshNanos = nowNanos + ENABLED_REFRESH_NANOS;
+        }
+
+        /**
+         * @param type the event type
+         *
+         * @return the begun event or null if the event type is disabled
+         */
+        private static Object begin(final Type type) {
+            final long nowNanos = System.nanoTime();
+
+            if (nowNanos - enabledRefreshNanos >= 0) {
+                refreshEnabled(nowNanos);
+            }
+
+            if (!enabled[type.ordinal()]) {
+                return null;
+            }
+
+            try {
+                final Object event = newEvent.invoke(factories[type.ordinal()]);
+
+                begin.invoke(event);
+
+                return event;
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @param event the event
+         * @param values the values of the event fields
+         */
+        private static void commit(final Object event, final Object[] values) {
+            try {
+                end.invoke(event);
+
+                for (int i = 0; i < values.length; i++) {
+                    set.invoke(event, i, values[i] == null ? null : values[i].toString());
+                }
+
+                commit.invoke(event);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Unable to commit the Lembos Flight Recorder event: " + e);
+            }
+        }
+
+    }
+
+}
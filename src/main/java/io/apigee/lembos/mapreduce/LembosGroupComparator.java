@@ -40,6 +40,7 @@ import java.util.concurrent.ExecutionException;
  */
 public class LembosGroupComparator extends WritableComparator implements Configurable, Closeable {
 
+    private final LembosTimers timers = LembosTimers.getShared("Group");
     private Configuration conf;
     private Function groupFunction;
     private Scriptable jsConf;
@@ -64,7 +65,7 @@ public class LembosGroupComparator extends WritableComparator implements Configu
 
         if (!JavaScriptUtils.isDefined(groupFunction)) {
             try {
-                env = LembosMapReduceEnvironment.fromConf(conf);
+                env = LembosMapReduceEnvironment.fromConf(conf, timers);
                 jsConf = ConfigurationWrap.getInstance(env.getRuntime(), conf);
                 groupFunction = env.getGroupFunction();
 
@@ -73,21 +74,35 @@ public class LembosGroupComparator extends WritableComparator implements Configu
                 }
 
                 if (JavaScriptUtils.isDefined(env.getGroupSetupFunction())) {
+                    final Object setupEvent = LembosEvents.begin(LembosEvents.Type.SETUP);
+
                     env.callFunctionSync(env.getGroupSetupFunction(), new Object[] {
                             jsConf
                     });
+
+                    LembosEvents.commit(setupEvent, timers.getComponent());
                 }
             } catch (ExecutionException | IOException | InterruptedException | NodeException e) {
                 throw new RuntimeException(e);
             }
         }
 
-        final WritableComparable<?> jsGroup = ConversionUtils.jsToWritableComparable(
-                env.callFunctionSync(groupFunction,
-                                     new Object[] {
-                                             ConversionUtils.writableComparableToJS(key1, env.getModule()),
-                                             ConversionUtils.writableComparableToJS(key2, env.getModule())
-                                     }), env.getModule());
+        final long argsConversionStart = System.nanoTime();
+        final long argsConversionBytes = AllocationMeter.getAllocatedBytes();
+        final Object[] args = new Object[] {
+                ConversionUtils.writableComparableToJS(key1, env.getModule()),
+                ConversionUtils.writableComparableToJS(key2, env.getModule())
+        };
+        final long argsConversionNanos = System.nanoTime() - argsConversionStart;
+        final long argsAllocatedBytes = AllocationMeter.getAllocatedBytes() - argsConversionBytes;
+        final Object result = env.callFunctionSync(groupFunction, args);
+        final long resultConversionStart = System.nanoTime();
+        final long resultConversionBytes = AllocationMeter.getAllocatedBytes();
+        final WritableComparable<?> jsGroup = ConversionUtils.jsToWritableComparable(result, env.getModule());
+
+        timers.add(LembosTimers.Phase.CONVERSION, argsConversionNanos + System.nanoTime() - resultConversionStart);
+        timers.addAllocatedBytes(LembosTimers.Phase.CONVERSION,
+                                 argsAllocatedBytes + AllocationMeter.getAllocatedBytes() - resultConversionBytes);
 
         if (!JavaScriptUtils.isDefined(jsGroup) || jsGroup instanceof NullWritable) {
             throw new RuntimeException("MapReduce function 'group' cannot return null/undefined");
@@ -107,13 +122,21 @@ public class LembosGroupComparator extends WritableComparator implements Configu
     @Override
     public void close() throws IOException {
         if (env != null) {
+            final long cleanupStart = System.nanoTime();
+
             if (JavaScriptUtils.isDefined(env.getGroupCleanupFunction())) {
+                final Object cleanupEvent = LembosEvents.begin(LembosEvents.Type.CLEANUP);
+
                 env.callFunctionSync(env.getGroupCleanupFunction(), new Object[] {
                         jsConf
                 });
+
+                LembosEvents.commit(cleanupEvent, timers.getComponent());
             }
 
             env.cleanup();
+
+            timers.record(LembosTimers.Phase.CLEANUP, cleanupStart);
         }
     }
 
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.mapreduce.Job;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Directed acyclic graph of the {@link Job}s of a multi-stage Lembos module.  Each stage is submitted as soon as all of
+ * the stages it depends on have succeeded so independent stages run concurrently.  The stages depending on a stage that
+ * failed are skipped.
+ */
+public class LembosJobGraph {
+
+    /**
+     * The state of a stage.
+     */
+    public enum State {
+        /** The stage has not been submitted yet. */
+        PENDING,
+        /** The stage job has been submitted and is running. */
+        RUNNING,
+        /** The stage job succeeded. */
+        SUCCEEDED,
+        /** The stage job failed. */
+        FAILED,
+        /** The stage was not submitted because a stage it depends on did not succeed. */
+        SKIPPED
+    }
+
+    private final Map<String, List<String>> dependencies = new LinkedHashMap<>();
+    private final Map<String, Job> jobs = new HashMap<>();
+    private final Map<String, State> states = new HashMap<>();
+
+    /**
+     * Adds a stage to the graph.
+     *
+     * @param name the stage name
+     * @param dependsOn the names of the stages this stage depends on
+     */
+    public void addStage(final String name, final List<String> dependsOn) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Stage name cannot be null or empty");
+        } else if (dependencies.containsKey(name)) {
+            throw new IllegalArgumentException("Stage (" + name + ") is defined more than once");
+        }
+
+        dependencies.put(name, Collections.unmodifiableList(new ArrayList<>(dependsOn)));
+        states.put(name, State.PENDING);
+    }
+
+    /**
+     * Returns the names of the stages the stage depends on.
+     *
+     * @param name the stage name
+     *
+     * @return the stage dependencies
+     */
+    public List<String> getDependencies(final String name) {
+        final List<String> stageDependencies = dependencies.get(name);
+
+        if (stageDependencies == null) {
+            throw new IllegalArgumentException("Stage (" + name + ") does not exist");
+        }
+
+        return stageDependencies;
+    }
+
+    /**
+     * Returns the job of the stage.
+     *
+     * @param name the stage name
+     *
+     * @return the job or null if it has not been set
+     */
+    public Job getJob(final String name) {
+        return jobs.get(name);
+    }
+
+    /**
+     * Sets the job of the stage.
+     *
+     * @param name the stage name
+     * @param job the job running the stage
+     */
+    public void setJob(final String name, final Job job) {
+        getDependencies(name);
+
+        jobs.put(name, job);
+    }
+
+    /**
+     * Returns the stage names ordered so that every stage comes after the stages it depends on.  Stages that do not
+     * depend on each other keep the order they were added in.
+     *
+     * @return the ordered stage names
+     *
+     * @throws IllegalArgumentException if a stage depends on an unknown stage or if the stages depend on each other
+     */
+    public List<String> getStageNames() {
+        final List<String> ordered = new ArrayList<>();
+        final Set<String> remaining = new LinkedHashSet<>(dependencies.keySet());
+
+        for (final Map.Entry<String, List<String>> stage : dependencies.entrySet()) {
+            for (final String dependency : stage.getValue()) {
+                if (!dependencies.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Stage (" + stage.getKey() + ") depends on an unknown stage ("
+                                                               + dependency + ")");
+                }
+            }
+        }
+
+        while (!remaining.isEmpty()) {
+            boolean progressed = false;
+
+            for (final Iterator<String> iterator = remaining.iterator(); iterator.hasNext();) {
+                final String name = iterator.next();
+
+                if (ordered.containsAll(dependencies.get(name))) {
+                    ordered.add(name);
+                    iterator.remove();
+                    progressed = true;
+                }
+            }
+
+            if (!progressed) {
+                throw new IllegalArgumentException("Stages have a circular dependency: " + remaining);
+            }
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Returns the state of the stage.
+     *
+     * @param name the stage name
+     *
+     * @return the stage state
+     */
+    public State getState(final String name) {
+        getDependencies(name);
+
+        return states.get(name);
+    }
+
+    /**
+     * Submits the stage jobs, as their dependencies succeed, and waits for all of them to complete.
+     *
+     * @param pollMillis the number of milliseconds to wait between checks of the running jobs
+     *
+     * @return true if all of the stages succeeded
+     *
+     * @throws ClassNotFoundException if a job class cannot be found
+     * @throws IOException if something goes wrong submitting or checking on a job
+     * @throws InterruptedException if the wait gets interrupted
+     */
+    public boolean run(final long pollMillis) throws ClassNotFoundException, IOException, InterruptedException {
+        final List<String> pending = getStageNames();
+        final Set<String> running = new LinkedHashSet<>();
+        boolean successful = true;
+
+        for (final String name : pending) {
+            if (jobs.get(name) == null) {
+                throw new IllegalStateException("Stage (" + name + ") has no job");
+            }
+        }
+
+        while (!pending.isEmpty() || !running.isEmpty()) {
+            for (final Iterator<String> iterator = running.iterator(); iterator.hasNext();) {
+                final String name = iterator.next();
+                final Job job = jobs.get(name);
+
+                if (job.isComplete()) {
+                    final State state = job.isSuccessful() ? State.SUCCEEDED : State.FAILED;
+
+                    System.out.println("Stage " + name + " (" + job.getJobID() + ") " + state.name().toLowerCase());
+
+                    states.put(name, state);
+                    iterator.remove();
+                    successful &= state == State.SUCCEEDED;
+                }
+            }
+
+            for (final Iterator<String> iterator = pending.iterator(); iterator.hasNext();) {
+                final String name = iterator.next();
+                boolean ready = true;
+                String blocker = null;
+
+                for (final String dependency : dependencies.get(name)) {
+                    final State dependencyState = states.get(dependency);
+
+                    if (dependencyState == State.FAILED || dependencyState == State.SKIPPED) {
+                        blocker = dependency;
+                        break;
+                    } else if (dependencyState != State.SUCCEEDED) {
+                        ready = false;
+                    }
+                }
+
+                if (blocker != null) {
+                    System.err.println("Skipping stage " + name + " because stage " + blocker + " did not succeed");
+
+                    states.put(name, State.SKIPPED);
+                    iterator.remove();
+                    successful = false;
+                } else if (ready) {
+                    final Job job = jobs.get(name);
+
+                    job.submit();
+
+                    System.out.println("Submitted stage " + name + " (" + job.getJobID() + ")");
+
+                    states.put(name, State.RUNNING);
+                    iterator.remove();
+                    running.add(name);
+                }
+            }
+
+            if (!running.isEmpty()) {
+                Thread.sleep(pollMillis);
+            }
+        }
+
+        return successful;
+    }
+
+}
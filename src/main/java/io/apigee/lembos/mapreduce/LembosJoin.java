@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apigee.lembos.mapreduce;
+
+import io.apigee.lembos.io.TaggedKeyWritable;
+import io.apigee.lembos.io.TaggedValueWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.apache.hadoop.util.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+/**
+ * Reduce-side joins of the inputs added with {@link #addInput(Job, String, Path)}.
+ *
+ * Each input is identified by a tag, the tag index being written as a single byte with the map output of its records
+ * ({@link TaggedKeyWritable} and {@link TaggedValueWritable}), and the map output is sorted by join key and then by
+ * tag so the exported <code>join</code> function receives one value iterator per input, in the order the inputs were
+ * added.  Only the values of the inputs before the last one are buffered, the values of the last input are streamed
+ * from the shuffle so the largest input should be added last.
+ */
+public final class LembosJoin {
+
+    private static final Pattern TAG_PATTERN = Pattern.compile("[A-Za-z0-9]+");
+
+    /**
+     * Private constructor for utility class.
+     */
+    private LembosJoin() { }
+
+    /**
+     * Adds an input path to the job, tagging its records with the tag.  Adding several paths with the same tag makes
+     * them one join input.
+     *
+     * @param job the job
+     * @param tag the input tag (Letters and digits only)
+     * @param path the input path (File or directory, globs are not supported)
+     *
+     * @throws IOException if the path cannot be qualified
+     */
+    public static void addInput(final Job job, final String tag, final Path path) throws IOException {
+        final Configuration conf = job.getConfiguration();
+        final List<String> tags = getInputs(conf);
+
+        if (tag == null || !TAG_PATTERN.matcher(tag).matches()) {
+            throw new IllegalArgumentException("Join input tags can only contain letters and digits: " + tag);
+        } else if (!tags.contains(tag) && tags.size() == Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Joins cannot have more than " + Byte.MAX_VALUE + " inputs");
+        }
+
+        final Path qualified = path.getFileSystem(conf).makeQualified(path);
+        final String pathsKey = LembosConstants.MR_JOIN_INPUTS + "." + tag;
+        final String escaped = StringUtils.escapeString(qualified.toString());
+
+        if (!tags.contains(tag)) {
+            conf.set(LembosConstants.MR_JOIN_INPUTS, tags.isEmpty() ?
+                    tag :
+                    conf.get(LembosConstants.MR_JOIN_INPUTS) + "," + tag);
+        }
+
+        conf.set(pathsKey, conf.get(pathsKey) == null ? escaped : conf.get(pathsKey) + "," + escaped);
+
+        FileInputFormat.addInputPath(job, qualified);
+    }
+
+    /**
+     * Returns the join input tags of the job, in tag order.
+     *
+     * @param conf the job configuration
+     *
+     * @return the input tags
+     */
+    public static List<String> getInputs(final Configuration conf) {
+        return new ArrayList<>(conf.getStringCollection(LembosConstants.MR_JOIN_INPUTS));
+    }
+
+    /**
+     * Returns the input paths of a join input.
+     *
+     * @param conf the job configuration
+     * @param tag the input tag
+     *
+     * @return the qualified input paths
+     */
+    public static List<Path> getInputPaths(final Configuration conf, final String tag) {
+        final List<Path> paths = new ArrayList<>();
+        final String escaped = conf.get(LembosConstants.MR_JOIN_INPUTS + "." + tag);
+
+        if (escaped != null) {
+            for (final String path : StringUtils.split(escaped)) {
+                paths.add(new Path(StringUtils.unEscapeString(path)));
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * Configures the map output, partitioner and comparators of a reduce-side join.
+     *
+     * @param job the job
+     */
+    public static void configure(final Job job) {
+        checkInputs(job.getConfiguration());
+
+        if (job.getNumReduceTasks() == 0) {
+            throw new IllegalArgumentException("MapReduce join requires reducers");
+        }
+
+        job.setMapOutputKeyClass(TaggedKeyWritable.class);
+        job.setMapOutputValueClass(TaggedValueWritable.class);
+        job.setPartitionerClass(HashPartitioner.class);
+        job.setSortComparatorClass(TaggedKeyWritable.Comparator.class);
+        job.setGroupingComparatorClass(TaggedKeyWritable.GroupComparator.class);
+    }
+
+    /**
+     * Returns the tag of the input the map task reads from.
+     *
+     * @param context the map task context
+     *
+     * @return the tag index
+     */
+    public static byte getTag(final MapContext<?, ?, ?, ?> context) {
+        final InputSplit split = context.getInputSplit();
+
+        if (!(split instanceof FileSplit)) {
+            throw new RuntimeException("MapReduce join inputs must be read with a file input format");
+        }
+
+        final int tag = getTag(context.getConfiguration(), ((FileSplit)split).getPath());
+
+        if (tag == -1) {
+            throw new RuntimeException("MapReduce join input not found for " + ((FileSplit)split).getPath());
+        }
+
+        return (byte)tag;
+    }
+
+    /**
+     * Returns the tag of the join input a file belongs to.  (Only the paths are compared, not the file systems.)
+     *
+     * @param conf the job configuration
+     * @param file the file
+     *
+     * @return the tag index or -1 if the file does not belong to a join input
+     */
+    public static int getTag(final Configuration conf, final Path file) {
+        final String filePath = file.toUri().getPath();
+        final List<String> tags = getInputs(conf);
+
+        for (int i = 0; i < tags.size(); i++) {
+            for (final Path path : getInputPaths(conf, tags.get(i))) {
+                final String inputPath = path.toUri().getPath();
+
+                if (filePath.equals(inputPath) || filePath.startsWith(inputPath.endsWith("/") ?
+                        inputPath :
+                        inputPath + "/")) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Makes sure the job joins at least two inputs.
+     *
+     * @param conf the job configuration
+     */
+    static void checkInputs(final Configuration conf) {
+        if (getInputs(conf).size() < 2) {
+            throw new IllegalArgumentException("MapReduce join requires at least two inputs, added with "
+                                                       + "job.addJoinInput");
+        }
+    }
+
+    /**
+     * Splits the values of a reduce call into one value stream per input.  The values of all inputs but the last one
+     * are copied in memory, the values of the last input are read from the shuffle as they are iterated over.
+     *
+     * @param values the {@link TaggedValueWritable} values of the reduce call, sorted by tag
+     * @param inputCount the number of join inputs
+     * @param conf the job configuration
+     *
+     * @return the values of each input, in tag order
+     */
+    public static List<Iterable<Writable>> split(final Iterable<Writable> values, final int inputCount,
+                                                 final Configuration conf) {
+        final List<Iterable<Writable>> streams = new ArrayList<>(inputCount);
+        final Iterator<Writable> iterator = values.iterator();
+        final int lastTag = inputCount - 1;
+        Writable firstOfLast = null;
+
+        for (int i = 0; i < lastTag; i++) {
+            streams.add(new ArrayList<Writable>());
+        }
+
+        while (iterator.hasNext()) {
+            final TaggedValueWritable value = (TaggedValueWritable)iterator.next();
+
+            if (value.getTag() >= lastTag) {
+                firstOfLast = value.getValue();
+
+                break;
+            }
+
+            // Hadoop reuses the value instance so the buffered values have to be copied
+            ((List<Writable>)streams.get(value.getTag())).add(WritableUtils.clone(value.getValue(), conf));
+        }
+
+        streams.add(new StreamedValues(firstOfLast, iterator));
+
+        return streams;
+    }
+
+    /**
+     * The values of the last join input, read from the reduce values iterator as they are iterated over.
+     */
+    private static final class StreamedValues implements Iterable<Writable> {
+
+        private final Iterator<Writable> iterator;
+        private Writable first;
+
+        /**
+         * Constructor.
+         *
+         * @param first the first value, already read from the reduce values iterator (Can be null)
+         * @param iterator the reduce values iterator
+         */
+        private StreamedValues(final Writable first, final Iterator<Writable> iterator) {
+            this.first = first;
+            this.iterator = iterator;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Iterator<Writable> iterator() {
+            return new Iterator<Writable>() {
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public boolean hasNext() {
+                    return first != null || iterator.hasNext();
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public Writable next() {
+                    if (first != null) {
+                        final Writable next = first;
+
+                        first = null;
+
+                        return next;
+                    } else if (!iterator.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return ((TaggedValueWritable)iterator.next()).getValue();
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+            };
+        }
+
+    }
+
+}
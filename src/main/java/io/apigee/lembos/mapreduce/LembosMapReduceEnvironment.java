@@ -20,7 +20,9 @@ import io.apigee.lembos.utils.JavaScriptUtils;
 import io.apigee.trireme.core.NodeException;
 import org.apache.hadoop.conf.Configuration;
 import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
 import javax.annotation.Nullable;
@@ -43,19 +45,26 @@ public class LembosMapReduceEnvironment extends LembosNodeEnvironment {
     private Function groupSetupFunction;
     private Function jobSetupFunction;
     private Function jobCleanupFunction;
+    private Function joinFunction;
+    private Function joinMapFunction;
     private Function mapFunction;
+    private NativeArray mapChain;
     private Function mapCleanupFunction;
     private Function mapSetupFunction;
+    private Function mergeFunction;
     private Function partitionFunction;
     private Function partitionCleanupFunction;
     private Function partitionSetupFunction;
     private Function reduceFunction;
+    private NativeArray reduceChain;
     private Function reduceCleanupFunction;
     private Function reduceSetupFunction;
     private Function sortFunction;
     private Function sortCleanupFunction;
     private Function sortSetupFunction;
+    private NativeArray stages;
     private NativeObject configuration;
+    private String stageName;
 
     /**
      * Constructor.
@@ -118,6 +127,48 @@ public class LembosMapReduceEnvironment extends LembosNodeEnvironment {
 
         mrEnv.initialize();
 
+        // Jobs created for a stage of a multi-stage module use the functions of their stage
+        if (conf.get(LembosConstants.MR_STAGE) != null) {
+            mrEnv.useStage(conf.get(LembosConstants.MR_STAGE));
+        }
+
+        return mrEnv;
+    }
+
+    /**
+     * Retrieves an initialized MapReduce environment, recording its startup and module load time in the timers and
+     * using the timers to record its function calls.  The function calls time out after the component's
+     * {@link LembosConstants#MR_TIMEOUT}.
+     *
+     * @param conf the Hadoop configuration
+     * @param timers the timers of the component using the environment
+     *
+     * @return the initialized MapReduce environment
+     *
+     * @throws ExecutionException if something goes wrong executing the Node.js module
+     * @throws IOException if something goes wrong setting up the environment
+     * @throws InterruptedException if the execution of the Node.js module gets interrupted
+     * @throws NodeException if there is an issue with the Node.js module
+     */
+    public static LembosMapReduceEnvironment fromConf(final Configuration conf, final LembosTimers timers)
+            throws ExecutionException, InterruptedException, IOException, NodeException {
+        final long startNanos = System.nanoTime();
+        final Object event = LembosEvents.begin(LembosEvents.Type.RUNTIME_CREATION);
+
+        LembosEvents.configure(conf);
+        AllocationMeter.configure(conf);
+
+        final LembosMapReduceEnvironment mrEnv = fromConf(conf);
+
+        timers.record(LembosTimers.Phase.STARTUP, startNanos);
+        timers.add(LembosTimers.Phase.MODULE_LOAD, mrEnv.getModuleLoadNanos());
+
+        mrEnv.setTimers(timers);
+        mrEnv.setTimeoutMillis(SkipPolicy.getTimeout(conf, timers.getComponent()));
+        mrEnv.setMetrics(LembosMetrics.get(timers.getComponent()));
+
+        LembosEvents.commit(event, timers.getComponent(), mrEnv.getModuleName());
+
         return mrEnv;
     }
 
@@ -128,27 +179,94 @@ public class LembosMapReduceEnvironment extends LembosNodeEnvironment {
     public void initialize() throws ExecutionException, InterruptedException, IOException, NodeException {
         super.initialize();
 
-        this.combineFunction = this.getByNameAndType("combine", Function.class, false);
-        this.combineCleanupFunction = this.getByNameAndType("combineCleanup", Function.class, false);
-        this.combineSetupFunction = this.getByNameAndType("combineSetup", Function.class, false);
-        this.configuration = this.getByNameAndType("config", NativeObject.class, false);
-        this.groupFunction = this.getByNameAndType("group", Function.class, false);
-        this.groupCleanupFunction = this.getByNameAndType("groupCleanup", Function.class, false);
-        this.groupSetupFunction = this.getByNameAndType("groupSetup", Function.class, false);
-        this.jobSetupFunction = this.getByNameAndType("jobSetup", Function.class, false);
-        this.jobCleanupFunction = this.getByNameAndType("jobCleanup", Function.class, false);
-        this.mapFunction = this.getByNameAndType("map", Function.class, true);
-        this.mapCleanupFunction = this.getByNameAndType("mapCleanup", Function.class, false);
-        this.mapSetupFunction = this.getByNameAndType("mapSetup", Function.class, false);
-        this.partitionFunction = this.getByNameAndType("partition", Function.class, false);
-        this.partitionCleanupFunction = this.getByNameAndType("partitionCleanup", Function.class, false);
-        this.partitionSetupFunction = this.getByNameAndType("partitionSetup", Function.class, false);
-        this.reduceFunction = this.getByNameAndType("reduce", Function.class, false);
-        this.reduceCleanupFunction = this.getByNameAndType("reduceCleanup", Function.class, false);
-        this.reduceSetupFunction = this.getByNameAndType("reduceSetup", Function.class, false);
-        this.sortFunction = this.getByNameAndType("sort", Function.class, false);
-        this.sortCleanupFunction = this.getByNameAndType("sortCleanup", Function.class, false);
-        this.sortSetupFunction = this.getByNameAndType("sortSetup", Function.class, false);
+        this.stages = this.getByNameAndType(this.getModule(), "stages", NativeArray.class, false);
+
+        // Modules exporting stages do not need the top level functions
+        this.resolveFunctions(this.getModule(), this.stages == null);
+    }
+
+    /**
+     * Makes the environment use the functions of the stage, exported in the <code>stages</code> array of the module,
+     * with the name instead of the top level functions of the module.
+     *
+     * @param name the stage name
+     */
+    public void useStage(final String name) {
+        if (this.stages == null) {
+            throw new RuntimeException("MapReduce stage (" + name + ") not found, the module exports no stages");
+        }
+
+        for (final Object stage : this.stages) {
+            if (stage instanceof NativeObject
+                    && name.equals(String.valueOf(ScriptableObject.getProperty((NativeObject)stage, "name")))) {
+                this.resolveFunctions((NativeObject)stage, true);
+                this.stageName = name;
+
+                return;
+            }
+        }
+
+        throw new RuntimeException("MapReduce stage (" + name + ") not found");
+    }
+
+    /**
+     * Resolves the MapReduce functions, and the configuration, exported by the object.
+     *
+     * @param source the module or the stage to resolve the functions from
+     * @param mapRequired whether or not the map function is required
+     */
+    private void resolveFunctions(final Scriptable source, final boolean mapRequired) {
+        this.combineFunction = this.getByNameAndType(source, "combine", Function.class, false);
+        this.combineCleanupFunction = this.getByNameAndType(source, "combineCleanup", Function.class, false);
+        this.combineSetupFunction = this.getByNameAndType(source, "combineSetup", Function.class, false);
+        this.configuration = this.getByNameAndType(source, "config", NativeObject.class, false);
+        this.groupFunction = this.getByNameAndType(source, "group", Function.class, false);
+        this.groupCleanupFunction = this.getByNameAndType(source, "groupCleanup", Function.class, false);
+        this.groupSetupFunction = this.getByNameAndType(source, "groupSetup", Function.class, false);
+        this.jobSetupFunction = this.getByNameAndType(source, "jobSetup", Function.class, false);
+        this.jobCleanupFunction = this.getByNameAndType(source, "jobCleanup", Function.class, false);
+        this.joinFunction = this.getByNameAndType(source, "join", Function.class, false);
+        this.joinMapFunction = this.getByNameAndType(source, "joinMap", Function.class, false);
+
+        // The map function can also be a chain of map functions
+        if (ScriptableObject.getProperty(source, "map") instanceof NativeArray) {
+            this.mapChain = this.getByNameAndType(source, "map", NativeArray.class, mapRequired);
+            this.mapFunction = null;
+        } else {
+            this.mapChain = null;
+            this.mapFunction = this.getByNameAndType(source, "map", Function.class, mapRequired);
+        }
+
+        this.mapCleanupFunction = this.getByNameAndType(source, "mapCleanup", Function.class, false);
+        this.mapSetupFunction = this.getByNameAndType(source, "mapSetup", Function.class, false);
+        this.mergeFunction = this.getByNameAndType(source, "merge", Function.class, false);
+        this.partitionFunction = this.getByNameAndType(source, "partition", Function.class, false);
+        this.partitionCleanupFunction = this.getByNameAndType(source, "partitionCleanup", Function.class, false);
+        this.partitionSetupFunction = this.getByNameAndType(source, "partitionSetup", Function.class, false);
+        this.reduceFunction = this.getByNameAndType(source, "reduce", Function.class, false);
+        this.reduceChain = this.getByNameAndType(source, "reduceChain", NativeArray.class, false);
+        this.reduceCleanupFunction = this.getByNameAndType(source, "reduceCleanup", Function.class, false);
+        this.reduceSetupFunction = this.getByNameAndType(source, "reduceSetup", Function.class, false);
+        this.sortFunction = this.getByNameAndType(source, "sort", Function.class, false);
+        this.sortCleanupFunction = this.getByNameAndType(source, "sortCleanup", Function.class, false);
+        this.sortSetupFunction = this.getByNameAndType(source, "sortSetup", Function.class, false);
+
+        if (this.joinFunction != null || this.joinMapFunction != null) {
+            final String joinName = this.joinFunction != null ? "join" : "joinMap";
+
+            if (this.reduceFunction != null) {
+                throw new RuntimeException("MapReduce functions (" + joinName + ") and (reduce) cannot both be "
+                                                   + "exported");
+            } else if (this.combineFunction != null || this.groupFunction != null || this.partitionFunction != null
+                    || this.sortFunction != null) {
+                throw new RuntimeException("MapReduce function (" + joinName + ") cannot be used with the combine, "
+                                                   + "group, partition and sort functions");
+            }
+        } else if (this.reduceChain != null && this.reduceFunction == null) {
+            throw new RuntimeException("MapReduce array (reduceChain) requires a reduce function");
+        } else if (this.mergeFunction != null && this.reduceFunction == null) {
+            throw new RuntimeException("MapReduce function (merge) requires a reduce function");
+        }
     }
 
     /**
@@ -215,12 +333,33 @@ public class LembosMapReduceEnvironment extends LembosNodeEnvironment {
     }
 
     /**
-     * @return the map function
+     * @return the join function
+     */
+    public Function getJoinFunction() {
+        return joinFunction;
+    }
+
+    /**
+     * @return the map-side join function
+     */
+    public Function getJoinMapFunction() {
+        return joinMapFunction;
+    }
+
+    /**
+     * @return the map function (null when the module exports a chain of map functions)
      */
     public Function getMapFunction() {
         return mapFunction;
     }
 
+    /**
+     * @return the chain of map functions or null if the module exports a single map function
+     */
+    public NativeArray getMapChain() {
+        return mapChain;
+    }
+
     /**
      * @return the map cleanup function
      */
@@ -235,6 +374,13 @@ public class LembosMapReduceEnvironment extends LembosNodeEnvironment {
         return mapSetupFunction;
     }
 
+    /**
+     * @return the skew mode merge function
+     */
+    public Function getMergeFunction() {
+        return mergeFunction;
+    }
+
     /**
      * @return the partition function
      */
@@ -263,6 +409,13 @@ public class LembosMapReduceEnvironment extends LembosNodeEnvironment {
         return reduceFunction;
     }
 
+    /**
+     * @return the chain of map functions the reduce output goes through or null if there is none
+     */
+    public NativeArray getReduceChain() {
+        return reduceChain;
+    }
+
     /**
      * @return the reduce cleanup function
      */
@@ -298,9 +451,24 @@ public class LembosMapReduceEnvironment extends LembosNodeEnvironment {
         return sortSetupFunction;
     }
 
+    /**
+     * @return the name of the stage in use or null if the top level functions of the module are in use
+     */
+    public String getStageName() {
+        return stageName;
+    }
+
+    /**
+     * @return the stages exported by the module or null if the module exports no stages
+     */
+    public NativeArray getStages() {
+        return stages;
+    }
+
     /**
      * Returns the {@link Function} with the name or null if it's not found.
      *
+     * @param source the object to get the property from
      * @param name the property name
      * @param type the value type
      * @param required whether or not the value is required to exist
@@ -309,8 +477,9 @@ public class LembosMapReduceEnvironment extends LembosNodeEnvironment {
      *
      * @return the function
      */
-    private <T> T getByNameAndType(final String name, final Class<T> type, final boolean required) {
-        final Object propValue = ScriptableObject.getProperty(this.getModule(), name);
+    private <T> T getByNameAndType(final Scriptable source, final String name, final Class<T> type,
+                                   final boolean required) {
+        final Object propValue = ScriptableObject.getProperty(source, name);
         final boolean isDefined = JavaScriptUtils.isDefined(propValue);
         final String simpleTypeName = type.getSimpleName().startsWith("Native")
                 ? type.getSimpleName().replaceFirst("Native", "").toLowerCase()
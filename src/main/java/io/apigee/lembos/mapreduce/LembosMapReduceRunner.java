@@ -16,29 +16,43 @@
 
 package io.apigee.lembos.mapreduce;
 
+import io.apigee.lembos.io.JSObjectWritable;
 import io.apigee.lembos.node.types.JobWrap;
 import io.apigee.lembos.utils.ConversionUtils;
 import io.apigee.lembos.utils.JavaScriptUtils;
 import io.apigee.lembos.utils.RunnerUtils;
 import io.apigee.trireme.core.NodeException;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.GenericOptionsParser;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
 import org.mozilla.javascript.Scriptable;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -46,9 +60,13 @@ import java.util.concurrent.ExecutionException;
  */
 public class LembosMapReduceRunner implements Tool {
 
+    private static final long STAGE_POLL_MILLIS = 5000;
+
     private Configuration conf;
     private LembosMapReduceEnvironment mrEnv;
+    private Set<Path> intermediateOutputs;
     private Scriptable jobWrapper;
+    private Map<String, Scriptable> stageWrappers;
 
     /**
      * CLI entry point.
@@ -84,6 +102,189 @@ public class LembosMapReduceRunner implements Tool {
      */
     public Job initJob(final String[] args)
             throws ExecutionException, InterruptedException, IOException, NodeException {
+        initEnvironment(args);
+
+        if (JavaScriptUtils.isDefined(mrEnv.getStages())) {
+            throw new RuntimeException("Node.js module exports stages, use initJobGraph instead");
+        }
+
+        return createJob();
+    }
+
+    /**
+     * Returns the properly configured, ready to run Hadoop {@link Job}s of the stages exported by the Node.js module.
+     *
+     * Each stage job reads the output of the stages it depends on, unless its job setup function sets its own input,
+     * and writes to a directory of {@link LembosConstants#MR_STAGES_INTERMEDIATE_DIR}, unless its job setup function
+     * sets its own output.  All of the stage jobs share the packaged Node.js module and the Node.js environment of the
+     * runner.
+     *
+     * @param args the command line arguments as supported by {@link GenericOptionsParser}
+     *
+     * @return the job graph
+     *
+     * @throws IOException if there is a problem creating the jobs
+     * @throws ExecutionException if there is an issue running the Node.js module
+     * @throws InterruptedException if the execution of the Node.js module gets interrupted
+     * @throws NodeException if there is an issue with the Node.js module
+     */
+    public LembosJobGraph initJobGraph(final String[] args)
+            throws ExecutionException, InterruptedException, IOException, NodeException {
+        initEnvironment(args);
+
+        if (!JavaScriptUtils.isDefined(mrEnv.getStages())) {
+            throw new RuntimeException("Node.js module does not export stages, use initJob instead");
+        }
+
+        return createJobGraph();
+    }
+
+    /**
+     * Creates the job for the top level functions of the Node.js module.
+     *
+     * @return the configured job
+     *
+     * @throws IOException if there is a problem creating the job
+     * @throws ExecutionException if there is an issue running the Node.js module
+     * @throws InterruptedException if the execution of the Node.js module gets interrupted
+     */
+    private Job createJob() throws ExecutionException, InterruptedException, IOException {
+        final Job job = new Job(conf, "LembosMapReduceJob-" + mrEnv.getModuleName());
+
+        jobWrapper = setupJob(job);
+
+        return job;
+    }
+
+    /**
+     * Creates the job graph for the stages exported by the Node.js module.
+     *
+     * @return the job graph
+     *
+     * @throws IOException if there is a problem creating the jobs
+     * @throws ExecutionException if there is an issue running the Node.js module
+     * @throws InterruptedException if the execution of the Node.js module gets interrupted
+     */
+    private LembosJobGraph createJobGraph() throws ExecutionException, InterruptedException, IOException {
+        final LembosJobGraph graph = new LembosJobGraph();
+        final boolean binaryIntermediates =
+                "binary".equals(conf.get(LembosConstants.MR_STAGES_INTERMEDIATE_FORMAT, "text"));
+        final Path intermediateDir = new Path(conf.get(LembosConstants.MR_STAGES_INTERMEDIATE_DIR,
+                                                       "lembos-stages/" + mrEnv.getModuleName() + "-"
+                                                               + System.currentTimeMillis()));
+        final Map<String, Path> outputs = new HashMap<>();
+        String previousStage = null;
+
+        intermediateOutputs = new LinkedHashSet<>();
+        stageWrappers = new HashMap<>();
+
+        // Stages depend on the previous stage unless they list their dependencies
+        for (final Object stage : mrEnv.getStages()) {
+            if (!(stage instanceof NativeObject)) {
+                throw new RuntimeException("MapReduce stages must be objects");
+            }
+
+            final Object name = ((NativeObject)stage).get("name");
+            final Object dependsOn = ((NativeObject)stage).get("dependsOn");
+            final List<String> dependencies = new ArrayList<>();
+
+            if (!(name instanceof CharSequence)) {
+                throw new RuntimeException("MapReduce stage name must be a string");
+            }
+
+            if (JavaScriptUtils.isDefined(dependsOn)) {
+                if (!(dependsOn instanceof NativeArray)) {
+                    throw new RuntimeException("MapReduce stage (" + name + ") dependsOn must be an array");
+                }
+
+                for (final Object dependency : (NativeArray)dependsOn) {
+                    dependencies.add(dependency.toString());
+                }
+            } else if (previousStage != null) {
+                dependencies.add(previousStage);
+            }
+
+            graph.addStage(name.toString(), dependencies);
+
+            previousStage = name.toString();
+        }
+
+        for (final String name : graph.getStageNames()) {
+            mrEnv.useStage(name);
+
+            final Configuration stageConf = new Configuration(conf);
+
+            if (JavaScriptUtils.isDefined(mrEnv.getConfiguration())) {
+                applyConfiguration(mrEnv.getConfiguration(), stageConf);
+            }
+
+            stageConf.set(LembosConstants.MR_STAGE, name);
+
+            final Job job = new Job(stageConf, "LembosMapReduceJob-" + mrEnv.getModuleName() + "-" + name);
+
+            // Wire the outputs of the dependencies as inputs before the job setup function so it can override them
+            for (final String dependency : graph.getDependencies(name)) {
+                FileInputFormat.addInputPath(job, outputs.get(dependency));
+            }
+
+            FileOutputFormat.setOutputPath(job, new Path(intermediateDir, name));
+
+            if (binaryIntermediates) {
+                if (!graph.getDependencies(name).isEmpty()) {
+                    job.setInputFormatClass(SequenceFileInputFormat.class);
+                }
+
+                job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+                FileOutputFormat.setCompressOutput(job, true);
+                SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
+            }
+
+            stageWrappers.put(name, setupJob(job));
+
+            // Binary stages write whatever JavaScript values they are given as JSObjectWritables, unless the job setup
+            // function picked another output format.  (The map output keeps the classes it would have defaulted to)
+            if (binaryIntermediates && SequenceFileOutputFormat.class.equals(getOutputFormatClass(job))) {
+                job.setMapOutputKeyClass(job.getMapOutputKeyClass());
+                job.setMapOutputValueClass(job.getMapOutputValueClass());
+                job.setOutputKeyClass(JSObjectWritable.class);
+                job.setOutputValueClass(JSObjectWritable.class);
+                job.getConfiguration().setBoolean(LembosConstants.MR_STAGE_BINARY_OUTPUT, true);
+            }
+
+            // The stages that depend on a stage read its output before the partial results could be merged
+            if (LembosSkew.isSalted(job.getConfiguration())) {
+                throw new RuntimeException("MapReduce stage (" + name + ") cannot salt skewed keys, the skew mode of "
+                                                   + "stages only reports the skew");
+            }
+
+            outputs.put(name, FileOutputFormat.getOutputPath(job));
+            graph.setJob(name, job);
+
+            // Only the intermediate outputs read by other stages are deleted, never the output of the last stages
+            for (final String dependency : graph.getDependencies(name)) {
+                if (outputs.get(dependency).equals(new Path(intermediateDir, dependency))) {
+                    intermediateOutputs.add(outputs.get(dependency));
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * Creates the Node.js environment, packaging the Node.js module, and applies its configuration to the runner
+     * configuration.
+     *
+     * @param args the command line arguments as supported by {@link GenericOptionsParser}
+     *
+     * @throws IOException if there is a problem setting up the environment
+     * @throws ExecutionException if there is an issue running the Node.js module
+     * @throws InterruptedException if the execution of the Node.js module gets interrupted
+     * @throws NodeException if there is an issue with the Node.js module
+     */
+    private void initEnvironment(final String[] args)
+            throws ExecutionException, InterruptedException, IOException, NodeException {
         final GenericOptionsParser gop = new GenericOptionsParser(args);
 
         // If ran from ToolRunner, conf should already be set but if not, set it manually
@@ -107,42 +308,61 @@ public class LembosMapReduceRunner implements Tool {
         mrEnv = LembosMapReduceEnvironment.fromConf(conf);
 
         if (JavaScriptUtils.isDefined(mrEnv.getConfiguration())) {
-            for (final Map.Entry<Object, Object> propertyEntry : mrEnv.getConfiguration().entrySet()) {
-                final String key = propertyEntry.getKey().toString();
-                final Writable value = ConversionUtils.jsToWritable(propertyEntry.getValue(), mrEnv.getModule());
+            applyConfiguration(mrEnv.getConfiguration(), conf);
+        }
+    }
 
-                // Do not set these as we'll be setting them later from values we were passed from the CLI
-                if (key.equals(LembosConstants.MR_MODULE_NAME)) {
-                    continue;
-                }
+    /**
+     * Sets the configuration exported by the Node.js module, or one of its stages, on the Hadoop configuration.
+     *
+     * @param configuration the exported configuration
+     * @param target the Hadoop configuration to update
+     */
+    private void applyConfiguration(final NativeObject configuration, final Configuration target) {
+        for (final Map.Entry<Object, Object> propertyEntry : configuration.entrySet()) {
+            final String key = propertyEntry.getKey().toString();
+            final Writable value = ConversionUtils.jsToWritable(propertyEntry.getValue(), mrEnv.getModule());
+
+            // Do not set these as we'll be setting them later from values we were passed from the CLI
+            if (key.equals(LembosConstants.MR_MODULE_NAME)) {
+                continue;
+            }
 
-                if (value instanceof BooleanWritable) {
-                    conf.setBoolean(key, ((BooleanWritable)value).get());
-                } else if (value instanceof DoubleWritable || value instanceof FloatWritable) {
-                    conf.setFloat(key, Float.valueOf(value.toString()));
-                } else if (value instanceof IntWritable) {
-                    conf.setInt(key, ((IntWritable)value).get());
-                } else if (value instanceof LongWritable) {
-                    conf.setLong(key, ((LongWritable)value).get());
-                } else if (value instanceof Text) {
-                    conf.set(key, value.toString());
-                } else {
-                    System.err.println("Cannot convert JavaScript (" + value.getClass().getName()
-                                               + ") to Configuration, using String");
-                    conf.set(key, value.toString());
-                }
+            if (value instanceof BooleanWritable) {
+                target.setBoolean(key, ((BooleanWritable)value).get());
+            } else if (value instanceof DoubleWritable || value instanceof FloatWritable) {
+                target.setFloat(key, Float.valueOf(value.toString()));
+            } else if (value instanceof IntWritable) {
+                target.setInt(key, ((IntWritable)value).get());
+            } else if (value instanceof LongWritable) {
+                target.setLong(key, ((LongWritable)value).get());
+            } else if (value instanceof Text) {
+                target.set(key, value.toString());
+            } else {
+                System.err.println("Cannot convert JavaScript (" + value.getClass().getName()
+                                           + ") to Configuration, using String");
+                target.set(key, value.toString());
             }
         }
+    }
 
-        // Create Job
-        final String jobName = "LembosMapReduceJob-" + mrEnv.getModuleName();
-        final Job job = new Job(conf, jobName);
-
-        jobWrapper = JobWrap.getInstance(mrEnv.getRuntime(), job);
+    /**
+     * Calls the job setup function in use and configures the job components based on the functions in use.
+     *
+     * @param job the job to configure
+     *
+     * @return the JavaScript wrapper of the job
+     *
+     * @throws ExecutionException if there is an issue running the Node.js module
+     * @throws InterruptedException if the execution of the Node.js module gets interrupted
+     * @throws IOException if there is a problem configuring the job
+     */
+    private Scriptable setupJob(final Job job) throws ExecutionException, InterruptedException, IOException {
+        final Scriptable wrapper = JobWrap.getInstance(mrEnv.getRuntime(), job);
 
         if (JavaScriptUtils.isDefined(mrEnv.getJobSetupFunction())) {
             mrEnv.callFunctionSync(mrEnv.getJobSetupFunction(), new Object[] {
-                    jobWrapper
+                    wrapper
             });
         }
 
@@ -165,7 +385,8 @@ public class LembosMapReduceRunner implements Tool {
         }
 
         // Conditionally set the reducer
-        if (JavaScriptUtils.isDefined(mrEnv.getReduceFunction())) {
+        if (JavaScriptUtils.isDefined(mrEnv.getReduceFunction())
+                || JavaScriptUtils.isDefined(mrEnv.getJoinFunction())) {
             job.setReducerClass(LembosReducer.class);
         } else {
             job.setNumReduceTasks(0);
@@ -176,6 +397,30 @@ public class LembosMapReduceRunner implements Tool {
             job.setSortComparatorClass(LembosSortComparator.class);
         }
 
+        // Joins broadcast the small join inputs to a map-side join when the module supports it, otherwise reduce-side
+        // joins sort the tagged map output by join key and then by input
+        final boolean broadcastJoin = JavaScriptUtils.isDefined(mrEnv.getJoinMapFunction())
+                && LembosBroadcastJoin.configure(job);
+
+        if (!broadcastJoin && JavaScriptUtils.isDefined(mrEnv.getJoinFunction())) {
+            LembosJoin.configure(job);
+        } else if (!broadcastJoin && JavaScriptUtils.isDefined(mrEnv.getJoinMapFunction())) {
+            throw new RuntimeException("MapReduce join inputs cannot be broadcast and the module exports no join "
+                                               + "function");
+        }
+
+        // Skew mode spreads the heavy keys, listed or found by sampling the map output, across several reducers
+        LembosSkew.configure(job, mrEnv);
+
+        // Map-only jobs writing text write through a large buffer and have their records formatted directly to text
+        if (job.getNumReduceTasks() == 0 && job.getConfiguration().getBoolean(LembosConstants.MR_MAP_ONLY_DIRECT, true)
+                && TextOutputFormat.class.equals(getOutputFormatClass(job))) {
+            job.setOutputFormatClass(LembosTextOutputFormat.class);
+        }
+
+        // Apply the compression policy now that the job setup function has configured the input and output
+        CompressionPolicy.apply(job);
+
         // This could potentially be unsafe but for testing, we need to set this based on the path to the built JAR
         if (job.getJar() == null) {
             job.setJarByClass(LembosMapReduceRunner.class);
@@ -187,7 +432,22 @@ public class LembosMapReduceRunner implements Tool {
         // org.apache.hadoop.mapreduce.MRConfig
         // org.apache.hadoop.mapreduce.MRJobConfig
 
-        return job;
+        return wrapper;
+    }
+
+    /**
+     * Returns the output format of the job.
+     *
+     * @param job the job
+     *
+     * @return the output format class or null if it cannot be loaded
+     */
+    private static Class<?> getOutputFormatClass(final Job job) {
+        try {
+            return job.getOutputFormatClass();
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
     }
 
     /**
@@ -195,17 +455,97 @@ public class LembosMapReduceRunner implements Tool {
      */
     @Override
     public int run(final String[] args) throws Exception {
-        final Job job = initJob(args);
+        initEnvironment(args);
+
+        if (JavaScriptUtils.isDefined(mrEnv.getStages())) {
+            return runJobGraph(createJobGraph());
+        }
+
+        final Job job = createJob();
         // Should we allow you to configure the verbosity?  It's on for now to allow for better debugging.
-        final boolean result = job.waitForCompletion(true);
+        boolean result = job.waitForCompletion(true);
+
+        // Merge the partial results of the keys salted by the skew mode
+        if (result && LembosSkew.isSalted(job.getConfiguration())) {
+            result = LembosSkew.merge(job);
+        }
+
+        completeJob(job, result, jobWrapper);
+
+        return result ? 0 : 1;
+    }
+
+    /**
+     * Runs the stages exported by the Node.js module and deletes the intermediate stage outputs, the default outputs
+     * read by other stages, when all stages succeed.
+     *
+     * @param graph the job graph to run
+     *
+     * @return the exit code
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private int runJobGraph(final LembosJobGraph graph) throws Exception {
+        final boolean result = graph.run(STAGE_POLL_MILLIS);
+
+        for (final String name : graph.getStageNames()) {
+            final LembosJobGraph.State state = graph.getState(name);
+
+            if (state == LembosJobGraph.State.SUCCEEDED || state == LembosJobGraph.State.FAILED) {
+                mrEnv.useStage(name);
+
+                completeJob(graph.getJob(name), state == LembosJobGraph.State.SUCCEEDED, stageWrappers.get(name));
+            }
+        }
+
+        if (result) {
+            for (final Path intermediateOutput : intermediateOutputs) {
+                intermediateOutput.getFileSystem(conf).delete(intermediateOutput, true);
+            }
+        }
+
+        return result ? 0 : 1;
+    }
+
+    /**
+     * Summarizes the metrics of the completed job, merges its JavaScript profiles, reports its skew and calls the job
+     * cleanup function in use.
+     *
+     * @param job the completed job
+     * @param result whether or not the job succeeded
+     * @param wrapper the JavaScript wrapper of the job
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private void completeJob(final Job job, final boolean result, final Scriptable wrapper) throws Exception {
+        // Summarize the live metrics written by the tasks, if any
+        final String metricsSummary = LembosMetricsReporter.summarize(job.getConfiguration(), job.getJobID());
+
+        if (metricsSummary != null) {
+            System.out.println(metricsSummary);
+        }
+
+        // Merge the JavaScript profiles of the tasks when requested
+        if (result && job.getConfiguration().getBoolean(LembosConstants.MR_PROFILE_MERGE, false)) {
+            final Path outputDir = FileOutputFormat.getOutputPath(job);
+            final Path profile = outputDir == null ? null : JavaScriptProfiler.merge(job.getConfiguration(),
+                                                                                         outputDir);
+
+            if (profile != null) {
+                System.out.println("Merged JavaScript profile: " + profile);
+            }
+        }
+
+        // Report the largest key groups of the reducers in skew mode
+        if (result && LembosSkew.isEnabled(job.getConfiguration())) {
+            LembosSkew.report(job);
+        }
 
         if (JavaScriptUtils.isDefined(mrEnv.getJobCleanupFunction())) {
             mrEnv.callFunctionSync(mrEnv.getJobCleanupFunction(), new Object[] {
-                    jobWrapper
+                    wrapper
             });
         }
-
-        return result ? 0 : 1;
     }
 
     /**
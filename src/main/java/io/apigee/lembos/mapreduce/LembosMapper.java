@@ -34,9 +34,18 @@ import java.util.concurrent.ExecutionException;
  */
 public class LembosMapper extends Mapper<WritableComparable<?>, Writable, WritableComparable<?>, Writable> {
 
+    private final LembosTimers timers = new LembosTimers("Map");
+    private final LembosMetrics metrics = LembosMetrics.get(timers.getComponent());
     private Function mapFunction;
     private LembosMapReduceEnvironment env;
     private TaskInputOutputContextWrap ctxWrapper;
+    private TaskInputOutputContextWrap mapCtxWrapper;
+    private LembosChain mapChain;
+    private LembosBroadcastJoin broadcastJoin;
+    private SlowRecords slowRecords;
+    private SkipPolicy skipPolicy;
+    private JavaScriptProfiler profiler;
+    private LembosMultipleOutputs multipleOutputs;
 
     /**
      * {@inheritDoc}
@@ -45,11 +54,33 @@ public class LembosMapper extends Mapper<WritableComparable<?>, Writable, Writab
     protected void map(final WritableComparable<?> key, final Writable value, final Context context)
             throws IOException, InterruptedException {
 
-        env.callFunctionSync(this.mapFunction, new Object[] {
+        final long conversionStart = System.nanoTime();
+        final long conversionBytes = AllocationMeter.getAllocatedBytes();
+        final Object[] args = new Object[] {
                 ConversionUtils.writableComparableToJS(key, env.getModule()),
                 ConversionUtils.writableToJS(value, env.getModule()),
-                ctxWrapper
-        });
+                mapCtxWrapper
+        };
+
+        timers.record(LembosTimers.Phase.CONVERSION, conversionStart);
+        timers.recordAllocation(LembosTimers.Phase.CONVERSION, conversionBytes);
+
+        try {
+            env.callFunctionSync(this.mapFunction, args);
+        } catch (LembosTimeoutException e) {
+            skipPolicy.skip(context, key, e);
+        }
+
+        if (mapChain != null) {
+            mapChain.checkErrors();
+        }
+
+        if (broadcastJoin != null) {
+            broadcastJoin.checkErrors();
+        }
+
+        metrics.recordProcessed();
+        slowRecords.offer(System.nanoTime() - conversionStart, key, value);
 
     }
 
@@ -60,17 +91,82 @@ public class LembosMapper extends Mapper<WritableComparable<?>, Writable, Writab
     protected void setup(final Context context) throws IOException, InterruptedException {
         super.setup(context);
 
+        // Publish the live metrics of the task, if configured
+        LembosMetricsReporter.start(context);
+
+        slowRecords = SlowRecords.fromConf(context.getConfiguration());
+        skipPolicy = new SkipPolicy(context.getConfiguration(), timers.getComponent());
+
         try {
-            env = LembosMapReduceEnvironment.fromConf(context.getConfiguration());
-            mapFunction = env.getMapFunction();
+            env = LembosMapReduceEnvironment.fromConf(context.getConfiguration(), timers);
 
             // Create the context wrapper
             ctxWrapper = TaskInputOutputContextWrap.getInstance(env.getModule(), env.getRuntime(), context);
+            ctxWrapper.setTimers(timers);
+
+            // Map-only jobs writing text hand the records straight to the record writer so they are formatted in place
+            ctxWrapper.setDirectText(LembosTextOutputFormat.isDirect(context));
+
+            // Map-only stages writing binary intermediate output write the JavaScript values as they are
+            ctxWrapper.setBinaryOutput(context.getNumReduceTasks() == 0
+                                               && context.getConfiguration()
+                                                         .getBoolean(LembosConstants.MR_STAGE_BINARY_OUTPUT, false));
+
+            // Named outputs written to by context.writeTo
+            if (!LembosMultipleOutputs.getNamedOutputs(context.getConfiguration()).isEmpty()) {
+                multipleOutputs = new LembosMultipleOutputs(context);
+                ctxWrapper.setMultipleOutputs(multipleOutputs);
+            }
+
+            final TaskInputOutputContextWrap mapOutputWrapper;
+
+            // Map-side joins probe the broadcast join inputs with what the map function writes, reduce-side joins tag
+            // the map output with the join input the task reads from
+            if (LembosBroadcastJoin.isBroadcast(context.getConfiguration())) {
+                broadcastJoin = new LembosBroadcastJoin(env, ctxWrapper, multipleOutputs);
+                mapOutputWrapper = broadcastJoin.createContextWrapper();
+            } else {
+                if (JavaScriptUtils.isDefined(env.getJoinFunction())) {
+                    ctxWrapper.setJoinTag(LembosJoin.getTag(context));
+                }
+
+                mapOutputWrapper = ctxWrapper;
+            }
+
+            // Fuse the chained map functions, the last one writes to the task output
+            if (JavaScriptUtils.isDefined(env.getMapChain())) {
+                mapChain = new LembosChain(env, env.getMapChain(), mapOutputWrapper, multipleOutputs);
+                mapFunction = mapChain.getHead().getFunction();
+                mapCtxWrapper = mapChain.getHead().getContextWrapper();
+            } else {
+                mapFunction = env.getMapFunction();
+                mapCtxWrapper = mapOutputWrapper;
+            }
+
+            // Report progress while waiting on functions with a timeout
+            env.setProgressable(context);
+
+            // Sample the JavaScript stack when profiling is enabled
+            profiler = JavaScriptProfiler.fromConf(context.getConfiguration(), env);
+            profiler.start(timers.getComponent());
 
             if (JavaScriptUtils.isDefined(env.getMapSetupFunction())) {
+                final Object setupEvent = LembosEvents.begin(LembosEvents.Type.SETUP);
+
                 env.callFunctionSync(env.getMapSetupFunction(), new Object[] {
-                        ctxWrapper
+                        mapCtxWrapper
                 });
+
+                LembosEvents.commit(setupEvent, timers.getComponent());
+            }
+
+            if (mapChain != null) {
+                mapChain.setup();
+            }
+
+            // The join tables are loaded last since loading runs the map function, which can use what setup did
+            if (broadcastJoin != null) {
+                broadcastJoin.load(context, mapFunction, mapCtxWrapper, mapChain);
             }
         } catch (ExecutionException | NodeException e) {
             throw new RuntimeException(e);
@@ -84,13 +180,45 @@ public class LembosMapper extends Mapper<WritableComparable<?>, Writable, Writab
     protected void cleanup(final Context context) throws IOException, InterruptedException {
         super.cleanup(context);
 
+        final long cleanupStart = System.nanoTime();
+
         if (JavaScriptUtils.isDefined(env.getMapCleanupFunction())) {
+            final Object cleanupEvent = LembosEvents.begin(LembosEvents.Type.CLEANUP);
+
             env.callFunctionSync(env.getMapCleanupFunction(), new Object[] {
-                    ctxWrapper
+                    mapCtxWrapper
             });
+
+            LembosEvents.commit(cleanupEvent, timers.getComponent());
         }
 
+        if (mapChain != null) {
+            mapChain.cleanup();
+        }
+
+        if (multipleOutputs != null) {
+            multipleOutputs.close();
+        }
+
+        profiler.stop();
         env.cleanup();
+
+        timers.record(LembosTimers.Phase.CLEANUP, cleanupStart);
+
+        // Publish the timers, along with the ones of the partitioner and comparators used by this task
+        timers.publish(context);
+        LembosTimers.publishShared(context);
+
+        slowRecords.write(context, timers.getComponent());
+        profiler.write(context, timers.getComponent());
+        LembosMetricsReporter.stop();
+    }
+
+    /**
+     * @return the timers of this component
+     */
+    public LembosTimers getTimers() {
+        return timers;
     }
 
     /**
@@ -31,11 +31,19 @@ public final class LembosMessages {
     public static final String FIRST_ARG_MUST_BE_COUNTERS = "First argument must be a Counters object";
     public static final String FIRST_ARG_MUST_BE_JOB = "First argument must be a Job object";
     public static final String FIRST_ARG_MUST_BE_NUM = "First argument must be a number";
+    public static final String FIRST_ARG_MUST_BE_OBJ = "First argument must be an object";
     public static final String FIRST_ARG_REQUIRED = "First argument is not optional";
     public static final String FIFTH_ARG_REQUIRED = "Fifth argument is not optional";
+    public static final String FOURTH_ARG_MUST_BE_ARRAY = "Fourth argument must be an array";
     public static final String FOURTH_ARG_REQUIRED = "Fourth argument is not optional";
+    public static final String JOIN_TABLES_NOT_LOADED =
+            "Map-side joins cannot be written to before the join tables are loaded, after the setup functions";
+    public static final String NAMED_OUTPUTS_UNAVAILABLE =
+            "Named outputs are only available to the map and reduce functions of jobs with named outputs";
     public static final String ONE_ARG_EXPECTED = "One argument expected";
     public static final String ONE_OR_TWO_ARGS_EXPECTED = "One or two arguments expected";
+    public static final String FOUR_ARGS_EXPECTED = "Four arguments expected";
+    public static final String FOUR_OR_FIVE_ARGS_EXPECTED = "Four or five arguments expected";
     public static final String FOUR_OR_SIX_ARGS_EXPECTED = "Four or six arguments expected";
     public static final String SECOND_ARG_ARG_MUST_BE_NUM = "Second argument must be a number";
     public static final String SECOND_ARG_MUST_BE_ARRAY = "Second argument must be an array";
@@ -46,8 +54,11 @@ public final class LembosMessages {
     public static final String SIXTH_ARG_MUST_BE_ARRAY = "Sixth argument must be an array";
     public static final String THIRD_ARG_REQUIRED = "Third argument is not optional";
     public static final String THIRD_ARG_MUST_BE_ARR_OR_NUM = "Third argument must be an array or a number";
+    public static final String THIRD_ARG_MUST_BE_ARRAY = "Third argument must be an array";
+    public static final String THREE_OR_FOUR_ARGS_EXPECTED = "Three or four arguments expected";
     public static final String THREE_ARGS_EXPECTED = "Three arguments expected";
     public static final String TWO_ARGS_EXPECTED = "Two arguments expected";
+    public static final String TWO_OR_THREE_ARGS_EXPECTED = "Two or three arguments expected";
     public static final String ZERO_OR_ONE_ARG_EXPECTED = "Zero or one argument expected";
     public static final String ZERO_ONE_OR_TWO_ARGS_EXPECTED = "Zero, one or two arguments expected";
 
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live metrics of a Lembos MapReduce component, shared by the whole JVM and cheap enough to always be updated: The
+ * number of records processed, the number of JavaScript function calls and how many of them are waiting on their
+ * callback.  They are published while the task runs by the {@link LembosMetricsReporter}.
+ */
+public final class LembosMetrics implements LembosMetricsMXBean {
+
+    private static final ConcurrentMap<String, LembosMetrics> METRICS = new ConcurrentHashMap<>();
+
+    private final String component;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicInteger inFlightCalls = new AtomicInteger();
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * Constructor.
+     *
+     * @param component the name of the component
+     */
+    LembosMetrics(final String component) {
+        this.component = component;
+    }
+
+    /**
+     * Returns the metrics of the component, creating them if necessary.
+     *
+     * @param component the name of the component
+     *
+     * @return the metrics
+     */
+    public static LembosMetrics get(final String component) {
+        LembosMetrics metrics = METRICS.get(component);
+
+        if (metrics == null) {
+            final LembosMetrics newMetrics = new LembosMetrics(component);
+
+            metrics = METRICS.putIfAbsent(component, newMetrics);
+
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of all the components used in this JVM
+     */
+    public static Collection<LembosMetrics> getAll() {
+        return METRICS.values();
+    }
+
+    /**
+     * Registers the metrics as a JMX MBean, unless it is already registered.
+     */
+    public void register() {
+        try {
+            final ObjectName name = new ObjectName("io.apigee.lembos:type=Metrics,component="
+                                                           + ObjectName.quote(component));
+
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Unable to register the Lembos " + component + " metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Resets the metrics, which is done when a new task starts in a reused JVM.
+     */
+    public void reset() {
+        records.set(0);
+        calls.set(0);
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records a processed record.
+     */
+    public void recordProcessed() {
+        records.incrementAndGet();
+    }
+
+    /**
+     * Records the start of a JavaScript function call.
+     */
+    public void callStarted() {
+        calls.incrementAndGet();
+        inFlightCalls.incrementAndGet();
+    }
+
+    /**
+     * Records the end of a JavaScript function call.
+     */
+    public void callFinished() {
+        inFlightCalls.decrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getComponent() {
+        return component;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRecords() {
+        return records.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getRecordsPerSecond() {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        return elapsedNanos <= 0 ? 0 : records.get() * (double)TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInFlightCalls() {
+        return inFlightCalls.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getHeapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getHeapMaxBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+/**
+ * JMX interface of {@link LembosMetrics}, registered as <code>io.apigee.lembos:type=Metrics,component=&lt;component&gt;
+ * </code> when {@link LembosConstants#MR_METRICS} contains <code>jmx</code>.
+ */
+public interface LembosMetricsMXBean {
+
+    /**
+     * @return the name of the component
+     */
+    String getComponent();
+
+    /**
+     * @return the number of records processed
+     */
+    long getRecords();
+
+    /**
+     * @return the average number of records processed per second since the component started
+     */
+    double getRecordsPerSecond();
+
+    /**
+     * @return the number of JavaScript function calls made
+     */
+    long getCalls();
+
+    /**
+     * @return the number of JavaScript function calls waiting on their callback
+     */
+    int getInFlightCalls();
+
+    /**
+     * @return the heap used by the JVM, which is where the JavaScript objects live, in bytes
+     */
+    long getHeapUsedBytes();
+
+    /**
+     * @return the maximum heap of the JVM in bytes (-1 if undefined)
+     */
+    long getHeapMaxBytes();
+
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the {@link LembosMetrics} of a task JVM while the task runs, using the reporters listed in
+ * {@link LembosConstants#MR_METRICS}:
+ *
+ * <ul>
+ *   <li><b>jmx:</b> Registers the metrics as JMX MBeans</li>
+ *   <li><b>file:</b> Writes a snapshot of the metrics, every {@link LembosConstants#MR_METRICS_INTERVAL}, to the
+ *   <code>&lt;job id&gt;/&lt;task attempt id&gt;.properties</code> file of {@link LembosConstants#MR_METRICS_DIR}, which
+ *   the runner summarizes once the job completes</li>
+ * </ul>
+ *
+ * A task JVM has a single reporter, started by the mapper or reducer setup and stopped by their cleanup.
+ */
+public final class LembosMetricsReporter implements Runnable {
+
+    /** The default interval at which the metrics are written in milliseconds. */
+    public static final long DEFAULT_INTERVAL_MILLIS = 10000;
+    /** The default directory the metrics are written to, relative to the working directory of the file system. */
+    public static final String DEFAULT_DIR = "lembos-metrics";
+    /** The reporter publishing the metrics as JMX MBeans. */
+    public static final String JMX = "jmx";
+    /** The reporter writing the metrics to a file. */
+    public static final String FILE = "file";
+
+    private static LembosMetricsReporter current;
+
+    private final Configuration conf;
+    private final String taskAttemptId;
+    private final boolean jmx;
+    private final Path file;
+    private final long intervalMillis;
+    private final Map<String, Long> lastRecords = new HashMap<>();
+    private long lastNanos = System.nanoTime();
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Constructor.
+     *
+     * @param context the task context
+     * @param reporters the reporters to use
+     */
+    private LembosMetricsReporter(final TaskAttemptContext context, final List<String> reporters) {
+        this.conf = context.getConfiguration();
+        this.taskAttemptId = context.getTaskAttemptID().toString();
+        this.jmx = reporters.contains(JMX);
+        this.file = reporters.contains(FILE) ?
+                new Path(getMetricsDir(conf, context.getJobID()), taskAttemptId + ".properties") :
+                null;
+        this.intervalMillis = conf.getLong(LembosConstants.MR_METRICS_INTERVAL, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Starts the reporter of the task, unless it is already started or no reporter is configured.  When a new task
+     * starts in a reused JVM, the metrics of the previous task are reset.
+     *
+     * @param context the task context
+     */
+    public static synchronized void start(final TaskAttemptContext context) {
+        final List<String> reporters = getReporters(context.getConfiguration());
+
+        if (reporters.isEmpty()
+                || (current != null && current.taskAttemptId.equals(context.getTaskAttemptID().toString()))) {
+            return;
+        }
+
+        stop();
+
+        for (final LembosMetrics metrics : LembosMetrics.getAll()) {
+            metrics.reset();
+        }
+
+        current = new LembosMetricsReporter(context, reporters);
+        current.running = true;
+        current.thread = new Thread(current, "Lembos Metrics Reporter");
+
+        current.thread.setDaemon(true);
+        current.thread.start();
+    }
+
+    /**
+     * Publishes the metrics now, if a reporter was started, which is how the components that run after the mapper or
+     * the reducer cleaned up, like the combiner of the last spill, get their metrics published.
+     */
+    public static synchronized void report() {
+        if (current != null) {
+            current.publish();
+        }
+    }
+
+    /**
+     * Stops the reporter, after publishing the metrics one last time.
+     */
+    public static synchronized void stop() {
+        if (current != null && current.running) {
+            current.running = false;
+            current.thread.interrupt();
+            current.publish();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            synchronized (LembosMetricsReporter.class) {
+                if (running) {
+                    publish();
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers the MBeans of the components used so far and writes the metrics file.
+     */
+    private void publish() {
+        if (jmx) {
+            for (final LembosMetrics metrics : LembosMetrics.getAll()) {
+                metrics.register();
+            }
+        }
+
+        if (file != null) {
+            try {
+                write(file.getFileSystem(conf), snapshot());
+            } catch (IOException e) {
+                System.err.println("Unable to write the Lembos metrics to " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the metrics of all components
+     */
+    private Properties snapshot() {
+        final Properties snapshot = new Properties();
+        final long nowNanos = System.nanoTime();
+        final double elapsedSeconds = Math.max(1, nowNanos - lastNanos) / (double)TimeUnit.SECONDS.toNanos(1);
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        for (final LembosMetrics metrics : LembosMetrics.getAll()) {
+            final String component = metrics.getComponent();
+            final long records = metrics.getRecords();
+            final Long previousRecords = lastRecords.put(component, records);
+
+            snapshot.setProperty(component + ".records", Long.toString(records));
+            snapshot.setProperty(component + ".recordsPerSecond", format(metrics.getRecordsPerSecond()));
+            snapshot.setProperty(component + ".recentRecordsPerSecond",
+                                 format(Math.max(0, records - (previousRecords == null ? 0 : previousRecords))
+                                                / elapsedSeconds));
+            snapshot.setProperty(component + ".calls", Long.toString(metrics.getCalls()));
+            snapshot.setProperty(component + ".inFlightCalls", Integer.toString(metrics.getInFlightCalls()));
+        }
+
+        lastNanos = nowNanos;
+
+        snapshot.setProperty("task", taskAttemptId);
+        snapshot.setProperty("timestamp", Long.toString(System.currentTimeMillis()));
+        snapshot.setProperty("heapUsedBytes", Long.toString(heap.getUsed()));
+        snapshot.setProperty("heapMaxBytes", Long.toString(heap.getMax()));
+
+        return snapshot;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file renamed to the metrics file, so readers never see a partial snapshot.
+     *
+     * @param fs the file system
+     * @param snapshot the snapshot
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private void write(final FileSystem fs, final Properties snapshot) throws IOException {
+        final Path tmpFile = new Path(file.getParent(), "_" + file.getName() + ".tmp");
+
+        try (final OutputStream out = fs.create(tmpFile, true)) {
+            snapshot.store(out, "Lembos metrics");
+        }
+
+        fs.delete(file, false);
+
+        if (!fs.rename(tmpFile, file)) {
+            throw new IOException("Unable to rename " + tmpFile + " to " + file);
+        }
+    }
+
+    /**
+     * @param conf the Hadoop configuration
+     * @param jobId the job id
+     *
+     * @return the directory the metrics files of the job are written to
+     */
+    public static Path getMetricsDir(final Configuration conf, final JobID jobId) {
+        return new Path(conf.get(LembosConstants.MR_METRICS_DIR, DEFAULT_DIR), jobId.toString());
+    }
+
+    /**
+     * Summarizes the metrics files written by the tasks of a job, per component: The total number of records, the
+     * average and minimum number of records per second of the tasks and the maximum heap used by a task.
+     *
+     * @param conf the Hadoop configuration
+     * @param jobId the job id
+     *
+     * @return the summary or null if the metrics are not written to files or if there are no metrics files
+     *
+     * @throws IOException if anything goes wrong
+     */
+    public static String summarize(final Configuration conf, final JobID jobId) throws IOException {
+        if (jobId == null || !getReporters(conf).contains(FILE)) {
+            return null;
+        }
+
+        final Path metricsDir = getMetricsDir(conf, jobId);
+        final FileSystem fs = metricsDir.getFileSystem(conf);
+        final FileStatus[] files = fs.globStatus(new Path(metricsDir, "*.properties"));
+
+        if (files == null || files.length == 0) {
+            return null;
+        }
+
+        final Map<String, double[]> components = new TreeMap<>();
+        long maxHeapUsedBytes = 0;
+
+        for (final FileStatus status : files) {
+            final Properties snapshot = new Properties();
+
+            try (final InputStream in = fs.open(status.getPath())) {
+                snapshot.load(in);
+            }
+
+            maxHeapUsedBytes = Math.max(maxHeapUsedBytes, Long.parseLong(snapshot.getProperty("heapUsedBytes", "0")));
+
+            for (final String name : snapshot.stringPropertyNames()) {
+                if (name.endsWith(".records")) {
+                    final String component = name.substring(0, name.length() - ".records".length());
+                    final double records = Double.parseDouble(snapshot.getProperty(name));
+                    final double rate = Double.parseDouble(snapshot.getProperty(component + ".recordsPerSecond",
+                                                                                "0"));
+                    double[] totals = components.get(component);
+
+                    // Tasks, records, sum of the rates and minimum rate
+                    if (totals == null) {
+                        totals = new double[] {0, 0, 0, Double.MAX_VALUE};
+                        components.put(component, totals);
+                    }
+
+                    totals[0]++;
+                    totals[1] += records;
+                    totals[2] += rate;
+                    totals[3] = Math.min(totals[3], rate);
+                }
+            }
+        }
+
+        final StringBuilder summary = new StringBuilder("Lembos metrics of ").append(files.length).append(" tasks:");
+
+        for (final Map.Entry<String, double[]> entry : components.entrySet()) {
+            final double[] totals = entry.getValue();
+
+            summary.append("\n  ").append(entry.getKey()).append(": ").append((long)totals[1]).append(" records in ")
+                   .append((long)totals[0]).append(" tasks, ").append(format(totals[2] / totals[0]))
+                   .append(" records/sec per task (min ").append(format(totals[3])).append(')');
+        }
+
+        summary.append("\n  Max heap used by a task: ").append(maxHeapUsedBytes / (1024 * 1024)).append(" MB");
+
+        return summary.toString();
+    }
+
+    /**
+     * @param conf the Hadoop configuration
+     *
+     * @return the configured reporters
+     */
+    private static List<String> getReporters(final Configuration conf) {
+        final String[] reporters = conf.getStrings(LembosConstants.MR_METRICS, new String[0]);
+
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i] = reporters[i].trim().toLowerCase(Locale.ENGLISH);
+        }
+
+        return Arrays.asList(reporters);
+    }
+
+    /**
+     * @param value the value
+     *
+     * @return the value with one decimal
+     */
+    private static String format(final double value) {
+        return String.format(Locale.ENGLISH, "%.1f", value);
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Writes records to the named outputs of a job, in addition to its regular output, so a job fanning out to several
+ * datasets only reads its input once.  Each named output has its own {@link OutputFormat} and key/value classes and is
+ * written to <code>&lt;base path&gt;-m-00000</code> (or <code>-r-</code>) files of the job output directory, the base
+ * path defaulting to the output name.
+ *
+ * Base paths can be computed per record, like <code>country=US/part</code>, so the open record writers are kept in a
+ * pool of at most {@link LembosConstants#MR_NAMED_OUTPUTS_MAX_OPEN} writers, closing the least recently used one when
+ * it is full.  When the records of a closed writer's base path keep coming, a new file is opened with a
+ * <code>_&lt;n&gt;</code> suffix added to the base path.
+ *
+ * <b>Note:</b> The file names come from the <code>mapreduce.output.basename</code> property so only file-based
+ * output formats honor the base path.
+ */
+public class LembosMultipleOutputs {
+
+    /** The default maximum number of open record writers. */
+    public static final int DEFAULT_MAX_OPEN = 64;
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9]+");
+    private static final String BASE_OUTPUT_NAME = "mapreduce.output.basename";
+    private static final String FORMAT_SUFFIX = ".format";
+    private static final String KEY_SUFFIX = ".key";
+    private static final String VALUE_SUFFIX = ".value";
+
+    private final TaskInputOutputContext<?, ?, ?, ?> context;
+    private final int maxOpen;
+    private final Map<String, RecordWriter<Object, Object>> writers = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, TaskAttemptContext> writerContexts = new HashMap<>();
+    private final Map<String, Integer> reopened = new HashMap<>();
+    private final Map<String, Job> outputJobs = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param context the task context
+     */
+    public LembosMultipleOutputs(final TaskInputOutputContext<?, ?, ?, ?> context) {
+        this.context = context;
+        this.maxOpen = Math.max(1, context.getConfiguration().getInt(LembosConstants.MR_NAMED_OUTPUTS_MAX_OPEN,
+                                                                     DEFAULT_MAX_OPEN));
+    }
+
+    /**
+     * Adds a named output to the job.
+     *
+     * @param job the job
+     * @param name the output name (Letters and digits only)
+     * @param outputFormatClass the output format
+     * @param keyClass the output key class
+     * @param valueClass the output value class
+     */
+    @SuppressWarnings("rawtypes")
+    public static void addNamedOutput(final Job job, final String name,
+                                      final Class<? extends OutputFormat> outputFormatClass, final Class<?> keyClass,
+                                      final Class<?> valueClass) {
+        final Configuration conf = job.getConfiguration();
+
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new IllegalArgumentException("Named output names can only contain letters and digits: " + name);
+        } else if (getNamedOutputs(conf).contains(name)) {
+            throw new IllegalArgumentException("Named output already defined: " + name);
+        }
+
+        final String prefix = LembosConstants.MR_NAMED_OUTPUTS + "." + name;
+
+        conf.set(LembosConstants.MR_NAMED_OUTPUTS, conf.get(LembosConstants.MR_NAMED_OUTPUTS, "").isEmpty() ?
+                name :
+                conf.get(LembosConstants.MR_NAMED_OUTPUTS) + "," + name);
+        conf.setClass(prefix + FORMAT_SUFFIX, outputFormatClass, OutputFormat.class);
+        conf.setClass(prefix + KEY_SUFFIX, keyClass, Object.class);
+        conf.setClass(prefix + VALUE_SUFFIX, valueClass, Object.class);
+    }
+
+    /**
+     * Returns the named outputs of the job.
+     *
+     * @param conf the job configuration
+     *
+     * @return the output names
+     */
+    public static Collection<String> getNamedOutputs(final Configuration conf) {
+        return conf.getStringCollection(LembosConstants.MR_NAMED_OUTPUTS);
+    }
+
+    /**
+     * Writes a record to a named output.
+     *
+     * @param name the output name
+     * @param key the key
+     * @param value the value
+     * @param basePath the base path of the output files, relative to the job output directory (Defaults to the
+     *                 output name if null)
+     *
+     * @throws IOException if the record cannot be written
+     * @throws InterruptedException if the write is interrupted
+     */
+    public void write(final String name, final Object key, final Object value, final String basePath)
+            throws IOException, InterruptedException {
+        final String path = basePath == null ? name : basePath;
+        final String writerKey = name + "\u0000" + path;
+        RecordWriter<Object, Object> writer = writers.get(writerKey);
+
+        if (writer == null) {
+            if (path.isEmpty() || path.startsWith("/") || path.contains("..")) {
+                throw new IllegalArgumentException("The base path must be relative to the output directory: " + path);
+            }
+
+            if (writers.size() >= maxOpen) {
+                evict();
+            }
+
+            writer = open(name, writerKey, path);
+
+            writers.put(writerKey, writer);
+        }
+
+        writer.write(key, value);
+    }
+
+    /**
+     * Closes all the record writers.
+     *
+     * @throws IOException if a writer cannot be closed
+     * @throws InterruptedException if closing is interrupted
+     */
+    public void close() throws IOException, InterruptedException {
+        final Iterator<Map.Entry<String, RecordWriter<Object, Object>>> iterator = writers.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            final Map.Entry<String, RecordWriter<Object, Object>> entry = iterator.next();
+
+            iterator.remove();
+            entry.getValue().close(writerContexts.remove(entry.getKey()));
+        }
+    }
+
+    /**
+     * @return the number of open record writers
+     */
+    public int getOpenWriterCount() {
+        return writers.size();
+    }
+
+    /**
+     * Closes the least recently used record writer.
+     *
+     * @throws IOException if the writer cannot be closed
+     * @throws InterruptedException if closing is interrupted
+     */
+    private void evict() throws IOException, InterruptedException {
+        final Iterator<Map.Entry<String, RecordWriter<Object, Object>>> iterator = writers.entrySet().iterator();
+        final Map.Entry<String, RecordWriter<Object, Object>> eldest = iterator.next();
+
+        iterator.remove();
+        eldest.getValue().close(writerContexts.remove(eldest.getKey()));
+
+        context.getCounter(LembosTimers.COUNTER_GROUP, "Named Output Writers Evicted").increment(1);
+    }
+
+    /**
+     * Opens a record writer.
+     *
+     * @param name the output name
+     * @param writerKey the pool key of the writer
+     * @param basePath the base path of the output files
+     *
+     * @return the record writer
+     *
+     * @throws IOException if the writer cannot be opened
+     * @throws InterruptedException if opening is interrupted
+     */
+    @SuppressWarnings("unchecked")
+    private RecordWriter<Object, Object> open(final String name, final String writerKey, final String basePath)
+            throws IOException, InterruptedException {
+        final Job outputJob = getOutputJob(name);
+        final Integer count = reopened.get(writerKey);
+        final Configuration conf = new Configuration(outputJob.getConfiguration());
+
+        // Files of a closed writer cannot be appended to so a reopened writer gets new files
+        conf.set(BASE_OUTPUT_NAME, count == null ? basePath : basePath + "_" + count);
+        reopened.put(writerKey, count == null ? 1 : count + 1);
+
+        final TaskAttemptContext writerContext = new TaskAttemptContext(conf, context.getTaskAttemptID());
+
+        try {
+            final OutputFormat<Object, Object> format = ReflectionUtils.newInstance(
+                    outputJob.getOutputFormatClass(), conf);
+            final RecordWriter<Object, Object> writer = format.getRecordWriter(writerContext);
+
+            writerContexts.put(writerKey, writerContext);
+
+            return writer;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns the job configured for a named output.
+     *
+     * @param name the output name
+     *
+     * @return the job
+     *
+     * @throws IOException if the job cannot be created
+     */
+    private Job getOutputJob(final String name) throws IOException {
+        Job outputJob = outputJobs.get(name);
+
+        if (outputJob == null) {
+            final Configuration conf = context.getConfiguration();
+            final String prefix = LembosConstants.MR_NAMED_OUTPUTS + "." + name;
+
+            if (!getNamedOutputs(conf).contains(name)) {
+                throw new IllegalArgumentException("Unknown named output: " + name);
+            }
+
+            outputJob = new Job(new Configuration(conf));
+
+            outputJob.setOutputFormatClass(conf.getClass(prefix + FORMAT_SUFFIX, null, OutputFormat.class));
+            outputJob.setOutputKeyClass(conf.getClass(prefix + KEY_SUFFIX, null, Object.class));
+            outputJob.setOutputValueClass(conf.getClass(prefix + VALUE_SUFFIX, null, Object.class));
+
+            outputJobs.put(name, outputJob);
+        }
+
+        return outputJob;
+    }
+
+}
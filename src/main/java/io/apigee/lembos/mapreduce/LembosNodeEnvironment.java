@@ -16,12 +16,16 @@
 
 package io.apigee.lembos.mapreduce;
 
+import io.apigee.lembos.node.types.TaskInputOutputContextWrap;
 import io.apigee.trireme.core.NodeEnvironment;
 import io.apigee.trireme.core.NodeException;
 import io.apigee.trireme.core.NodeRuntime;
 import io.apigee.trireme.core.NodeScript;
 import io.apigee.trireme.core.ScriptFuture;
 import io.apigee.trireme.core.internal.ModuleRegistry;
+import org.apache.hadoop.util.Progressable;
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
@@ -32,8 +36,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class will construct an environment allowing for Node.js modules to be driven via Java.
@@ -50,6 +61,17 @@ public class LembosNodeEnvironment {
     private ModuleRegistry moduleRegistry;
     private ScriptFuture runningScript;
     private NodeRuntime runtime;
+    private LembosTimers timers;
+    private long moduleLoadNanos;
+    private long timeoutMillis;
+    private Progressable progressable;
+    private volatile Thread scriptThread;
+    private LembosMetrics metrics;
+    // Every function call gets a generation, so the context writes of the calls that timed out can be told apart
+    private final AtomicLong generations = new AtomicLong();
+    private final Set<Long> timedOutGenerations = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final GenerationTracker generationTracker = new GenerationTracker(this);
+    private volatile long returnedGeneration;
 
     /**
      * Constructor.
@@ -116,8 +138,14 @@ public class LembosNodeEnvironment {
 
         nodeScript.setEnvironment(nodeEnvironmentVariables);
 
+        final long moduleLoadStart = System.nanoTime();
+        final Object moduleLoadEvent = LembosEvents.begin(LembosEvents.Type.MODULE_LOAD);
+
         this.runningScript = nodeScript.executeModule();
         this.module = this.runningScript.getModuleResult();
+        this.moduleLoadNanos = System.nanoTime() - moduleLoadStart;
+
+        LembosEvents.commit(moduleLoadEvent, this.moduleName);
         this.functionWrapper = (Function)ScriptableObject.getProperty(this.getModule(), "__wrapFunc");
         this.runtime = runningScript.getRuntime();
         this.moduleRegistry = nodeEnv.getRegistry(null);
@@ -172,15 +200,104 @@ public class LembosNodeEnvironment {
         return runtime;
     }
 
+    /**
+     * @return the time it took to load the module in nanoseconds
+     */
+    public long getModuleLoadNanos() {
+        return moduleLoadNanos;
+    }
+
+    /**
+     * @return the timers the function calls are recorded in (can be null)
+     */
+    public LembosTimers getTimers() {
+        return timers;
+    }
+
+    /**
+     * Sets the timers to record the function calls in.
+     *
+     * @param timers the timers (can be null)
+     */
+    public void setTimers(@Nullable final LembosTimers timers) {
+        this.timers = timers;
+    }
+
+    /**
+     * Sets the live metrics to record the function calls in.
+     *
+     * @param metrics the metrics (can be null)
+     */
+    public void setMetrics(@Nullable final LembosMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the time, in milliseconds, functions have to call their callback (0 for no timeout)
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Sets the time functions have to call their callback.
+     *
+     * @param timeoutMillis the timeout in milliseconds (0 for no timeout)
+     */
+    public void setTimeoutMillis(final long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Sets the progressable to report progress to while waiting on a function with a timeout.
+     *
+     * @param progressable the progressable (can be null)
+     */
+    public void setProgressable(@Nullable final Progressable progressable) {
+        this.progressable = progressable;
+    }
+
+    /**
+     * @return the thread running the module's JavaScript code (null until a function called its callback)
+     */
+    public Thread getScriptThread() {
+        return scriptThread;
+    }
+
+    /**
+     * Returns whether or not the function call of the generation timed out.
+     *
+     * @param generation the generation of the function call
+     *
+     * @return true if the function call timed out
+     */
+    public boolean isTimedOut(final long generation) {
+        return timedOutGenerations.contains(generation);
+    }
+
     /**
      * Calls the module function in a synchronous fashion, with error handling.
      *
+     * When there is a timeout, the context wrappers are passed to the function as views bound to the call, see
+     * {@link TaskInputOutputContextWrap#newCallView(LembosNodeEnvironment, long)}, so what the function writes once it
+     * timed out is dropped instead of landing in the output of the next records.  A function that times out while the
+     * script thread is still running it, or what was queued before it, cannot be skipped since the following calls
+     * would time out behind it: The task fails instead.
+     *
      * @param funcToCall the function to call
      * @param args the arguments (Do not include the {@link LembosDoneCallback}, it's handled for you)
      *
      * @return the value passed to the callback if it's not an error
+     *
+     * @throws LembosTimeoutException if the function does not call its callback within the timeout
      */
     public Object callFunctionSync(final Function funcToCall, final Object[] args) {
+        final long startNanos = System.nanoTime();
+        final long generation = generations.incrementAndGet();
+        // The script thread is idle between calls so its allocations are the function's
+        final Thread jsThread = scriptThread;
+        final long jsStartBytes = timers == null || jsThread == null ? 0 : AllocationMeter.getAllocatedBytes(jsThread);
+        final Object slowCallEvent = LembosEvents.begin(LembosEvents.Type.SLOW_CALL);
         final LembosDoneCallback doneCallback = new LembosDoneCallback();
 
         // Reset the done callback latch
@@ -191,19 +308,46 @@ public class LembosNodeEnvironment {
                                                       .enterContext().newArray(this.module, args.length + 1);
 
         for (int i = 0; i < args.length; i++) {
-            realArgs.put(i, realArgs, args[i]);
+            realArgs.put(i, realArgs, timeoutMillis > 0 && args[i] instanceof TaskInputOutputContextWrap ?
+                    ((TaskInputOutputContextWrap)args[i]).newCallView(this, generation) :
+                    args[i]);
         }
 
         realArgs.put(args.length, realArgs, doneCallback);
 
+        if (metrics != null) {
+            metrics.callStarted();
+        }
+
         // Make the call, which is async
-        getRunningScript().getRuntime().enqueueCallback(functionWrapper, module, module, new Object[] {
-                funcToCall, realArgs
+        getRunningScript().getRuntime().enqueueCallback(generationTracker, module, module, new Object[] {
+                funcToCall, realArgs, generation
         });
 
         // Wait for the done latch to indicate the job is completed
         try {
-            final Object response = doneCallback.await();
+            final Object response = timeoutMillis > 0 ?
+                    doneCallback.await(timeoutMillis, progressable) :
+                    doneCallback.await();
+
+            scriptThread = doneCallback.getCalledThread();
+
+            LembosEvents.commitIfSlow(slowCallEvent, System.nanoTime() - startNanos,
+                                      timers == null ? null : timers.getComponent());
+
+            if (timers != null) {
+                final long calledNanos = doneCallback.getCalledNanos();
+                final long endNanos = System.nanoTime();
+
+                timers.add(LembosTimers.Phase.JS_EXECUTION, calledNanos - startNanos);
+                timers.add(LembosTimers.Phase.CALLBACK_WAIT, endNanos - calledNanos);
+                timers.recordRoundTrip(endNanos - startNanos);
+
+                if (jsThread != null) {
+                    timers.addAllocatedBytes(LembosTimers.Phase.JS_EXECUTION,
+                                             AllocationMeter.getAllocatedBytes(jsThread) - jsStartBytes);
+                }
+            }
 
             if (response instanceof Throwable) {
                 throw new RuntimeException(((Throwable)response).getMessage());
@@ -212,7 +356,77 @@ public class LembosNodeEnvironment {
             return response;
         } catch (InterruptedException ie) {
             throw new RuntimeException(ie);
+        } catch (TimeoutException te) {
+            timedOutGenerations.add(generation);
+
+            if (returnedGeneration < generation) {
+                throw new RuntimeException(te.getMessage() + " and the JavaScript code is still running, the record "
+                                                   + "cannot be skipped\n" + getJavaScriptStack());
+            }
+
+            throw new LembosTimeoutException(te.getMessage() + "\n" + getJavaScriptStack());
+        } finally {
+            if (metrics != null) {
+                metrics.callFinished();
+            }
+        }
+    }
+
+    /**
+     * Returns the JavaScript frames of the threads currently running compiled JavaScript, which is how a hung
+     * function is located.
+     *
+     * @return the JavaScript stack
+     */
+    public static String getJavaScriptStack() {
+        final StringBuilder stack = new StringBuilder();
+
+        for (final Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+            final StringBuilder frames = new StringBuilder();
+
+            for (final StackTraceElement element : getJavaScriptFrames(entry.getValue())) {
+                frames.append("    at ").append(getFrameName(element)).append("\n");
+            }
+
+            if (frames.length() > 0) {
+                stack.append("JavaScript stack of thread '").append(entry.getKey().getName()).append("':\n")
+                     .append(frames);
+            }
         }
+
+        return stack.length() == 0 ? "JavaScript stack not available (waiting on the event loop)" : stack.toString();
+    }
+
+    /**
+     * Returns the frames of a Java stack that are compiled JavaScript functions.
+     *
+     * @param stack the Java stack, innermost frame first
+     *
+     * @return the JavaScript frames, innermost frame first
+     */
+    public static List<StackTraceElement> getJavaScriptFrames(final StackTraceElement[] stack) {
+        final List<StackTraceElement> frames = new ArrayList<>();
+
+        for (final StackTraceElement element : stack) {
+            final String fileName = element.getFileName();
+
+            // Rhino compiles each function into a "_c_<name>_<number>" method
+            if (fileName != null && fileName.endsWith(".js") && element.getMethodName().startsWith("_c_")) {
+                frames.add(element);
+            }
+        }
+
+        return frames;
+    }
+
+    /**
+     * @param frame a frame returned by {@link #getJavaScriptFrames(StackTraceElement[])}
+     *
+     * @return the JavaScript function name and location of the frame, like <code>map (index.js:12)</code>
+     */
+    public static String getFrameName(final StackTraceElement frame) {
+        return frame.getMethodName().replaceAll("^_c_(.*)_\\d+$", "$1") + " (" + frame.getFileName() + ":"
+                + frame.getLineNumber() + ")";
     }
 
     /**
@@ -230,4 +444,37 @@ public class LembosNodeEnvironment {
         }
     }
 
+    /**
+     * Runs the function calls on the script thread, keeping track of the generation of the last call that returned.
+     * (A function that returned without calling its callback is waiting on asynchronous work, not running)
+     */
+    private static final class GenerationTracker extends BaseFunction {
+
+        private static final long serialVersionUID = -2816383957618253406L;
+        private final transient LembosNodeEnvironment env;
+
+        /**
+         * Constructor.
+         *
+         * @param env the Node.js environment
+         */
+        private GenerationTracker(final LembosNodeEnvironment env) {
+            this.env = env;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object call(final Context ctx, final Scriptable scope, final Scriptable thisObj, final Object[] args) {
+            try {
+                // The module wrapper ignores the generation passed after the function and its arguments
+                return env.functionWrapper.call(ctx, scope, thisObj, args);
+            } finally {
+                env.returnedGeneration = (Long)args[2];
+            }
+        }
+
+    }
+
 }
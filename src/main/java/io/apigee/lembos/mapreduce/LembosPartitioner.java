@@ -39,6 +39,8 @@ import java.util.concurrent.ExecutionException;
  */
 public class LembosPartitioner extends Partitioner<WritableComparable<?>, Writable> implements Closeable, Configurable {
 
+    private final LembosTimers timers = LembosTimers.getShared("Partition");
+    private final LembosMetrics metrics = LembosMetrics.get(timers.getComponent());
     private Configuration conf;
     private LembosMapReduceEnvironment env;
     private Scriptable jsConf;
@@ -55,7 +57,7 @@ public class LembosPartitioner extends Partitioner<WritableComparable<?>, Writab
 
         if (env == null) {
             try {
-                env = LembosMapReduceEnvironment.fromConf(conf);
+                env = LembosMapReduceEnvironment.fromConf(conf, timers);
                 jsConf = ConfigurationWrap.getInstance(env.getRuntime(), conf);
 
                 if (!JavaScriptUtils.isDefined(env.getPartitionFunction())) {
@@ -63,22 +65,36 @@ public class LembosPartitioner extends Partitioner<WritableComparable<?>, Writab
                 }
 
                 if (JavaScriptUtils.isDefined(env.getPartitionSetupFunction())) {
+                    final Object setupEvent = LembosEvents.begin(LembosEvents.Type.SETUP);
+
                     env.callFunctionSync(env.getPartitionSetupFunction(), new Object[] {
                             jsConf
                     });
+
+                    LembosEvents.commit(setupEvent, timers.getComponent());
                 }
             } catch (ExecutionException | IOException | InterruptedException | NodeException e) {
                 throw new RuntimeException(e);
             }
         }
 
-        final WritableComparable<?> jsPartition = ConversionUtils.jsToWritableComparable(
-                env.callFunctionSync(env.getPartitionFunction(),
-                                     new Object[] {
-                                             ConversionUtils.writableComparableToJS(key, env.getModule()),
-                                             ConversionUtils.writableToJS(value, env.getModule()),
-                                             numPartitions
-                                     }), env.getModule());
+        final long argsConversionStart = System.nanoTime();
+        final long argsConversionBytes = AllocationMeter.getAllocatedBytes();
+        final Object[] args = new Object[] {
+                ConversionUtils.writableComparableToJS(key, env.getModule()),
+                ConversionUtils.writableToJS(value, env.getModule()),
+                numPartitions
+        };
+        final long argsConversionNanos = System.nanoTime() - argsConversionStart;
+        final long argsAllocatedBytes = AllocationMeter.getAllocatedBytes() - argsConversionBytes;
+        final Object result = env.callFunctionSync(env.getPartitionFunction(), args);
+        final long resultConversionStart = System.nanoTime();
+        final long resultConversionBytes = AllocationMeter.getAllocatedBytes();
+        final WritableComparable<?> jsPartition = ConversionUtils.jsToWritableComparable(result, env.getModule());
+
+        timers.add(LembosTimers.Phase.CONVERSION, argsConversionNanos + System.nanoTime() - resultConversionStart);
+        timers.addAllocatedBytes(LembosTimers.Phase.CONVERSION,
+                                 argsAllocatedBytes + AllocationMeter.getAllocatedBytes() - resultConversionBytes);
 
         if (!JavaScriptUtils.isDefined(jsPartition) || jsPartition instanceof NullWritable) {
             throw new RuntimeException("MapReduce function 'partition' cannot return null/undefined");
@@ -88,6 +104,8 @@ public class LembosPartitioner extends Partitioner<WritableComparable<?>, Writab
             throw new RuntimeException("MapReduce function 'partition' must return an integer");
         }
 
+        metrics.recordProcessed();
+
         // We'll let Hadoop handle any invalid responses
         return ((IntWritable)jsPartition).get();
     }
@@ -98,13 +116,21 @@ public class LembosPartitioner extends Partitioner<WritableComparable<?>, Writab
     @Override
     public void close() throws IOException {
         if (env != null) {
+            final long cleanupStart = System.nanoTime();
+
             if (JavaScriptUtils.isDefined(env.getPartitionCleanupFunction())) {
+                final Object cleanupEvent = LembosEvents.begin(LembosEvents.Type.CLEANUP);
+
                 env.callFunctionSync(env.getPartitionCleanupFunction(), new Object[] {
                         jsConf
                 });
+
+                LembosEvents.commit(cleanupEvent, timers.getComponent());
             }
 
             env.cleanup();
+
+            timers.record(LembosTimers.Phase.CLEANUP, cleanupStart);
         }
     }
 
@@ -16,6 +16,7 @@
 
 package io.apigee.lembos.mapreduce;
 
+import io.apigee.lembos.io.TaggedKeyWritable;
 import io.apigee.lembos.node.types.ReducerValuesIterableWrap;
 import io.apigee.lembos.node.types.TaskInputOutputContextWrap;
 import io.apigee.lembos.utils.ConversionUtils;
@@ -27,17 +28,34 @@ import org.apache.hadoop.mapreduce.Reducer;
 import org.mozilla.javascript.Function;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 /**
  * Extension of {@link Reducer} that allows a Node.js MapReduce job author to export a <strong>reduce</strong>
- * function to implement the reduce functionality for their job.
+ * function to implement the reduce functionality for their job, or a <strong>join</strong> function receiving the
+ * values of each join input of a reduce-side join.  (See {@link LembosJoin})  In skew mode, the merge job calls the
+ * <strong>merge</strong> function instead, if exported.  (See {@link LembosSkew})
  */
 public class LembosReducer extends Reducer<WritableComparable<?>, Writable, WritableComparable<?>, Writable> {
 
+    private final LembosTimers timers = new LembosTimers("Reduce");
+    private final LembosMetrics metrics = LembosMetrics.get(timers.getComponent());
     private Function reduceFunction;
+    private Function joinFunction;
+    private int joinInputCount;
     private LembosMapReduceEnvironment env;
     private TaskInputOutputContextWrap ctxWrapper;
+    private TaskInputOutputContextWrap reduceCtxWrapper;
+    private LembosChain reduceChain;
+    private SlowRecords slowRecords;
+    private SkipPolicy skipPolicy;
+    private JavaScriptProfiler profiler;
+    private LembosMultipleOutputs multipleOutputs;
+    private Set<String> skewKeys;
+    private LembosSkew.KeyGroups keyGroups;
 
     /**
      * {@inheritDoc}
@@ -46,11 +64,55 @@ public class LembosReducer extends Reducer<WritableComparable<?>, Writable, Writ
     protected void reduce(final WritableComparable<?> key, final Iterable<Writable> values, final Context context)
             throws IOException, InterruptedException {
 
-        env.callFunctionSync(reduceFunction, new Object[] {
-                ConversionUtils.writableComparableToJS(key, env.getModule()),
-                ReducerValuesIterableWrap.getInstance(env.getModule(), values),
-                ctxWrapper
-        });
+        final long conversionStart = System.nanoTime();
+        final long conversionBytes = AllocationMeter.getAllocatedBytes();
+        final Object[] args;
+
+        if (joinFunction != null) {
+            final List<Iterable<Writable>> inputs = LembosJoin.split(values, joinInputCount,
+                                                                     context.getConfiguration());
+
+            args = new Object[inputs.size() + 2];
+            args[0] = ConversionUtils.writableToJS(((TaggedKeyWritable)key).getKey(), env.getModule());
+
+            for (int i = 0; i < inputs.size(); i++) {
+                args[i + 1] = ReducerValuesIterableWrap.getInstance(env.getModule(), inputs.get(i));
+            }
+
+            args[args.length - 1] = reduceCtxWrapper;
+        } else {
+            args = new Object[] {
+                    ConversionUtils.writableComparableToJS(key, env.getModule()),
+                    ReducerValuesIterableWrap.getInstance(env.getModule(),
+                                                          keyGroups == null ? values : keyGroups.track(values)),
+                    reduceCtxWrapper
+            };
+        }
+
+        // The results of the salted keys are partial, the merge job combines them
+        if (skewKeys != null) {
+            reduceCtxWrapper.setSkewPartials(skewKeys.contains(key.toString()));
+        }
+
+        timers.record(LembosTimers.Phase.CONVERSION, conversionStart);
+        timers.recordAllocation(LembosTimers.Phase.CONVERSION, conversionBytes);
+
+        try {
+            env.callFunctionSync(joinFunction != null ? joinFunction : reduceFunction, args);
+        } catch (LembosTimeoutException e) {
+            skipPolicy.skip(context, key, e);
+        }
+
+        if (reduceChain != null) {
+            reduceChain.checkErrors();
+        }
+
+        if (keyGroups != null) {
+            keyGroups.offer(key);
+        }
+
+        metrics.recordProcessed();
+        slowRecords.offer(System.nanoTime() - conversionStart, key, null);
 
     }
 
@@ -61,21 +123,78 @@ public class LembosReducer extends Reducer<WritableComparable<?>, Writable, Writ
     protected void setup(final Context context) throws IOException, InterruptedException {
         super.setup(context);
 
+        // Publish the live metrics of the task, if configured
+        LembosMetricsReporter.start(context);
+
+        slowRecords = SlowRecords.fromConf(context.getConfiguration());
+        skipPolicy = new SkipPolicy(context.getConfiguration(), timers.getComponent());
+
         try {
-            env = LembosMapReduceEnvironment.fromConf(context.getConfiguration());
+            env = LembosMapReduceEnvironment.fromConf(context.getConfiguration(), timers);
             reduceFunction = env.getReduceFunction();
 
-            if (!JavaScriptUtils.isDefined(reduceFunction)) {
+            // Reduce-side joins call the join function with the values of each join input instead
+            if (JavaScriptUtils.isDefined(env.getJoinFunction())) {
+                joinFunction = env.getJoinFunction();
+                joinInputCount = LembosJoin.getInputs(context.getConfiguration()).size();
+            } else if (!JavaScriptUtils.isDefined(reduceFunction)) {
                 throw new RuntimeException("MapReduce function 'reduce' is not defined");
             }
 
+            // The merge job of the skew mode merges the partial results of the salted keys, the job itself keeps track
+            // of its largest key groups for the skew report
+            if (LembosSkew.isMerge(context.getConfiguration())) {
+                if (JavaScriptUtils.isDefined(env.getMergeFunction())) {
+                    reduceFunction = env.getMergeFunction();
+                }
+            } else if (LembosSkew.isEnabled(context.getConfiguration())) {
+                final List<String> keys = LembosSkew.getKeys(context.getConfiguration());
+
+                skewKeys = keys.isEmpty() ? null : new HashSet<>(keys);
+                keyGroups = new LembosSkew.KeyGroups(LembosSkew.REPORT_SIZE);
+            }
+
             // Create the context wrapper
             ctxWrapper = TaskInputOutputContextWrap.getInstance(env.getModule(), env.getRuntime(), context);
+            ctxWrapper.setTimers(timers);
+
+            // Stages writing binary intermediate output write the JavaScript values as they are
+            ctxWrapper.setBinaryOutput(context.getConfiguration()
+                                              .getBoolean(LembosConstants.MR_STAGE_BINARY_OUTPUT, false));
+
+            // Named outputs written to by context.writeTo
+            if (!LembosMultipleOutputs.getNamedOutputs(context.getConfiguration()).isEmpty()) {
+                multipleOutputs = new LembosMultipleOutputs(context);
+                ctxWrapper.setMultipleOutputs(multipleOutputs);
+            }
+
+            // Send the reduce output through the chained map functions, the last one writes to the task output
+            if (JavaScriptUtils.isDefined(env.getReduceChain())) {
+                reduceChain = new LembosChain(env, env.getReduceChain(), ctxWrapper, multipleOutputs);
+                reduceCtxWrapper = reduceChain.createContextWrapper();
+            } else {
+                reduceCtxWrapper = ctxWrapper;
+            }
+
+            // Report progress while waiting on functions with a timeout
+            env.setProgressable(context);
+
+            // Sample the JavaScript stack when profiling is enabled
+            profiler = JavaScriptProfiler.fromConf(context.getConfiguration(), env);
+            profiler.start(timers.getComponent());
 
             if (JavaScriptUtils.isDefined(env.getReduceSetupFunction())) {
+                final Object setupEvent = LembosEvents.begin(LembosEvents.Type.SETUP);
+
                 env.callFunctionSync(env.getReduceSetupFunction(), new Object[] {
-                        ctxWrapper
+                        reduceCtxWrapper
                 });
+
+                LembosEvents.commit(setupEvent, timers.getComponent());
+            }
+
+            if (reduceChain != null) {
+                reduceChain.setup();
             }
         } catch (ExecutionException | NodeException e) {
             throw new RuntimeException(e);
@@ -89,13 +208,55 @@ public class LembosReducer extends Reducer<WritableComparable<?>, Writable, Writ
     protected void cleanup(final Context context) throws IOException, InterruptedException {
         super.cleanup(context);
 
+        final long cleanupStart = System.nanoTime();
+
+        // What the cleanup function writes is not a partial result of the last salted key
+        if (skewKeys != null) {
+            reduceCtxWrapper.setSkewPartials(false);
+        }
+
         if (JavaScriptUtils.isDefined(env.getReduceCleanupFunction())) {
+            final Object cleanupEvent = LembosEvents.begin(LembosEvents.Type.CLEANUP);
+
             env.callFunctionSync(env.getReduceCleanupFunction(), new Object[] {
-                    ctxWrapper
+                    reduceCtxWrapper
             });
+
+            LembosEvents.commit(cleanupEvent, timers.getComponent());
+        }
+
+        if (reduceChain != null) {
+            reduceChain.cleanup();
+        }
+
+        if (multipleOutputs != null) {
+            multipleOutputs.close();
         }
 
+        profiler.stop();
         env.cleanup();
+
+        timers.record(LembosTimers.Phase.CLEANUP, cleanupStart);
+
+        // Publish the timers, along with the ones of the partitioner and comparators used by this task
+        timers.publish(context);
+        LembosTimers.publishShared(context);
+
+        slowRecords.write(context, timers.getComponent());
+
+        if (keyGroups != null) {
+            keyGroups.write(context);
+        }
+
+        profiler.write(context, timers.getComponent());
+        LembosMetricsReporter.stop();
+    }
+
+    /**
+     * @return the timers of this component
+     */
+    public LembosTimers getTimers() {
+        return timers;
     }
 
     /**
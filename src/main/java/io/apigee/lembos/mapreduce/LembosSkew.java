@@ -0,0 +1,763 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import io.apigee.lembos.io.JSObjectWritable;
+import io.apigee.lembos.node.types.TaskInputOutputContextWrap;
+import io.apigee.lembos.utils.ConversionUtils;
+import io.apigee.lembos.utils.JavaScriptUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.StringUtils;
+import org.mozilla.javascript.Function;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Skew mode of a job, for the few heavy keys turning one reducer into a straggler.
+ *
+ * The heavy keys are either listed by the job setup function, usually from the skew report of a prior run, or found by
+ * a sampling pass running the map function on records of evenly spaced input splits before the job is submitted.
+ * {@link LembosSkewPartitioner} spreads the records of the heavy keys, the <i>salted</i> keys, across several
+ * reducers and the reducers write the partial results of the salted keys to the <code>_skew</code> directory of the
+ * job output.  Once the job succeeds, the runner merges them with a second job calling the <code>merge</code> function
+ * exported by the module, or the <code>reduce</code> function when there is none, with the partial results of each
+ * salted key.
+ *
+ * In skew mode, the reducers also keep track of their largest key groups, which the runner sums up to the skew report
+ * of the job.  The keys are compared by the string form of their map output {@link WritableComparable}, which is what
+ * the keys listed by the job setup function are converted to.
+ */
+public final class LembosSkew {
+
+    /** The default number of reducers the records of a salted key are spread across. */
+    public static final int DEFAULT_SALTS = 8;
+    /** The default share of the map output records above which a key is heavy. */
+    public static final float DEFAULT_THRESHOLD = 0.05f;
+    /** The number of largest key groups each reducer and each report keeps track of. */
+    public static final int REPORT_SIZE = 10;
+    /** The named output the reducers write the partial results of the salted keys to. */
+    public static final String PARTIALS_OUTPUT = "lembosSkew";
+    /** The base path of the partial results of the salted keys, relative to the job output directory. */
+    public static final String PARTIALS_PATH = "_skew/part";
+
+    private static final String PARTIALS_DIR = "_skew";
+    private static final String MERGED_DIR = "_skew-merged";
+    private static final String MERGED_PREFIX = "skew-merged-";
+    private static final String REPORT_PREFIX = "_lembos-skew-";
+    private static final String REDUCE_VALUES_COUNTER = "Skew Reduce Values";
+    // JobContext.COMBINE_CLASS_ATTR is not public in Hadoop 1
+    private static final String COMBINE_CLASS = "mapreduce.combine.class";
+    private static final String WORK_OUTPUT_DIR = "mapred.work.output.dir";
+    private static final int MAX_SAMPLED_SPLITS = 10;
+
+    private static final Comparator<Map.Entry<String, Long>> BY_COUNT = new Comparator<Map.Entry<String, Long>>() {
+        @Override
+        public int compare(final Map.Entry<String, Long> left, final Map.Entry<String, Long> right) {
+            return Long.compare(left.getValue(), right.getValue());
+        }
+    };
+
+    /**
+     * Private constructor.
+     */
+    private LembosSkew() { }
+
+    /**
+     * Enables the skew mode of the job.
+     *
+     * @param job the job
+     * @param keys the known heavy keys, as the string form of their map output key
+     * @param salts the number of reducers the records of a heavy key are spread across (At least 2)
+     * @param sampleSize the number of input records the sampling pass runs through the map function (0 to skip the
+     *                   sampling pass)
+     * @param threshold the share of the map output records above which a sampled key is heavy
+     */
+    public static void setSkewMode(final Job job, final Collection<String> keys, final int salts,
+                                   final int sampleSize, final float threshold) {
+        final Configuration conf = job.getConfiguration();
+
+        if (salts < 2) {
+            throw new IllegalArgumentException("Skew mode requires at least 2 salts: " + salts);
+        } else if (sampleSize < 0) {
+            throw new IllegalArgumentException("Skew mode sample size cannot be negative: " + sampleSize);
+        } else if (!(threshold > 0 && threshold <= 1)) {
+            throw new IllegalArgumentException("Skew mode threshold must be between 0 and 1: " + threshold);
+        }
+
+        conf.setInt(LembosConstants.MR_SKEW_SALTS, salts);
+        conf.setInt(LembosConstants.MR_SKEW_SAMPLE_SIZE, sampleSize);
+        conf.setFloat(LembosConstants.MR_SKEW_THRESHOLD, threshold);
+
+        setKeys(conf, keys);
+    }
+
+    /**
+     * Returns whether or not the job runs in skew mode.
+     *
+     * @param conf the job configuration
+     *
+     * @return true if the job runs in skew mode
+     */
+    public static boolean isEnabled(final Configuration conf) {
+        return conf.getInt(LembosConstants.MR_SKEW_SALTS, 0) >= 2;
+    }
+
+    /**
+     * Returns whether or not the job runs in skew mode and salts heavy keys, which requires the merge job.
+     *
+     * @param conf the job configuration
+     *
+     * @return true if the job salts heavy keys
+     */
+    public static boolean isSalted(final Configuration conf) {
+        return isEnabled(conf) && !isMerge(conf) && !getKeys(conf).isEmpty();
+    }
+
+    /**
+     * Returns whether or not the job is the merge job of the salted keys of a job.
+     *
+     * @param conf the job configuration
+     *
+     * @return true if the job merges the partial results of salted keys
+     */
+    public static boolean isMerge(final Configuration conf) {
+        return conf.getBoolean(LembosConstants.MR_SKEW_MERGE, false);
+    }
+
+    /**
+     * Returns the salted keys of the job.
+     *
+     * @param conf the job configuration
+     *
+     * @return the string form of the salted keys
+     */
+    public static List<String> getKeys(final Configuration conf) {
+        final List<String> keys = new ArrayList<>();
+        final String escaped = conf.get(LembosConstants.MR_SKEW_KEYS, "");
+
+        if (!escaped.isEmpty()) {
+            for (final String key : StringUtils.split(escaped)) {
+                keys.add(StringUtils.unEscapeString(key));
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Configures the skew mode of the job, if enabled: The heavy keys found by the sampling pass are added to the
+     * listed ones and, when there are heavy keys, the job partitions with {@link LembosSkewPartitioner} and gets the
+     * named output of the partial results.  The stages of a job graph are not sampled since they only report the skew.
+     *
+     * @param job the job
+     * @param env the MapReduce environment
+     *
+     * @throws IOException if the input cannot be sampled
+     * @throws InterruptedException if the sampling pass is interrupted
+     */
+    public static void configure(final Job job, final LembosMapReduceEnvironment env)
+            throws IOException, InterruptedException {
+        final Configuration conf = job.getConfiguration();
+
+        if (!isEnabled(conf)) {
+            return;
+        }
+
+        if (!JavaScriptUtils.isDefined(env.getReduceFunction())) {
+            throw new IllegalArgumentException("MapReduce skew mode requires a reduce function");
+        } else if (JavaScriptUtils.isDefined(env.getReduceChain())) {
+            throw new IllegalArgumentException("MapReduce skew mode cannot be used with a reduce chain");
+        } else if (job.getNumReduceTasks() < 2) {
+            throw new IllegalArgumentException("MapReduce skew mode requires at least 2 reducers");
+        }
+
+        final Set<String> keys = new LinkedHashSet<>(getKeys(conf));
+        final int sampleSize = conf.getInt(LembosConstants.MR_SKEW_SAMPLE_SIZE, 0);
+
+        if (sampleSize > 0 && conf.get(LembosConstants.MR_STAGE) != null) {
+            // The input of a stage may not exist until an upstream stage ran, and salting a stage is not supported
+            System.out.println("MapReduce stage (" + conf.get(LembosConstants.MR_STAGE) + ") does not sample its "
+                                       + "input, the skew mode of stages only reports the skew");
+        } else if (sampleSize > 0) {
+            final Map<String, Long> counts = sample(job, env, sampleSize);
+            long total = 0;
+
+            for (final long count : counts.values()) {
+                total += count;
+            }
+
+            keys.addAll(printReport(System.out, "Skew sample", counts, total,
+                                    conf.getFloat(LembosConstants.MR_SKEW_THRESHOLD, DEFAULT_THRESHOLD), keys));
+        }
+
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        setKeys(conf, keys);
+
+        try {
+            conf.setClass(LembosConstants.MR_SKEW_PARTITIONER, job.getPartitionerClass(), Partitioner.class);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+
+        job.setPartitionerClass(LembosSkewPartitioner.class);
+
+        LembosMultipleOutputs.addNamedOutput(job, PARTIALS_OUTPUT, SequenceFileOutputFormat.class,
+                                             JSObjectWritable.class, JSObjectWritable.class);
+
+        System.out.println("Salting skewed keys " + keys + " across "
+                                   + Math.min(conf.getInt(LembosConstants.MR_SKEW_SALTS, DEFAULT_SALTS),
+                                              job.getNumReduceTasks()) + " reducers");
+    }
+
+    /**
+     * Runs the merge job of the partial results of the salted keys, once the job succeeded, and moves its output files
+     * to the job output directory, prefixed with <code>skew-merged-</code>.
+     *
+     * @param job the completed job
+     *
+     * @return true if the merge job succeeded or there was nothing to merge
+     *
+     * @throws IOException if the merge job cannot be run
+     * @throws InterruptedException if the merge job is interrupted
+     * @throws ClassNotFoundException if a class of the merge job cannot be found
+     */
+    public static boolean merge(final Job job) throws IOException, InterruptedException, ClassNotFoundException {
+        final Configuration conf = job.getConfiguration();
+        final Path outputDir = FileOutputFormat.getOutputPath(job);
+        final Path partialsDir = new Path(outputDir, PARTIALS_DIR);
+        final Path mergedDir = new Path(outputDir, MERGED_DIR);
+        final FileSystem fs = outputDir.getFileSystem(conf);
+
+        if (!fs.exists(partialsDir)) {
+            return true;
+        }
+
+        // The merge job runs the module the job ran, without its combiner since the partial results are final
+        final Configuration mergeConf = new Configuration(false);
+
+        for (final Map.Entry<String, String> entry : conf) {
+            if (!COMBINE_CLASS.equals(entry.getKey())) {
+                mergeConf.set(entry.getKey(), entry.getValue());
+            }
+        }
+
+        mergeConf.setBoolean(LembosConstants.MR_SKEW_MERGE, true);
+
+        final Job mergeJob = new Job(mergeConf, job.getJobName() + "-skew-merge");
+
+        mergeJob.setInputFormatClass(SequenceFileInputFormat.class);
+        mergeJob.setMapperClass(Mapper.class);
+        mergeJob.setMapOutputKeyClass(JSObjectWritable.class);
+        mergeJob.setMapOutputValueClass(JSObjectWritable.class);
+        mergeJob.setPartitionerClass(HashPartitioner.class);
+        mergeJob.setNumReduceTasks(Math.max(1, Math.min(job.getNumReduceTasks(), getKeys(conf).size())));
+
+        FileInputFormat.setInputPaths(mergeJob, partialsDir);
+        FileOutputFormat.setOutputPath(mergeJob, mergedDir);
+
+        System.out.println("Merging the partial results of the salted keys " + getKeys(conf));
+
+        if (!mergeJob.waitForCompletion(true)) {
+            return false;
+        }
+
+        for (final FileStatus status : fs.listStatus(mergedDir)) {
+            final String name = status.getPath().getName();
+
+            if (!name.startsWith("_") && !name.startsWith(".")) {
+                fs.rename(status.getPath(), new Path(outputDir, MERGED_PREFIX + name));
+            }
+        }
+
+        fs.delete(partialsDir, true);
+        fs.delete(mergedDir, true);
+
+        return true;
+    }
+
+    /**
+     * Prints the skew report of the completed job: The largest key groups written by its reducers, with their share of
+     * the reduce input.
+     *
+     * @param job the completed job
+     *
+     * @return the heavy keys that were not salted
+     *
+     * @throws IOException if the largest key groups cannot be read
+     */
+    public static Set<String> report(final Job job) throws IOException {
+        final Configuration conf = job.getConfiguration();
+        final Path outputDir = FileOutputFormat.getOutputPath(job);
+
+        if (outputDir == null) {
+            return Collections.emptySet();
+        }
+
+        final FileSystem fs = outputDir.getFileSystem(conf);
+        final FileStatus[] files = fs.globStatus(new Path(outputDir, REPORT_PREFIX + "*"));
+        final Map<String, Long> counts = new HashMap<>();
+
+        for (int i = 0; files != null && i < files.length; i++) {
+            try (final FSDataInputStream in = fs.open(files[i].getPath());
+                 final BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+                                                                                        StandardCharsets.UTF_8))) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    final int tab = line.indexOf('\t');
+
+                    if (tab != -1) {
+                        final String key = unescape(line.substring(tab + 1));
+                        final Long count = counts.get(key);
+
+                        counts.put(key, Long.parseLong(line.substring(0, tab)) + (count == null ? 0 : count));
+                    }
+                }
+            }
+        }
+
+        final Counter total = job.getCounters().findCounter(LembosTimers.COUNTER_GROUP, REDUCE_VALUES_COUNTER);
+
+        final Set<String> heavy = printReport(System.out, "Skew report", counts, total.getValue(),
+                                              conf.getFloat(LembosConstants.MR_SKEW_THRESHOLD, DEFAULT_THRESHOLD),
+                                              new LinkedHashSet<>(getKeys(conf)));
+
+        if (!heavy.isEmpty()) {
+            System.out.println("Heavy keys " + heavy + " can be salted by listing them in the skew mode keys");
+        }
+
+        return heavy;
+    }
+
+    /**
+     * Runs records of evenly spaced input splits through the map function, like map tasks would, and counts the keys
+     * it writes.
+     *
+     * @param job the job
+     * @param env the MapReduce environment
+     * @param sampleSize the number of input records to sample
+     *
+     * @return the number of map output records of each key
+     *
+     * @throws IOException if the input cannot be read
+     * @throws InterruptedException if reading the input is interrupted
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Long> sample(final Job job, final LembosMapReduceEnvironment env, final int sampleSize)
+            throws IOException, InterruptedException {
+        final Configuration conf = job.getConfiguration();
+        final InputFormat<Object, Object> inputFormat;
+
+        try {
+            inputFormat = (InputFormat<Object, Object>)ReflectionUtils.newInstance(job.getInputFormatClass(), conf);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+
+        final List<InputSplit> splits = inputFormat.getSplits(job);
+        final int sampledSplits = Math.min(splits.size(), MAX_SAMPLED_SPLITS);
+        final Map<String, Long> counts = new HashMap<>();
+        final TaskAttemptID taskAttemptID = new TaskAttemptID("lembos-skew", 0, true, 0, 0);
+        final SampleReporter reporter = new SampleReporter();
+        final RecordWriter<Object, Object> writer = new RecordWriter<Object, Object>() {
+            @Override
+            public void write(final Object key, final Object value) {
+                final Long count = counts.get(key.toString());
+
+                counts.put(key.toString(), count == null ? 1 : count + 1);
+            }
+
+            @Override
+            public void close(final TaskAttemptContext context) { }
+        };
+
+        for (int i = 0; i < sampledSplits; i++) {
+            final InputSplit split = splits.get(i * splits.size() / sampledSplits);
+            final RecordReader<Object, Object> reader =
+                    inputFormat.createRecordReader(split, new TaskAttemptContext(conf, taskAttemptID));
+            final MapContext<Object, Object, Object, Object> context =
+                    new MapContext<>(conf, taskAttemptID, reader, writer, null, reporter, split);
+            final int records = sampleSize / sampledSplits + (i < sampleSize % sampledSplits ? 1 : 0);
+
+            try {
+                reader.initialize(split, context);
+
+                sample(env, context, records);
+            } finally {
+                reader.close();
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Runs the records of an input split through the map setup, map and map cleanup functions.
+     *
+     * @param env the MapReduce environment
+     * @param context the map context of the input split
+     * @param records the maximum number of records to sample
+     *
+     * @throws IOException if the input cannot be read
+     * @throws InterruptedException if reading the input is interrupted
+     */
+    private static void sample(final LembosMapReduceEnvironment env,
+                               final MapContext<Object, Object, Object, Object> context, final int records)
+            throws IOException, InterruptedException {
+        final TaskInputOutputContextWrap ctxWrapper = TaskInputOutputContextWrap.getInstance(env.getModule(),
+                                                                                             env.getRuntime(),
+                                                                                             context);
+        final LembosChain chain = JavaScriptUtils.isDefined(env.getMapChain()) ?
+                new LembosChain(env, env.getMapChain(), ctxWrapper, null) :
+                null;
+        final Function mapFunction = chain == null ? env.getMapFunction() : chain.getHead().getFunction();
+        final TaskInputOutputContextWrap mapCtxWrapper = chain == null ?
+                ctxWrapper :
+                chain.getHead().getContextWrapper();
+
+        if (JavaScriptUtils.isDefined(env.getMapSetupFunction())) {
+            env.callFunctionSync(env.getMapSetupFunction(), new Object[] {
+                    mapCtxWrapper
+            });
+        }
+
+        if (chain != null) {
+            chain.setup();
+        }
+
+        for (int i = 0; i < records && context.nextKeyValue(); i++) {
+            env.callFunctionSync(mapFunction, new Object[] {
+                    ConversionUtils.writableComparableToJS((WritableComparable<?>)context.getCurrentKey(),
+                                                           env.getModule()),
+                    ConversionUtils.writableToJS((Writable)context.getCurrentValue(), env.getModule()),
+                    mapCtxWrapper
+            });
+
+            if (chain != null) {
+                chain.checkErrors();
+            }
+        }
+
+        if (JavaScriptUtils.isDefined(env.getMapCleanupFunction())) {
+            env.callFunctionSync(env.getMapCleanupFunction(), new Object[] {
+                    mapCtxWrapper
+            });
+        }
+
+        if (chain != null) {
+            chain.cleanup();
+        }
+    }
+
+    /**
+     * Prints the largest key counts with their share of the total and returns the heavy keys.
+     *
+     * @param out the stream to print to
+     * @param title the title of the report
+     * @param counts the key counts
+     * @param total the total count
+     * @param threshold the share above which a key is heavy
+     * @param salted the salted keys
+     *
+     * @return the heavy keys that are not salted
+     */
+    static Set<String> printReport(final PrintStream out, final String title, final Map<String, Long> counts,
+                                   final long total, final float threshold, final Set<String> salted) {
+        final List<Map.Entry<String, Long>> largest = new ArrayList<>(counts.entrySet());
+        final Set<String> heavy = new LinkedHashSet<>();
+
+        Collections.sort(largest, Collections.reverseOrder(BY_COUNT));
+
+        out.println(title + ": " + total + " records, " + counts.size() + " keys reported");
+
+        for (final Map.Entry<String, Long> entry : largest.subList(0, Math.min(largest.size(), REPORT_SIZE))) {
+            final double share = total == 0 ? 0 : (double)entry.getValue() / total;
+            String flag = "";
+
+            if (salted.contains(entry.getKey())) {
+                flag = " (salted)";
+            } else if (share >= threshold) {
+                flag = " (heavy)";
+
+                heavy.add(entry.getKey());
+            }
+
+            out.println(String.format(Locale.ROOT, "  %6.2f%% %12d  %s%s", share * 100, entry.getValue(),
+                                      escape(entry.getKey()), flag));
+        }
+
+        return heavy;
+    }
+
+    /**
+     * Stores the salted keys of the job.
+     *
+     * @param conf the job configuration
+     * @param keys the string form of the salted keys
+     */
+    private static void setKeys(final Configuration conf, final Collection<String> keys) {
+        final List<String> escaped = new ArrayList<>();
+
+        for (final String key : keys) {
+            escaped.add(StringUtils.escapeString(key));
+        }
+
+        conf.set(LembosConstants.MR_SKEW_KEYS, StringUtils.join(",", escaped));
+    }
+
+    /**
+     * @param value the value
+     *
+     * @return the value with its tabs and line breaks escaped
+     */
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /**
+     * @param value the value escaped by {@link #escape(String)}
+     *
+     * @return the original value
+     */
+    private static String unescape(final String value) {
+        final StringBuilder builder = new StringBuilder(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            if (c == '\\' && i + 1 < value.length()) {
+                final char escaped = value.charAt(++i);
+
+                builder.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            } else {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Keeps track of the largest key groups of a reducer and of the number of values it reduced.
+     */
+    public static final class KeyGroups {
+
+        private final int capacity;
+        private final PriorityQueue<Map.Entry<String, Long>> largest;
+        private long total;
+        private long current;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity the number of key groups to keep
+         */
+        public KeyGroups(final int capacity) {
+            this.capacity = capacity;
+            this.largest = new PriorityQueue<>(Math.max(1, capacity), BY_COUNT);
+        }
+
+        /**
+         * Returns a view of the values of the key group being reduced which counts them as they are read.
+         *
+         * @param values the values
+         *
+         * @return the counting view of the values
+         */
+        public Iterable<Writable> track(final Iterable<Writable> values) {
+            current = 0;
+
+            return new Iterable<Writable>() {
+                @Override
+                public Iterator<Writable> iterator() {
+                    final Iterator<Writable> iterator = values.iterator();
+
+                    return new Iterator<Writable>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Writable next() {
+                            final Writable value = iterator.next();
+
+                            current++;
+
+                            return value;
+                        }
+
+                        @Override
+                        public void remove() {
+                            iterator.remove();
+                        }
+                    };
+                }
+            };
+        }
+
+        /**
+         * Offers the key group just reduced, with the number of values read since {@link #track(Iterable)}.
+         *
+         * @param key the key
+         */
+        public void offer(final Object key) {
+            total += current;
+
+            if (capacity > 0 && (largest.size() < capacity || largest.peek().getValue() < current)) {
+                if (largest.size() == capacity) {
+                    largest.poll();
+                }
+
+                largest.add(new AbstractMap.SimpleImmutableEntry<>(String.valueOf(key), current));
+            }
+
+            current = 0;
+        }
+
+        /**
+         * @return the largest key groups, largest first
+         */
+        public List<Map.Entry<String, Long>> getLargest() {
+            final List<Map.Entry<String, Long>> groups = new ArrayList<>(largest);
+
+            Collections.sort(groups, Collections.reverseOrder(BY_COUNT));
+
+            return groups;
+        }
+
+        /**
+         * Counts the values reduced by the task and writes the largest key groups, as tab separated count and key
+         * lines, to the <code>_lembos-skew-&lt;task id&gt;.tsv</code> file of the task work output directory.
+         *
+         * @param context the task context
+         *
+         * @return the file written or null if nothing was written
+         *
+         * @throws IOException if anything goes wrong
+         */
+        public Path write(final TaskInputOutputContext<?, ?, ?, ?> context) throws IOException {
+            final String workOutputDir = context.getConfiguration().get(WORK_OUTPUT_DIR);
+            final List<Map.Entry<String, Long>> groups = getLargest();
+
+            context.getCounter(LembosTimers.COUNTER_GROUP, REDUCE_VALUES_COUNTER).increment(total);
+
+            if (workOutputDir == null || groups.isEmpty()) {
+                return null;
+            }
+
+            final Path file = new Path(workOutputDir, REPORT_PREFIX + context.getTaskAttemptID().getTaskID()
+                    + ".tsv");
+            final FileSystem fs = file.getFileSystem(context.getConfiguration());
+
+            try (final FSDataOutputStream out = fs.create(file, true)) {
+                for (final Map.Entry<String, Long> group : groups) {
+                    out.write((group.getValue() + "\t" + escape(group.getKey()) + "\n")
+                                      .getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            return file;
+        }
+
+    }
+
+    /**
+     * Status reporter of the sampling pass, whose counters are discarded.
+     */
+    private static final class SampleReporter extends StatusReporter {
+
+        private final Counters counters = new Counters();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Counter getCounter(final Enum<?> name) {
+            return counters.findCounter(name);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Counter getCounter(final String group, final String name) {
+            return counters.findCounter(group, name);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void progress() { }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setStatus(final String status) { }
+
+    }
+
+}
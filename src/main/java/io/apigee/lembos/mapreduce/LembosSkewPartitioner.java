@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link Partitioner} of the skew mode that spreads the records of the salted keys, round-robin, across the
+ * {@link LembosConstants#MR_SKEW_SALTS} partitions following the one the partitioner of the job picks for them.  The
+ * other keys are partitioned by the partitioner of the job.  (See {@link LembosSkew})
+ */
+public class LembosSkewPartitioner extends Partitioner<WritableComparable<?>, Writable>
+        implements Closeable, Configurable {
+
+    private Configuration conf;
+    private Partitioner<WritableComparable<?>, Writable> delegate;
+    private Set<String> keys;
+    private int salts;
+    private int nextSalt;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPartition(final WritableComparable<?> key, final Writable value, final int numPartitions) {
+        if (conf == null) {
+            // Should never happen
+            throw new RuntimeException("Hadoop configuration cannot be null");
+        }
+
+        final int partition = delegate.getPartition(key, value, numPartitions);
+
+        if (!keys.contains(key.toString())) {
+            return partition;
+        }
+
+        final int salt = nextSalt;
+
+        nextSalt = (nextSalt + 1) % Math.min(salts, numPartitions);
+
+        return (partition + salt) % numPartitions;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable)delegate).close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setConf(final Configuration conf) {
+        this.conf = conf;
+        this.keys = new HashSet<>(LembosSkew.getKeys(conf));
+        this.salts = conf.getInt(LembosConstants.MR_SKEW_SALTS, LembosSkew.DEFAULT_SALTS);
+        this.delegate = ReflectionUtils.newInstance(conf.getClass(LembosConstants.MR_SKEW_PARTITIONER,
+                                                                  HashPartitioner.class, Partitioner.class), conf);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+}
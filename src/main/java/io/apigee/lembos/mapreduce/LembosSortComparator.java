@@ -40,6 +40,7 @@ import java.util.concurrent.ExecutionException;
  */
 public class LembosSortComparator extends WritableComparator implements Configurable, Closeable {
 
+    private final LembosTimers timers = LembosTimers.getShared("Sort");
     private Configuration conf;
     private Function sortFunction;
     private LembosMapReduceEnvironment env;
@@ -64,7 +65,7 @@ public class LembosSortComparator extends WritableComparator implements Configur
 
         if (!JavaScriptUtils.isDefined(sortFunction)) {
             try {
-                env = LembosMapReduceEnvironment.fromConf(conf);
+                env = LembosMapReduceEnvironment.fromConf(conf, timers);
                 jsConf = ConfigurationWrap.getInstance(env.getRuntime(), conf);
                 sortFunction = env.getSortFunction();
 
@@ -73,21 +74,35 @@ public class LembosSortComparator extends WritableComparator implements Configur
                 }
 
                 if (JavaScriptUtils.isDefined(env.getSortSetupFunction())) {
+                    final Object setupEvent = LembosEvents.begin(LembosEvents.Type.SETUP);
+
                     env.callFunctionSync(env.getSortSetupFunction(), new Object[] {
                             jsConf
                     });
+
+                    LembosEvents.commit(setupEvent, timers.getComponent());
                 }
             } catch (ExecutionException | IOException | InterruptedException | NodeException e) {
                 throw new RuntimeException(e);
             }
         }
 
-        final WritableComparable<?> jsSort = ConversionUtils.jsToWritableComparable(
-                env.callFunctionSync(sortFunction,
-                                     new Object[] {
-                                             ConversionUtils.writableComparableToJS(key1, env.getModule()),
-                                             ConversionUtils.writableComparableToJS(key2, env.getModule())
-                                     }), env.getModule());
+        final long argsConversionStart = System.nanoTime();
+        final long argsConversionBytes = AllocationMeter.getAllocatedBytes();
+        final Object[] args = new Object[] {
+                ConversionUtils.writableComparableToJS(key1, env.getModule()),
+                ConversionUtils.writableComparableToJS(key2, env.getModule())
+        };
+        final long argsConversionNanos = System.nanoTime() - argsConversionStart;
+        final long argsAllocatedBytes = AllocationMeter.getAllocatedBytes() - argsConversionBytes;
+        final Object result = env.callFunctionSync(sortFunction, args);
+        final long resultConversionStart = System.nanoTime();
+        final long resultConversionBytes = AllocationMeter.getAllocatedBytes();
+        final WritableComparable<?> jsSort = ConversionUtils.jsToWritableComparable(result, env.getModule());
+
+        timers.add(LembosTimers.Phase.CONVERSION, argsConversionNanos + System.nanoTime() - resultConversionStart);
+        timers.addAllocatedBytes(LembosTimers.Phase.CONVERSION,
+                                 argsAllocatedBytes + AllocationMeter.getAllocatedBytes() - resultConversionBytes);
 
         if (!JavaScriptUtils.isDefined(jsSort) || jsSort instanceof NullWritable) {
             throw new RuntimeException("MapReduce function 'sort' cannot return null/undefined");
@@ -107,13 +122,21 @@ public class LembosSortComparator extends WritableComparator implements Configur
     @Override
     public void close() throws IOException {
         if (env != null) {
+            final long cleanupStart = System.nanoTime();
+
             if (JavaScriptUtils.isDefined(env.getSortCleanupFunction())) {
+                final Object cleanupEvent = LembosEvents.begin(LembosEvents.Type.CLEANUP);
+
                 env.callFunctionSync(env.getSortCleanupFunction(), new Object[] {
                         jsConf
                 });
+
+                LembosEvents.commit(cleanupEvent, timers.getComponent());
             }
 
             env.cleanup();
+
+            timers.record(LembosTimers.Phase.CLEANUP, cleanupStart);
         }
     }
 
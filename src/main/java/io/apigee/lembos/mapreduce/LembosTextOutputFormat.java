@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Extension of {@link TextOutputFormat} that writes through a large output buffer, of
+ * {@link LembosConstants#MR_MAP_ONLY_BUFFER_SIZE} bytes, so that lines are written, and compressed, in batches instead
+ * of one small write per key, separator and value.
+ *
+ * The runner uses it for map-only jobs writing text, whose records Hadoop hands straight to the record writer, and
+ * their mapper formats the JavaScript keys and values directly into reused {@link org.apache.hadoop.io.Text}s.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LembosTextOutputFormat<K, V> extends TextOutputFormat<K, V> {
+
+    /** The default output buffer size. */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Returns whether or not the task writes its records straight to a {@link LembosTextOutputFormat}, meaning it runs
+     * the map function of a map-only job using it.
+     *
+     * @param context the task context
+     *
+     * @return true if the records can be formatted directly to text
+     */
+    public static boolean isDirect(final JobContext context) {
+        try {
+            return context.getNumReduceTasks() == 0
+                    && LembosTextOutputFormat.class.equals(context.getOutputFormatClass());
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordWriter<K, V> getRecordWriter(final TaskAttemptContext job) throws IOException, InterruptedException {
+        final Configuration conf = job.getConfiguration();
+        final boolean isCompressed = getCompressOutput(job);
+        final String keyValueSeparator = conf.get("mapred.textoutputformat.separator", "\t");
+        final int bufferSize = conf.getInt(LembosConstants.MR_MAP_ONLY_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+        CompressionCodec codec = null;
+        String extension = "";
+
+        if (isCompressed) {
+            codec = ReflectionUtils.newInstance(getOutputCompressorClass(job, GzipCodec.class), conf);
+            extension = codec.getDefaultExtension();
+        }
+
+        final Path file = getDefaultWorkFile(job, extension);
+        final FileSystem fs = file.getFileSystem(conf);
+        final OutputStream fileOut = fs.create(file, false);
+
+        return new LineRecordWriter<>(new DataOutputStream(new BufferedOutputStream(
+                codec == null ? fileOut : codec.createOutputStream(fileOut), bufferSize)), keyValueSeparator);
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+/**
+ * Thrown when a JavaScript function does not call its callback within the configured timeout.
+ */
+public class LembosTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 3712554780145396172L;
+
+    /**
+     * Constructor.
+     *
+     * @param message the error message
+     */
+    public LembosTimeoutException(final String message) {
+        super(message);
+    }
+
+}
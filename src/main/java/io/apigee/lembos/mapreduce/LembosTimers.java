@@ -0,0 +1,337 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Accumulates the time spent, and the number of invocations, in each {@link Phase} of a Lembos MapReduce component.
+ * The timers are published as counters of the {@link #COUNTER_GROUP} counter group, named
+ * <code>&lt;component&gt; &lt;phase&gt; (ms)</code> and <code>&lt;component&gt; &lt;phase&gt; Calls</code>.  The latency of
+ * the JavaScript function calls is also recorded in a {@link LatencyHistogram} whose median, 99th percentile and
+ * maximum are published as the <code>&lt;component&gt; Round Trip p50 (us)</code>,
+ * <code>&lt;component&gt; Round Trip p99 (us)</code> and <code>&lt;component&gt; Round Trip Max (us)</code> counters and
+ * written to the task log.  Unlike the phase timers, the histogram is never reset and the counters are set to its
+ * current values, which only makes sense per task: The job level values are the sums of the task values.
+ *
+ * When enabled, the memory allocated in the {@link Phase#CONVERSION}, {@link Phase#JS_EXECUTION} and
+ * {@link Phase#CONTEXT_WRITE} phases, as measured by {@link AllocationMeter}, is published as
+ * <code>&lt;component&gt; &lt;phase&gt; Allocated (bytes)</code> counters.  Since <code>context.write</code> runs on
+ * the thread of the JavaScript code, the {@link Phase#CONTEXT_WRITE} allocations are a subset of the
+ * {@link Phase#JS_EXECUTION} ones, so only the {@link Phase#CONVERSION} and {@link Phase#JS_EXECUTION} counters are
+ * summed, and divided by the number of conversions, for the <code>&lt;component&gt; Allocated Bytes Per Record</code>
+ * counter.  Components that are not shared also publish the time the JVM spent in garbage collection since they were
+ * created as the <code>&lt;component&gt; GC Pause (ms)</code> counter.
+ *
+ * <b>Note:</b> The partitioner and the comparators have no access to the task counters so they use timers shared by
+ * the whole JVM, see {@link #getShared(String)}, which are published by the next mapper, reducer or combiner that
+ * cleans up.  The time they spend after that, like the sorting of the last map-side spill of a job without a
+ * combiner, is only published if another task runs in the same JVM.
+ */
+public final class LembosTimers {
+
+    /** The name of the counter group the timers are published to. */
+    public static final String COUNTER_GROUP = "Lembos";
+
+    private static final ConcurrentMap<String, LembosTimers> SHARED = new ConcurrentHashMap<>();
+
+    private final String component;
+    private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray calls = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray allocatedBytes = new AtomicLongArray(Phase.values().length);
+    private final LatencyHistogram roundTrips = new LatencyHistogram();
+    private final long gcStartMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param component the name of the component, used as the prefix of the counter names
+     */
+    public LembosTimers(final String component) {
+        this(component, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param component the name of the component, used as the prefix of the counter names
+     * @param shared whether the timers are shared by the whole JVM, in which case the GC time is not published
+     */
+    private LembosTimers(final String component, final boolean shared) {
+        this.component = component;
+        this.gcStartMillis = shared ? -1 : AllocationMeter.getGcMillis();
+    }
+
+    /**
+     * Returns the timers of the component shared by the whole JVM, creating them if necessary.
+     *
+     * @param component the name of the component
+     *
+     * @return the shared timers
+     */
+    public static LembosTimers getShared(final String component) {
+        LembosTimers timers = SHARED.get(component);
+
+        if (timers == null) {
+            final LembosTimers newTimers = new LembosTimers(component, true);
+
+            timers = SHARED.putIfAbsent(component, newTimers);
+
+            if (timers == null) {
+                timers = newTimers;
+            }
+        }
+
+        return timers;
+    }
+
+    /**
+     * Publishes, and resets, the timers shared by the whole JVM.
+     *
+     * @param context the task context whose counters to publish to
+     */
+    public static void publishShared(final TaskInputOutputContext<?, ?, ?, ?> context) {
+        for (final LembosTimers timers : SHARED.values()) {
+            timers.publish(context);
+        }
+    }
+
+    /**
+     * @return the name of the component
+     */
+    public String getComponent() {
+        return component;
+    }
+
+    /**
+     * Records an invocation of the phase that started at <code>startNanos</code> and ends now.
+     *
+     * @param phase the phase
+     * @param startNanos the value of {@link System#nanoTime()} when the invocation started
+     */
+    public void record(final Phase phase, final long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records an invocation of the phase.
+     *
+     * @param phase the phase
+     * @param elapsedNanos the time spent in nanoseconds
+     */
+    public void add(final Phase phase, final long elapsedNanos) {
+        nanos.addAndGet(phase.ordinal(), elapsedNanos);
+        calls.incrementAndGet(phase.ordinal());
+    }
+
+    /**
+     * Records the memory allocated by the current thread in the phase, since <code>startBytes</code>.
+     *
+     * @param phase the phase
+     * @param startBytes the value of {@link AllocationMeter#getAllocatedBytes()} when the phase started
+     */
+    public void recordAllocation(final Phase phase, final long startBytes) {
+        addAllocatedBytes(phase, AllocationMeter.getAllocatedBytes() - startBytes);
+    }
+
+    /**
+     * Records memory allocated in the phase.
+     *
+     * @param phase the phase
+     * @param bytes the bytes allocated
+     */
+    public void addAllocatedBytes(final Phase phase, final long bytes) {
+        if (bytes > 0) {
+            allocatedBytes.addAndGet(phase.ordinal(), bytes);
+        }
+    }
+
+    /**
+     * @param phase the phase
+     *
+     * @return the memory allocated in the phase, since last published, in bytes
+     */
+    public long getAllocatedBytes(final Phase phase) {
+        return allocatedBytes.get(phase.ordinal());
+    }
+
+    /**
+     * Records the latency of a JavaScript function call, from the call to the calling thread resuming.
+     *
+     * @param elapsedNanos the latency in nanoseconds
+     */
+    public void recordRoundTrip(final long elapsedNanos) {
+        roundTrips.record(elapsedNanos);
+    }
+
+    /**
+     * @return the latency histogram of the JavaScript function calls, in nanoseconds
+     */
+    public LatencyHistogram getRoundTrips() {
+        return roundTrips;
+    }
+
+    /**
+     * @param phase the phase
+     *
+     * @return the time spent in the phase, since last published, in nanoseconds
+     */
+    public long getNanos(final Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    /**
+     * @param phase the phase
+     *
+     * @return the number of invocations of the phase since last published
+     */
+    public long getCalls(final Phase phase) {
+        return calls.get(phase.ordinal());
+    }
+
+    /**
+     * Publishes the timers to the task counters and resets them.  Only whole milliseconds are published, the rest is
+     * kept for the next time the timers are published.
+     *
+     * @param context the task context whose counters to publish to
+     */
+    public void publish(final TaskInputOutputContext<?, ?, ?, ?> context) {
+        for (final Phase phase : Phase.values()) {
+            final int index = phase.ordinal();
+            final long phaseCalls = calls.getAndSet(index, 0);
+            final long millis = TimeUnit.NANOSECONDS.toMillis(nanos.get(index));
+            final long bytes = allocatedBytes.getAndSet(index, 0);
+
+            nanos.addAndGet(index, -TimeUnit.MILLISECONDS.toNanos(millis));
+
+            if (phaseCalls > 0 || millis > 0) {
+                context.getCounter(COUNTER_GROUP, getCounterName(phase) + " (ms)").increment(millis);
+                context.getCounter(COUNTER_GROUP, getCounterName(phase) + " Calls").increment(phaseCalls);
+            }
+
+            if (bytes > 0) {
+                context.getCounter(COUNTER_GROUP, getCounterName(phase) + " Allocated (bytes)").increment(bytes);
+            }
+        }
+
+        if (AllocationMeter.isEnabled()) {
+            // The counters are cumulative, like the number of records, and the context writes are part of JS execution
+            final long records = context.getCounter(COUNTER_GROUP, getCounterName(Phase.CONVERSION) + " Calls")
+                                        .getValue();
+            final long recordBytes = getPublishedAllocatedBytes(context, Phase.CONVERSION)
+                    + getPublishedAllocatedBytes(context, Phase.JS_EXECUTION);
+
+            if (recordBytes > 0 && records > 0) {
+                setCounter(context, component + " Allocated Bytes Per Record", recordBytes / records);
+            }
+        }
+
+        if (gcStartMillis >= 0) {
+            setCounter(context, component + " GC Pause (ms)", AllocationMeter.getGcMillis() - gcStartMillis);
+        }
+
+        if (roundTrips.getCount() > 0) {
+            setCounter(context, component + " Round Trip p50 (us)",
+                       TimeUnit.NANOSECONDS.toMicros(roundTrips.getValueAtPercentile(50)));
+            setCounter(context, component + " Round Trip p99 (us)",
+                       TimeUnit.NANOSECONDS.toMicros(roundTrips.getValueAtPercentile(99)));
+            setCounter(context, component + " Round Trip Max (us)", TimeUnit.NANOSECONDS.toMicros(roundTrips.getMax()));
+
+            System.err.println("Lembos " + component + " round trips: " + roundTrips.toSummary());
+        }
+    }
+
+    /**
+     * @param context the task context
+     * @param phase the phase
+     *
+     * @return the memory allocated in the phase, as published to the task counters, in bytes
+     */
+    private long getPublishedAllocatedBytes(final TaskInputOutputContext<?, ?, ?, ?> context, final Phase phase) {
+        return context.getCounter(COUNTER_GROUP, getCounterName(phase) + " Allocated (bytes)").getValue();
+    }
+
+    /**
+     * Sets the value of a counter of the {@link #COUNTER_GROUP} counter group.
+     *
+     * @param context the task context
+     * @param name the counter name
+     * @param value the value
+     */
+    private static void setCounter(final TaskInputOutputContext<?, ?, ?, ?> context, final String name,
+                                   final long value) {
+        final Counter counter = context.getCounter(COUNTER_GROUP, name);
+
+        counter.increment(value - counter.getValue());
+    }
+
+    /**
+     * @param phase the phase
+     *
+     * @return the counter name, without the unit, of the phase
+     */
+    public String getCounterName(final Phase phase) {
+        return component + " " + phase.getLabel();
+    }
+
+    /**
+     * The phases of a Lembos MapReduce component.
+     */
+    public enum Phase {
+
+        /** Creating the Node.js environment (includes {@link #MODULE_LOAD}). */
+        STARTUP("Startup"),
+        /** Loading the Node.js module. */
+        MODULE_LOAD("Module Load"),
+        /** Converting the arguments and results of the JavaScript functions. */
+        CONVERSION("Conversion"),
+        /** Calling a JavaScript function, until it calls its callback (includes {@link #CONTEXT_WRITE}). */
+        JS_EXECUTION("JS Execution"),
+        /** Waiting for the calling thread to resume once the JavaScript function called its callback. */
+        CALLBACK_WAIT("Callback Wait"),
+        /** Writing the output of the JavaScript function using <code>context.write</code>. */
+        CONTEXT_WRITE("Context Write"),
+        /** Calling the cleanup function and tearing the Node.js environment down. */
+        CLEANUP("Cleanup");
+
+        private final String label;
+
+        /**
+         * Constructor.
+         *
+         * @param label the label used in the counter names
+         */
+        Phase(final String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return the label used in the counter names
+         */
+        public String getLabel() {
+            return label;
+        }
+
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+/**
+ * Decides what happens to the records whose JavaScript function timed out, in the spirit of Hadoop's
+ * <code>SkipBadRecords</code>: Up to {@link LembosConstants#MR_MAX_SKIPPED_RECORDS} records are skipped per task, and
+ * counted in the <code>&lt;component&gt; Skipped Records</code> counter of the {@link LembosTimers#COUNTER_GROUP}
+ * counter group, after which the task fails.
+ */
+public final class SkipPolicy {
+
+    private final String component;
+    private final long maxSkippedRecords;
+    private long skippedRecords;
+
+    /**
+     * Constructor.
+     *
+     * @param conf the Hadoop configuration
+     * @param component the name of the component
+     */
+    public SkipPolicy(final Configuration conf, final String component) {
+        this.component = component;
+        this.maxSkippedRecords = conf.getLong(LembosConstants.MR_MAX_SKIPPED_RECORDS, 0);
+    }
+
+    /**
+     * Skips the record or, if too many records were skipped already, rethrows the timeout.
+     *
+     * @param context the task context
+     * @param key the key of the record
+     * @param timeout the timeout
+     */
+    public void skip(final TaskInputOutputContext<?, ?, ?, ?> context, final Object key,
+                     final LembosTimeoutException timeout) {
+        if (skippedRecords >= maxSkippedRecords) {
+            throw timeout;
+        }
+
+        skippedRecords++;
+
+        context.getCounter(LembosTimers.COUNTER_GROUP, component + " Skipped Records").increment(1);
+
+        System.err.println("Skipping " + component.toLowerCase() + " record with key '" + key + "': "
+                                   + timeout.getMessage());
+    }
+
+    /**
+     * @return the number of records skipped
+     */
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    /**
+     * Returns the timeout of the component's JavaScript functions: The value of
+     * {@link LembosConstants#MR_TIMEOUT}<code>.&lt;component&gt;</code> if set, {@link LembosConstants#MR_TIMEOUT}
+     * otherwise.
+     *
+     * @param conf the Hadoop configuration
+     * @param component the name of the component
+     *
+     * @return the timeout in milliseconds (0 for no timeout)
+     */
+    public static long getTimeout(final Configuration conf, final String component) {
+        return conf.getLong(LembosConstants.MR_TIMEOUT + "." + component.toLowerCase(),
+                            conf.getLong(LembosConstants.MR_TIMEOUT, 0));
+    }
+
+}
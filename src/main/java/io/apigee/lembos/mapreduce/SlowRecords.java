@@ -0,0 +1,257 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of the slowest records processed by a Lembos MapReduce component, with their key and truncated value, so
+ * the pathological inputs causing stragglers can be found.  The keys and values are only turned into strings when a
+ * record is slow enough to be kept.
+ */
+public final class SlowRecords {
+
+    /** The default number of slow records kept. */
+    public static final int DEFAULT_COUNT = 10;
+    /** The default maximum length of the values kept. */
+    public static final int DEFAULT_VALUE_LENGTH = 256;
+    /** The name of the work output directory property. */
+    private static final String WORK_OUTPUT_DIR = "mapred.work.output.dir";
+    /** The number of files written per task file name, Hadoop runs a combiner per spill and merge of a task. */
+    private static final ConcurrentMap<String, AtomicInteger> TASK_FILE_RUNS = new ConcurrentHashMap<>();
+
+    private static final Comparator<SlowRecord> BY_LATENCY = new Comparator<SlowRecord>() {
+        @Override
+        public int compare(final SlowRecord left, final SlowRecord right) {
+            return Long.compare(left.getNanos(), right.getNanos());
+        }
+    };
+
+    private final int capacity;
+    private final int maxValueLength;
+    private final PriorityQueue<SlowRecord> slowest;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the number of slow records to keep (0 to keep none)
+     * @param maxValueLength the maximum length of the values kept
+     */
+    public SlowRecords(final int capacity, final int maxValueLength) {
+        this.capacity = capacity;
+        this.maxValueLength = maxValueLength;
+        this.slowest = new PriorityQueue<>(Math.max(1, capacity), BY_LATENCY);
+    }
+
+    /**
+     * Creates the slow records tracker configured by {@link LembosConstants#MR_SLOW_RECORDS_COUNT} and
+     * {@link LembosConstants#MR_SLOW_RECORDS_VALUE_LENGTH}.
+     *
+     * @param conf the Hadoop configuration
+     *
+     * @return the slow records tracker
+     */
+    public static SlowRecords fromConf(final Configuration conf) {
+        return new SlowRecords(conf.getInt(LembosConstants.MR_SLOW_RECORDS_COUNT, DEFAULT_COUNT),
+                               conf.getInt(LembosConstants.MR_SLOW_RECORDS_VALUE_LENGTH, DEFAULT_VALUE_LENGTH));
+    }
+
+    /**
+     * Offers a processed record, which is kept if it is one of the slowest so far.
+     *
+     * @param nanos the time it took to process the record in nanoseconds
+     * @param key the key of the record
+     * @param value the value of the record (can be null)
+     *
+     * @return true if the record was kept
+     */
+    public synchronized boolean offer(final long nanos, final Object key, final Object value) {
+        if (capacity <= 0 || (slowest.size() == capacity && slowest.peek().getNanos() >= nanos)) {
+            return false;
+        }
+
+        if (slowest.size() == capacity) {
+            slowest.poll();
+        }
+
+        slowest.add(new SlowRecord(nanos, String.valueOf(key), value == null ? null : truncate(value.toString())));
+
+        return true;
+    }
+
+    /**
+     * @return the slow records kept, slowest first
+     */
+    public synchronized List<SlowRecord> getSlowest() {
+        final List<SlowRecord> records = new ArrayList<>(slowest);
+
+        Collections.sort(records, Collections.reverseOrder(BY_LATENCY));
+
+        return records;
+    }
+
+    /**
+     * Writes the slow records, as tab separated latency <i>(in microseconds)</i>, key and value lines, to the
+     * <code>_lembos-slow-records-&lt;component&gt;-&lt;task id&gt;.tsv</code> file of the task work output directory.
+     * The file is committed to the job output directory with the rest of the task output and, since its name starts
+     * with an underscore, is ignored by the <code>FileInputFormat</code>s reading the job output.  Nothing is written
+     * if there are no slow records or if the task has no work output directory.  Since Hadoop runs a combiner for each
+     * spill and merge of a task, the files written after the first one by a task get a <code>-&lt;run&gt;</code>
+     * suffix, like <code>_lembos-slow-records-combine-&lt;task id&gt;-1.tsv</code>.
+     *
+     * @param context the task context
+     * @param component the component name
+     *
+     * @return the file written or null if nothing was written
+     *
+     * @throws IOException if anything goes wrong
+     */
+    public Path write(final TaskInputOutputContext<?, ?, ?, ?> context, final String component) throws IOException {
+        final String workOutputDir = context.getConfiguration().get(WORK_OUTPUT_DIR);
+        final List<SlowRecord> records = getSlowest();
+
+        if (workOutputDir == null || records.isEmpty()) {
+            return null;
+        }
+
+        final Path file = getTaskFile(context, workOutputDir, "_lembos-slow-records-", component, ".tsv");
+        final FileSystem fs = file.getFileSystem(context.getConfiguration());
+
+        try (final FSDataOutputStream out = fs.create(file, true)) {
+            for (final SlowRecord record : records) {
+                out.write((TimeUnit.NANOSECONDS.toMicros(record.getNanos()) + "\t" + escape(record.getKey()) + "\t"
+                        + (record.getValue() == null ? "" : escape(record.getValue())) + "\n")
+                                  .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        return file;
+    }
+
+    /**
+     * Returns the <code>&lt;prefix&gt;&lt;component&gt;-&lt;task id&gt;&lt;suffix&gt;</code> file of the task work
+     * output directory, with a <code>-&lt;run&gt;</code> suffix for the files after the first one asked for in this
+     * JVM so the runs of a component within a task, like the combiner runs, do not overwrite each other.
+     *
+     * @param context the task context
+     * @param workOutputDir the task work output directory
+     * @param prefix the file name prefix
+     * @param component the component name
+     * @param suffix the file name suffix
+     *
+     * @return the file
+     */
+    static Path getTaskFile(final TaskInputOutputContext<?, ?, ?, ?> context, final String workOutputDir,
+                            final String prefix, final String component, final String suffix) {
+        final String name = prefix + component.toLowerCase() + "-" + context.getTaskAttemptID().getTaskID();
+        AtomicInteger runs = TASK_FILE_RUNS.get(name + suffix);
+
+        if (runs == null) {
+            final AtomicInteger newRuns = new AtomicInteger();
+
+            runs = TASK_FILE_RUNS.putIfAbsent(name + suffix, newRuns);
+
+            if (runs == null) {
+                runs = newRuns;
+            }
+        }
+
+        final int run = runs.getAndIncrement();
+
+        return new Path(workOutputDir, (run == 0 ? name : name + "-" + run) + suffix);
+    }
+
+    /**
+     * @param value the value
+     *
+     * @return the value truncated to the maximum value length
+     */
+    private String truncate(final String value) {
+        return value.length() <= maxValueLength ? value : value.substring(0, Math.max(0, maxValueLength)) + "...";
+    }
+
+    /**
+     * @param value the value
+     *
+     * @return the value with its tabs and line breaks escaped
+     */
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /**
+     * A slow record.
+     */
+    public static final class SlowRecord {
+
+        private final long nanos;
+        private final String key;
+        private final String value;
+
+        /**
+         * Constructor.
+         *
+         * @param nanos the time it took to process the record in nanoseconds
+         * @param key the key
+         * @param value the truncated value (can be null)
+         */
+        private SlowRecord(final long nanos, final String key, final String value) {
+            this.nanos = nanos;
+            this.key = key;
+            this.value = value;
+        }
+
+        /**
+         * @return the time it took to process the record in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return the key
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the truncated value (can be null)
+         */
+        public String getValue() {
+            return value;
+        }
+
+    }
+
+}
@@ -31,6 +31,9 @@ public final class ArrayWritableConverter implements WritableToJSConverter<Array
     /**
      * Takes in an {@link ArrayWritable} and returns a {@link Scriptable} array.
      *
+     * <b>Note:</b> The array itself is created eagerly, since Rhino arrays expose their elements directly, but map
+     * entries are lazily converted (see {@link LazyMapWritableObject}) so nested maps are not deep copied.
+     *
      * @param scope the JavaScript scope
      * @param writable the value to convert
      *
@@ -17,6 +17,7 @@
 package io.apigee.lembos.mapreduce.converters.input;
 
 import io.apigee.lembos.mapreduce.converters.WritableToJSConverter;
+import io.apigee.lembos.utils.JavaScriptUtils;
 import org.apache.hadoop.io.BytesWritable;
 import org.mozilla.javascript.Scriptable;
 
@@ -26,16 +27,20 @@ import org.mozilla.javascript.Scriptable;
 public final class BytesWritableConverter implements WritableToJSConverter<BytesWritable> {
 
     /**
-     * Takes in a {@link BytesWritable} and returns a {@link byte[]}.
+     * Takes in a {@link BytesWritable} and returns a Node.js Buffer that shares the writable's backing array.
+     *
+     * <b>Note:</b> Hadoop reuses the {@link BytesWritable} between records so the Buffer is only valid for the duration
+     * of the call it was passed to.  Use <code>buffer.copy</code> if the bytes need to be kept around.  When Node.js
+     * Buffers are unavailable, a {@link byte[]} containing only the valid bytes is returned.
      *
      * @param scope the JavaScript scope
      * @param writable the value to convert
      *
-     * @return the byte[] equivalent
+     * @return the Buffer equivalent
      */
     @Override
     public Object toJavaScript(final Scriptable scope, final BytesWritable writable) {
-        return writable.getBytes();
+        return JavaScriptUtils.asBuffer(scope, writable.getBytes(), writable.getLength());
     }
 
     /**
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce.converters.input;
+
+import io.apigee.lembos.db.DBRowWritable;
+import io.apigee.lembos.mapreduce.converters.WritableToJSConverter;
+import io.apigee.lembos.utils.JavaScriptUtils;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+import java.util.Date;
+
+/**
+ * Implementation of {@link WritableToJSConverter} for {@link DBRowWritable}.
+ */
+public final class DBRowWritableConverter implements WritableToJSConverter<DBRowWritable> {
+
+    /**
+     * Takes in a {@link DBRowWritable} and returns a {@link Scriptable} object keyed by column name.
+     *
+     * @param scope the JavaScript scope
+     * @param writable the value to convert
+     *
+     * @return the {@link Scriptable} object equivalent
+     */
+    @Override
+    public Object toJavaScript(final Scriptable scope, final DBRowWritable writable) {
+        Context ctx = Context.getCurrentContext();
+        final boolean entered = ctx == null;
+
+        if (entered) {
+            ctx = Context.enter();
+        }
+
+        try {
+            final Scriptable row = ctx.newObject(scope);
+            final String[] columnNames = writable.getColumnNames();
+            final Object[] values = writable.getValues();
+
+            for (int i = 0; i < columnNames.length; i++) {
+                final Object value = values[i];
+                final Object jsValue;
+
+                if (value instanceof Date) {
+                    jsValue = ctx.newObject(scope, "Date", new Object[] {(double)((Date)value).getTime()});
+                } else if (value instanceof byte[]) {
+                    jsValue = JavaScriptUtils.asBuffer(scope, (byte[])value, ((byte[])value).length);
+                } else {
+                    jsValue = value;
+                }
+
+                row.put(columnNames[i], row, jsValue);
+            }
+
+            return row;
+        } finally {
+            if (entered) {
+                Context.exit();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean canConvert(final Object jsObject) {
+        return jsObject instanceof DBRowWritable;
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.mapreduce.converters.input;
+
+import io.apigee.lembos.utils.ConversionUtils;
+import org.apache.hadoop.io.Writable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.util.Map;
+
+/**
+ * JavaScript object view of a {@link Map} of {@link Writable}s, like {@link org.apache.hadoop.io.MapWritable} and
+ * {@link org.apache.hadoop.io.SortedMapWritable}, that only converts an entry value to JavaScript when it is first
+ * read.  The converted value replaces the unconverted one so each entry is converted at most once.
+ *
+ * <b>Note:</b> Keys are converted when the view is created so that enumeration, <code>in</code> checks and property
+ * order behave like a regular JavaScript object.
+ */
+public final class LazyMapWritableObject extends NativeObject {
+
+    private static final long serialVersionUID = 4511208734281950381L;
+
+    /**
+     * Constructor.
+     *
+     * @param scope the JavaScript scope
+     * @param entries the entries to expose
+     */
+    public LazyMapWritableObject(final Scriptable scope, final Map<? extends Writable, ? extends Writable> entries) {
+        setParentScope(ScriptableObject.getTopLevelScope(scope));
+        setPrototype(ScriptableObject.getObjectPrototype(scope));
+
+        for (final Map.Entry<? extends Writable, ? extends Writable> entry : entries.entrySet()) {
+            final String name = ConversionUtils.writableToJS(entry.getKey(), scope).toString();
+            final int index = toIndex(name);
+            final PendingValue pending = new PendingValue(entry.getValue());
+
+            if (index == -1) {
+                super.put(name, this, pending);
+            } else {
+                super.put(index, this, pending);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(final String name, final Scriptable start) {
+        final Object value = super.get(name, start);
+
+        if (value instanceof PendingValue) {
+            final Object converted = ((PendingValue)value).convert(getParentScope());
+
+            super.put(name, this, converted);
+
+            return converted;
+        }
+
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(final int index, final Scriptable start) {
+        final Object value = super.get(index, start);
+
+        if (value instanceof PendingValue) {
+            final Object converted = ((PendingValue)value).convert(getParentScope());
+
+            super.put(index, this, converted);
+
+            return converted;
+        }
+
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ScriptableObject getOwnPropertyDescriptor(final Context cx, final Object id) {
+        // Make sure the descriptor never exposes an unconverted value
+        if (id instanceof Number) {
+            get(((Number)id).intValue(), this);
+        } else if (id != null) {
+            get(id.toString(), this);
+        }
+
+        return super.getOwnPropertyDescriptor(cx, id);
+    }
+
+    /**
+     * Returns the array index represented by the property name, the same way JavaScript treats property names.
+     *
+     * @param name the property name
+     *
+     * @return the index or -1 if the name is not an array index
+     */
+    private static int toIndex(final String name) {
+        final int length = name.length();
+
+        if (length == 0 || length > 10 || (length > 1 && name.charAt(0) == '0')) {
+            return -1;
+        }
+
+        long index = 0;
+
+        for (int i = 0; i < length; i++) {
+            final char c = name.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            index = index * 10 + (c - '0');
+        }
+
+        return index <= Integer.MAX_VALUE ? (int)index : -1;
+    }
+
+    /**
+     * Placeholder for an entry value that has not been converted to JavaScript yet.
+     */
+    private static final class PendingValue {
+
+        private final Writable writable;
+
+        /**
+         * Constructor.
+         *
+         * @param writable the unconverted value
+         */
+        private PendingValue(final Writable writable) {
+            this.writable = writable;
+        }
+
+        /**
+         * Converts the value to JavaScript.
+         *
+         * @param scope the JavaScript scope
+         *
+         * @return the JavaScript value
+         */
+        private Object convert(final Scriptable scope) {
+            return ConversionUtils.writableToJS(writable, scope);
+        }
+
+    }
+
+}
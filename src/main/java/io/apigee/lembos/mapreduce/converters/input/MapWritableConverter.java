@@ -17,15 +17,9 @@
 package io.apigee.lembos.mapreduce.converters.input;
 
 import io.apigee.lembos.mapreduce.converters.WritableToJSConverter;
-import io.apigee.lembos.utils.ConversionUtils;
-import io.apigee.lembos.utils.JavaScriptUtils;
 import org.apache.hadoop.io.MapWritable;
-import org.apache.hadoop.io.Writable;
 import org.mozilla.javascript.Scriptable;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Implementation of {@link WritableToJSConverter} for {@link MapWritable}.
  */
@@ -33,23 +27,19 @@ public final class MapWritableConverter
         implements WritableToJSConverter<MapWritable> {
 
     /**
-     * Takes in a {@link MapWritable} and returns a {@link Scriptable} map.
+     * Takes in a {@link MapWritable} and returns a {@link Scriptable} map whose entries are converted to JavaScript
+     * when they are first read.
      *
      * @param scope the JavaScript scope
      * @param writable the value to convert
      *
      * @return the {@link Scriptable} map equivalent
+     *
+     * @see LazyMapWritableObject
      */
     @Override
     public Object toJavaScript(final Scriptable scope, final MapWritable writable) {
-        final Map<Object, Object> writableMap = new HashMap<>();
-
-        for (final Map.Entry<Writable, Writable> mapEntry : writable.entrySet()) {
-            writableMap.put(ConversionUtils.writableToJS(mapEntry.getKey(), scope),
-                            ConversionUtils.writableToJS(mapEntry.getValue(), scope));
-        }
-
-        return JavaScriptUtils.asObject(scope, writableMap);
+        return new LazyMapWritableObject(scope, writable);
     }
 
     /**
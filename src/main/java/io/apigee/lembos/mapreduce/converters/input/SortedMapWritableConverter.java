@@ -17,39 +17,28 @@
 package io.apigee.lembos.mapreduce.converters.input;
 
 import io.apigee.lembos.mapreduce.converters.WritableToJSConverter;
-import io.apigee.lembos.utils.ConversionUtils;
-import io.apigee.lembos.utils.JavaScriptUtils;
 import org.apache.hadoop.io.SortedMapWritable;
-import org.apache.hadoop.io.Writable;
-import org.apache.hadoop.io.WritableComparable;
 import org.mozilla.javascript.Scriptable;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Implementation of {@link WritableToJSConverter} for {@link SortedMapWritable}.
  */
 public final class SortedMapWritableConverter implements WritableToJSConverter<SortedMapWritable> {
 
     /**
-     * Takes in a {@link SortedMapWritable} and returns a {@link Scriptable} map.
+     * Takes in a {@link SortedMapWritable} and returns a {@link Scriptable} map whose entries are converted to
+     * JavaScript when they are first read.
      *
      * @param scope the JavaScript scope
      * @param writable the value to convert
      *
      * @return the {@link Scriptable} map equivalent
+     *
+     * @see LazyMapWritableObject
      */
     @Override
     public Object toJavaScript(final Scriptable scope, final SortedMapWritable writable) {
-        final Map<Object, Object> writableMap = new HashMap<>();
-
-        for (final Map.Entry<WritableComparable, Writable> mapEntry : writable.entrySet()) {
-            writableMap.put(ConversionUtils.writableComparableToJS(mapEntry.getKey(), scope),
-                            ConversionUtils.writableToJS(mapEntry.getValue(), scope));
-        }
-
-        return JavaScriptUtils.asObject(scope, writableMap);
+        return new LazyMapWritableObject(scope, writable);
     }
 
     /**
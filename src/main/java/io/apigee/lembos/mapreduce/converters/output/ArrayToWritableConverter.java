@@ -16,29 +16,38 @@
 
 package io.apigee.lembos.mapreduce.converters.output;
 
+import io.apigee.lembos.io.JSObjectWritable;
 import io.apigee.lembos.mapreduce.converters.JSToWritableConverter;
 import io.apigee.lembos.utils.ConversionUtils;
 import org.apache.hadoop.io.ArrayWritable;
 import org.apache.hadoop.io.Writable;
+import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.Scriptable;
 
 import java.lang.reflect.Array;
 
 /**
- * Implementation of {@link JSToWritableConverter} for {@link Object[]}.
+ * Implementation of {@link JSToWritableConverter} for {@link Object[]} and {@link NativeArray}.
+ *
+ * <b>Note:</b> JavaScript arrays ({@link NativeArray}) are converted to the compact {@link JSObjectWritable} while
+ * Java arrays are converted to {@link ArrayWritable}.
  */
 public final class ArrayToWritableConverter implements JSToWritableConverter {
 
     /**
-     * Takes in a {@link Byte} and returns an {@link ArrayWritable}.
+     * Takes in an array and returns a {@link JSObjectWritable} or an {@link ArrayWritable}.
      *
      * @param scope the JavaScript scope
      * @param jsObject the value to convert
      *
-     * @return the {@link ArrayWritable}
+     * @return the {@link JSObjectWritable} for JavaScript arrays and the {@link ArrayWritable} for Java arrays
      */
     @Override
     public Writable fromJavaScript(final Scriptable scope, final Object jsObject) {
+        if (jsObject instanceof NativeArray) {
+            return new JSObjectWritable(jsObject);
+        }
+
         final Object[] entries = new Object[Array.getLength(jsObject)];
 
         for (int i = 0; i < entries.length; ++i) {
@@ -59,7 +68,7 @@ public final class ArrayToWritableConverter implements JSToWritableConverter {
      */
     @Override
     public boolean canConvert(final Object jsObject) {
-        return jsObject.getClass().isArray() && !(jsObject instanceof byte[]);
+        return jsObject instanceof NativeArray || (jsObject.getClass().isArray() && !(jsObject instanceof byte[]));
     }
 
 }
@@ -17,17 +17,23 @@
 package io.apigee.lembos.mapreduce.converters.output;
 
 import io.apigee.lembos.mapreduce.converters.JSToWritableConverter;
+import io.apigee.lembos.utils.JavaScriptUtils;
+import io.apigee.trireme.core.modules.Buffer;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Writable;
 import org.mozilla.javascript.Scriptable;
 
+import java.util.Arrays;
+
 /**
- * Implementation of {@link JSToWritableConverter} for {@link byte[]}.
+ * Implementation of {@link JSToWritableConverter} for {@link byte[]} and Node.js Buffers.
  */
 public final class BytesToWritableConverter implements JSToWritableConverter {
 
     /**
-     * Takes in a {@link Byte} and returns a {@link BytesWritable}.
+     * Takes in a {@link byte[]} or a Node.js Buffer and returns a {@link BytesWritable}.
+     *
+     * <b>Note:</b> Buffers that start at the beginning of their backing array are wrapped without copying.
      *
      * @param scope the JavaScript scope
      * @param jsObject the value to convert
@@ -36,6 +42,23 @@ public final class BytesToWritableConverter implements JSToWritableConverter {
      */
     @Override
     public Writable fromJavaScript(final Scriptable scope, final Object jsObject) {
+        if (JavaScriptUtils.isBuffer(jsObject)) {
+            final Buffer.BufferImpl buffer = (Buffer.BufferImpl)jsObject;
+            final byte[] array = buffer.getArray();
+            final int offset = buffer.getArrayOffset();
+            final int length = buffer.getLength();
+
+            if (offset == 0) {
+                final BytesWritable writable = new BytesWritable(array);
+
+                writable.setSize(length);
+
+                return writable;
+            } else {
+                return new BytesWritable(Arrays.copyOfRange(array, offset, offset + length));
+            }
+        }
+
         return new BytesWritable((byte[])jsObject);
     }
 
@@ -44,7 +67,7 @@ public final class BytesToWritableConverter implements JSToWritableConverter {
      */
     @Override
     public boolean canConvert(final Object jsObject) {
-        return jsObject instanceof byte[];
+        return jsObject instanceof byte[] || JavaScriptUtils.isBuffer(jsObject);
     }
 
 }
@@ -20,12 +20,15 @@ import io.apigee.lembos.mapreduce.converters.JSToWritableConverter;
 import io.apigee.lembos.utils.ConversionUtils;
 import org.apache.hadoop.io.ArrayWritable;
 import org.apache.hadoop.io.Writable;
+import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.Scriptable;
 
 import java.util.Collection;
 
 /**
  * Implementation of {@link JSToWritableConverter} for {@link Collection}.
+ *
+ * <b>Note:</b> {@link NativeArray} is a {@link Collection} but it is handled by {@link ArrayToWritableConverter}.
  */
 public final class CollectionToWritableConverter implements JSToWritableConverter {
 
@@ -54,7 +57,7 @@ public final class CollectionToWritableConverter implements JSToWritableConverte
      */
     @Override
     public boolean canConvert(final Object jsObject) {
-        return jsObject instanceof Collection;
+        return jsObject instanceof Collection && !(jsObject instanceof NativeArray);
     }
 
 }
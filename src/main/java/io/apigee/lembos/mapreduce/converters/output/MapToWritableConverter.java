@@ -16,6 +16,7 @@
 
 package io.apigee.lembos.mapreduce.converters.output;
 
+import io.apigee.lembos.io.JSObjectWritable;
 import io.apigee.lembos.mapreduce.converters.JSToWritableConverter;
 import io.apigee.lembos.utils.ConversionUtils;
 import org.apache.hadoop.io.MapWritable;
@@ -23,43 +24,34 @@ import org.apache.hadoop.io.Writable;
 import org.mozilla.javascript.NativeObject;
 import org.mozilla.javascript.Scriptable;
 
-import java.util.AbstractMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * Implementation of {@link JSToWritableConverter} for {@link Map}.
+ *
+ * <b>Note:</b> JavaScript objects ({@link NativeObject}) are converted to the compact {@link JSObjectWritable} while
+ * Java {@link Map}s are converted to {@link MapWritable}.
  */
 public final class MapToWritableConverter implements JSToWritableConverter {
 
     /**
-     * Takes in a {@link Map} and returns an {@link MapWritable}.
+     * Takes in a {@link Map} and returns a {@link JSObjectWritable} or a {@link MapWritable}.
      *
      * @param scope the JavaScript scope
      * @param jsObject the value to convert
      *
-     * @return the {@link MapWritable}
+     * @return the {@link JSObjectWritable} for JavaScript objects and the {@link MapWritable} for Java maps
      */
     @Override
     public Writable fromJavaScript(final Scriptable scope, final Object jsObject) {
-        MapWritable writable = null;
-        Set<Map.Entry<Object, Object>> entries = null;
+        Writable writable = null;
 
         if (jsObject instanceof NativeObject) {
-            entries = new HashSet<>();
-
-            final NativeObject nativeObject = (NativeObject)jsObject;
-
-            for (final Object key : nativeObject.getAllIds()) {
-                entries.add(new AbstractMap.SimpleEntry<>(key, nativeObject.get(key)));
-            }
+            writable = new JSObjectWritable(jsObject);
         } else if (jsObject instanceof Map) {
             //noinspection unchecked
-            entries = ((Map<Object, Object>)jsObject).entrySet();
-        }
-
-        if (entries != null) {
+            final Set<Map.Entry<Object, Object>> entries = ((Map<Object, Object>)jsObject).entrySet();
             final MapWritable mapWritable = new MapWritable();
 
             for (final Map.Entry<Object, Object> entry : entries) {
@@ -23,6 +23,7 @@ import io.apigee.lembos.node.types.FileInputFormatWrap;
 import io.apigee.lembos.node.types.KeyValueTextInputFormatWrap;
 import io.apigee.lembos.node.types.NLineInputFormatWrap;
 import io.apigee.lembos.node.types.OracleDataDrivenDBInputFormatWrap;
+import io.apigee.lembos.node.types.RangeDBInputFormatWrap;
 import io.apigee.lembos.node.types.SequenceFileAsBinaryInputFormatWrap;
 import io.apigee.lembos.node.types.SequenceFileAsTextInputFormatWrap;
 import io.apigee.lembos.node.types.SequenceFileInputFilterWrap;
@@ -70,6 +71,7 @@ public final class HadoopInput implements NodeModule {
         ScriptableObject.defineClass(exports, KeyValueTextInputFormatWrap.class);
         ScriptableObject.defineClass(exports, NLineInputFormatWrap.class);
         ScriptableObject.defineClass(exports, OracleDataDrivenDBInputFormatWrap.class);
+        ScriptableObject.defineClass(exports, RangeDBInputFormatWrap.class);
         ScriptableObject.defineClass(exports, SequenceFileInputFormatWrap.class);
         ScriptableObject.defineClass(exports, SequenceFileAsBinaryInputFormatWrap.class);
         ScriptableObject.defineClass(exports, SequenceFileAsTextInputFormatWrap.class);
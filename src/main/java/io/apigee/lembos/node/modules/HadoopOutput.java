@@ -16,6 +16,7 @@
 
 package io.apigee.lembos.node.modules;
 
+import io.apigee.lembos.node.types.BatchDBOutputFormatWrap;
 import io.apigee.lembos.node.types.DBOutputFormatWrap;
 import io.apigee.lembos.node.types.FileOutputFormatWrap;
 import io.apigee.lembos.node.types.SequenceFileAsBinaryOutputFormatWrap;
@@ -56,6 +57,7 @@ public final class HadoopOutput implements NodeModule {
         exports.setPrototype(global);
         exports.setParentScope(null);
 
+        ScriptableObject.defineClass(exports, BatchDBOutputFormatWrap.class);
         ScriptableObject.defineClass(exports, DBOutputFormatWrap.class);
         ScriptableObject.defineClass(exports, FileOutputFormatWrap.class);
         ScriptableObject.defineClass(exports, SequenceFileOutputFormatWrap.class);
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.node.types;
+
+import io.apigee.lembos.db.BatchDBOutputFormat;
+import io.apigee.lembos.mapreduce.LembosMessages;
+import io.apigee.lembos.utils.JavaScriptUtils;
+import io.apigee.trireme.core.Utils;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.annotations.JSStaticFunction;
+
+/**
+ * Java implementation of the {@link BatchDBOutputFormat} JavaScript object.
+ *
+ * <b>Note:</b> Only exposes the static methods
+ */
+public final class BatchDBOutputFormatWrap extends ScriptableObject {
+
+    private static final long serialVersionUID = 2945861217355813403L;
+    public static final String CLASS_NAME = "BatchDBOutputFormat";
+
+    /* JavaScript Methods */
+
+    /**
+     * Java wrapper for {@link BatchDBOutputFormat#setOutput(org.apache.hadoop.mapreduce.Job, String, String...)}.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     */
+    @JSStaticFunction
+    public static void setOutput(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                 final Function func) {
+        final Object arg0 = args.length >= 1 ? args[0] : Undefined.instance;
+        final Object arg1 = args.length >= 2 ? args[1] : Undefined.instance;
+        final Object arg2 = args.length >= 3 ? args[2] : Undefined.instance;
+
+        if (args.length != 3) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.THREE_ARGS_EXPECTED);
+        } else if (!JavaScriptUtils.isDefined(arg0)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+        } else if (!JavaScriptUtils.isDefined(arg1)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_REQUIRED);
+        } else if (!JavaScriptUtils.isDefined(arg2)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.THIRD_ARG_REQUIRED);
+        } else if (!(arg0 instanceof JobWrap)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_MUST_BE_JOB);
+        } else if (!(arg2 instanceof NativeArray)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.THIRD_ARG_MUST_BE_ARRAY);
+        }
+
+        final NativeArray jsFieldNames = (NativeArray)arg2;
+        final String[] fieldNames = new String[jsFieldNames.size()];
+
+        for (int i = 0; i < jsFieldNames.size(); i++) {
+            fieldNames[i] = jsFieldNames.get(i).toString();
+        }
+
+        BatchDBOutputFormat.setOutput(((JobWrap)arg0).getJob(), arg1.toString(), fieldNames);
+    }
+
+    /**
+     * Java wrapper for {@link BatchDBOutputFormat#setBatchSize(org.apache.hadoop.mapreduce.Job, int)}.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     */
+    @JSStaticFunction
+    public static void setBatchSize(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                    final Function func) {
+        BatchDBOutputFormat.setBatchSize(getJob(ctx, thisObj, args).getJob(),
+                                         JavaScriptUtils.fromNumber(args[1]).intValue());
+    }
+
+    /**
+     * Java wrapper for {@link BatchDBOutputFormat#setRowsPerInsert(org.apache.hadoop.mapreduce.Job, int)}.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     */
+    @JSStaticFunction
+    public static void setRowsPerInsert(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                        final Function func) {
+        BatchDBOutputFormat.setRowsPerInsert(getJob(ctx, thisObj, args).getJob(),
+                                             JavaScriptUtils.fromNumber(args[1]).intValue());
+    }
+
+    /**
+     * Java wrapper for {@link BatchDBOutputFormat#setCommitInterval(org.apache.hadoop.mapreduce.Job, long)}.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     */
+    @JSStaticFunction
+    public static void setCommitInterval(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                         final Function func) {
+        BatchDBOutputFormat.setCommitInterval(getJob(ctx, thisObj, args).getJob(),
+                                              JavaScriptUtils.fromNumber(args[1]).longValue());
+    }
+
+    /**
+     * Validates the <code>(job, number)</code> arguments of the setters.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     *
+     * @return the job
+     */
+    private static JobWrap getJob(final Context ctx, final Scriptable thisObj, final Object[] args) {
+        final Object arg0 = args.length >= 1 ? args[0] : Undefined.instance;
+        final Object arg1 = args.length >= 2 ? args[1] : Undefined.instance;
+
+        if (args.length != 2) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.TWO_ARGS_EXPECTED);
+        } else if (!JavaScriptUtils.isDefined(arg0)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+        } else if (!JavaScriptUtils.isDefined(arg1)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_REQUIRED);
+        } else if (!(arg0 instanceof JobWrap)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_MUST_BE_JOB);
+        } else if (!(arg1 instanceof Number)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_ARG_MUST_BE_NUM);
+        }
+
+        return (JobWrap)arg0;
+    }
+
+    /* Java Methods */
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+}
@@ -208,7 +208,7 @@ public class FileOutputFormatHelper {
             throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_REQUIRED);
         } else if (!JavaScriptUtils.isDefined(arg2)) {
             throw Utils.makeError(ctx, thisObj, LembosMessages.THIRD_ARG_REQUIRED);
-        } else if (!(arg0 instanceof TaskInputOutputContextWrap)) {
+        } else if (TaskInputOutputContextWrap.unwrap(arg0) == null) {
             throw Utils.makeError(ctx, thisObj,
                                   LembosMessages.makeInvalidClassErrorMessage(TaskInputOutputContext.class,
                                                                               arg0.getClass()));
@@ -218,7 +218,7 @@ public class FileOutputFormatHelper {
             return ReflectionUtils.invokeStatic(clazz, "getPathForWorkFile", new Class<?>[] {
                     TaskInputOutputContext.class, String.class, String.class
             }, new Object[] {
-                    ((TaskInputOutputContextWrap)arg0).getContext(), arg1.toString(), arg2.toString()
+                    TaskInputOutputContextWrap.unwrap(arg0).getContext(), arg1.toString(), arg2.toString()
             });
         } catch (Exception e) {
             e.printStackTrace();
@@ -246,7 +246,7 @@ public class FileOutputFormatHelper {
             throw Utils.makeError(ctx, thisObj, LembosMessages.ONE_ARG_EXPECTED);
         } else if (!JavaScriptUtils.isDefined(arg0)) {
             throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
-        } else if (!(arg0 instanceof TaskInputOutputContextWrap)) {
+        } else if (TaskInputOutputContextWrap.unwrap(arg0) == null) {
             throw Utils.makeError(ctx, thisObj,
                                   LembosMessages.makeInvalidClassErrorMessage(TaskInputOutputContext.class,
                                                                               arg0.getClass()));
@@ -256,7 +256,7 @@ public class FileOutputFormatHelper {
             return ReflectionUtils.invokeStatic(clazz, "getWorkOutputPath", new Class<?>[] {
                     TaskInputOutputContext.class
             }, new Object[] {
-                    ((TaskInputOutputContextWrap)arg0).getContext()
+                    TaskInputOutputContextWrap.unwrap(arg0).getContext()
             });
         } catch (Exception e) {
             e.printStackTrace();
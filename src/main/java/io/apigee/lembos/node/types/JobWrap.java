@@ -16,8 +16,14 @@
 
 package io.apigee.lembos.node.types;
 
+import io.apigee.lembos.mapreduce.CompressionPolicy;
+import io.apigee.lembos.mapreduce.LembosJoin;
 import io.apigee.lembos.mapreduce.LembosMessages;
+import io.apigee.lembos.mapreduce.LembosMetricsReporter;
+import io.apigee.lembos.mapreduce.LembosMultipleOutputs;
+import io.apigee.lembos.mapreduce.LembosSkew;
 import io.apigee.lembos.node.modules.HadoopJob;
+import io.apigee.lembos.utils.ConversionUtils;
 import io.apigee.lembos.utils.JavaScriptUtils;
 import io.apigee.trireme.core.NodeModule;
 import io.apigee.trireme.core.NodeRuntime;
@@ -38,6 +44,8 @@ import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
@@ -47,6 +55,8 @@ import org.mozilla.javascript.annotations.JSFunction;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Java implementation of the {@link Job} JavaScript object.
@@ -186,6 +196,92 @@ public final class JobWrap extends ScriptableObject {
         return wrapper;
     }
 
+    /**
+     * Adds an input path to a reduce-side join, tagging its records with the tag.  The <code>join</code> function
+     * receives the values of the inputs in the order their tags were first added.
+     *
+     * @param ctx the JavaScript context (unused)
+     * @param thisObj the 'this' object of the caller
+     * @param args the arguments for the call
+     * @param func the function called (unused)
+     *
+     * @return this
+     *
+     * @see LembosJoin
+     */
+    @JSFunction
+    public static Object addJoinInput(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                      final Function func) {
+        if (args.length == 2) {
+            if (!JavaScriptUtils.isDefined(args[0])) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+            } else if (!JavaScriptUtils.isDefined(args[1])) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_REQUIRED);
+            }
+        } else {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.TWO_ARGS_EXPECTED);
+        }
+
+        try {
+            LembosJoin.addInput(((JobWrap)thisObj).job, args[0].toString(), new Path(args[1].toString()));
+        } catch (IllegalArgumentException | IOException e) {
+            throw Utils.makeError(ctx, thisObj, e.getMessage());
+        }
+
+        return thisObj;
+    }
+
+    /**
+     * Adds a named output that map and reduce functions write to using <code>context.writeTo</code>.
+     *
+     * @param ctx the JavaScript context (unused)
+     * @param thisObj the 'this' object of the caller
+     * @param args the arguments for the call
+     * @param func the function called (unused)
+     *
+     * @return this
+     *
+     * @see LembosMultipleOutputs
+     */
+    @JSFunction
+    public static Object addNamedOutput(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                        final Function func) {
+        if (args.length == 4) {
+            if (!JavaScriptUtils.isDefined(args[0])) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+            } else if (!JavaScriptUtils.isDefined(args[1])) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_REQUIRED);
+            } else if (!JavaScriptUtils.isDefined(args[2])) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.THIRD_ARG_REQUIRED);
+            } else if (!JavaScriptUtils.isDefined(args[3])) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.FOURTH_ARG_REQUIRED);
+            }
+        } else {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FOUR_ARGS_EXPECTED);
+        }
+
+        try {
+            final Class outputFormatClass = Class.forName(args[1].toString());
+
+            if (!OutputFormat.class.isAssignableFrom(outputFormatClass)) {
+                throw Utils.makeError(ctx, thisObj,
+                                      LembosMessages.makeInvalidClassErrorMessage(OutputFormat.class,
+                                                                                  outputFormatClass));
+            }
+
+            LembosMultipleOutputs.addNamedOutput(((JobWrap)thisObj).job, args[0].toString(),
+                                                 (Class<? extends OutputFormat>)outputFormatClass,
+                                                 Class.forName(args[2].toString()),
+                                                 Class.forName(args[3].toString()));
+        } catch (ClassNotFoundException e) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.CLASS_NOT_FOUND);
+        } catch (IllegalArgumentException e) {
+            throw Utils.makeError(ctx, thisObj, e.getMessage());
+        }
+
+        return thisObj;
+    }
+
     /**
      * Wraps {@link Job#getCombinerClass()}.
      *
@@ -749,6 +845,41 @@ public final class JobWrap extends ScriptableObject {
         return thisObj;
     }
 
+    /**
+     * Sets the compression policy of the job, applied once the job is configured.
+     *
+     * @param ctx the JavaScript context (unused)
+     * @param thisObj the 'this' object of the caller
+     * @param args the arguments for the call
+     * @param func the function called (unused)
+     *
+     * @return this
+     *
+     * @see CompressionPolicy
+     */
+    @JSFunction
+    public static Object setCompressionPolicy(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                              final Function func) {
+        if (args.length == 2) {
+            if (!JavaScriptUtils.isDefined(args[0])) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+            } else if (!JavaScriptUtils.isDefined(args[1])) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_REQUIRED);
+            }
+        } else {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.TWO_ARGS_EXPECTED);
+        }
+
+        try {
+            CompressionPolicy.set(((JobWrap)thisObj).job.getConfiguration(), args[0].toString(),
+                                  args[1].toString());
+        } catch (IllegalArgumentException e) {
+            throw Utils.makeError(ctx, thisObj, e.getMessage());
+        }
+
+        return thisObj;
+    }
+
     /**
      * Wraps {@link Job#setGroupingComparatorClass(Class)}.
      *
@@ -1292,6 +1423,64 @@ public final class JobWrap extends ScriptableObject {
         return thisObj;
     }
 
+    /**
+     * Enables the skew mode of the job, which spreads the records of heavy keys across several reducers and merges
+     * their partial results.  The options are <code>keys</code>, an array of known heavy keys, <code>salts</code>,
+     * the number of reducers the records of a heavy key are spread across, <code>sample</code>, the number of input
+     * records to sample for heavy keys before the job is submitted, and <code>threshold</code>, the share of the
+     * sampled map output above which a key is heavy.
+     *
+     * @param ctx the JavaScript context (unused)
+     * @param thisObj the 'this' object of the caller
+     * @param args the arguments for the call
+     * @param func the function called (unused)
+     *
+     * @return this
+     *
+     * @see LembosSkew
+     */
+    @JSFunction
+    public static Object setSkewMode(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                     final Function func) {
+        if (args.length == 1) {
+            if (!JavaScriptUtils.isDefined(args[0])) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+            } else if (!(args[0] instanceof NativeObject)) {
+                throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_MUST_BE_OBJ);
+            }
+        } else {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.ONE_ARG_EXPECTED);
+        }
+
+        final NativeObject options = (NativeObject)args[0];
+        final Object jsKeys = options.get("keys");
+        final List<String> keys = new ArrayList<>();
+
+        if (JavaScriptUtils.isDefined(jsKeys)) {
+            if (!(jsKeys instanceof NativeArray)) {
+                throw Utils.makeError(ctx, thisObj, "Skew mode keys must be an array");
+            }
+
+            // Heavy keys are matched by the string form of the map output key they are written as
+            for (final Object key : (NativeArray)jsKeys) {
+                keys.add(ConversionUtils.jsToWritableComparable(key, thisObj).toString());
+            }
+        }
+
+        try {
+            final Number salts = getNumberOption(ctx, thisObj, options, "salts", LembosSkew.DEFAULT_SALTS);
+            final Number sample = getNumberOption(ctx, thisObj, options, "sample", 0);
+            final Number threshold = getNumberOption(ctx, thisObj, options, "threshold", LembosSkew.DEFAULT_THRESHOLD);
+
+            LembosSkew.setSkewMode(((JobWrap)thisObj).job, keys, salts.intValue(), sample.intValue(),
+                                   threshold.floatValue());
+        } catch (IllegalArgumentException e) {
+            throw Utils.makeError(ctx, thisObj, e.getMessage());
+        }
+
+        return thisObj;
+    }
+
     /**
      * Wraps {@link Job#setSortComparatorClass(Class)}.
      *
@@ -1431,7 +1620,8 @@ public final class JobWrap extends ScriptableObject {
     }
 
     /**
-     * Wraps {@link Job#waitForCompletion(boolean)}.
+     * Wraps {@link Job#waitForCompletion(boolean)}, printing the summary of the live metrics written by the tasks, see
+     * {@link LembosMetricsReporter#summarize(org.apache.hadoop.conf.Configuration, org.apache.hadoop.mapreduce.JobID)}.
      *
      * @param ctx the JavaScript context (unused)
      * @param thisObj the 'this' object of the caller
@@ -1455,8 +1645,18 @@ public final class JobWrap extends ScriptableObject {
             throw Utils.makeError(ctx, thisObj, LembosMessages.ONE_ARG_EXPECTED);
         }
 
+        final Job job = ((JobWrap)thisObj).job;
+
         try {
-            return ((JobWrap)thisObj).job.waitForCompletion(Boolean.valueOf(args[0].toString()));
+            final boolean result = job.waitForCompletion(Boolean.valueOf(args[0].toString()));
+            // Summarize the live metrics written by the tasks, if any
+            final String metricsSummary = LembosMetricsReporter.summarize(job.getConfiguration(), job.getJobID());
+
+            if (metricsSummary != null) {
+                System.out.println(metricsSummary);
+            }
+
+            return result;
         } catch (ClassNotFoundException | InterruptedException | IOException e) {
             throw Utils.makeError(ctx, thisObj, e.getMessage());
         }
@@ -1500,4 +1700,28 @@ public final class JobWrap extends ScriptableObject {
         this.job = job;
     }
 
+    /**
+     * Returns a number option of an options object.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object of the caller
+     * @param options the options object
+     * @param name the option name
+     * @param defaultValue the value of the option when it is not set
+     *
+     * @return the option value
+     */
+    private static Number getNumberOption(final Context ctx, final Scriptable thisObj, final NativeObject options,
+                                          final String name, final Number defaultValue) {
+        final Object value = options.get(name);
+
+        if (!JavaScriptUtils.isDefined(value)) {
+            return defaultValue;
+        } else if (!(value instanceof Number)) {
+            throw Utils.makeError(ctx, thisObj, "Skew mode " + name + " must be a number");
+        }
+
+        return (Number)value;
+    }
+
 }
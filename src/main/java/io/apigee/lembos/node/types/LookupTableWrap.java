@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.node.types;
+
+import io.apigee.lembos.lookup.LookupIndex;
+import io.apigee.lembos.lookup.LookupIndexes;
+import io.apigee.lembos.mapreduce.LembosConstants;
+import io.apigee.lembos.mapreduce.LembosMessages;
+import io.apigee.lembos.utils.JavaScriptUtils;
+import io.apigee.trireme.core.Utils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.Path;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.annotations.JSFunction;
+import org.mozilla.javascript.annotations.JSStaticFunction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * JavaScript object providing key/value lookups against a side-data file in the DistributedCache.  The file is indexed
+ * off-heap (or memory-mapped as is for {@link io.apigee.lembos.lookup.SortedLookupFile}s) once per JVM by
+ * {@link LookupIndexes} so every runtime, and every task of a reused JVM, shares the index.
+ */
+public final class LookupTableWrap extends ScriptableObject {
+
+    private static final long serialVersionUID = -3618455071950368227L;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    public static final String CLASS_NAME = "LookupTable";
+    public static final String DEFAULT_SEPARATOR = "\t";
+
+    // These transient fields are to please Findbugs.  I realize why the errors come up but I don't see us ever
+    // serializing this object.  It will always be constructed during the MapReduce component setup phase.
+
+    private transient LookupIndex index;
+
+    /* JavaScript Methods */
+
+    /**
+     * Opens the lookup table for the local DistributedCache file.  The file can be referenced by its name or by its
+     * full local path.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     *
+     * @return the lookup table
+     */
+    @JSStaticFunction
+    public static Object open(final Context ctx, final Scriptable thisObj, final Object[] args, final Function func) {
+        final Object arg0 = args.length >= 1 ? args[0] : Undefined.instance;
+        final Object arg1 = args.length >= 2 ? args[1] : Undefined.instance;
+        final Object arg2 = args.length >= 3 ? args[2] : Undefined.instance;
+
+        if (args.length < 2 || args.length > 3) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.TWO_OR_THREE_ARGS_EXPECTED);
+        } else if (!JavaScriptUtils.isDefined(arg0)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+        } else if (!JavaScriptUtils.isDefined(arg1)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_REQUIRED);
+        } else if (!(arg0 instanceof ConfigurationWrap)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_MUST_BE_CONF);
+        }
+
+        final Configuration conf = ((ConfigurationWrap)arg0).getConf();
+        final String separator = JavaScriptUtils.isDefined(arg2) ? arg2.toString() : DEFAULT_SEPARATOR;
+        final File source = findCacheFile(ctx, thisObj, conf, arg1.toString());
+        final LookupTableWrap lookupTable = (LookupTableWrap)ctx.newObject(thisObj, CLASS_NAME);
+
+        try {
+            lookupTable.index = LookupIndexes.open(source, separator,
+                                                   new File(conf.get(LembosConstants.LOOKUP_INDEX_DIR,
+                                                                     System.getProperty("java.io.tmpdir"))));
+        } catch (IOException e) {
+            throw Utils.makeError(ctx, thisObj, e.getMessage());
+        }
+
+        return lookupTable;
+    }
+
+    /**
+     * Returns the value for the key.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     *
+     * @return the value or null if the key is not in the table
+     */
+    @JSFunction
+    public static Object get(final Context ctx, final Scriptable thisObj, final Object[] args, final Function func) {
+        final Object arg0 = args.length >= 1 ? args[0] : Undefined.instance;
+
+        if (args.length < 1) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.ONE_ARG_EXPECTED);
+        } else if (!JavaScriptUtils.isDefined(arg0)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+        }
+
+        return ((LookupTableWrap)thisObj).lookup(arg0);
+    }
+
+    /**
+     * Returns the values for the keys, in the same order as the keys.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     *
+     * @return the array of values (null for the keys not in the table)
+     */
+    @JSFunction
+    public static Object getAll(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                final Function func) {
+        final Object arg0 = args.length >= 1 ? args[0] : Undefined.instance;
+
+        if (args.length < 1) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.ONE_ARG_EXPECTED);
+        } else if (!JavaScriptUtils.isDefined(arg0)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+        } else if (!(arg0 instanceof NativeArray)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_MUST_BE_ARRAY);
+        }
+
+        final LookupTableWrap lookupTable = (LookupTableWrap)thisObj;
+        final NativeArray keys = (NativeArray)arg0;
+        final Object[] values = new Object[(int)keys.getLength()];
+
+        for (int i = 0; i < values.length; i++) {
+            final Object key = keys.get(i, keys);
+
+            values[i] = JavaScriptUtils.isDefined(key) ? lookupTable.lookup(key) : null;
+        }
+
+        return ctx.newArray(thisObj, values);
+    }
+
+    /**
+     * Returns the number of keys in the table.
+     *
+     * @param ctx the JavaScript context (unused)
+     * @param thisObj the 'this' object
+     * @param args the function arguments (unused)
+     * @param func the function being called (unused)
+     *
+     * @return the number of keys
+     */
+    @JSFunction
+    public static Object size(final Context ctx, final Scriptable thisObj, final Object[] args,
+                              final Function func) {
+        return ((LookupTableWrap)thisObj).index.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+    /**
+     * Looks up the key.
+     *
+     * @param key the JavaScript key
+     *
+     * @return the value or null if the key is not in the table
+     */
+    private Object lookup(final Object key) {
+        final byte[] value = index.get(key.toString().getBytes(UTF_8));
+
+        return value == null ? null : new String(value, UTF_8);
+    }
+
+    /**
+     * Finds the local DistributedCache file by name or by path.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param conf the Hadoop configuration
+     * @param name the file name or path
+     *
+     * @return the local file
+     */
+    private static File findCacheFile(final Context ctx, final Scriptable thisObj, final Configuration conf,
+                                      final String name) {
+        final Path[] cacheFiles;
+
+        try {
+            cacheFiles = DistributedCache.getLocalCacheFiles(conf);
+        } catch (IOException e) {
+            throw Utils.makeError(ctx, thisObj, e.getMessage());
+        }
+
+        if (cacheFiles != null) {
+            for (final Path path : cacheFiles) {
+                if (path.getName().equals(name) || path.toUri().getPath().equals(name)
+                        || path.toString().equals(name)) {
+                    return new File(path.toUri().getPath());
+                }
+            }
+        }
+
+        throw Utils.makeError(ctx, thisObj, "DistributedCache file not found: " + name);
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.node.types;
+
+import io.apigee.lembos.db.RangeDBInputFormat;
+import io.apigee.lembos.mapreduce.LembosMessages;
+import io.apigee.lembos.utils.JavaScriptUtils;
+import io.apigee.trireme.core.Utils;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.annotations.JSStaticFunction;
+
+/**
+ * Java implementation of the {@link RangeDBInputFormat} JavaScript object.
+ *
+ * <b>Note:</b> Only exposes the static methods
+ */
+public final class RangeDBInputFormatWrap extends ScriptableObject {
+
+    private static final long serialVersionUID = -3342071626493102958L;
+    public static final String CLASS_NAME = "RangeDBInputFormat";
+
+    /* JavaScript Methods */
+
+    /**
+     * Java wrapper for
+     * {@link RangeDBInputFormat#setInput(org.apache.hadoop.mapreduce.Job, String, String, String, String...)}.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     */
+    @JSStaticFunction
+    public static void setInput(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                final Function func) {
+        final Object arg0 = args.length >= 1 ? args[0] : Undefined.instance;
+        final Object arg1 = args.length >= 2 ? args[1] : Undefined.instance;
+        final Object arg2 = args.length >= 3 ? args[2] : Undefined.instance;
+        final Object arg3 = args.length >= 4 ? args[3] : Undefined.instance;
+        final Object arg4 = args.length >= 5 ? args[4] : Undefined.instance;
+
+        if (args.length != 4 && args.length != 5) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FOUR_OR_FIVE_ARGS_EXPECTED);
+        } else if (!JavaScriptUtils.isDefined(arg0)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+        } else if (!JavaScriptUtils.isDefined(arg1)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_REQUIRED);
+        } else if (!JavaScriptUtils.isDefined(arg2)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.THIRD_ARG_REQUIRED);
+        } else if (!JavaScriptUtils.isDefined(arg3)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FOURTH_ARG_REQUIRED);
+        } else if (!(arg0 instanceof JobWrap)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_MUST_BE_JOB);
+        } else if (!(arg3 instanceof NativeArray)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FOURTH_ARG_MUST_BE_ARRAY);
+        }
+
+        final NativeArray jsFieldNames = (NativeArray)arg3;
+        final String[] fieldNames = new String[jsFieldNames.size()];
+
+        for (int i = 0; i < jsFieldNames.size(); i++) {
+            fieldNames[i] = jsFieldNames.get(i).toString();
+        }
+
+        RangeDBInputFormat.setInput(((JobWrap)arg0).getJob(), arg1.toString(),
+                                    JavaScriptUtils.isDefined(arg4) ? arg4.toString() : null, arg2.toString(),
+                                    fieldNames);
+    }
+
+    /**
+     * Java wrapper for {@link RangeDBInputFormat#setFetchSize(org.apache.hadoop.mapreduce.Job, int)}.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     */
+    @JSStaticFunction
+    public static void setFetchSize(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                    final Function func) {
+        RangeDBInputFormat.setFetchSize(getJob(ctx, thisObj, args, Number.class,
+                                               LembosMessages.SECOND_ARG_ARG_MUST_BE_NUM).getJob(),
+                                        JavaScriptUtils.fromNumber(args[1]).intValue());
+    }
+
+    /**
+     * Java wrapper for {@link RangeDBInputFormat#setSampleSize(org.apache.hadoop.mapreduce.Job, int)}.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     */
+    @JSStaticFunction
+    public static void setSampleSize(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                     final Function func) {
+        RangeDBInputFormat.setSampleSize(getJob(ctx, thisObj, args, Number.class,
+                                                LembosMessages.SECOND_ARG_ARG_MUST_BE_NUM).getJob(),
+                                         JavaScriptUtils.fromNumber(args[1]).intValue());
+    }
+
+    /**
+     * Java wrapper for {@link RangeDBInputFormat#setFullScanSampling(org.apache.hadoop.mapreduce.Job, boolean)}.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param func the function being called
+     */
+    @JSStaticFunction
+    public static void setFullScanSampling(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                           final Function func) {
+        RangeDBInputFormat.setFullScanSampling(getJob(ctx, thisObj, args, Boolean.class,
+                                                      LembosMessages.SECOND_ARG_MUST_BE_BOOL).getJob(),
+                                               (Boolean)args[1]);
+    }
+
+    /**
+     * Validates the <code>(job, value)</code> arguments of the setters.
+     *
+     * @param ctx the JavaScript context
+     * @param thisObj the 'this' object
+     * @param args the function arguments
+     * @param valueType the type of the value
+     * @param valueTypeMessage the error message when the value is not of the type
+     *
+     * @return the job
+     */
+    private static JobWrap getJob(final Context ctx, final Scriptable thisObj, final Object[] args,
+                                  final Class<?> valueType, final String valueTypeMessage) {
+        final Object arg0 = args.length >= 1 ? args[0] : Undefined.instance;
+        final Object arg1 = args.length >= 2 ? args[1] : Undefined.instance;
+
+        if (args.length != 2) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.TWO_ARGS_EXPECTED);
+        } else if (!JavaScriptUtils.isDefined(arg0)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+        } else if (!JavaScriptUtils.isDefined(arg1)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.SECOND_ARG_REQUIRED);
+        } else if (!(arg0 instanceof JobWrap)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_MUST_BE_JOB);
+        } else if (!valueType.isInstance(arg1)) {
+            throw Utils.makeError(ctx, thisObj, valueTypeMessage);
+        }
+
+        return (JobWrap)arg0;
+    }
+
+    /* Java Methods */
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+}
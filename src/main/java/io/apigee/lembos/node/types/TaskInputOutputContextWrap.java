@@ -16,11 +16,23 @@
 
 package io.apigee.lembos.node.types;
 
+import io.apigee.lembos.io.JSObjectWritable;
+import io.apigee.lembos.io.TaggedKeyWritable;
+import io.apigee.lembos.io.TaggedValueWritable;
+import io.apigee.lembos.mapreduce.AllocationMeter;
+import io.apigee.lembos.mapreduce.LembosBroadcastJoin;
+import io.apigee.lembos.mapreduce.LembosChain;
+import io.apigee.lembos.mapreduce.LembosEvents;
 import io.apigee.lembos.mapreduce.LembosMessages;
+import io.apigee.lembos.mapreduce.LembosMultipleOutputs;
+import io.apigee.lembos.mapreduce.LembosNodeEnvironment;
+import io.apigee.lembos.mapreduce.LembosSkew;
+import io.apigee.lembos.mapreduce.LembosTimers;
 import io.apigee.lembos.utils.ConversionUtils;
 import io.apigee.lembos.utils.JavaScriptUtils;
 import io.apigee.trireme.core.NodeRuntime;
 import io.apigee.trireme.core.Utils;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 import org.mozilla.javascript.Context;
@@ -46,6 +58,15 @@ public final class TaskInputOutputContextWrap extends ScriptableObject {
 
     private transient TaskInputOutputContext context;
     private transient NodeRuntime runtime;
+    private transient LembosTimers timers;
+    private transient LembosMultipleOutputs multipleOutputs;
+    private transient LembosChain.Link chainedLink;
+    private transient LembosBroadcastJoin broadcastJoin;
+    private transient Text directKey;
+    private transient Text directValue;
+    private int joinTag = -1;
+    private boolean skewPartials;
+    private boolean binaryOutput;
 
     private Scriptable scope;
     private Scriptable jsConf;
@@ -101,6 +122,61 @@ public final class TaskInputOutputContextWrap extends ScriptableObject {
         return CLASS_NAME;
     }
 
+    /**
+     * Returns the context wrapper of a JavaScript value, which is either a context wrapper or a {@link CallView} of
+     * one.
+     *
+     * @param object the JavaScript value
+     *
+     * @return the context wrapper or null if the value is not a context wrapper
+     */
+    public static TaskInputOutputContextWrap unwrap(final Object object) {
+        if (object instanceof CallView) {
+            return ((CallView)object).wrapper;
+        }
+
+        return object instanceof TaskInputOutputContextWrap ? (TaskInputOutputContextWrap)object : null;
+    }
+
+    /**
+     * Creates a view of this context wrapper for a single function call: It behaves like this context wrapper except
+     * that, once the call timed out, what is written through it is dropped and counted in the
+     * <code>&lt;component&gt; Late Writes Dropped</code> counter.
+     *
+     * @param env the Node.js environment making the call
+     * @param generation the generation of the call
+     *
+     * @return the view
+     */
+    public Scriptable newCallView(final LembosNodeEnvironment env, final long generation) {
+        final CallView view = new CallView(this, env, generation);
+
+        view.setPrototype(this);
+        view.setParentScope(getParentScope());
+
+        return view;
+    }
+
+    /**
+     * Returns true, after counting it, if the write is made through the view of a function call that timed out.
+     *
+     * @param thisObj the 'this' object of the write
+     *
+     * @return true if the write must be dropped
+     */
+    private static boolean isLateWrite(final Scriptable thisObj) {
+        if (!(thisObj instanceof CallView) || !((CallView)thisObj).isTimedOut()) {
+            return false;
+        }
+
+        final TaskInputOutputContextWrap self = ((CallView)thisObj).wrapper;
+        final String component = self.timers == null ? "" : self.timers.getComponent() + " ";
+
+        self.context.getCounter(LembosTimers.COUNTER_GROUP, component + "Late Writes Dropped").increment(1);
+
+        return true;
+    }
+
     /** Exposed JavaScript Functions **/
 
     /**
@@ -116,7 +192,7 @@ public final class TaskInputOutputContextWrap extends ScriptableObject {
     @JSFunction
     public static Object getConfiguration(final Context ctx, final Scriptable thisObj, final Object[] args,
                                           final Function func) {
-        return ((TaskInputOutputContextWrap)thisObj).jsConf;
+        return unwrap(thisObj).jsConf;
     }
 
     /**
@@ -145,7 +221,7 @@ public final class TaskInputOutputContextWrap extends ScriptableObject {
             throw Utils.makeError(ctx, thisObj, LembosMessages.TWO_ARGS_EXPECTED);
         }
 
-        final TaskInputOutputContextWrap self = (TaskInputOutputContextWrap)thisObj;
+        final TaskInputOutputContextWrap self = unwrap(thisObj);
         final Counter counter = self.context.getCounter(arg0.toString(), arg1.toString());
         CounterWrap counterWrap = null;
 
@@ -162,9 +238,13 @@ public final class TaskInputOutputContextWrap extends ScriptableObject {
 
     /**
      * Wraps {@link TaskInputOutputContext#write(Object, Object)} to conditionally serialize the key and value to
-     * the appropriate {@link org.apache.hadoop.io.WritableComparable} and {@link org.apache.hadoop.io.Writable}.
+     * the appropriate {@link org.apache.hadoop.io.WritableComparable} and {@link org.apache.hadoop.io.Writable}.  The
+     * contexts of a {@link LembosChain} pass them to the next function of the chain instead, and the contexts of a
+     * {@link LembosBroadcastJoin} to the map-side join.  While a salted key of the skew mode is reduced, they go to the
+     * named output of the partial results.  What a function call writes once it timed out is dropped, see
+     * {@link #newCallView(LembosNodeEnvironment, long)}.
      *
-     * @param ctx the JavaScript context (unused)
+     * @param ctx the JavaScript context
      * @param thisObj the 'this' object of the caller
      * @param args the arguments for the call (unused)
      * @param func the function called (unused)
@@ -176,20 +256,200 @@ public final class TaskInputOutputContextWrap extends ScriptableObject {
     public static void write(final Context ctx, final Scriptable thisObj, final Object[] args, final Function func) {
         if (args.length != 2) {
             throw Utils.makeError(ctx, thisObj, "Two arguments expected");
+        } else if (isLateWrite(thisObj)) {
+            return;
+        }
+
+        final TaskInputOutputContextWrap self = unwrap(thisObj);
+
+        // Chained contexts hand the key and value to the next function of the chain without converting them
+        if (self.chainedLink != null) {
+            self.chainedLink.call(ctx, args[0], args[1]);
+
+            return;
+        } else if (self.broadcastJoin != null) {
+            self.broadcastJoin.write(ctx, args[0], args[1]);
+
+            return;
         }
 
+        final long startNanos = System.nanoTime();
+        final long startBytes = AllocationMeter.getAllocatedBytes();
+        final Object slowWriteEvent = LembosEvents.begin(LembosEvents.Type.SLOW_WRITE);
+
         try {
-            final TaskInputOutputContextWrap self = (TaskInputOutputContextWrap)thisObj;
             final Object jsKey = args[0];
             final Object jsVal = args[1];
 
-            self.context.write(ConversionUtils.jsToWritableComparable(jsKey, self.scope),
-                               ConversionUtils.jsToWritable(jsVal, self.scope));
+            if (self.directKey != null) {
+                self.context.write(ConversionUtils.jsToText(jsKey, self.directKey, self.scope),
+                                   ConversionUtils.jsToText(jsVal, self.directValue, self.scope));
+            } else if (self.joinTag != -1) {
+                final byte tag = (byte)self.joinTag;
+
+                self.context.write(new TaggedKeyWritable(new JSObjectWritable(jsKey), tag),
+                                   new TaggedValueWritable(tag, new JSObjectWritable(jsVal)));
+            } else if (self.skewPartials) {
+                self.multipleOutputs.write(LembosSkew.PARTIALS_OUTPUT, new JSObjectWritable(jsKey),
+                                           new JSObjectWritable(jsVal), LembosSkew.PARTIALS_PATH);
+            } else if (self.binaryOutput) {
+                self.context.write(new JSObjectWritable(jsKey), new JSObjectWritable(jsVal));
+            } else {
+                self.context.write(ConversionUtils.jsToWritableComparable(jsKey, self.scope),
+                                   ConversionUtils.jsToWritable(jsVal, self.scope));
+            }
+        } catch (InterruptedException | IOException e) {
+            throw Utils.makeError(ctx, thisObj, "Unexpected exception: " + e.getMessage());
+        } finally {
+            LembosEvents.commitIfSlow(slowWriteEvent, System.nanoTime() - startNanos,
+                                      self.timers == null ? null : self.timers.getComponent());
+
+            if (self.timers != null) {
+                self.timers.record(LembosTimers.Phase.CONTEXT_WRITE, startNanos);
+                self.timers.recordAllocation(LembosTimers.Phase.CONTEXT_WRITE, startBytes);
+            }
+        }
+    }
+
+    /**
+     * Writes the key and value to a named output, converting them like {@link #write(Context, Scriptable, Object[],
+     * Function)} does.  The optional fourth argument is the base path of the output files, relative to the job output
+     * directory.
+     *
+     * @param ctx the JavaScript context (unused)
+     * @param thisObj the 'this' object of the caller
+     * @param args the arguments for the call (unused)
+     * @param func the function called (unused)
+     *
+     * @see LembosMultipleOutputs
+     */
+    @JSFunction
+    public static void writeTo(final Context ctx, final Scriptable thisObj, final Object[] args,
+                               final Function func) {
+        final Object arg0 = args.length >= 1 ? args[0] : Undefined.instance;
+        final Object arg3 = args.length >= 4 ? args[3] : Undefined.instance;
+
+        if (args.length != 3 && args.length != 4) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.THREE_OR_FOUR_ARGS_EXPECTED);
+        } else if (!JavaScriptUtils.isDefined(arg0)) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.FIRST_ARG_REQUIRED);
+        } else if (isLateWrite(thisObj)) {
+            return;
+        }
+
+        final TaskInputOutputContextWrap self = unwrap(thisObj);
+
+        if (self.multipleOutputs == null) {
+            throw Utils.makeError(ctx, thisObj, LembosMessages.NAMED_OUTPUTS_UNAVAILABLE);
+        }
+
+        final long startNanos = System.nanoTime();
+        final long startBytes = AllocationMeter.getAllocatedBytes();
+        final Object slowWriteEvent = LembosEvents.begin(LembosEvents.Type.SLOW_WRITE);
+
+        try {
+            self.multipleOutputs.write(arg0.toString(), ConversionUtils.jsToWritableComparable(args[1], self.scope),
+                                       ConversionUtils.jsToWritable(args[2], self.scope),
+                                       JavaScriptUtils.isDefined(arg3) ? arg3.toString() : null);
+        } catch (IllegalArgumentException e) {
+            throw Utils.makeError(ctx, thisObj, e.getMessage());
         } catch (InterruptedException | IOException e) {
             throw Utils.makeError(ctx, thisObj, "Unexpected exception: " + e.getMessage());
+        } finally {
+            LembosEvents.commitIfSlow(slowWriteEvent, System.nanoTime() - startNanos,
+                                      self.timers == null ? null : self.timers.getComponent());
+
+            if (self.timers != null) {
+                self.timers.record(LembosTimers.Phase.CONTEXT_WRITE, startNanos);
+                self.timers.recordAllocation(LembosTimers.Phase.CONTEXT_WRITE, startBytes);
+            }
         }
     }
 
+    /**
+     * Sets the timers to record the <code>context.write</code> calls in.
+     *
+     * @param timers the timers (can be null)
+     */
+    public void setTimers(final LembosTimers timers) {
+        this.timers = timers;
+    }
+
+    /**
+     * Sets the named outputs <code>context.writeTo</code> writes to.
+     *
+     * @param multipleOutputs the named outputs (can be null, when the component cannot use named outputs)
+     */
+    public void setMultipleOutputs(final LembosMultipleOutputs multipleOutputs) {
+        this.multipleOutputs = multipleOutputs;
+    }
+
+    /**
+     * Makes <code>context.write</code> format the key and value directly into reused {@link Text}s, which is only safe
+     * when the context hands the records straight to a text record writer.
+     *
+     * @param direct whether or not to format the records directly to text
+     *
+     * @see io.apigee.lembos.mapreduce.LembosTextOutputFormat#isDirect(org.apache.hadoop.mapreduce.JobContext)
+     */
+    public void setDirectText(final boolean direct) {
+        this.directKey = direct ? new Text() : null;
+        this.directValue = direct ? new Text() : null;
+    }
+
+    /**
+     * Makes <code>context.write</code> tag the key and value with the join input the map task reads from.
+     *
+     * @param joinTag the tag of the join input
+     *
+     * @see io.apigee.lembos.mapreduce.LembosJoin
+     */
+    public void setJoinTag(final byte joinTag) {
+        this.joinTag = joinTag;
+    }
+
+    /**
+     * Makes <code>context.write</code> write the key and value to the named output of the partial results of the skew
+     * mode, while a salted key is reduced.
+     *
+     * @param skewPartials whether or not the key being reduced is salted
+     *
+     * @see LembosSkew
+     */
+    public void setSkewPartials(final boolean skewPartials) {
+        this.skewPartials = skewPartials;
+    }
+
+    /**
+     * Makes <code>context.write</code> write the key and value as {@link JSObjectWritable}s, for the stages writing
+     * binary intermediate outputs.
+     *
+     * @param binaryOutput whether or not the task output is binary
+     *
+     * @see io.apigee.lembos.mapreduce.LembosConstants#MR_STAGE_BINARY_OUTPUT
+     */
+    public void setBinaryOutput(final boolean binaryOutput) {
+        this.binaryOutput = binaryOutput;
+    }
+
+    /**
+     * Makes <code>context.write</code> hand the key and value to a map-side join instead of writing to Hadoop.
+     *
+     * @param broadcastJoin the map-side join (can be null, to write to Hadoop)
+     */
+    public void setBroadcastJoin(final LembosBroadcastJoin broadcastJoin) {
+        this.broadcastJoin = broadcastJoin;
+    }
+
+    /**
+     * Makes <code>context.write</code> call the chained function instead of writing to Hadoop.
+     *
+     * @param chainedLink the chain link to call (can be null, to write to Hadoop)
+     */
+    public void setChainedLink(final LembosChain.Link chainedLink) {
+        this.chainedLink = chainedLink;
+    }
+
     /**
      * @return the raw context
      */
@@ -197,4 +457,47 @@ public final class TaskInputOutputContextWrap extends ScriptableObject {
         return context;
     }
 
+    /**
+     * A view of a context wrapper passed to a single function call, see
+     * {@link #newCallView(LembosNodeEnvironment, long)}.  Its prototype is the context wrapper so it has the same
+     * functions.
+     */
+    private static final class CallView extends ScriptableObject {
+
+        private static final long serialVersionUID = 4215738236490812755L;
+        private final transient TaskInputOutputContextWrap wrapper;
+        private final transient LembosNodeEnvironment env;
+        private final long generation;
+
+        /**
+         * Constructor.
+         *
+         * @param wrapper the context wrapper
+         * @param env the Node.js environment making the call
+         * @param generation the generation of the call
+         */
+        private CallView(final TaskInputOutputContextWrap wrapper, final LembosNodeEnvironment env,
+                         final long generation) {
+            this.wrapper = wrapper;
+            this.env = env;
+            this.generation = generation;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getClassName() {
+            return CLASS_NAME;
+        }
+
+        /**
+         * @return true if the function call the view was passed to timed out
+         */
+        private boolean isTimedOut() {
+            return env.isTimedOut(generation);
+        }
+
+    }
+
 }
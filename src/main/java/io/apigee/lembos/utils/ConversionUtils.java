@@ -16,11 +16,16 @@
 
 package io.apigee.lembos.utils;
 
+import io.apigee.lembos.io.JSObjectWritable;
+import io.apigee.lembos.mapreduce.LembosEvents;
 import io.apigee.lembos.mapreduce.converters.JSToWritableConverter;
 import io.apigee.lembos.mapreduce.converters.WritableToJSConverter;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
 import org.mozilla.javascript.Scriptable;
 
 import java.util.HashSet;
@@ -87,6 +92,8 @@ public final class ConversionUtils {
                 throw new RuntimeException("No Writable to JavaScript converter found for class: "
                                                    + writable.getClass().getCanonicalName());
             } else {
+                LembosEvents.converterSelected(LembosEvents.Conversion.WRITABLE_TO_JS, writable.getClass(), converter);
+
                 //noinspection unchecked
                 jsObject = converter.toJavaScript(scope, writable);
             }
@@ -119,6 +126,8 @@ public final class ConversionUtils {
                 throw new RuntimeException("No JavaScript to Writable converter found for class: "
                                                    + jsObject.getClass().getCanonicalName());
             } else {
+                LembosEvents.converterSelected(LembosEvents.Conversion.JS_TO_WRITABLE, jsObject.getClass(), converter);
+
                 //noinspection unchecked
                 writable = converter.fromJavaScript(scope, jsObject);
             }
@@ -174,4 +183,36 @@ public final class ConversionUtils {
         }
     }
 
+    /**
+     * Convert a JavaScript value to the {@link Text} a text output would write for its {@link Writable} equivalent,
+     * formatting strings, numbers, booleans, objects and arrays directly into the {@link Text} passed in.  Other values
+     * are converted like {@link #jsToWritable(Object, Scriptable)} does.
+     *
+     * <b>Note:</b> The {@link Text} is reused so it must be written before the next call.
+     *
+     * @param jsObject the JavaScript object to convert
+     * @param text the text to format the value into
+     * @param scope the scope to serialize the object
+     *
+     * @return the text, {@link NullWritable} for null/undefined or the {@link Writable} equivalent of other values
+     */
+    public static Writable jsToText(final Object jsObject, final Text text, final Scriptable scope) {
+        if (!JavaScriptUtils.isDefined(jsObject)) {
+            return NullWritable.get();
+        } else if (jsObject instanceof CharSequence) {
+            text.set(jsObject.toString());
+        } else if (jsObject instanceof Number) {
+            text.set(JavaScriptUtils.fromNumber(jsObject).toString());
+        } else if (jsObject instanceof Boolean) {
+            text.set(jsObject.toString());
+        } else if ((jsObject instanceof NativeObject && !JavaScriptUtils.isBuffer(jsObject))
+                || jsObject instanceof NativeArray) {
+            text.set(JSObjectWritable.toJSON(jsObject));
+        } else {
+            return jsToWritable(jsObject, scope);
+        }
+
+        return text;
+    }
+
 }
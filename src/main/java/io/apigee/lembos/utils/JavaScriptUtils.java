@@ -16,11 +16,16 @@
 
 package io.apigee.lembos.utils;
 
+import io.apigee.trireme.core.modules.Buffer;
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
 
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 
@@ -127,4 +132,51 @@ public final class JavaScriptUtils {
         return newObject;
     }
 
+    /**
+     * Returns whether or not the object is a Node.js Buffer.
+     *
+     * @param object the object to check
+     *
+     * @return true if the object is a Node.js Buffer
+     */
+    public static boolean isBuffer(final Object object) {
+        return object instanceof Buffer.BufferImpl;
+    }
+
+    /**
+     * Wraps the first <code>length</code> bytes of the array in a Node.js Buffer without copying them.
+     *
+     * <b>Note:</b> When the scope does not provide Node.js Buffers (outside of Trireme), a byte[] of the requested
+     * length is returned instead.  The array is only copied when it is longer than the requested length.
+     *
+     * @param scope the JavaScript scope
+     * @param bytes the bytes to wrap
+     * @param length the number of valid bytes
+     *
+     * @return the Node.js Buffer (or byte[] when Buffers are unavailable)
+     */
+    public static Object asBuffer(final Scriptable scope, final byte[] bytes, final int length) {
+        final Scriptable topLevelScope = scope == null ? null : ScriptableObject.getTopLevelScope(scope);
+
+        if (topLevelScope != null
+                && ScriptableObject.getProperty(topLevelScope, Buffer.BUFFER_CLASS_NAME) instanceof Function) {
+            Context ctx = Context.getCurrentContext();
+            final boolean entered = ctx == null;
+
+            if (entered) {
+                ctx = Context.enter();
+            }
+
+            try {
+                return Buffer.BufferImpl.newBuffer(ctx, topLevelScope, ByteBuffer.wrap(bytes, 0, length), false);
+            } finally {
+                if (entered) {
+                    Context.exit();
+                }
+            }
+        }
+
+        return bytes.length == length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
 }
@@ -0,0 +1,245 @@
+package io.apigee.lembos.db;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.apigee.lembos.io.JSObjectWritable;
+import io.apigee.lembos.mapreduce.LembosConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.db.DBConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link BatchDBOutputFormat} works as expected, using an in-memory H2 database.
+ */
+public class BatchDBOutputFormatTest {
+
+    private static final String DB_URL = "jdbc:h2:mem:BatchDBOutputFormatTest;DB_CLOSE_DELAY=-1;MVCC=TRUE";
+
+    private Connection connection;
+
+    /**
+     * Creates the table.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+
+        connection = DriverManager.getConnection(DB_URL);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE USERS (NAME VARCHAR(64), AGE INT, TAGS VARCHAR(256))");
+        }
+    }
+
+    /**
+     * Drops the table.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @After
+    public void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE USERS");
+        }
+
+        connection.close();
+    }
+
+    /**
+     * Unit test for the generated insert statements.
+     */
+    @Test
+    public void testConstructQuery() {
+        final String[] fieldNames = new String[] {"NAME", "AGE"};
+
+        assertEquals("INSERT INTO USERS (NAME, AGE) VALUES (?, ?)",
+                     BatchDBOutputFormat.constructQuery("USERS", fieldNames, 1));
+        assertEquals("INSERT INTO USERS (NAME, AGE) VALUES (?, ?), (?, ?), (?, ?)",
+                     BatchDBOutputFormat.constructQuery("USERS", fieldNames, 3));
+    }
+
+    /**
+     * Unit test for writing JavaScript objects, arrays and {@link MapWritable}s using batches and multi-row inserts
+     * whose last statement is partially filled.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testWrite() throws Exception {
+        final Configuration conf = createConf();
+
+        conf.setInt(LembosConstants.DB_BATCH_SIZE, 4);
+        conf.setInt(LembosConstants.DB_ROWS_PER_INSERT, 3);
+
+        final RecordWriter<Writable, Writable> writer = createWriter(conf);
+        final MapWritable mapRow = new MapWritable();
+
+        for (int i = 0; i < 20; i++) {
+            writer.write(new JSObjectWritable(ImmutableMap.of("NAME", "user" + i, "AGE", i)), NullWritable.get());
+        }
+
+        // Rows in the value, positional rows, nested values and nulls
+        writer.write(NullWritable.get(), new JSObjectWritable(ImmutableList.of("array", 100)));
+        writer.write(new JSObjectWritable(ImmutableMap.of("NAME", "tagged", "TAGS", ImmutableList.of("a", "b"))),
+                     null);
+
+        mapRow.put(new Text("NAME"), new Text("map"));
+        mapRow.put(new Text("AGE"), new IntWritable(200));
+
+        writer.write(mapRow, null);
+
+        // Nothing is visible before the task completes
+        assertEquals(0, count("SELECT COUNT(*) FROM USERS"));
+
+        writer.close(null);
+
+        final Map<String, Object[]> rows = readRows();
+
+        assertEquals(23, rows.size());
+        assertEquals(7, rows.get("user7")[0]);
+        assertEquals(100, rows.get("array")[0]);
+        assertEquals(200, rows.get("map")[0]);
+        assertNull(rows.get("map")[1]);
+        assertNull(rows.get("tagged")[0]);
+        assertEquals("[\"a\",\"b\"]", rows.get("tagged")[1]);
+    }
+
+    /**
+     * Unit test for periodic commits.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testCommitInterval() throws Exception {
+        final Configuration conf = createConf();
+
+        conf.setInt(LembosConstants.DB_ROWS_PER_INSERT, 2);
+        conf.setLong(LembosConstants.DB_COMMIT_INTERVAL, 5);
+
+        final RecordWriter<Writable, Writable> writer = createWriter(conf);
+
+        for (int i = 0; i < 7; i++) {
+            writer.write(new JSObjectWritable(ImmutableMap.of("NAME", "user" + i)), null);
+        }
+
+        assertEquals(5, count("SELECT COUNT(*) FROM USERS"));
+
+        writer.close(null);
+
+        assertEquals(7, count("SELECT COUNT(*) FROM USERS"));
+    }
+
+    /**
+     * Unit test that makes sure records that are not objects or arrays fail the task.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testInvalidRecord() throws Exception {
+        final RecordWriter<Writable, Writable> writer = createWriter(createConf());
+
+        try {
+            writer.write(new Text("user"), null);
+
+            fail("Writing a string should have failed");
+        } catch (IOException e) {
+            assertEquals("Database records must be objects or arrays, not: org.apache.hadoop.io.Text",
+                         e.getMessage());
+        } finally {
+            writer.close(null);
+        }
+    }
+
+    /**
+     * Returns the job configuration.
+     *
+     * @return the configuration
+     */
+    private static Configuration createConf() {
+        final Configuration conf = new Configuration();
+        final DBConfiguration dbConf = new DBConfiguration(conf);
+
+        DBConfiguration.configureDB(conf, "org.h2.Driver", DB_URL);
+
+        dbConf.setOutputTableName("USERS");
+        dbConf.setOutputFieldNames("NAME", "AGE", "TAGS");
+
+        return conf;
+    }
+
+    /**
+     * Returns a record writer for the configuration.
+     *
+     * @param conf the configuration
+     *
+     * @return the record writer
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private static RecordWriter<Writable, Writable> createWriter(final Configuration conf) throws Exception {
+        return new BatchDBOutputFormat().getRecordWriter(new TaskAttemptContext(conf, new TaskAttemptID()));
+    }
+
+    /**
+     * Returns the result of a count query.
+     *
+     * @param query the query
+     *
+     * @return the count
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private int count(final String query) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet results = statement.executeQuery(query)) {
+            results.next();
+
+            return results.getInt(1);
+        }
+    }
+
+    /**
+     * Returns the rows by name.
+     *
+     * @return the age and tags of each row by name
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private Map<String, Object[]> readRows() throws Exception {
+        final Map<String, Object[]> rows = new HashMap<>();
+
+        try (Statement statement = connection.createStatement();
+             ResultSet results = statement.executeQuery("SELECT NAME, AGE, TAGS FROM USERS")) {
+            while (results.next()) {
+                rows.put(results.getString(1), new Object[] {results.getObject(2), results.getString(3)});
+            }
+        }
+
+        return rows;
+    }
+
+}
@@ -0,0 +1,363 @@
+package io.apigee.lembos.db;
+
+import io.apigee.lembos.utils.ConversionUtils;
+import io.apigee.lembos.utils.TestUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.db.DBConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link RangeDBInputFormat} works as expected, using an in-memory H2 database.
+ */
+public class RangeDBInputFormatTest {
+
+    private static final String DB_URL = "jdbc:h2:mem:RangeDBInputFormatTest;DB_CLOSE_DELAY=-1";
+    private static final int ROWS = 1000;
+
+    private Connection connection;
+
+    /**
+     * Creates and fills the table.  (Most ids are small so equal-width ranges would be unbalanced.)
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+
+        connection = DriverManager.getConnection(DB_URL);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE USERS (ID BIGINT, NAME VARCHAR(64), BORN DATE, SCORE DECIMAL(10, 2))");
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO USERS VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                statement.setLong(1, i < ROWS - 10 ? i : 1000000L * i);
+                statement.setString(2, "user" + i);
+                statement.setDate(3, new Date(86400000L * i));
+                statement.setBigDecimal(4, new BigDecimal(i + ".5"));
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO USERS VALUES (NULL, 'nobody', NULL, NULL)");
+        }
+    }
+
+    /**
+     * Drops the table.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @After
+    public void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE USERS");
+        }
+
+        connection.close();
+    }
+
+    /**
+     * Unit test that makes sure the ranges are balanced and read every row exactly once.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testNumericSplits() throws Exception {
+        final Configuration conf = createConf("ID", null);
+        final List<InputSplit> splits = new RangeDBInputFormat().getSplits(new JobContext(conf, new JobID()));
+        final Set<String> names = new HashSet<>();
+
+        assertEquals(4, splits.size());
+
+        for (final InputSplit split : splits) {
+            final Set<String> splitNames = readNames(conf, roundTrip((RangeDBInputFormat.RangeSplit)split));
+
+            // The sample holds every row so the ranges are close to a quarter of the rows each
+            assertTrue(splitNames.size() > ROWS / 4 - 10 && splitNames.size() < ROWS / 4 + 10);
+
+            for (final String name : splitNames) {
+                assertTrue(names.add(name));
+            }
+        }
+
+        assertEquals(ROWS + 1, names.size());
+        assertTrue(names.contains("nobody"));
+    }
+
+    /**
+     * Unit test for computing the ranges from a sample read by the client.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testFullScanSplits() throws Exception {
+        final Configuration conf = createConf("ID", null);
+
+        conf.setBoolean("io.apigee.lembos.db.sampleFullScan", true);
+
+        final List<InputSplit> splits = new RangeDBInputFormat().getSplits(new JobContext(conf, new JobID()));
+        final Set<String> names = new HashSet<>();
+        long start = 0;
+
+        assertEquals(4, splits.size());
+
+        for (final InputSplit split : splits) {
+            final RangeDBInputFormat.RangeSplit range = roundTrip((RangeDBInputFormat.RangeSplit)split);
+            final Set<String> splitNames = readNames(conf, range);
+
+            // The sample holds every row so the ranges are close to a quarter of the rows each
+            assertTrue(splitNames.size() > ROWS / 4 - 10 && splitNames.size() < ROWS / 4 + 10);
+            assertEquals(start, range.getStart());
+
+            for (final String name : splitNames) {
+                assertTrue(names.add(name));
+            }
+
+            start += range.getLength();
+        }
+
+        assertEquals(ROWS + 1, names.size());
+    }
+
+    /**
+     * Unit test that makes sure the record keys are offset by the first row of their split, so they are unique.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testRecordKeys() throws Exception {
+        final Configuration conf = createConf("ID", null);
+        final Set<Long> keys = new HashSet<>();
+
+        for (final InputSplit split : new RangeDBInputFormat().getSplits(new JobContext(conf, new JobID()))) {
+            final RecordReader<LongWritable, DBRowWritable> reader = createReader(
+                    conf, roundTrip((RangeDBInputFormat.RangeSplit)split));
+
+            try {
+                while (reader.nextKeyValue()) {
+                    assertTrue(keys.add(reader.getCurrentKey().get()));
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        // The counts of the database side sampling are exact so the keys are the row indexes
+        assertEquals(ROWS + 1, keys.size());
+        assertTrue(keys.contains(0L));
+        assertTrue(keys.contains((long)ROWS));
+    }
+
+    /**
+     * Unit test for splitting by a date column, with conditions.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testDateSplitsWithConditions() throws Exception {
+        final Configuration conf = createConf("BORN", "ID < 500");
+
+        conf.setInt("io.apigee.lembos.db.sampleSize", 50);
+
+        final List<InputSplit> splits = new RangeDBInputFormat().getSplits(new JobContext(conf, new JobID()));
+        final Set<String> names = new HashSet<>();
+
+        assertEquals(4, splits.size());
+
+        for (final InputSplit split : splits) {
+            for (final String name : readNames(conf, roundTrip((RangeDBInputFormat.RangeSplit)split))) {
+                assertTrue(names.add(name));
+            }
+        }
+
+        assertEquals(500, names.size());
+    }
+
+    /**
+     * Unit test that makes sure rows become JavaScript objects keyed by column name.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testRowConversion() throws Exception {
+        final Configuration conf = createConf("ID", "ID = 7");
+        final Scriptable scope = TestUtils.createScriptable("RangeDBInputFormatTest.js", "var a = 1;");
+        final RecordReader<LongWritable, DBRowWritable> reader = createReader(
+                conf, new RangeDBInputFormat.RangeSplit(null, null, 1));
+
+        assertTrue(reader.nextKeyValue());
+
+        final DBRowWritable row = reader.getCurrentValue();
+        final Object jsRow = ConversionUtils.writableToJS(row, scope);
+
+        assertTrue(jsRow instanceof NativeObject);
+        assertEquals(7L, ((Number)ScriptableObject.getProperty((Scriptable)jsRow, "ID")).longValue());
+        assertEquals("user7", ScriptableObject.getProperty((Scriptable)jsRow, "NAME"));
+        assertEquals("Date", ((Scriptable)ScriptableObject.getProperty((Scriptable)jsRow, "BORN")).getClassName());
+        assertEquals(7.5, ((Number)ScriptableObject.getProperty((Scriptable)jsRow, "SCORE")).doubleValue(), 0.0);
+
+        // Serialized rows store dates as milliseconds
+        final DataOutputBuffer out = new DataOutputBuffer();
+        final DataInputBuffer in = new DataInputBuffer();
+        final DBRowWritable copy = new DBRowWritable();
+
+        row.write(out);
+        in.reset(out.getData(), out.getLength());
+        copy.readFields(in);
+
+        final Map<String, Object> values = copy.toMap();
+
+        assertEquals("user7", values.get("NAME"));
+        assertEquals(((java.util.Date)row.getValues()[2]).getTime(), ((Number)values.get("BORN")).longValue());
+
+        assertFalse(reader.nextKeyValue());
+
+        reader.close();
+    }
+
+    /**
+     * Unit test that makes sure an empty table has a single split.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testEmptyTable() throws Exception {
+        final List<InputSplit> splits = new RangeDBInputFormat().getSplits(
+                new JobContext(createConf("ID", "ID < 0"), new JobID()));
+
+        assertEquals(1, splits.size());
+        assertNull(((RangeDBInputFormat.RangeSplit)splits.get(0)).getLower());
+        assertNull(((RangeDBInputFormat.RangeSplit)splits.get(0)).getUpper());
+    }
+
+    /**
+     * Returns the job configuration.
+     *
+     * @param splitColumn the split column
+     * @param conditions the conditions
+     *
+     * @return the configuration
+     */
+    private static Configuration createConf(final String splitColumn, final String conditions) {
+        final Configuration conf = new Configuration();
+        final DBConfiguration dbConf = new DBConfiguration(conf);
+
+        DBConfiguration.configureDB(conf, "org.h2.Driver", DB_URL);
+
+        dbConf.setInputTableName("USERS");
+        dbConf.setInputOrderBy(splitColumn);
+        dbConf.setInputConditions(conditions);
+        dbConf.setInputFieldNames("ID", "NAME", "BORN", "SCORE");
+
+        conf.setInt("mapred.map.tasks", 4);
+
+        return conf;
+    }
+
+    /**
+     * Returns an initialized record reader.
+     *
+     * @param conf the configuration
+     * @param split the split
+     *
+     * @return the record reader
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private static RecordReader<LongWritable, DBRowWritable> createReader(final Configuration conf,
+                                                                          final InputSplit split)
+            throws Exception {
+        final TaskAttemptContext context = new TaskAttemptContext(conf, new TaskAttemptID());
+        final RecordReader<LongWritable, DBRowWritable> reader = new RangeDBInputFormat().createRecordReader(split,
+                                                                                                            context);
+
+        reader.initialize(split, context);
+
+        return reader;
+    }
+
+    /**
+     * Returns the names of the rows of the split.
+     *
+     * @param conf the configuration
+     * @param split the split
+     *
+     * @return the names
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private static Set<String> readNames(final Configuration conf, final InputSplit split) throws Exception {
+        final Set<String> names = new HashSet<>();
+
+        final RecordReader<LongWritable, DBRowWritable> reader = createReader(conf, split);
+
+        try {
+            while (reader.nextKeyValue()) {
+                names.add(reader.getCurrentValue().toMap().get("NAME").toString());
+            }
+        } finally {
+            reader.close();
+        }
+
+        return names;
+    }
+
+    /**
+     * Serializes and deserializes the split, like Hadoop does before reading it.
+     *
+     * @param split the split
+     *
+     * @return the copy
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private static RangeDBInputFormat.RangeSplit roundTrip(final RangeDBInputFormat.RangeSplit split)
+            throws Exception {
+        final DataOutputBuffer out = new DataOutputBuffer();
+        final DataInputBuffer in = new DataInputBuffer();
+        final RangeDBInputFormat.RangeSplit copy = new RangeDBInputFormat.RangeSplit();
+
+        split.write(out);
+        in.reset(out.getData(), out.getLength());
+        copy.readFields(in);
+
+        return copy;
+    }
+
+}
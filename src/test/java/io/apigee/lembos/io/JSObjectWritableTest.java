@@ -0,0 +1,177 @@
+package io.apigee.lembos.io;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.apigee.lembos.utils.ConversionUtils;
+import io.apigee.lembos.utils.TestUtils;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link JSObjectWritable} works as expected.
+ */
+public class JSObjectWritableTest {
+
+    private final Scriptable script = TestUtils.createScriptable("JSObjectWritableTest.js",
+            "var o = {'s': 'String', 'i': 1, 'd': 1.1, 'l': 2147483648, 'b': false, 'n': null, "
+                    + "'a': [{'name': 'a', 'count': 1}, {'name': 'b', 'count': 2}]};");
+
+    /**
+     * Unit test for serializing and deserializing a {@link JSObjectWritable}.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        final Writable writable = ConversionUtils.jsToWritable(script.get("o", script), script);
+
+        assertTrue(writable instanceof JSObjectWritable);
+
+        final JSObjectWritable copy = roundTrip((JSObjectWritable)writable);
+        final Map<?, ?> value = (Map<?, ?>)copy.get();
+
+        assertEquals(writable, copy);
+        assertEquals(writable.hashCode(), copy.hashCode());
+        assertEquals("String", value.get("s"));
+        assertEquals(1, value.get("i"));
+        assertEquals(1.1, value.get("d"));
+        assertEquals(2147483648L, value.get("l"));
+        assertEquals(false, value.get("b"));
+        assertTrue(value.containsKey("n"));
+        assertEquals(null, value.get("n"));
+        assertEquals(ImmutableList.of(ImmutableMap.of("name", "a", "count", 1),
+                                      ImmutableMap.of("name", "b", "count", 2)), value.get("a"));
+        assertEquals("{\"s\":\"String\",\"i\":1,\"d\":1.1,\"l\":2147483648,\"b\":false,\"n\":null,"
+                             + "\"a\":[{\"name\":\"a\",\"count\":1},{\"name\":\"b\",\"count\":2}]}", copy.toString());
+
+        // Convert back to JavaScript
+        final Object jsValue = ConversionUtils.writableToJS(copy, script);
+
+        assertTrue(jsValue instanceof NativeObject);
+        assertTrue(((NativeObject)jsValue).get("a") instanceof NativeArray);
+        assertEquals("String", ((NativeObject)jsValue).get("s"));
+    }
+
+    /**
+     * Unit test that makes sure non-finite numbers are written as null in the JSON, like JSON.stringify does.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testNonFiniteNumbersToJSON() throws Exception {
+        final JSObjectWritable writable = new JSObjectWritable(ImmutableList.of(Double.NaN, Double.POSITIVE_INFINITY,
+                                                                                Double.NEGATIVE_INFINITY, 1.5));
+
+        assertEquals("[null,null,null,1.5]", writable.toString());
+        assertEquals("[null,null,null,1.5]", roundTrip(writable).toString());
+        assertEquals("null", JSObjectWritable.toJSON(Double.NaN));
+        assertEquals("null", JSObjectWritable.toJSON(Double.POSITIVE_INFINITY));
+    }
+
+    /**
+     * Unit test that makes sure repeated object keys are only written once.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testKeyInterning() throws Exception {
+        final String longKey = "aVeryLongPropertyNameThatShouldOnlyBeWrittenOnce";
+        final JSObjectWritable one = new JSObjectWritable(ImmutableList.of(ImmutableMap.of(longKey, 1)));
+        final JSObjectWritable two = new JSObjectWritable(ImmutableList.of(ImmutableMap.of(longKey, 1),
+                                                                           ImmutableMap.of(longKey, 1)));
+
+        // The second object only adds an object tag, a size, a key reference and a value
+        assertEquals(one.getLength() + 5, two.getLength());
+        assertEquals(2, ((List<?>)roundTrip(two).get()).size());
+    }
+
+    /**
+     * Unit test that makes sure the raw comparator agrees with {@link JSObjectWritable#compareTo(JSObjectWritable)}.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testRawComparator() throws Exception {
+        final List<JSObjectWritable> values = ImmutableList.of(
+                new JSObjectWritable("a"),
+                new JSObjectWritable("b"),
+                new JSObjectWritable(1),
+                new JSObjectWritable(ImmutableList.of(1, 2)),
+                new JSObjectWritable(ImmutableMap.of("a", 1)),
+                new JSObjectWritable(ImmutableMap.of("a", 2)),
+                new JSObjectWritable(null)
+        );
+        final WritableComparator comparator = WritableComparator.get(JSObjectWritable.class);
+
+        assertTrue(comparator instanceof JSObjectWritable.Comparator);
+
+        for (final JSObjectWritable left : values) {
+            for (final JSObjectWritable right : values) {
+                final byte[] leftBytes = serialize(left);
+                final byte[] rightBytes = serialize(right);
+
+                assertEquals(Integer.signum(left.compareTo(right)),
+                             Integer.signum(comparator.compare(leftBytes, 0, leftBytes.length,
+                                                               rightBytes, 0, rightBytes.length)));
+            }
+        }
+
+        assertNotEquals(0, values.get(4).compareTo(values.get(5)));
+    }
+
+    /**
+     * Serializes the writable.
+     *
+     * @param writable the writable to serialize
+     *
+     * @return the serialized bytes
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private static byte[] serialize(final JSObjectWritable writable) throws IOException {
+        final DataOutputBuffer out = new DataOutputBuffer();
+
+        writable.write(out);
+
+        final byte[] bytes = new byte[out.getLength()];
+
+        System.arraycopy(out.getData(), 0, bytes, 0, bytes.length);
+
+        return bytes;
+    }
+
+    /**
+     * Serializes and deserializes the writable.
+     *
+     * @param writable the writable to copy
+     *
+     * @return the copy
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private static JSObjectWritable roundTrip(final JSObjectWritable writable) throws IOException {
+        final byte[] bytes = serialize(writable);
+        final DataInputBuffer in = new DataInputBuffer();
+        final JSObjectWritable copy = new JSObjectWritable();
+
+        in.reset(bytes, bytes.length);
+        copy.readFields(in);
+
+        return copy;
+    }
+
+}
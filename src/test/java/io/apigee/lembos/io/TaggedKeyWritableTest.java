@@ -0,0 +1,98 @@
+package io.apigee.lembos.io;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link TaggedKeyWritable} works as expected.
+ */
+public class TaggedKeyWritableTest {
+
+    private final List<TaggedKeyWritable> keys = ImmutableList.of(
+            new TaggedKeyWritable(new JSObjectWritable("a"), (byte)0),
+            new TaggedKeyWritable(new JSObjectWritable("a"), (byte)1),
+            new TaggedKeyWritable(new JSObjectWritable("ab"), (byte)0),
+            new TaggedKeyWritable(new JSObjectWritable("b"), (byte)1),
+            new TaggedKeyWritable(new JSObjectWritable(1), (byte)0)
+    );
+
+    /**
+     * Unit test that makes sure the sort comparator orders by key and then by tag, like
+     * {@link TaggedKeyWritable#compareTo(TaggedKeyWritable)}.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testSortComparator() throws Exception {
+        final WritableComparator comparator = WritableComparator.get(TaggedKeyWritable.class);
+
+        assertTrue(comparator instanceof TaggedKeyWritable.Comparator);
+
+        for (final TaggedKeyWritable left : keys) {
+            for (final TaggedKeyWritable right : keys) {
+                final byte[] leftBytes = serialize(left);
+                final byte[] rightBytes = serialize(right);
+
+                assertEquals(Integer.signum(left.compareTo(right)),
+                             Integer.signum(comparator.compare(leftBytes, 0, leftBytes.length,
+                                                               rightBytes, 0, rightBytes.length)));
+            }
+        }
+
+        assertTrue(keys.get(0).compareTo(keys.get(1)) < 0);
+    }
+
+    /**
+     * Unit test that makes sure the group comparator and the hash code ignore the tag.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testGroupComparator() throws Exception {
+        final WritableComparator comparator = new TaggedKeyWritable.GroupComparator();
+
+        for (final TaggedKeyWritable left : keys) {
+            for (final TaggedKeyWritable right : keys) {
+                final byte[] leftBytes = serialize(left);
+                final byte[] rightBytes = serialize(right);
+
+                assertEquals(Integer.signum(left.getKey().compareTo(right.getKey())),
+                             Integer.signum(comparator.compare(leftBytes, 0, leftBytes.length,
+                                                               rightBytes, 0, rightBytes.length)));
+            }
+        }
+
+        assertEquals(0, comparator.compare(keys.get(0), keys.get(1)));
+        assertEquals(keys.get(0).hashCode(), keys.get(1).hashCode());
+    }
+
+    /**
+     * Serializes the writable.
+     *
+     * @param writable the writable to serialize
+     *
+     * @return the serialized bytes
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private static byte[] serialize(final TaggedKeyWritable writable) throws IOException {
+        final DataOutputBuffer out = new DataOutputBuffer();
+
+        writable.write(out);
+
+        final byte[] bytes = new byte[out.getLength()];
+
+        System.arraycopy(out.getData(), 0, bytes, 0, bytes.length);
+
+        return bytes;
+    }
+
+}
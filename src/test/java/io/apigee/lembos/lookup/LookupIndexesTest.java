@@ -0,0 +1,83 @@
+package io.apigee.lembos.lookup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that {@link LookupIndexes} and {@link HashLookupIndex} work as expected.
+ */
+public class LookupIndexesTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Unit test that makes sure every key can be looked up, including keys that collide in the hash slots.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testHashLookupIndex() throws Exception {
+        final File source = tempFolder.newFile("ids.tsv");
+        final int count = 10000;
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(source), UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                writer.write("key-" + i + "\tvalue-" + i + "\n");
+            }
+
+            // Duplicate keys replace the previous value
+            writer.write("key-0\tvalue-last\n");
+        }
+
+        final LookupIndex index = LookupIndexes.open(source, "\t", tempFolder.getRoot());
+
+        assertEquals(count, index.size());
+        assertArrayEquals("value-last".getBytes(UTF_8), index.get("key-0".getBytes(UTF_8)));
+
+        for (int i = 1; i < count; i++) {
+            assertArrayEquals(("value-" + i).getBytes(UTF_8), index.get(("key-" + i).getBytes(UTF_8)));
+        }
+
+        assertNull(index.get("key-".getBytes(UTF_8)));
+        assertNull(index.get(("key-" + count).getBytes(UTF_8)));
+    }
+
+    /**
+     * Unit test that makes sure a file is only indexed once per JVM.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testIndexIsShared() throws Exception {
+        final File source = tempFolder.newFile("shared.tsv");
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(source), UTF_8)) {
+            writer.write("a\t1\n");
+        }
+
+        final LookupIndex index = LookupIndexes.open(source, "\t", tempFolder.getRoot());
+
+        assertSame(index, LookupIndexes.open(source, "\t", tempFolder.getRoot()));
+        assertNotSame(index, LookupIndexes.open(source, ",", tempFolder.getRoot()));
+
+        // The index file is removed once it is mapped
+        assertEquals(1, tempFolder.getRoot().listFiles().length);
+    }
+
+}
@@ -0,0 +1,100 @@
+package io.apigee.lembos.lookup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link SortedLookupFile} works as expected.
+ */
+public class SortedLookupFileTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Unit test for writing and memory-mapping a {@link SortedLookupFile} with many blocks.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testWriteAndLookup() throws Exception {
+        final File file = tempFolder.newFile("sorted.lkp");
+        final int count = 5000;
+
+        // Use a tiny block size so the file has many blocks
+        try (SortedLookupFile.Writer writer = new SortedLookupFile.Writer(new FileOutputStream(file), 256)) {
+            for (int i = 0; i < count; i++) {
+                final byte[] key = String.format("key-%05d", i * 2).getBytes(UTF_8);
+                final byte[] value = ("value-" + i).getBytes(UTF_8);
+
+                writer.append(key, key.length, value, value.length);
+            }
+        }
+
+        assertTrue(SortedLookupFile.isSortedLookupFile(file));
+
+        // Sorted lookup files are mapped as is by LookupIndexes
+        final LookupIndex index = LookupIndexes.open(file, "\t", tempFolder.getRoot());
+
+        assertTrue(index instanceof SortedLookupFile);
+        assertEquals(count, index.size());
+
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals(("value-" + i).getBytes(UTF_8),
+                              index.get(String.format("key-%05d", i * 2).getBytes(UTF_8)));
+            // Keys between existing keys
+            assertNull(index.get(String.format("key-%05d", i * 2 + 1).getBytes(UTF_8)));
+        }
+
+        // Keys before the first key and after the last key
+        assertNull(index.get("a".getBytes(UTF_8)));
+        assertNull(index.get("z".getBytes(UTF_8)));
+    }
+
+    /**
+     * Unit test that makes sure keys must be appended in order.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testKeysOutOfOrder() throws Exception {
+        final File file = tempFolder.newFile("unsorted.lkp");
+        final byte[] b = "b".getBytes(UTF_8);
+        final byte[] a = "a".getBytes(UTF_8);
+
+        try (SortedLookupFile.Writer writer = new SortedLookupFile.Writer(new FileOutputStream(file), 256)) {
+            writer.append(b, b.length, b, b.length);
+
+            try {
+                writer.append(a, a.length, a, a.length);
+
+                fail("Appending keys out of order should fail");
+            } catch (Exception e) {
+                assertEquals("Keys must be appended in strictly increasing order", e.getMessage());
+            }
+        }
+
+        final File textFile = tempFolder.newFile("text.tsv");
+
+        try (FileOutputStream out = new FileOutputStream(textFile)) {
+            out.write("a\t1\n".getBytes(UTF_8));
+        }
+
+        assertFalse(SortedLookupFile.isSortedLookupFile(textFile));
+    }
+
+}
@@ -0,0 +1,166 @@
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link CompressionPolicy} works as expected.
+ */
+public class CompressionPolicyTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Unit test for explicit codecs, which also makes sure SequenceFile outputs are block compressed.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testExplicitCodecs() throws Exception {
+        final Job job = new Job(new Configuration());
+
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+        CompressionPolicy.set(job.getConfiguration(), "deflate", GzipCodec.class.getName());
+        CompressionPolicy.apply(job);
+
+        final Configuration conf = job.getConfiguration();
+
+        assertTrue(conf.getBoolean("mapred.compress.map.output", false));
+        assertEquals(DefaultCodec.class.getName(), conf.get("mapred.map.output.compression.codec"));
+        assertTrue(conf.getBoolean("mapred.output.compress", false));
+        assertEquals(GzipCodec.class.getName(), conf.get("mapred.output.compression.codec"));
+        assertEquals("BLOCK", conf.get("mapred.output.compression.type"));
+    }
+
+    /**
+     * Unit test for disabling compression and for leaving it alone when there is no policy.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testNoCompression() throws Exception {
+        final Job job = new Job(new Configuration());
+
+        CompressionPolicy.apply(job);
+
+        assertNull(job.getConfiguration().get("mapred.compress.map.output"));
+
+        CompressionPolicy.set(job.getConfiguration(), "none", "NONE");
+        CompressionPolicy.apply(job);
+
+        assertFalse(job.getConfiguration().getBoolean("mapred.compress.map.output", true));
+        assertFalse(job.getConfiguration().getBoolean("mapred.output.compress", true));
+    }
+
+    /**
+     * Unit test for unknown codecs.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testUnknownCodec() throws Exception {
+        try {
+            CompressionPolicy.set(new Configuration(), "auto", "java.lang.String");
+
+            fail("Setting a class that is not a codec should have failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown compression codec: java.lang.String", e.getMessage());
+        }
+    }
+
+    /**
+     * Unit test for benchmarking the codecs on a sample of the (compressed) input.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testAutoCodecs() throws Exception {
+        final File inputDir = tempFolder.newFolder("input");
+        final StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 10000; i++) {
+            content.append("user").append(i % 100).append("\tclicked\t").append(i * 7 % 1000).append('\n');
+        }
+
+        final byte[] raw = content.toString().getBytes(Charset.forName("UTF-8"));
+
+        new File(inputDir, "_SUCCESS").createNewFile();
+
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(inputDir, "part-00000.gz")))) {
+            out.write(raw);
+        }
+
+        final Job job = new Job(new Configuration());
+
+        job.getConfiguration().setInt(LembosConstants.MR_COMPRESSION_SAMPLE_SIZE, 4096);
+        FileInputFormat.addInputPath(job, new Path(inputDir.getAbsolutePath()));
+
+        // The sample skips hidden files and is decompressed
+        assertArrayEquals(Arrays.copyOf(raw, 4096), CompressionPolicy.readSample(job));
+
+        CompressionPolicy.set(job.getConfiguration(), "auto", "auto");
+        CompressionPolicy.apply(job);
+
+        final Configuration conf = job.getConfiguration();
+
+        assertTrue(conf.getBoolean("mapred.compress.map.output", false));
+        assertNotNull(conf.get("mapred.map.output.compression.codec"));
+        assertTrue(conf.getBoolean("mapred.output.compress", false));
+
+        // The job output codec is at least as dense as the other usable ones
+        final byte[] sample = CompressionPolicy.readSample(job);
+        final long[] chosen = CompressionPolicy.benchmark(
+                conf, conf.getClass("mapred.output.compression.codec", null, CompressionCodec.class), sample);
+
+        for (final String name : Arrays.asList("gzip", "deflate", "bzip2")) {
+            final long[] other = CompressionPolicy.benchmark(conf, CompressionPolicy.getCodecClass(name), sample);
+
+            assertTrue(other == null || chosen[0] <= other[0]);
+        }
+    }
+
+    /**
+     * Unit test for benchmarking the codecs on a sample none of them shrinks.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testAutoCodecsIncompressibleSample() throws Exception {
+        final Configuration conf = new Configuration();
+        final byte[] sample = new byte[64 * 1024];
+
+        new Random(42).nextBytes(sample);
+
+        // The map output is not compressed at all while the job output still gets the densest codec
+        assertNull(CompressionPolicy.resolve(conf, "auto", Arrays.asList("deflate", "gzip"), sample, true));
+        assertNotNull(CompressionPolicy.resolve(conf, "auto", Arrays.asList("deflate", "gzip"), sample, false));
+    }
+
+}
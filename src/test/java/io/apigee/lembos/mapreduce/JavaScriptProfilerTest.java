@@ -0,0 +1,98 @@
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link JavaScriptProfiler}.
+ */
+public class JavaScriptProfilerTest {
+
+    /**
+     * Tests that only the JavaScript frames are recorded, outermost frame first.
+     */
+    @Test
+    public void testRecord() {
+        final JavaScriptProfiler profiler = new JavaScriptProfiler(null, 0);
+        final StackTraceElement[] stack = new StackTraceElement[] {
+                new StackTraceElement("org.mozilla.javascript.NativeArray", "js_indexOf", "NativeArray.java", 1),
+                new StackTraceElement("index", "_c_anonymous_2", "index.js", 12),
+                new StackTraceElement("org.mozilla.javascript.optimizer.OptRuntime", "call1", "OptRuntime.java", 2),
+                new StackTraceElement("index", "_c_run_1", "index.js", 3)
+        };
+
+        assertTrue(profiler.record(stack));
+        assertTrue(profiler.record(stack));
+        assertFalse(profiler.record(new StackTraceElement[] {
+                new StackTraceElement("java.lang.Object", "wait", "Object.java", 3)
+        }));
+
+        final Map<String, Long> stacks = profiler.getStacks();
+
+        assertEquals(1, stacks.size());
+        assertEquals(Long.valueOf(2), stacks.get("run (index.js:3);anonymous (index.js:12)"));
+    }
+
+    /**
+     * Tests that the task profiles are merged.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testMerge() throws Exception {
+        final File outputDir = Files.createTempDirectory("JavaScriptProfilerTest").toFile();
+
+        try {
+            final Configuration conf = new Configuration();
+            final Path output = new Path(outputDir.getAbsolutePath());
+
+            assertNull(JavaScriptProfiler.merge(conf, output));
+
+            writeFile(conf, new Path(output, "_lembos-profile-map-task_1_m_000000.collapsed"), "a (a.js:1) 2\n");
+            writeFile(conf, new Path(output, "_lembos-profile-map-task_1_m_000001.collapsed"),
+                      "a (a.js:1) 3\na (a.js:1);b (b.js:2) 1\n");
+            // The combiner runs after the first one of a task write their own profile
+            writeFile(conf, new Path(output, "_lembos-profile-combine-task_1_m_000000.collapsed"), "c (c.js:1) 1\n");
+            writeFile(conf, new Path(output, "_lembos-profile-combine-task_1_m_000000-1.collapsed"), "c (c.js:1) 2\n");
+
+            final Path merged = JavaScriptProfiler.merge(conf, output);
+
+            assertEquals(JavaScriptProfiler.MERGED_PROFILE_NAME, merged.getName());
+            assertEquals("a (a.js:1) 5\na (a.js:1);b (b.js:2) 1\nc (c.js:1) 3\n",
+                         new String(Files.readAllBytes(new File(outputDir, JavaScriptProfiler.MERGED_PROFILE_NAME)
+                                                               .toPath()), StandardCharsets.UTF_8));
+        } finally {
+            FileUtil.fullyDelete(outputDir);
+        }
+    }
+
+    /**
+     * Writes a file.
+     *
+     * @param conf the Hadoop configuration
+     * @param file the file
+     * @param contents the contents
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private static void writeFile(final Configuration conf, final Path file, final String contents) throws Exception {
+        try (final OutputStream out = FileSystem.getLocal(conf).create(file, true)) {
+            out.write(contents.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.apigee.lembos.mapreduce;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Tests that the buckets are contiguous and that every value falls in a bucket within 1.6% of it.
+     */
+    @Test
+    public void testBuckets() {
+        long previousHighest = -1;
+
+        for (int index = 0; index < LatencyHistogram.indexOf(Long.MAX_VALUE); index++) {
+            final long highest = LatencyHistogram.highestValueOf(index);
+
+            assertEquals(index, LatencyHistogram.indexOf(previousHighest + 1));
+            assertEquals(index, LatencyHistogram.indexOf(highest));
+            assertTrue(highest - previousHighest - 1 <= Math.max(1, highest / 64));
+
+            previousHighest = highest;
+        }
+
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    /**
+     * Tests that the percentiles are computed as expected.
+     */
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getValueAtPercentile(50));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        // One pathological value
+        histogram.record(1000000);
+
+        assertEquals(101, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(51, histogram.getValueAtPercentile(50));
+        assertEquals(100, histogram.getValueAtPercentile(99));
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+}
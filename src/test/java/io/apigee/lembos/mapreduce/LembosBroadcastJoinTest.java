@@ -0,0 +1,224 @@
+package io.apigee.lembos.mapreduce;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import io.apigee.lembos.utils.TestUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link LembosBroadcastJoin}.
+ */
+public class LembosBroadcastJoinTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Tests that the small join inputs are broadcast only when they are below the threshold.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testConfigure() throws Exception {
+        final File users = createUsers();
+        final File orders = tempFolder.newFile("orders.txt");
+        final Job broadcastJob = createJob(users, orders);
+
+        assertTrue(LembosBroadcastJoin.configure(broadcastJob));
+        assertTrue(LembosBroadcastJoin.isBroadcast(broadcastJob.getConfiguration()));
+        assertEquals(0, broadcastJob.getNumReduceTasks());
+        // Hidden files are not broadcast and the job only reads the last input
+        assertEquals(ImmutableList.of(new File(users, "part-m-00000").toURI().getPath()),
+                     getPaths(DistributedCache.getCacheFiles(broadcastJob.getConfiguration())));
+        assertEquals(1, FileInputFormat.getInputPaths(broadcastJob).length);
+        assertEquals(orders.toURI().getPath(), FileInputFormat.getInputPaths(broadcastJob)[0].toUri().getPath());
+
+        final Job shuffleJob = createJob(users, orders);
+
+        shuffleJob.getConfiguration().setLong(LembosConstants.MR_JOIN_BROADCAST_THRESHOLD, 10);
+
+        assertFalse(LembosBroadcastJoin.configure(shuffleJob));
+        assertFalse(LembosBroadcastJoin.isBroadcast(shuffleJob.getConfiguration()));
+        assertEquals(2, FileInputFormat.getInputPaths(shuffleJob).length);
+
+        // The output of an upstream stage does not exist when the job graph is set up
+        final Job stageJob = createJob(new File(tempFolder.getRoot(), "upstream"), orders);
+
+        assertFalse(LembosBroadcastJoin.configure(stageJob));
+        assertFalse(LembosBroadcastJoin.isBroadcast(stageJob.getConfiguration()));
+        assertEquals(2, FileInputFormat.getInputPaths(stageJob).length);
+    }
+
+    /**
+     * Tests that the mapper joins what the map function writes against the broadcast join inputs, loading them once
+     * per JVM.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testMapSideJoin() throws Exception {
+        final File users = createUsers();
+        final List<String> expected = ImmutableList.of("Alice Smith=book", "Alice Cooper=book", "unmatched=pen",
+                                                       "Bob Jones=lamp");
+
+        assertEquals(expected, runMapSideJoin(users, "Broadcast Join Records Loaded", 3));
+        assertEquals(expected, runMapSideJoin(users, "Broadcast Join Tables Reused", 1));
+    }
+
+    /**
+     * Tests that writing from the map setup function, before the join tables are loaded, fails with a clear error.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testWriteBeforeLoad() throws Exception {
+        final File users = createUsers();
+        final String moduleName = "LembosBroadcastJoinTest-testWriteBeforeLoad";
+        final MapDriver<WritableComparable<?>, Writable, WritableComparable<?>, Writable> driver = new MapDriver<>();
+        final Configuration conf = driver.getConfiguration();
+
+        driver.withMapper(new LembosMapper());
+
+        conf.set(LembosConstants.MR_MODULE_NAME, moduleName);
+        conf.set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        conf.set(LembosConstants.MR_JOIN_INPUTS, "users,orders");
+        conf.set(LembosConstants.MR_JOIN_INPUTS + ".users", users.toURI().toString());
+        conf.set(LembosConstants.MR_JOIN_INPUTS + ".orders", "file:/data/orders");
+        conf.setBoolean(LembosConstants.MR_JOIN_BROADCAST, true);
+
+        DistributedCache.addCacheFile(new File(users, "part-m-00000").toURI(), conf);
+
+        driver.withInput(new LongWritable(0), new Text("alice,book"));
+
+        try {
+            driver.run();
+
+            fail("The line above should had failed");
+        } catch (RuntimeException e) {
+            assertEquals("Error: " + LembosMessages.JOIN_TABLES_NOT_LOADED, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the map-side join of the orders against the users.
+     *
+     * @param users the users directory
+     * @param counterName the counter to check
+     * @param counterValue the expected counter value
+     *
+     * @return the written key/value pairs
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private List<String> runMapSideJoin(final File users, final String counterName, final long counterValue)
+            throws Exception {
+        final String moduleName = "LembosBroadcastJoinTest-testMapSideJoin";
+        final MapDriver<WritableComparable<?>, Writable, WritableComparable<?>, Writable> driver = new MapDriver<>();
+        final Configuration conf = driver.getConfiguration();
+
+        driver.withMapper(new LembosMapper());
+
+        conf.set(LembosConstants.MR_MODULE_NAME, moduleName);
+        conf.set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        conf.set(LembosConstants.MR_JOIN_INPUTS, "users,orders");
+        conf.set(LembosConstants.MR_JOIN_INPUTS + ".users", users.toURI().toString());
+        conf.set(LembosConstants.MR_JOIN_INPUTS + ".orders", "file:/data/orders");
+        conf.setBoolean(LembosConstants.MR_JOIN_BROADCAST, true);
+
+        DistributedCache.addCacheFile(new File(users, "part-m-00000").toURI(), conf);
+
+        driver.withInput(new LongWritable(0), new Text("alice,book"));
+        driver.withInput(new LongWritable(11), new Text("carol,pen"));
+        driver.withInput(new LongWritable(21), new Text("bob,lamp"));
+
+        final List<String> written = Lists.newArrayList();
+
+        for (final Pair<WritableComparable<?>, Writable> output : driver.run()) {
+            written.add(output.getFirst() + "=" + output.getSecond());
+        }
+
+        assertEquals(counterValue, driver.getCounters().findCounter(LembosTimers.COUNTER_GROUP, counterName)
+                                         .getValue());
+
+        return written;
+    }
+
+    /**
+     * Creates the users join input: a directory with a part file and a hidden file.
+     *
+     * @return the users directory
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private File createUsers() throws Exception {
+        final File users = tempFolder.newFolder("users");
+
+        Files.write("alice,Alice Smith\nbob,Bob Jones\nalice,Alice Cooper\n", new File(users, "part-m-00000"),
+                    Charsets.UTF_8);
+        Files.write("", new File(users, "_SUCCESS"), Charsets.UTF_8);
+
+        return users;
+    }
+
+    /**
+     * Creates a job joining the users and the orders.
+     *
+     * @param users the users directory
+     * @param orders the orders file
+     *
+     * @return the job
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private static Job createJob(final File users, final File orders) throws Exception {
+        final Job job = new Job(new Configuration());
+
+        LembosJoin.addInput(job, "users", new Path(users.toURI()));
+        LembosJoin.addInput(job, "orders", new Path(orders.toURI()));
+
+        return job;
+    }
+
+    /**
+     * Returns the paths of the URIs.
+     *
+     * @param uris the URIs
+     *
+     * @return the paths
+     */
+    private static List<String> getPaths(final URI[] uris) {
+        final List<String> paths = Lists.newArrayList();
+
+        for (final URI uri : Arrays.asList(uris)) {
+            paths.add(uri.getPath());
+        }
+
+        return paths;
+    }
+
+}
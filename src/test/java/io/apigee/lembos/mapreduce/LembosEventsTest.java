@@ -0,0 +1,44 @@
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link LembosEvents}.
+ */
+public class LembosEventsTest {
+
+    /**
+     * Tests that events can be emitted whether or not Flight Recorder is available.
+     */
+    @Test
+    public void testEvents() {
+        for (final LembosEvents.Type type : LembosEvents.Type.values()) {
+            final Object event = LembosEvents.begin(type);
+
+            if (!LembosEvents.isAvailable()) {
+                assertNull(event);
+            }
+
+            LembosEvents.commit(event, (Object[])type.getFields());
+        }
+
+        LembosEvents.commitIfSlow(LembosEvents.begin(LembosEvents.Type.SLOW_CALL), 0, "Map");
+        LembosEvents.converterSelected(LembosEvents.Conversion.WRITABLE_TO_JS, Text.class, new Object());
+        LembosEvents.converterSelected(LembosEvents.Conversion.WRITABLE_TO_JS, Text.class, new Object());
+    }
+
+    /**
+     * Tests that the event types are named after Lembos.
+     */
+    @Test
+    public void testTypes() {
+        assertEquals("io.apigee.lembos.SlowCall", LembosEvents.Type.SLOW_CALL.getName());
+        assertEquals(3, LembosEvents.Type.CONVERTER_SELECTION.getFields().length);
+        assertEquals("JavaScript to Writable", LembosEvents.Conversion.JS_TO_WRITABLE.getLabel());
+    }
+
+}
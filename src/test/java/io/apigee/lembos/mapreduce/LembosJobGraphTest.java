@@ -0,0 +1,142 @@
+package io.apigee.lembos.mapreduce;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests that {@link LembosJobGraph} works as expected.
+ */
+public class LembosJobGraphTest {
+
+    /**
+     * Unit test for ordering the stages by their dependencies.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testGetStageNames() throws Exception {
+        final LembosJobGraph graph = new LembosJobGraph();
+
+        graph.addStage("join", ImmutableList.of("users", "orders"));
+        graph.addStage("users", Collections.<String>emptyList());
+        graph.addStage("orders", Collections.<String>emptyList());
+        graph.addStage("report", ImmutableList.of("join"));
+
+        assertEquals(ImmutableList.of("users", "orders", "join", "report"), graph.getStageNames());
+
+        try {
+            graph.addStage("users", Collections.<String>emptyList());
+
+            fail("The line above should had failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Stage (users) is defined more than once", e.getMessage());
+        }
+    }
+
+    /**
+     * Unit test for the invalid dependencies.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testInvalidDependencies() throws Exception {
+        final LembosJobGraph unknown = new LembosJobGraph();
+        final LembosJobGraph circular = new LembosJobGraph();
+
+        unknown.addStage("a", ImmutableList.of("b"));
+
+        try {
+            unknown.getStageNames();
+
+            fail("The line above should had failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Stage (a) depends on an unknown stage (b)", e.getMessage());
+        }
+
+        circular.addStage("a", ImmutableList.of("b"));
+        circular.addStage("b", ImmutableList.of("a"));
+        circular.addStage("c", Collections.<String>emptyList());
+
+        try {
+            circular.getStageNames();
+
+            fail("The line above should had failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Stages have a circular dependency: [a, b]", e.getMessage());
+        }
+    }
+
+    /**
+     * Unit test for running the stages, skipping the stages depending on a failed stage.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testRun() throws Exception {
+        final LembosJobGraph graph = new LembosJobGraph();
+        final Job users = mockJob(true);
+        final Job orders = mockJob(false);
+        final Job join = mockJob(true);
+        final Job archive = mockJob(true);
+
+        graph.addStage("users", Collections.<String>emptyList());
+        graph.addStage("orders", Collections.<String>emptyList());
+        graph.addStage("join", ImmutableList.of("users", "orders"));
+        graph.addStage("archive", ImmutableList.of("users"));
+        graph.setJob("users", users);
+        graph.setJob("orders", orders);
+        graph.setJob("join", join);
+        graph.setJob("archive", archive);
+
+        assertEquals(LembosJobGraph.State.PENDING, graph.getState("users"));
+        assertFalse(graph.run(1));
+
+        verify(users).submit();
+        verify(orders).submit();
+        verify(archive).submit();
+        verify(join, never()).submit();
+
+        assertEquals(LembosJobGraph.State.SUCCEEDED, graph.getState("users"));
+        assertEquals(LembosJobGraph.State.FAILED, graph.getState("orders"));
+        assertEquals(LembosJobGraph.State.SKIPPED, graph.getState("join"));
+        assertEquals(LembosJobGraph.State.SUCCEEDED, graph.getState("archive"));
+
+        final LembosJobGraph successful = new LembosJobGraph();
+
+        successful.addStage("users", Collections.<String>emptyList());
+        successful.setJob("users", mockJob(true));
+
+        assertTrue(successful.run(1));
+    }
+
+    /**
+     * Creates a job that completes as soon as it is checked.
+     *
+     * @param successful whether or not the job succeeds
+     *
+     * @return the job
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private static Job mockJob(final boolean successful) throws Exception {
+        final Job job = mock(Job.class);
+
+        when(job.isComplete()).thenReturn(true);
+        when(job.isSuccessful()).thenReturn(successful);
+
+        return job;
+    }
+
+}
@@ -1,20 +1,42 @@
 package io.apigee.lembos.mapreduce;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.apigee.lembos.io.JSObjectWritable;
 import io.apigee.lembos.utils.TestUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.apache.hadoop.util.ToolRunner;
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for {@link LembosMapReduceRunner}.
@@ -48,6 +70,7 @@ public class LembosMapReduceRunnerTest {
                                                     // WritableComparable and can't subclass itself
         assertEquals(HashPartitioner.class, job.getPartitionerClass());
         assertEquals(Reducer.class, job.getReducerClass()); // Defaults to the Hadoop Reducer
+        assertEquals(LembosTextOutputFormat.class, job.getOutputFormatClass()); // Map-only text output
         // assertNull(job.getSortComparator()); // Throws an exception because our map output key is
                                                 // WritableComparable and can't subclass itself
 
@@ -77,6 +100,7 @@ public class LembosMapReduceRunnerTest {
         assertEquals(LembosPartitioner.class, job.getPartitionerClass());
         assertEquals(LembosReducer.class, job.getReducerClass());
         assertEquals(LembosSortComparator.class, job.getSortComparator().getClass());
+        assertEquals(TextOutputFormat.class, job.getOutputFormatClass());
 
         assertTrue(job.getConfiguration().getBoolean("boolean", false));
         assertEquals(1.1, Double.valueOf(Float.toString(job.getConfiguration().getFloat("double", 0.0f))), 0);
@@ -119,6 +143,162 @@ public class LembosMapReduceRunnerTest {
         });
     }
 
+    /**
+     * Test {@link LembosMapReduceRunner#initJobGraph(String[])} works as expected for a module exporting stages.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testStagedJob() throws Exception {
+        final String moduleName = "LembosMapReduceRunnerTest-testStagedJob";
+        final String modulePath = TestUtils.getModulePath(moduleName);
+        final LembosJobGraph graph = new LembosMapReduceRunner().initJobGraph(new String[] {
+                "-D",
+                LembosConstants.MR_MODULE_NAME + "=" + moduleName,
+                "-D",
+                LembosConstants.MR_MODULE_PATH + "=" + modulePath,
+                "-D",
+                LembosConstants.MR_STAGES_INTERMEDIATE_DIR + "=/tmp/lembos-stages",
+                "-D",
+                LembosConstants.MR_STAGES_INTERMEDIATE_FORMAT + "=binary"
+        });
+        final Job count = graph.getJob("count");
+        final Job top = graph.getJob("top");
+        final Job audit = graph.getJob("audit");
+
+        assertEquals(ImmutableList.of("count", "top", "audit"), graph.getStageNames());
+        assertEquals(ImmutableList.of("count"), graph.getDependencies("top"));
+        assertTrue(graph.getDependencies("audit").isEmpty());
+
+        // Every stage gets the module configuration but only its own stage configuration
+        assertEquals("count", count.getConfiguration().get(LembosConstants.MR_STAGE));
+        assertEquals("hello", count.getConfiguration().get("string"));
+        assertEquals(1, count.getConfiguration().getInt("int", 0));
+        assertEquals("hello", top.getConfiguration().get("string"));
+        assertNull(top.getConfiguration().get("int"));
+
+        // Stage functions decide the job components
+        assertEquals(LembosReducer.class, count.getReducerClass());
+        assertEquals(0, top.getNumReduceTasks());
+        assertEquals(3, audit.getNumReduceTasks());
+
+        // Downstream stages read the binary output of upstream stages
+        assertEquals(new Path("/tmp/lembos-stages/count"), FileOutputFormat.getOutputPath(count));
+        assertEquals(SequenceFileOutputFormat.class, count.getOutputFormatClass());
+        assertEquals(JSObjectWritable.class, count.getOutputKeyClass());
+        assertEquals(JSObjectWritable.class, count.getOutputValueClass());
+        assertTrue(count.getConfiguration().getBoolean(LembosConstants.MR_STAGE_BINARY_OUTPUT, false));
+        assertEquals(Collections.singletonList(FileOutputFormat.getOutputPath(count)),
+                     Arrays.asList(FileInputFormat.getInputPaths(top)));
+        assertEquals(SequenceFileInputFormat.class, top.getInputFormatClass());
+        assertEquals(0, FileInputFormat.getInputPaths(audit).length);
+
+        try {
+            new LembosMapReduceRunner().initJob(new String[] {
+                    "-D",
+                    LembosConstants.MR_MODULE_NAME + "=" + moduleName,
+                    "-D",
+                    LembosConstants.MR_MODULE_PATH + "=" + modulePath
+            });
+
+            fail("The line above should had failed");
+        } catch (RuntimeException e) {
+            assertEquals("Node.js module exports stages, use initJobGraph instead", e.getMessage());
+        }
+    }
+
+    /**
+     * Tests that a graph of stages with binary intermediate outputs runs with the local job runner, the downstream
+     * stage getting the JavaScript values the upstream stage wrote.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testBinaryStagedJobRuns() throws Exception {
+        final String moduleName = "LembosMapReduceRunnerTest-testBinaryStagedJob";
+        final File workDir = Files.createTempDirectory("LembosBinaryStages").toFile();
+        final File input = new File(workDir, "input.txt");
+        final File stagesDir = new File(workDir, "stages");
+        final Configuration conf = new Configuration();
+
+        Files.write(input.toPath(), "a b a\nb a\n".getBytes(StandardCharsets.UTF_8));
+
+        conf.set("mapred.job.tracker", "local");
+        conf.set("fs.default.name", "file:///");
+
+        try {
+            assertEquals(0, ToolRunner.run(conf, new LembosMapReduceRunner(), new String[] {
+                    "-D",
+                    LembosConstants.MR_MODULE_NAME + "=" + moduleName,
+                    "-D",
+                    LembosConstants.MR_MODULE_PATH + "=" + TestUtils.getModulePath(moduleName),
+                    "-D",
+                    LembosConstants.MR_STAGES_INTERMEDIATE_DIR + "=" + stagesDir.toURI(),
+                    "-D",
+                    LembosConstants.MR_STAGES_INTERMEDIATE_FORMAT + "=binary",
+                    "-D",
+                    "lembos.test.input=" + input.toURI()
+            }));
+
+            final FileSystem fs = FileSystem.getLocal(conf);
+            final Map<Object, Object> totals = new HashMap<>();
+
+            // The intermediate output is deleted, the output of the last stage is kept
+            assertFalse(new File(stagesDir, "count").exists());
+
+            for (final FileStatus status : fs.listStatus(new Path(new File(stagesDir, "total").toURI()))) {
+                if (!status.getPath().getName().startsWith("part-")) {
+                    continue;
+                }
+
+                final SequenceFile.Reader reader = new SequenceFile.Reader(fs, status.getPath(), conf);
+                final JSObjectWritable key = new JSObjectWritable();
+                final JSObjectWritable value = new JSObjectWritable();
+
+                try {
+                    while (reader.next(key, value)) {
+                        totals.put(key.get(), value.get());
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+
+            assertEquals(ImmutableMap.<Object, Object>of("a", 3, "b", 2), totals);
+        } finally {
+            FileUtil.fullyDelete(workDir);
+        }
+    }
+
+    /**
+     * Tests that stages in skew mode skip the sampling pass, which cannot read the output of upstream stages before
+     * they ran, and only report the skew.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testStagedSkewJob() throws Exception {
+        final String moduleName = "LembosMapReduceRunnerTest-testStagedSkewJob";
+        final LembosJobGraph graph = new LembosMapReduceRunner().initJobGraph(new String[] {
+                "-D",
+                LembosConstants.MR_MODULE_NAME + "=" + moduleName,
+                "-D",
+                LembosConstants.MR_MODULE_PATH + "=" + TestUtils.getModulePath(moduleName),
+                "-D",
+                LembosConstants.MR_STAGES_INTERMEDIATE_DIR + "=/tmp/lembos-stages-skew"
+        });
+
+        assertEquals(ImmutableList.of("count"), graph.getDependencies("total"));
+
+        for (final String name : graph.getStageNames()) {
+            final Configuration conf = graph.getJob(name).getConfiguration();
+
+            assertTrue(LembosSkew.isEnabled(conf));
+            assertFalse(LembosSkew.isSalted(conf));
+            assertEquals(HashPartitioner.class, graph.getJob(name).getPartitionerClass());
+        }
+    }
+
     /**
      * Helper to create a job the same way the {@link LembosMapReduceRunner} would.
      *
@@ -1,13 +1,19 @@
 package io.apigee.lembos.mapreduce;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import io.apigee.lembos.io.TaggedKeyWritable;
+import io.apigee.lembos.io.TaggedValueWritable;
 import io.apigee.lembos.utils.ConversionUtils;
 import io.apigee.lembos.utils.TestUtils;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mrunit.mapreduce.MapDriver;
 import org.apache.hadoop.mrunit.types.Pair;
 import org.junit.Before;
@@ -18,7 +24,10 @@ import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * Unit tests for {@link LembosMapper}.
@@ -95,4 +104,247 @@ public class LembosMapperTest {
         }
     }
 
+    /**
+     * Tests that the mapper fuses a chain of map functions, each with its own setup and cleanup.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testMapChain() throws Exception {
+        final String moduleName = "LembosMapperTest-testMapChain";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.withAll(inputs);
+
+        final List<Pair<WritableComparable<?>, Writable>> outputs = driver.run();
+        final List<String> written = Lists.newArrayList();
+
+        for (final Pair<WritableComparable<?>, Writable> output : outputs) {
+            written.add(output.getFirst() + "=" + output.getSecond());
+        }
+
+        assertEquals(ImmutableList.of("ALICE=5", "BOB=3", "BOB=3", "ALICE=5", "projected=4"), written);
+    }
+
+    /**
+     * Tests that the mapper tags its output with the join input it reads from.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testJoin() throws Exception {
+        final String moduleName = "LembosMapperTest-testJoin";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.getConfiguration().set(LembosConstants.MR_JOIN_INPUTS, "users,orders");
+        driver.getConfiguration().set(LembosConstants.MR_JOIN_INPUTS + ".users", "file:/data/users");
+        driver.getConfiguration().set(LembosConstants.MR_JOIN_INPUTS + ".orders",
+                                      "file:/data/orders/2014,file:/data/orders/2015");
+        driver.withMapInputPath(new Path("/data/orders/2015/part-m-00000"));
+        driver.withAll(inputs.subList(0, 2));
+
+        final List<Pair<WritableComparable<?>, Writable>> outputs = driver.run();
+
+        assertEquals(2, outputs.size());
+
+        final TaggedKeyWritable key = (TaggedKeyWritable)outputs.get(0).getFirst();
+        final TaggedValueWritable value = (TaggedValueWritable)outputs.get(0).getSecond();
+
+        assertEquals("alice", key.getKey().get());
+        assertEquals(1, key.getTag());
+        assertEquals(1, value.getTag());
+        assertEquals(ImmutableMap.of("name", "Alice"), value.getValue().get());
+    }
+
+    /**
+     * Tests that the mapper publishes its timers to the Lembos counter group.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testTimers() throws Exception {
+        final String moduleName = "LembosMapperTest-testMapper";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.withAll(inputs);
+        driver.run();
+
+        final Counters counters = driver.getCounters();
+
+        assertEquals(1, getTimerCalls(counters, LembosTimers.Phase.STARTUP));
+        assertEquals(1, getTimerCalls(counters, LembosTimers.Phase.MODULE_LOAD));
+        assertEquals(5, getTimerCalls(counters, LembosTimers.Phase.CONVERSION));
+        // mapSetup and map
+        assertEquals(6, getTimerCalls(counters, LembosTimers.Phase.JS_EXECUTION));
+        assertEquals(6, getTimerCalls(counters, LembosTimers.Phase.CALLBACK_WAIT));
+        assertEquals(3, getTimerCalls(counters, LembosTimers.Phase.CONTEXT_WRITE));
+        assertEquals(1, getTimerCalls(counters, LembosTimers.Phase.CLEANUP));
+        assertTrue(counters.findCounter(LembosTimers.COUNTER_GROUP,
+                                        mapper.getTimers().getCounterName(LembosTimers.Phase.STARTUP)
+                                                + " (ms)").getValue() > 0);
+    }
+
+    /**
+     * Tests that the mapper publishes the memory allocated per phase and per record, counting the context writes only
+     * once since they are part of the JavaScript execution.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testAllocationCounters() throws Exception {
+        assumeTrue(AllocationMeter.isSupported());
+
+        final String moduleName = "LembosMapperTest-testMapper";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.getConfiguration().setBoolean(LembosConstants.MR_ALLOCATION_ENABLED, true);
+        driver.withAll(inputs);
+        driver.run();
+
+        final Counters counters = driver.getCounters();
+        final long conversionBytes = counters.findCounter(LembosTimers.COUNTER_GROUP,
+                                                          "Map Conversion Allocated (bytes)").getValue();
+        final long jsBytes = counters.findCounter(LembosTimers.COUNTER_GROUP,
+                                                  "Map JS Execution Allocated (bytes)").getValue();
+        final long writeBytes = counters.findCounter(LembosTimers.COUNTER_GROUP,
+                                                     "Map Context Write Allocated (bytes)").getValue();
+        final long records = counters.findCounter(LembosTimers.COUNTER_GROUP, "Map Conversion Calls").getValue();
+
+        assertTrue(conversionBytes > 0);
+        assertTrue(writeBytes > 0);
+        assertTrue(writeBytes <= jsBytes);
+        assertEquals(inputs.size(), records);
+        assertEquals((conversionBytes + jsBytes) / records,
+                     counters.findCounter(LembosTimers.COUNTER_GROUP, "Map Allocated Bytes Per Record").getValue());
+    }
+
+    /**
+     * Tests that the memory allocated is not measured unless enabled.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testAllocationCountersDisabled() throws Exception {
+        final String moduleName = "LembosMapperTest-testMapper";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.withAll(inputs);
+        driver.run();
+
+        final Counters counters = driver.getCounters();
+
+        assertFalse(AllocationMeter.isEnabled());
+        assertEquals(0, counters.findCounter(LembosTimers.COUNTER_GROUP, "Map Conversion Allocated (bytes)")
+                                .getValue());
+        assertEquals(0, counters.findCounter(LembosTimers.COUNTER_GROUP, "Map Allocated Bytes Per Record").getValue());
+    }
+
+    /**
+     * Tests that the records whose map function times out are skipped and counted.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testTimeoutSkipsRecords() throws Exception {
+        final String moduleName = "LembosMapperTest-testTimeout";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.getConfiguration().setLong(LembosConstants.MR_TIMEOUT + ".map", 500);
+        driver.getConfiguration().setLong(LembosConstants.MR_MAX_SKIPPED_RECORDS, 2);
+        driver.withAll(inputs);
+
+        final List<Pair<WritableComparable<?>, Writable>> outputs = driver.run();
+
+        assertEquals(3, outputs.size());
+        assertEquals(2, driver.getCounters().findCounter(LembosTimers.COUNTER_GROUP, "Map Skipped Records")
+                              .getValue());
+    }
+
+    /**
+     * Tests that a map function timing out fails the task when skipping records is not allowed.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test(expected = LembosTimeoutException.class)
+    public void testTimeoutFailsTask() throws Exception {
+        final String moduleName = "LembosMapperTest-testTimeout";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.getConfiguration().setLong(LembosConstants.MR_TIMEOUT, 500);
+        driver.withAll(inputs);
+        driver.run();
+    }
+
+    /**
+     * Tests that what a map function writes once it timed out is dropped instead of being written for the next record.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testLateWritesDropped() throws Exception {
+        final String moduleName = "LembosMapperTest-testLateWrite";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.getConfiguration().setLong(LembosConstants.MR_TIMEOUT + ".map", 500);
+        driver.getConfiguration().setLong(LembosConstants.MR_MAX_SKIPPED_RECORDS, 1);
+        driver.withAll(inputs.subList(0, 3));
+
+        final List<Pair<WritableComparable<?>, Writable>> outputs = driver.run();
+        final Counters counters = driver.getCounters();
+
+        assertEquals(2, outputs.size());
+
+        for (final Pair<WritableComparable<?>, Writable> output : outputs) {
+            assertFalse(output.getSecond().toString().startsWith("late"));
+        }
+
+        assertEquals(1, counters.findCounter(LembosTimers.COUNTER_GROUP, "Map Skipped Records").getValue());
+        assertEquals(1, counters.findCounter(LembosTimers.COUNTER_GROUP, "Map Late Writes Dropped").getValue());
+    }
+
+    /**
+     * Tests that a map function timing out while the script thread is still running it fails the task, even when
+     * skipping records is allowed.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testTimeoutFailsWhileRunning() throws Exception {
+        final String moduleName = "LembosMapperTest-testTimeoutWhileRunning";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.getConfiguration().setLong(LembosConstants.MR_TIMEOUT + ".map", 500);
+        driver.getConfiguration().setLong(LembosConstants.MR_MAX_SKIPPED_RECORDS, 2);
+        driver.withAll(inputs);
+
+        try {
+            driver.run();
+
+            fail("The task should have failed");
+        } catch (RuntimeException e) {
+            assertFalse(e instanceof LembosTimeoutException);
+            assertTrue(e.getMessage().contains("still running"));
+        }
+    }
+
+    /**
+     * @param counters the task counters
+     * @param phase the phase
+     *
+     * @return the number of calls of the mapper phase
+     */
+    private long getTimerCalls(final Counters counters, final LembosTimers.Phase phase) {
+        return counters.findCounter(LembosTimers.COUNTER_GROUP,
+                                    mapper.getTimers().getCounterName(phase) + " Calls").getValue();
+    }
+
 }
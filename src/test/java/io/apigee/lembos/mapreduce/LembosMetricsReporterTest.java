@@ -0,0 +1,104 @@
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.mapreduce.JobID;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link LembosMetrics} and {@link LembosMetricsReporter}.
+ */
+public class LembosMetricsReporterTest {
+
+    /**
+     * Tests that the metrics keep track of the records and the calls in flight.
+     */
+    @Test
+    public void testMetrics() {
+        final LembosMetrics metrics = new LembosMetrics("Test");
+
+        metrics.recordProcessed();
+        metrics.recordProcessed();
+        metrics.callStarted();
+
+        assertEquals(2, metrics.getRecords());
+        assertEquals(1, metrics.getCalls());
+        assertEquals(1, metrics.getInFlightCalls());
+        assertTrue(metrics.getRecordsPerSecond() > 0);
+
+        metrics.callFinished();
+        metrics.reset();
+
+        assertEquals(0, metrics.getRecords());
+        assertEquals(0, metrics.getInFlightCalls());
+    }
+
+    /**
+     * Tests that the metrics files written by the tasks are summarized per component.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testSummarize() throws Exception {
+        final File metricsDir = Files.createTempDirectory("LembosMetricsReporterTest").toFile();
+
+        try {
+            final Configuration conf = new Configuration();
+            final JobID jobId = new JobID("test", 1);
+            final File jobDir = new File(metricsDir, jobId.toString());
+
+            conf.set(LembosConstants.MR_METRICS_DIR, metricsDir.toURI().toString());
+
+            assertNull(LembosMetricsReporter.summarize(conf, jobId));
+
+            conf.set(LembosConstants.MR_METRICS, "jmx, file");
+
+            assertNull(LembosMetricsReporter.summarize(conf, jobId));
+            assertTrue(jobDir.mkdirs());
+
+            writeSnapshot(new File(jobDir, "attempt_test_0001_m_000000_0.properties"), 10, 100, 1048576);
+            writeSnapshot(new File(jobDir, "attempt_test_0001_m_000001_0.properties"), 20, 50, 2097152);
+
+            assertEquals("Lembos metrics of 2 tasks:\n"
+                                 + "  Map: 30 records in 2 tasks, 75.0 records/sec per task (min 50.0)\n"
+                                 + "  Max heap used by a task: 2 MB",
+                         LembosMetricsReporter.summarize(conf, jobId));
+        } finally {
+            FileUtil.fullyDelete(metricsDir);
+        }
+    }
+
+    /**
+     * Writes a metrics snapshot.
+     *
+     * @param file the file
+     * @param records the number of map records
+     * @param recordsPerSecond the number of map records per second
+     * @param heapUsedBytes the heap used
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private static void writeSnapshot(final File file, final long records, final double recordsPerSecond,
+                                      final long heapUsedBytes) throws Exception {
+        final Properties snapshot = new Properties();
+
+        snapshot.setProperty("Map.records", Long.toString(records));
+        snapshot.setProperty("Map.recordsPerSecond", Double.toString(recordsPerSecond));
+        snapshot.setProperty("heapUsedBytes", Long.toString(heapUsedBytes));
+
+        try (final OutputStream out = new FileOutputStream(file)) {
+            snapshot.store(out, null);
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests that {@link LembosMultipleOutputs} works as expected.
+ */
+public class LembosMultipleOutputsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Unit test for writing to named outputs, including dynamic base paths and evicted writers.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testWrite() throws Exception {
+        final File outputDir = tempFolder.newFolder("output");
+        final Job job = new Job(new Configuration());
+        final Counter evictions = mock(Counter.class);
+
+        FileOutputFormat.setOutputPath(job, new Path(outputDir.getAbsolutePath()));
+        LembosMultipleOutputs.addNamedOutput(job, "users", TextOutputFormat.class, Text.class, Text.class);
+        LembosMultipleOutputs.addNamedOutput(job, "counts", SequenceFileOutputFormat.class, Text.class,
+                                             LongWritable.class);
+        job.getConfiguration().setInt(LembosConstants.MR_NAMED_OUTPUTS_MAX_OPEN, 2);
+
+        final TaskInputOutputContext<?, ?, ?, ?> context = mock(TaskInputOutputContext.class);
+
+        when(context.getConfiguration()).thenReturn(job.getConfiguration());
+        when(context.getTaskAttemptID()).thenReturn(new TaskAttemptID("lembos", 1, true, 0, 0));
+        when(context.getCounter(anyString(), anyString())).thenReturn(evictions);
+
+        final LembosMultipleOutputs outputs = new LembosMultipleOutputs(context);
+
+        outputs.write("users", new Text("bob"), new Text("US"), null);
+        outputs.write("counts", new Text("bob"), new LongWritable(1), null);
+
+        // Opening a third writer closes the least recently used one
+        outputs.write("users", new Text("bob"), new Text("US"), "country=US/part");
+
+        assertEquals(2, outputs.getOpenWriterCount());
+        verify(evictions).increment(1);
+
+        // The records of the closed writer go to new files
+        outputs.write("users", new Text("alice"), new Text("FR"), null);
+
+        try {
+            outputs.write("unknown", new Text("bob"), new Text("US"), null);
+
+            fail("Writing to an unknown named output should have failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown named output: unknown", e.getMessage());
+        }
+
+        try {
+            outputs.write("users", new Text("bob"), new Text("US"), "../escape");
+
+            fail("Writing outside of the output directory should have failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("The base path must be relative to the output directory: ../escape", e.getMessage());
+        }
+
+        outputs.close();
+
+        assertEquals(0, outputs.getOpenWriterCount());
+
+        final File workDir = new File(outputDir, "_temporary/_attempt_lembos_0001_m_000000_0");
+
+        assertEquals(Arrays.asList("bob\tUS"), readLines(new File(workDir, "users-m-00000")));
+        assertEquals(Arrays.asList("alice\tFR"), readLines(new File(workDir, "users_1-m-00000")));
+        assertEquals(Arrays.asList("bob\tUS"), readLines(new File(workDir, "country=US/part-m-00000")));
+
+        final SequenceFile.Reader reader = new SequenceFile.Reader(
+                new Path(new File(workDir, "counts-m-00000").getAbsolutePath()).getFileSystem(job.getConfiguration()),
+                new Path(new File(workDir, "counts-m-00000").getAbsolutePath()), job.getConfiguration());
+        final Text key = new Text();
+        final LongWritable value = new LongWritable();
+
+        try {
+            assertTrue(reader.next(key, value));
+            assertEquals("bob", key.toString());
+            assertEquals(1, value.get());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Unit test for invalid named output definitions.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testAddNamedOutput() throws Exception {
+        final Job job = new Job(new Configuration());
+
+        LembosMultipleOutputs.addNamedOutput(job, "users", TextOutputFormat.class, Text.class, Text.class);
+
+        try {
+            LembosMultipleOutputs.addNamedOutput(job, "users", TextOutputFormat.class, Text.class, Text.class);
+
+            fail("Adding a named output twice should have failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Named output already defined: users", e.getMessage());
+        }
+
+        try {
+            LembosMultipleOutputs.addNamedOutput(job, "user_counts", TextOutputFormat.class, Text.class,
+                                                 Text.class);
+
+            fail("Adding a named output with an invalid name should have failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Named output names can only contain letters and digits: user_counts", e.getMessage());
+        }
+
+        assertEquals(Arrays.asList("users"), LembosMultipleOutputs.getNamedOutputs(job.getConfiguration()));
+    }
+
+    /**
+     * Reads the lines of a file.
+     *
+     * @param file the file
+     *
+     * @return the lines
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private static List<String> readLines(final File file) throws Exception {
+        return Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+    }
+
+}
@@ -1,6 +1,11 @@
 package io.apigee.lembos.mapreduce;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import io.apigee.lembos.io.JSObjectWritable;
+import io.apigee.lembos.io.TaggedKeyWritable;
+import io.apigee.lembos.io.TaggedValueWritable;
 import io.apigee.lembos.utils.ConversionUtils;
 import io.apigee.lembos.utils.TestUtils;
 import org.apache.hadoop.io.IntWritable;
@@ -96,4 +101,57 @@ public class LembosReducerTest {
         assertEquals(5, ((IntWritable)output.getSecond()).get());
     }
 
+    /**
+     * Tests that the reduce output goes through the chained map functions.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testReduceChain() throws Exception {
+        final String moduleName = "LembosReducerTest-testReduceChain";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+
+        final WritableComparable<?> key = ConversionUtils.jsToWritableComparable("total", null);
+        final Writable val = ConversionUtils.jsToWritable(1, null);
+
+        driver.withInput(key, ImmutableList.of(val, val, val));
+
+        final List<Pair<WritableComparable<?>, Writable>> outputs = driver.run();
+
+        assertEquals(1, outputs.size());
+        assertEquals("total-doubled", outputs.get(0).getFirst().toString());
+        assertEquals(6, ((IntWritable)outputs.get(0).getSecond()).get());
+    }
+
+    /**
+     * Tests that the reducer calls the join function with the values of each join input, in tag order.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testJoin() throws Exception {
+        final String moduleName = "LembosReducerTest-testJoin";
+
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_NAME, moduleName);
+        driver.getConfiguration().set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+        driver.getConfiguration().set(LembosConstants.MR_JOIN_INPUTS, "users,orders");
+
+        driver.withInput(new TaggedKeyWritable(new JSObjectWritable("u1"), (byte)0), ImmutableList.<Writable>of(
+                new TaggedValueWritable((byte)0, new JSObjectWritable(ImmutableMap.of("name", "Alice"))),
+                new TaggedValueWritable((byte)0, new JSObjectWritable(ImmutableMap.of("name", "Al"))),
+                new TaggedValueWritable((byte)1, new JSObjectWritable(ImmutableMap.of("item", "book"))),
+                new TaggedValueWritable((byte)1, new JSObjectWritable(ImmutableMap.of("item", "pen")))));
+
+        final List<Pair<WritableComparable<?>, Writable>> outputs = driver.run();
+        final List<String> written = Lists.newArrayList();
+
+        for (final Pair<WritableComparable<?>, Writable> output : outputs) {
+            written.add(output.getFirst() + "=" + output.getSecond());
+        }
+
+        assertEquals(ImmutableList.of("u1:Alice=book", "u1:Al=book", "u1:Alice=pen", "u1:Al=pen"), written);
+    }
+
 }
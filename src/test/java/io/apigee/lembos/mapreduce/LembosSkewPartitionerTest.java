@@ -0,0 +1,80 @@
+package io.apigee.lembos.mapreduce;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link LembosSkewPartitioner}.
+ */
+public class LembosSkewPartitionerTest {
+
+    /**
+     * Tests that the records of the salted keys are spread across the salts and the other keys are partitioned by the
+     * partitioner of the job.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testPartitioner() throws Exception {
+        final Job job = new Job(new Configuration());
+        final LembosSkewPartitioner partitioner = new LembosSkewPartitioner();
+        final HashPartitioner<Text, IntWritable> hashPartitioner = new HashPartitioner<>();
+        final Set<Integer> saltedPartitions = Sets.newHashSet();
+        final Set<Integer> otherPartitions = Sets.newHashSet();
+        final Text salted = new Text("US");
+        final Text other = new Text("FR");
+
+        LembosSkew.setSkewMode(job, ImmutableList.of("US"), 3, 0, LembosSkew.DEFAULT_THRESHOLD);
+
+        partitioner.setConf(job.getConfiguration());
+
+        try {
+            for (int i = 0; i < 12; i++) {
+                saltedPartitions.add(partitioner.getPartition(salted, new IntWritable(i), 10));
+                otherPartitions.add(partitioner.getPartition(other, new IntWritable(i), 10));
+            }
+        } finally {
+            partitioner.close();
+        }
+
+        final int saltedPartition = hashPartitioner.getPartition(salted, null, 10);
+
+        assertEquals(Sets.newHashSet(saltedPartition, (saltedPartition + 1) % 10, (saltedPartition + 2) % 10),
+                     saltedPartitions);
+        assertEquals(Sets.newHashSet(hashPartitioner.getPartition(other, null, 10)), otherPartitions);
+    }
+
+    /**
+     * Tests that the records of the salted keys are spread across all the partitions when there are fewer partitions
+     * than salts.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testFewerPartitionsThanSalts() throws Exception {
+        final Job job = new Job(new Configuration());
+        final LembosSkewPartitioner partitioner = new LembosSkewPartitioner();
+        final Set<Integer> partitions = Sets.newHashSet();
+
+        LembosSkew.setSkewMode(job, ImmutableList.of("US"), 8, 0, LembosSkew.DEFAULT_THRESHOLD);
+
+        partitioner.setConf(job.getConfiguration());
+
+        for (int i = 0; i < 12; i++) {
+            partitions.add(partitioner.getPartition(new Text("US"), new IntWritable(i), 2));
+        }
+
+        assertEquals(Sets.newHashSet(0, 1), partitions);
+    }
+
+}
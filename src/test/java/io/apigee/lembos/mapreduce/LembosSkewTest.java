@@ -0,0 +1,170 @@
+package io.apigee.lembos.mapreduce;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import io.apigee.lembos.utils.TestUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link LembosSkew}.
+ */
+public class LembosSkewTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Tests that the skew mode options are validated and stored in the job configuration.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testSetSkewMode() throws Exception {
+        final Job job = new Job(new Configuration());
+
+        assertFalse(LembosSkew.isEnabled(job.getConfiguration()));
+
+        try {
+            LembosSkew.setSkewMode(job, ImmutableList.<String>of(), 8, 0, 1.5f);
+
+            fail("The line above should had failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Skew mode threshold must be between 0 and 1: 1.5", e.getMessage());
+        }
+
+        LembosSkew.setSkewMode(job, ImmutableList.<String>of(), 8, 0, LembosSkew.DEFAULT_THRESHOLD);
+
+        assertTrue(LembosSkew.isEnabled(job.getConfiguration()));
+        assertFalse(LembosSkew.isSalted(job.getConfiguration()));
+
+        // Keys are escaped so they can contain commas
+        LembosSkew.setSkewMode(job, ImmutableList.of("{\"country\":\"US\",\"city\":\"NYC\"}", "FR"), 8, 0,
+                               LembosSkew.DEFAULT_THRESHOLD);
+
+        assertTrue(LembosSkew.isSalted(job.getConfiguration()));
+        assertEquals(ImmutableList.of("{\"country\":\"US\",\"city\":\"NYC\"}", "FR"),
+                     LembosSkew.getKeys(job.getConfiguration()));
+    }
+
+    /**
+     * Tests that the sampling pass finds the heavy keys and that the job is configured to salt them.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testConfigure() throws Exception {
+        final String moduleName = "LembosSkewTest-testConfigure";
+        final File input = tempFolder.newFile("sales.txt");
+        final StringBuilder sales = new StringBuilder();
+        final Job job = new Job(new Configuration());
+        final Configuration conf = job.getConfiguration();
+
+        // 80% of the sales are in the US, 10% in C0 and 10% in C5
+        for (int i = 0; i < 100; i++) {
+            sales.append(i % 5 == 0 ? "C" + (i % 10) : "US").append(',').append(i).append('\n');
+        }
+
+        Files.write(sales.toString(), input, Charsets.UTF_8);
+
+        conf.set(LembosConstants.MR_MODULE_NAME, moduleName);
+        conf.set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+
+        FileInputFormat.addInputPath(job, new Path(input.toURI()));
+        job.setNumReduceTasks(4);
+
+        LembosSkew.setSkewMode(job, ImmutableList.of("C0"), 4, 1000, 0.15f);
+
+        final LembosMapReduceEnvironment env = LembosMapReduceEnvironment.fromConf(conf);
+
+        try {
+            final Map<String, Long> counts = LembosSkew.sample(job, env, 1000);
+
+            assertEquals(80L, (long)counts.get("US"));
+            assertEquals(10L, (long)counts.get("C0"));
+
+            LembosSkew.configure(job, env);
+        } finally {
+            env.cleanup();
+        }
+
+        assertEquals(ImmutableList.of("C0", "US"), LembosSkew.getKeys(conf));
+        assertEquals(LembosSkewPartitioner.class, job.getPartitionerClass());
+        assertEquals(HashPartitioner.class, conf.getClass(LembosConstants.MR_SKEW_PARTITIONER, null));
+        assertTrue(LembosMultipleOutputs.getNamedOutputs(conf).contains(LembosSkew.PARTIALS_OUTPUT));
+    }
+
+    /**
+     * Tests that the reducers keep track of their largest key groups.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testKeyGroups() throws Exception {
+        final LembosSkew.KeyGroups keyGroups = new LembosSkew.KeyGroups(2);
+        final List<Writable> values = ImmutableList.<Writable>of(new IntWritable(1), new IntWritable(2),
+                                                                 new IntWritable(3));
+
+        for (final Map.Entry<String, Integer> group : ImmutableList.of(new AbstractMap.SimpleEntry<>("a", 1),
+                                                                       new AbstractMap.SimpleEntry<>("b", 3),
+                                                                       new AbstractMap.SimpleEntry<>("c", 2))) {
+            int read = 0;
+
+            for (final Writable ignored : keyGroups.track(values)) {
+                if (++read == group.getValue()) {
+                    break;
+                }
+            }
+
+            keyGroups.offer(group.getKey());
+        }
+
+        assertEquals(ImmutableList.of(new AbstractMap.SimpleImmutableEntry<>("b", 3L),
+                                      new AbstractMap.SimpleImmutableEntry<>("c", 2L)), keyGroups.getLargest());
+    }
+
+    /**
+     * Tests that the report flags the salted keys and returns the heavy keys that are not salted.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testPrintReport() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Map<String, Long> counts = ImmutableMap.of("US", 600L, "FR", 300L, "DE", 100L);
+
+        assertEquals(ImmutableSet.of("FR"), LembosSkew.printReport(new PrintStream(out, true, "UTF-8"), "Skew report",
+                                                                   counts, 1000, 0.2f, ImmutableSet.of("US")));
+
+        final String report = new String(out.toByteArray(), Charsets.UTF_8);
+
+        assertTrue(report.startsWith("Skew report: 1000 records, 3 keys reported"));
+        assertTrue(report.contains("60.00%          600  US (salted)"));
+        assertTrue(report.contains("30.00%          300  FR (heavy)"));
+        assertTrue(report.contains("10.00%          100  DE\n"));
+    }
+
+}
@@ -0,0 +1,91 @@
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link LembosTextOutputFormat} works as expected.
+ */
+public class LembosTextOutputFormatTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Unit test for writing lines through the output buffer, which is smaller than the output to force flushes.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testWrite() throws Exception {
+        final File outputDir = tempFolder.newFolder("output");
+        final Job job = new Job(new Configuration());
+
+        FileOutputFormat.setOutputPath(job, new Path(outputDir.getAbsolutePath()));
+        job.getConfiguration().setInt(LembosConstants.MR_MAP_ONLY_BUFFER_SIZE, 8);
+
+        final TaskAttemptContext context = new TaskAttemptContext(job.getConfiguration(),
+                                                                  new TaskAttemptID("lembos", 1, true, 0, 0));
+        final RecordWriter<Object, Object> writer = new LembosTextOutputFormat<>().getRecordWriter(context);
+        final Text key = new Text();
+        final Text value = new Text();
+
+        key.set("alice");
+        value.set("{\"country\":\"US\"}");
+        writer.write(key, value);
+        key.set("bob");
+        value.set("{\"country\":\"FR\"}");
+        writer.write(key, value);
+        writer.write(NullWritable.get(), new Text("no key"));
+        writer.close(context);
+
+        final File part = new File(outputDir, "_temporary/_attempt_lembos_0001_m_000000_0/part-m-00000");
+
+        assertEquals(Arrays.asList("alice\t{\"country\":\"US\"}", "bob\t{\"country\":\"FR\"}", "no key"),
+                     Files.readAllLines(part.toPath(), Charset.forName("UTF-8")));
+    }
+
+    /**
+     * Unit test for {@link LembosTextOutputFormat#isDirect(org.apache.hadoop.mapreduce.JobContext)}.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testIsDirect() throws Exception {
+        final Job job = new Job(new Configuration());
+
+        job.setNumReduceTasks(0);
+        job.setOutputFormatClass(TextOutputFormat.class);
+
+        assertFalse(LembosTextOutputFormat.isDirect(job));
+
+        job.setOutputFormatClass(LembosTextOutputFormat.class);
+
+        assertTrue(LembosTextOutputFormat.isDirect(job));
+
+        job.setNumReduceTasks(1);
+
+        assertFalse(LembosTextOutputFormat.isDirect(job));
+    }
+
+}
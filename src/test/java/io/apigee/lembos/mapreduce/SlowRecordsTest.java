@@ -0,0 +1,100 @@
+package io.apigee.lembos.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SlowRecords}.
+ */
+public class SlowRecordsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Tests that only the slowest records are kept, slowest first, with their values truncated.
+     */
+    @Test
+    public void testSlowest() {
+        final SlowRecords slowRecords = new SlowRecords(3, 5);
+
+        for (int i = 1; i <= 10; i++) {
+            slowRecords.offer(i * 1000, new Text("key" + i), new Text("value" + i));
+        }
+
+        assertFalse(slowRecords.offer(1, new Text("fast"), null));
+        assertTrue(slowRecords.offer(1000000, new Text("slow"), null));
+
+        final List<SlowRecords.SlowRecord> slowest = slowRecords.getSlowest();
+
+        assertEquals(3, slowest.size());
+        assertEquals("slow", slowest.get(0).getKey());
+        assertNull(slowest.get(0).getValue());
+        assertEquals("key10", slowest.get(1).getKey());
+        assertEquals("value...", slowest.get(1).getValue());
+        assertEquals(9000, slowest.get(2).getNanos());
+    }
+
+    /**
+     * Tests that keeping track of slow records can be disabled.
+     */
+    @Test
+    public void testDisabled() {
+        final Configuration conf = new Configuration(false);
+
+        conf.setInt(LembosConstants.MR_SLOW_RECORDS_COUNT, 0);
+
+        final SlowRecords slowRecords = SlowRecords.fromConf(conf);
+
+        assertFalse(slowRecords.offer(Long.MAX_VALUE, new Text("key"), new Text("value")));
+        assertTrue(slowRecords.getSlowest().isEmpty());
+    }
+
+    /**
+     * Tests that the runs of a component within a task, like the combiner runs of each spill, write their own file.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testWritePerRun() throws Exception {
+        final File workOutputDir = tempFolder.newFolder("work");
+        final Configuration conf = new Configuration();
+        final TaskInputOutputContext<?, ?, ?, ?> context = mock(TaskInputOutputContext.class);
+
+        conf.set("mapred.work.output.dir", workOutputDir.getAbsolutePath());
+
+        when(context.getConfiguration()).thenReturn(conf);
+        when(context.getTaskAttemptID()).thenReturn(new TaskAttemptID("slowRecordsTest", 1, true, 0, 0));
+
+        final SlowRecords firstRun = new SlowRecords(1, 5);
+        final SlowRecords secondRun = new SlowRecords(1, 5);
+
+        firstRun.offer(1000, new Text("first"), null);
+        secondRun.offer(2000, new Text("second"), null);
+
+        final Path firstFile = firstRun.write(context, "Combine");
+        final Path secondFile = secondRun.write(context, "Combine");
+
+        assertEquals("_lembos-slow-records-combine-task_slowRecordsTest_0001_m_000000.tsv", firstFile.getName());
+        assertEquals("_lembos-slow-records-combine-task_slowRecordsTest_0001_m_000000-1.tsv", secondFile.getName());
+        assertTrue(new File(workOutputDir, firstFile.getName()).exists());
+        assertTrue(new File(workOutputDir, secondFile.getName()).exists());
+    }
+
+}
@@ -7,6 +7,7 @@ import io.apigee.lembos.node.types.DataDrivenDBInputFormatWrap;
 import io.apigee.lembos.node.types.FileInputFormatWrap;
 import io.apigee.lembos.node.types.KeyValueTextInputFormatWrap;
 import io.apigee.lembos.node.types.NLineInputFormatWrap;
+import io.apigee.lembos.node.types.RangeDBInputFormatWrap;
 import io.apigee.lembos.node.types.SequenceFileAsBinaryInputFormatWrap;
 import io.apigee.lembos.node.types.SequenceFileAsTextInputFormatWrap;
 import io.apigee.lembos.node.types.SequenceFileInputFilterWrap;
@@ -78,6 +79,25 @@ public class HadoopInputTest {
                              new Object[0]);
     }
 
+    /**
+     * Tests the usage of {@link RangeDBInputFormatWrap}.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testRangeDBInputFormat() throws Exception {
+        final String moduleName = "HadoopInputTest-testRangeDBInputFormat";
+        final LembosNodeEnvironment env = new LembosNodeEnvironment(moduleName,
+                                                                      new File(TestUtils.getModulePath(moduleName)),
+                                                                      null);
+
+        env.initialize();
+
+        // Call JavaScript-based Tests
+        env.callFunctionSync((Function)env.getModule().get("testRangeDBInputFormat", env.getModule()),
+                             new Object[0]);
+    }
+
     /**
      * Tests the usage of {@link CombineFileInputFormatWrap}.
      *
@@ -0,0 +1,34 @@
+package io.apigee.lembos.node.modules;
+
+import io.apigee.lembos.mapreduce.LembosNodeEnvironment;
+import io.apigee.lembos.utils.TestUtils;
+import org.junit.Test;
+import org.mozilla.javascript.Function;
+
+import java.io.File;
+
+/**
+ * Unit tests for {@link HadoopLookup}.
+ */
+public class HadoopLookupTest {
+
+    /**
+     * Tests the usage of {@link HadoopLookup}.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testHadoopLookup() throws Exception {
+        final String moduleName = "HadoopLookupTest-testHadoopLookup";
+        final LembosNodeEnvironment env = new LembosNodeEnvironment(moduleName,
+                                                                      new File(TestUtils.getModulePath(moduleName)),
+                                                                      null);
+
+        env.initialize();
+
+        // Call JavaScript-based Tests
+        env.callFunctionSync((Function)env.getModule().get("testHadoopLookup", env.getModule()),
+                             new Object[] {});
+    }
+
+}
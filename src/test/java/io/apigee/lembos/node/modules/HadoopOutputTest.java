@@ -1,6 +1,7 @@
 package io.apigee.lembos.node.modules;
 
 import io.apigee.lembos.mapreduce.LembosNodeEnvironment;
+import io.apigee.lembos.node.types.BatchDBOutputFormatWrap;
 import io.apigee.lembos.node.types.DBOutputFormatWrap;
 import io.apigee.lembos.node.types.FileOutputFormatWrap;
 import io.apigee.lembos.node.types.SequenceFileAsBinaryOutputFormatWrap;
@@ -17,6 +18,25 @@ import java.io.File;
  */
 public class HadoopOutputTest {
 
+    /**
+     * Tests the usage of {@link BatchDBOutputFormatWrap}.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testBatchDBOutputFormat() throws Exception {
+        final String moduleName = "HadoopOutputTest-testBatchDBOutputFormat";
+        final LembosNodeEnvironment env = new LembosNodeEnvironment(moduleName,
+                                                                      new File(TestUtils.getModulePath(moduleName)),
+                                                                      null);
+
+        env.initialize();
+
+        // Call JavaScript-based Tests
+        env.callFunctionSync((Function)env.getModule().get("testBatchDBOutputFormat", env.getModule()),
+                             new Object[0]);
+    }
+
     /**
      * Tests the usage of {@link DBOutputFormatWrap}.
      *
@@ -3,7 +3,12 @@ package io.apigee.lembos.utils;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import io.apigee.lembos.io.JSObjectWritable;
+import io.apigee.lembos.mapreduce.LembosConstants;
+import io.apigee.lembos.mapreduce.LembosMapReduceEnvironment;
+import io.apigee.trireme.core.modules.Buffer;
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.ArrayWritable;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.ByteWritable;
@@ -22,16 +27,23 @@ import org.apache.hadoop.io.VIntWritable;
 import org.apache.hadoop.io.VLongWritable;
 import org.apache.hadoop.io.Writable;
 import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
 import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.NativeObject;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -155,6 +167,167 @@ public class ConversionUtilsTest {
         }
     }
 
+    /**
+     * Unit test that makes sure {@link ConversionUtils#jsToText(Object, Text, Scriptable)} formats values the way
+     * their {@link Writable} equivalent would be written as text.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testJSToText() throws Exception {
+        final Text text = new Text();
+
+        for (final String name : ImmutableList.of("s", "i", "d", "l", "b", "sa", "so", "a", "o")) {
+            final Object jsValue = script.get(name, script);
+            final Writable formatted = ConversionUtils.jsToText(jsValue, text, script);
+
+            assertSame(text, formatted);
+            assertEquals(ConversionUtils.jsToWritable(jsValue, script).toString(), formatted.toString());
+        }
+
+        assertSame(NullWritable.get(), ConversionUtils.jsToText(script.get("n", script), text, script));
+        assertSame(NullWritable.get(), ConversionUtils.jsToText(script.get("u", script), text, script));
+
+        // Values without a direct text format are converted to their Writable equivalent
+        assertTrue(ConversionUtils.jsToText(ImmutableMap.of("a", 1), text, script) instanceof MapWritable);
+    }
+
+    /**
+     * Unit test that makes sure {@link MapWritable} entries are only converted to JavaScript when read.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testLazyMapWritableToJS() throws Exception {
+        final MapWritable nested = new MapWritable();
+        final MapWritable mapWritable = new MapWritable();
+
+        nested.put(new Text("name"), new Text("nested"));
+
+        mapWritable.put(new Text("nested"), nested);
+        mapWritable.put(new Text("count"), new IntWritable(1));
+        mapWritable.put(new IntWritable(0), new Text("zero"));
+        // There is no converter for MD5Hash so reading this entry is the only way to fail
+        mapWritable.put(new Text("unconvertible"), new MD5Hash());
+
+        final Object jsValue = ConversionUtils.writableToJS(mapWritable, script);
+
+        assertTrue(jsValue instanceof NativeObject);
+
+        final NativeObject object = (NativeObject)jsValue;
+
+        assertTrue(object.has("unconvertible", object));
+        assertTrue(object.has(0, object));
+        assertEquals("zero", object.get(0, object));
+        assertEquals(1, object.get("count", object));
+
+        final Object nestedJS = object.get("nested", object);
+
+        assertTrue(nestedJS instanceof NativeObject);
+        assertSame(nestedJS, object.get("nested", object));
+        assertEquals("nested", ((NativeObject)nestedJS).get("name", nestedJS));
+
+        try {
+            object.get("unconvertible", object);
+
+            fail("Reading an unconvertible entry should fail");
+        } catch (Exception e) {
+            assertEquals("No Writable to JavaScript converter found for class: "
+                                 + MD5Hash.class.getCanonicalName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Unit test that makes sure only the valid bytes of a reused {@link BytesWritable} are exposed to JavaScript and
+     * that emitted bytes are not copied.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testBytesWritableToJS() throws Exception {
+        final BytesWritable writable = new BytesWritable("A longer value".getBytes());
+
+        // Hadoop keeps the larger backing array when a BytesWritable is reused for a smaller value
+        writable.set("Short".getBytes(), 0, 5);
+
+        final Object bytesJS = ConversionUtils.writableToJS(writable, script);
+
+        assertTrue(bytesJS instanceof byte[]);
+        assertArrayEquals("Short".getBytes(), (byte[])bytesJS);
+
+        final byte[] bytes = "Exact".getBytes();
+        final Writable bytesWritable = ConversionUtils.jsToWritable(bytes, script);
+
+        assertSame(bytes, ((BytesWritable)bytesWritable).getBytes());
+        assertSame(bytes, ConversionUtils.writableToJS(bytesWritable, script));
+    }
+
+    /**
+     * Test that {@link BytesWritable} and Node.js Buffer conversions share their bytes under a real Trireme runtime.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testBuffersUnderTrireme() throws Exception {
+        final String moduleName = "ConversionUtilsTest-testBuffers";
+        final Configuration conf = new Configuration();
+
+        conf.set(LembosConstants.MR_MODULE_NAME, moduleName);
+        conf.set(LembosConstants.MR_MODULE_PATH, TestUtils.getModulePath(moduleName));
+
+        final LembosMapReduceEnvironment env = LembosMapReduceEnvironment.fromConf(conf);
+
+        try {
+            final Scriptable scope = env.getModule();
+            final BytesWritable writable = new BytesWritable("A longer value".getBytes());
+
+            // Hadoop keeps the larger backing array when a BytesWritable is reused for a smaller value
+            writable.set("Short".getBytes(), 0, 5);
+
+            final Object bufferJS = ConversionUtils.writableToJS(writable, scope);
+
+            assertTrue(bufferJS instanceof Buffer.BufferImpl);
+
+            final Buffer.BufferImpl buffer = (Buffer.BufferImpl)bufferJS;
+
+            assertSame(writable.getBytes(), buffer.getArray());
+            assertEquals(0, buffer.getArrayOffset());
+            assertEquals(5, buffer.getLength());
+            final Function describe = (Function)ScriptableObject.getProperty(scope, "describe");
+
+            assertEquals("Buffer:5:Short", env.callFunctionSync(describe, new Object[] {bufferJS}));
+
+            // A Buffer starting at the beginning of its array is wrapped without copying
+            final BytesWritable fromBuffer = (BytesWritable)ConversionUtils.jsToWritable(bufferJS, scope);
+
+            assertSame(writable.getBytes(), fromBuffer.getBytes());
+            assertEquals(5, fromBuffer.getLength());
+            assertEquals("Short", new String(fromBuffer.getBytes(), 0, fromBuffer.getLength()));
+
+            // A Buffer slice starts inside its array so its bytes are copied
+            final Buffer.BufferImpl slice;
+            final Context ctx = Context.enter();
+
+            try {
+                slice = (Buffer.BufferImpl)ScriptableObject.callMethod(ctx, buffer, "slice", new Object[] {1, 4});
+            } finally {
+                Context.exit();
+            }
+
+            assertSame(writable.getBytes(), slice.getArray());
+            assertEquals(1, slice.getArrayOffset());
+            assertEquals(3, slice.getLength());
+
+            final BytesWritable fromSlice = (BytesWritable)ConversionUtils.jsToWritable(slice, scope);
+
+            assertEquals(3, fromSlice.getLength());
+            assertArrayEquals("hor".getBytes(), Arrays.copyOf(fromSlice.getBytes(), fromSlice.getLength()));
+            assertTrue(fromSlice.getBytes() != writable.getBytes());
+        } finally {
+            env.cleanup();
+        }
+    }
+
     /**
      * Validates the {@link Writable} value based on {@link #script} values.
      *
@@ -194,36 +367,33 @@ public class ConversionUtilsTest {
                 break;
 
             case "sa":
-                assertTrue(writable instanceof ArrayWritable);
-
-                final Writable[] saWritables = ((ArrayWritable)writable).get();
-
-                for (int i = 0; i < 3; i++) {
-                    assertEquals(i + 1, ((IntWritable)saWritables[i]).get());
-                }
+                assertTrue(writable instanceof JSObjectWritable);
+                assertEquals(ImmutableList.of(1, 2, 3), ((JSObjectWritable)writable).get());
 
                 break;
 
             case "a":
-                assertTrue(writable instanceof ArrayWritable);
+                assertTrue(writable instanceof JSObjectWritable);
 
-                final Writable[] aWritables = ((ArrayWritable)writable).get();
+                final List<?> aValues = (List<?>)((JSObjectWritable)writable).get();
                 final Object[] arrayKeys = ((NativeArray)script.get("ak", script)).toArray();
 
-                for (int i = 0; i < aWritables.length; i++) {
-                    validateWritable(arrayKeys[i].toString(), aWritables[i]);
+                assertEquals(arrayKeys.length, aValues.size());
+
+                for (int i = 0; i < aValues.size(); i++) {
+                    validateWritable(arrayKeys[i].toString(), toWritable(aValues.get(i)));
                 }
 
                 break;
 
             case "o":
             case "so":
-                assertTrue(writable instanceof MapWritable);
+                assertTrue(writable instanceof JSObjectWritable);
 
-                final MapWritable mWritable = (MapWritable)writable;
+                final Map<?, ?> oValues = (Map<?, ?>)((JSObjectWritable)writable).get();
 
-                for (final Map.Entry<Writable, Writable> mwEntry : mWritable.entrySet()) {
-                    validateWritable(mwEntry.getKey().toString(), mwEntry.getValue());
+                for (final Map.Entry<?, ?> oEntry : oValues.entrySet()) {
+                    validateWritable(oEntry.getKey().toString(), toWritable(oEntry.getValue()));
                 }
 
                 break;
@@ -239,6 +409,19 @@ public class ConversionUtilsTest {
         }
     }
 
+    /**
+     * Converts a value stored in a {@link JSObjectWritable} back to a {@link Writable} for validation.
+     *
+     * @param value the Java value
+     *
+     * @return the {@link Writable}
+     */
+    private Writable toWritable(final Object value) {
+        return value instanceof Map || value instanceof List
+                ? new JSObjectWritable(value)
+                : ConversionUtils.jsToWritable(value, script);
+    }
+
     /**
      * Validates the JavaScript value based on {@link #script} values.
      *
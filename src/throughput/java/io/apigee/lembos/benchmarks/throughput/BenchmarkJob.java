@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks.throughput;
+
+import io.apigee.lembos.benchmarks.throughput.DatasetGenerator.Dataset;
+
+/**
+ * The jobs run by the throughput benchmarks.
+ */
+enum BenchmarkJob {
+
+    /** The wordcount example. */
+    WORDCOUNT("wordcount", Dataset.TEXT),
+    /** The distinct users that placed an order. */
+    DISTINCT("throughput-distinct", Dataset.JSON),
+    /** Reduce-side join of the users and their orders. */
+    JOIN("throughput-join", Dataset.JSON),
+    /** The orders of each user, newest first, using the partition, group and sort functions. */
+    SECONDARY_SORT("throughput-secondary-sort", Dataset.JSON),
+    /** The highest scoring words. */
+    TOP_K("throughput-top-k", Dataset.SEQUENCE_FILE);
+
+    private final String moduleName;
+    private final Dataset dataset;
+
+    /**
+     * Constructor.
+     *
+     * @param moduleName the name of the Node.js module of the job
+     * @param dataset the dataset the job runs against
+     */
+    BenchmarkJob(final String moduleName, final Dataset dataset) {
+        this.moduleName = moduleName;
+        this.dataset = dataset;
+    }
+
+    /**
+     * @return the name of the Node.js module of the job
+     */
+    String getModuleName() {
+        return moduleName;
+    }
+
+    /**
+     * @return the dataset the job runs against
+     */
+    Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * @return the name of the job as used on the command line and in the report
+     */
+    String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    /**
+     * Returns the job with the given name.
+     *
+     * @param name the name of the job
+     *
+     * @return the job
+     */
+    static BenchmarkJob fromName(final String name) {
+        for (final BenchmarkJob job : values()) {
+            if (job.getName().equals(name.trim())) {
+                return job;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown benchmark job: " + name);
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks.throughput;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates the synthetic datasets used by the throughput benchmarks.  The words and users records refer to are drawn
+ * from a {@link ZipfDistribution} so the key skew, and with it the load on the combiners and reducers, is configurable.
+ * The same seed always generates the same datasets.
+ */
+final class DatasetGenerator {
+
+    /** The first order timestamp. */
+    private static final long START_TIME = 1388534400000L;
+    private static final String[] CATEGORIES = new String[] {
+            "books", "electronics", "garden", "grocery", "music", "outdoors", "toys", "video"
+    };
+    private static final String[] COUNTRIES = new String[] {
+            "AR", "AU", "BR", "CA", "DE", "FR", "GB", "IN", "JP", "MX", "US"
+    };
+
+    private final int records;
+    private final int vocabulary;
+    private final double skew;
+    private final long seed;
+
+    /**
+     * Constructor.
+     *
+     * @param records the number of records to generate
+     * @param vocabulary the number of distinct words and users
+     * @param skew the Zipf exponent used to pick words and users
+     * @param seed the random seed
+     */
+    DatasetGenerator(final int records, final int vocabulary, final double skew, final long seed) {
+        this.records = records;
+        this.vocabulary = vocabulary;
+        this.skew = skew;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the dataset.
+     *
+     * @param dataset the dataset to generate
+     * @param dir the directory to write the dataset to
+     *
+     * @return the number of records written
+     *
+     * @throws IOException if anything goes wrong
+     */
+    long generate(final Dataset dataset, final File dir) throws IOException {
+        if (!dir.mkdirs()) {
+            throw new IOException("Unable to create directory: " + dir.getAbsolutePath());
+        }
+
+        switch (dataset) {
+            case TEXT:
+                return generateText(new File(dir, "part-00000.txt"));
+            case JSON:
+                return generateJson(new File(dir, "part-00000.json"));
+            case SEQUENCE_FILE:
+                return generateSequenceFile(new File(dir, "part-00000.seq"));
+            default:
+                throw new IllegalArgumentException("Unsupported dataset: " + dataset);
+        }
+    }
+
+    /**
+     * Writes lines of 8 to 16 words.
+     *
+     * @param file the file to write to
+     *
+     * @return the number of records written
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private long generateText(final File file) throws IOException {
+        final Random random = new Random(seed);
+        final ZipfDistribution words = new ZipfDistribution(vocabulary, skew, random);
+
+        try (final Writer writer = newWriter(file)) {
+            final StringBuilder line = new StringBuilder();
+
+            for (int i = 0; i < records; i++) {
+                final int wordCount = 8 + random.nextInt(9);
+
+                line.setLength(0);
+
+                for (int j = 0; j < wordCount; j++) {
+                    if (j > 0) {
+                        line.append(' ');
+                    }
+
+                    line.append(word(words.next()));
+                }
+
+                writer.write(line.append('\n').toString());
+            }
+        }
+
+        return records;
+    }
+
+    /**
+     * Writes one JSON user record per user followed by the JSON order records.
+     *
+     * @param file the file to write to
+     *
+     * @return the number of records written
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private long generateJson(final File file) throws IOException {
+        final Random random = new Random(seed);
+        final ZipfDistribution users = new ZipfDistribution(vocabulary, skew, random);
+
+        try (final Writer writer = newWriter(file)) {
+            for (int i = 0; i < vocabulary; i++) {
+                writer.write("{\"type\":\"user\",\"id\":\"" + user(i) + "\",\"name\":\"User " + i
+                                     + "\",\"country\":\"" + COUNTRIES[random.nextInt(COUNTRIES.length)] + "\"}\n");
+            }
+
+            for (int i = 0; i < records; i++) {
+                writer.write("{\"type\":\"order\",\"id\":" + i + ",\"user\":\"" + user(users.next())
+                                     + "\",\"time\":" + (START_TIME + random.nextInt(Integer.MAX_VALUE))
+                                     + ",\"category\":\"" + CATEGORIES[random.nextInt(CATEGORIES.length)]
+                                     + "\",\"amount\":" + (random.nextInt(100000) / 100.0) + "}\n");
+            }
+        }
+
+        return vocabulary + records;
+    }
+
+    /**
+     * Writes a {@link SequenceFile} of {@link Text} words and {@link IntWritable} scores.
+     *
+     * @param file the file to write to
+     *
+     * @return the number of records written
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private long generateSequenceFile(final File file) throws IOException {
+        final Configuration conf = new Configuration();
+        final Random random = new Random(seed);
+        final ZipfDistribution words = new ZipfDistribution(vocabulary, skew, random);
+        final Text key = new Text();
+        final IntWritable value = new IntWritable();
+        final SequenceFile.Writer writer = SequenceFile.createWriter(FileSystem.getLocal(conf), conf,
+                                                                     new Path(file.toURI()), Text.class,
+                                                                     IntWritable.class);
+
+        try {
+            for (int i = 0; i < records; i++) {
+                key.set(word(words.next()));
+                value.set(random.nextInt(1000000));
+
+                writer.append(key, value);
+            }
+        } finally {
+            writer.close();
+        }
+
+        return records;
+    }
+
+    /**
+     * @param file the file to write to
+     *
+     * @return a buffered UTF-8 writer for the file
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private static Writer newWriter(final File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param index the word index
+     *
+     * @return the word
+     */
+    private static String word(final int index) {
+        return "w" + Integer.toString(index, 36);
+    }
+
+    /**
+     * @param index the user index
+     *
+     * @return the user id
+     */
+    private static String user(final int index) {
+        return "u" + index;
+    }
+
+    /**
+     * The datasets that can be generated.
+     */
+    enum Dataset {
+        /** Lines of words. */
+        TEXT,
+        /** JSON user and order records, one per line. */
+        JSON,
+        /** SequenceFile of words and scores. */
+        SEQUENCE_FILE
+    }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks.throughput;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The measurements of one phase of a benchmark job, possibly aggregated over several tasks.
+ *
+ * <b>Note:</b> The local job runner runs every task in the benchmark JVM so the JVM-wide GC and heap statistics are
+ * the ones of the phase being measured.  Phases must not overlap since starting one resets the peak heap usage.
+ */
+final class PhaseStats {
+
+    private long records;
+    private long elapsedNanos;
+    private long startupNanos;
+    private long gcMillis;
+    private long gcCount;
+    private long peakHeapBytes;
+    private int tasks;
+
+    /**
+     * @return the number of records processed
+     */
+    long getRecords() {
+        return records;
+    }
+
+    /**
+     * @param records the number of records processed
+     */
+    void setRecords(final long records) {
+        this.records = records;
+    }
+
+    /**
+     * @return the elapsed time in milliseconds
+     */
+    long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return the number of records processed per second
+     */
+    double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : records * 1000000000.0 / elapsedNanos;
+    }
+
+    /**
+     * @return the time spent starting the tasks (creating the Node.js environment and running the setup function) in
+     *         milliseconds
+     */
+    long getStartupMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(startupNanos);
+    }
+
+    /**
+     * @param startupNanos the time spent starting the task in nanoseconds
+     */
+    void setStartupNanos(final long startupNanos) {
+        this.startupNanos = startupNanos;
+    }
+
+    /**
+     * @return the time spent collecting garbage in milliseconds
+     */
+    long getGcMillis() {
+        return gcMillis;
+    }
+
+    /**
+     * @return the number of garbage collections
+     */
+    long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * @return the peak heap usage in bytes
+     */
+    long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * Raises the peak heap usage, used when the peak heap usage of a nested phase is larger.
+     *
+     * @param bytes the peak heap usage in bytes
+     */
+    void includePeakHeapBytes(final long bytes) {
+        peakHeapBytes = Math.max(peakHeapBytes, bytes);
+    }
+
+    /**
+     * @return the number of tasks measured
+     */
+    int getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Adds the measurements of another task of the same phase.  Times are summed and the peak heap usage is the
+     * largest of both.
+     *
+     * @param other the measurements to add
+     */
+    void add(final PhaseStats other) {
+        records += other.records;
+        elapsedNanos += other.elapsedNanos;
+        startupNanos += other.startupNanos;
+        gcMillis += other.gcMillis;
+        gcCount += other.gcCount;
+        peakHeapBytes = Math.max(peakHeapBytes, other.peakHeapBytes);
+        tasks += other.tasks;
+    }
+
+    /**
+     * Returns the measurements of this phase minus the ones of a phase nested in it, used to derive the time spent
+     * outside of the measured tasks.  The peak heap usage is not known for the result.
+     *
+     * @param other the measurements to subtract
+     *
+     * @return the difference
+     */
+    PhaseStats minus(final PhaseStats other) {
+        final PhaseStats difference = new PhaseStats();
+
+        difference.elapsedNanos = Math.max(0, elapsedNanos - other.elapsedNanos);
+        difference.gcMillis = Math.max(0, gcMillis - other.gcMillis);
+        difference.gcCount = Math.max(0, gcCount - other.gcCount);
+
+        return difference;
+    }
+
+    /**
+     * Starts measuring a phase.
+     *
+     * @return the timer to stop once the phase is over
+     */
+    static Timer start() {
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+
+        return new Timer();
+    }
+
+    /**
+     * Measures a phase.
+     */
+    static final class Timer {
+
+        private final long startNanos = System.nanoTime();
+        private final long startGcMillis = totalGcMillis();
+        private final long startGcCount = totalGcCount();
+
+        /**
+         * Private constructor.
+         */
+        private Timer() { }
+
+        /**
+         * @return the time elapsed since the phase started in nanoseconds
+         */
+        long elapsedNanos() {
+            return System.nanoTime() - startNanos;
+        }
+
+        /**
+         * Stops measuring the phase.
+         *
+         * @return the measurements
+         */
+        PhaseStats stop() {
+            final PhaseStats stats = new PhaseStats();
+
+            stats.elapsedNanos = elapsedNanos();
+            stats.gcMillis = totalGcMillis() - startGcMillis;
+            stats.gcCount = totalGcCount() - startGcCount;
+            stats.peakHeapBytes = peakHeapBytes();
+            stats.tasks = 1;
+
+            return stats;
+        }
+
+    }
+
+    /**
+     * @return the time spent collecting garbage since the JVM started in milliseconds
+     */
+    private static long totalGcMillis() {
+        long total = 0;
+
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+
+        return total;
+    }
+
+    /**
+     * @return the number of garbage collections since the JVM started
+     */
+    private static long totalGcCount() {
+        long total = 0;
+
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+
+        return total;
+    }
+
+    /**
+     * @return the sum of the peak usage of the heap memory pools since their peak usage was last reset
+     */
+    private static long peakHeapBytes() {
+        long total = 0;
+
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            final MemoryUsage peak = pool.getPeakUsage();
+
+            if (pool.getType() == MemoryType.HEAP && peak != null) {
+                total += peak.getUsed();
+            }
+        }
+
+        return total;
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks.throughput;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects the measurements of the map and reduce tasks of the running benchmark job.  This only works because the
+ * local job runner runs the tasks in the benchmark JVM.
+ */
+final class TaskPhases {
+
+    /** The map phase. */
+    static final String MAP = "map";
+    /** The reduce phase. */
+    static final String REDUCE = "reduce";
+
+    private static final Map<String, PhaseStats> PHASES = new HashMap<>();
+
+    /**
+     * Private constructor.
+     */
+    private TaskPhases() { }
+
+    /**
+     * Records the measurements of a task.
+     *
+     * @param phase the phase the task belongs to
+     * @param stats the measurements of the task
+     */
+    static synchronized void record(final String phase, final PhaseStats stats) {
+        PhaseStats total = PHASES.get(phase);
+
+        if (total == null) {
+            total = new PhaseStats();
+
+            PHASES.put(phase, total);
+        }
+
+        total.add(stats);
+    }
+
+    /**
+     * Returns the measurements recorded so far and forgets them.
+     *
+     * @return the measurements of each phase with recorded tasks
+     */
+    static synchronized Map<String, PhaseStats> drain() {
+        final Map<String, PhaseStats> phases = new HashMap<>(PHASES);
+
+        PHASES.clear();
+
+        return phases;
+    }
+
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks.throughput;
+
+import io.apigee.lembos.benchmarks.throughput.DatasetGenerator.Dataset;
+import io.apigee.lembos.mapreduce.LembosConstants;
+import io.apigee.lembos.mapreduce.LembosMapReduceRunner;
+import io.apigee.lembos.mapreduce.LembosMapper;
+import io.apigee.lembos.mapreduce.LembosReducer;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.mapreduce.Job;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs Lembos jobs end-to-end, using {@link LembosMapReduceRunner} and Hadoop's local job runner, against generated
+ * datasets and reports the records per second, task startup time, GC time and peak heap usage of each job phase.
+ * It is configured using the following system properties:
+ *
+ * <ul>
+ *   <li><b>throughput.records:</b> The number of records of each dataset <i>(Default: 100000)</i></li>
+ *   <li><b>throughput.vocabulary:</b> The number of distinct words and users <i>(Default: 10000)</i></li>
+ *   <li><b>throughput.skew:</b> The Zipf exponent used to pick words and users, 0 being uniform
+ *       <i>(Default: 1.0)</i></li>
+ *   <li><b>throughput.seed:</b> The random seed used to generate the datasets <i>(Default: 42)</i></li>
+ *   <li><b>throughput.warmupRecords:</b> The number of records of the datasets the jobs run against, unmeasured,
+ *       before the measured runs <i>(Default: 1000, 0 disables the warm up)</i></li>
+ *   <li><b>throughput.jobs:</b> The comma separated jobs to run <i>(Default: all of them)</i></li>
+ *   <li><b>throughput.dir:</b> The directory to write the datasets, job outputs and report to
+ *       <i>(Default: target/throughput)</i></li>
+ *   <li><b>throughput.examples:</b> The Lembos examples directory <i>(Default: examples)</i></li>
+ *   <li><b>throughput.baseline:</b> The properties report of a previous run to compare to <i>(Optional)</i></li>
+ *   <li><b>throughput.lembosVersion:</b> The Lembos version recorded in the report <i>(Optional)</i></li>
+ * </ul>
+ */
+public final class ThroughputBenchmark {
+
+    private static final String TASK_COUNTER_GROUP = "org.apache.hadoop.mapred.Task$Counter";
+
+    private final int records;
+    private final int vocabulary;
+    private final double skew;
+    private final long seed;
+    private final int warmupRecords;
+    private final List<BenchmarkJob> jobs = new ArrayList<>();
+    private final File dir;
+    private final File examplesDir;
+    private final File baseline;
+    private final String lembosVersion;
+
+    /**
+     * Constructor.
+     *
+     * @param props the benchmark configuration
+     */
+    ThroughputBenchmark(final Properties props) {
+        final String jobNames = props.getProperty("throughput.jobs", "");
+        final String baselinePath = props.getProperty("throughput.baseline", "");
+
+        records = Integer.parseInt(props.getProperty("throughput.records", "100000"));
+        vocabulary = Integer.parseInt(props.getProperty("throughput.vocabulary", "10000"));
+        skew = Double.parseDouble(props.getProperty("throughput.skew", "1.0"));
+        seed = Long.parseLong(props.getProperty("throughput.seed", "42"));
+        warmupRecords = Integer.parseInt(props.getProperty("throughput.warmupRecords", "1000"));
+        dir = new File(props.getProperty("throughput.dir", "target/throughput")).getAbsoluteFile();
+        examplesDir = new File(props.getProperty("throughput.examples", "examples")).getAbsoluteFile();
+        baseline = baselinePath.trim().isEmpty() ? null : new File(baselinePath);
+        lembosVersion = props.getProperty("throughput.lembosVersion",
+                                          LembosMapReduceRunner.class.getPackage().getImplementationVersion());
+
+        if (jobNames.trim().isEmpty() || jobNames.trim().equals("all")) {
+            for (final BenchmarkJob job : BenchmarkJob.values()) {
+                jobs.add(job);
+            }
+        } else {
+            for (final String jobName : jobNames.split(",")) {
+                jobs.add(BenchmarkJob.fromName(jobName));
+            }
+        }
+    }
+
+    /**
+     * CLI entry point.
+     *
+     * @param args the command line arguments (unused, see the class documentation for the configuration)
+     *
+     * @throws Exception if anything goes wrong
+     */
+    public static void main(final String[] args) throws Exception {
+        System.out.println(new ThroughputBenchmark(System.getProperties()).run());
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @return the Markdown report
+     *
+     * @throws Exception if anything goes wrong
+     */
+    String run() throws Exception {
+        final ThroughputReport report = new ThroughputReport();
+        Properties baselineReport = null;
+
+        // Read the baseline first since it could be the report of the previous run, which is about to be deleted
+        if (baseline != null) {
+            if (!baseline.isFile()) {
+                throw new IOException("Baseline report not found: " + baseline.getAbsolutePath());
+            }
+
+            baselineReport = ThroughputReport.readBaseline(baseline);
+        }
+
+        FileUtil.fullyDelete(dir);
+
+        // Warm up the JIT and load the classes so the first measured job does not pay for it
+        if (warmupRecords > 0) {
+            runJobs(new File(dir, "warmup"), warmupRecords, null);
+        }
+
+        report.addEnvironment("lembos.version", lembosVersion == null ? "unknown" : lembosVersion);
+        report.addEnvironment("date", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date()));
+        report.addEnvironment("java.version", System.getProperty("java.version"));
+        report.addEnvironment("java.vm.name", System.getProperty("java.vm.name"));
+        report.addEnvironment("processors", Runtime.getRuntime().availableProcessors());
+        report.addEnvironment("max.heap.mb", Runtime.getRuntime().maxMemory() / 1048576);
+        report.addEnvironment("records", records);
+        report.addEnvironment("vocabulary", vocabulary);
+        report.addEnvironment("skew", skew);
+        report.addEnvironment("seed", seed);
+
+        runJobs(new File(dir, "run"), records, report);
+
+        return report.write(dir, baselineReport);
+    }
+
+    /**
+     * Generates the datasets and runs the jobs.
+     *
+     * @param baseDir the directory to write the datasets and job outputs to
+     * @param recordCount the number of records of each dataset
+     * @param report the report to add the measurements to (null to not measure)
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private void runJobs(final File baseDir, final int recordCount, final ThroughputReport report) throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(recordCount, vocabulary, skew, seed);
+        final Map<Dataset, File> datasets = new EnumMap<>(Dataset.class);
+
+        for (final BenchmarkJob job : jobs) {
+            final Dataset dataset = job.getDataset();
+            File inputDir = datasets.get(dataset);
+
+            if (inputDir == null) {
+                final String datasetName = dataset.name().toLowerCase().replace('_', '-');
+                final PhaseStats.Timer timer = PhaseStats.start();
+
+                inputDir = new File(baseDir, "data/" + datasetName);
+
+                final long written = generator.generate(dataset, inputDir);
+                final PhaseStats stats = timer.stop();
+
+                stats.setRecords(written);
+
+                if (report != null) {
+                    report.addPhase("dataset-" + datasetName, "generate", stats);
+                }
+
+                datasets.put(dataset, inputDir);
+            }
+
+            runJob(job, inputDir, new File(baseDir, "output/" + job.getName()), report);
+        }
+    }
+
+    /**
+     * Runs a job.
+     *
+     * @param benchmarkJob the job to run
+     * @param inputDir the input directory
+     * @param outputDir the output directory
+     * @param report the report to add the measurements to (null to not measure)
+     *
+     * @throws Exception if anything goes wrong
+     */
+    private void runJob(final BenchmarkJob benchmarkJob, final File inputDir, final File outputDir,
+                        final ThroughputReport report) throws Exception {
+        final LembosMapReduceRunner runner = new LembosMapReduceRunner();
+        final String[] args = new String[] {
+                "-D", "mapred.job.tracker=local",
+                "-D", "fs.default.name=file:///",
+                "-D", "hadoop.tmp.dir=" + new File(dir, "hadoop").getAbsolutePath(),
+                "-D", "mapred.input.dir=" + inputDir.toURI(),
+                "-D", "mapred.output.dir=" + outputDir.toURI(),
+                "-D", LembosConstants.MR_MODULE_NAME + "=" + benchmarkJob.getModuleName(),
+                "-D", LembosConstants.MR_MODULE_PATH + "=" + getModulePath(benchmarkJob).getAbsolutePath()
+        };
+
+        // Setup phase: Packaging the module, creating the Node.js environment and calling jobSetup
+        PhaseStats.Timer timer = PhaseStats.start();
+        final Job job = runner.initJob(args);
+        final PhaseStats setup = timer.stop();
+
+        if (job.getMapperClass() == LembosMapper.class) {
+            job.setMapperClass(TimedLembosMapper.class);
+        }
+
+        if (job.getReducerClass() == LembosReducer.class) {
+            job.setReducerClass(TimedLembosReducer.class);
+        }
+
+        TaskPhases.drain();
+
+        timer = PhaseStats.start();
+
+        if (!job.waitForCompletion(false)) {
+            throw new RuntimeException("Benchmark job failed: " + benchmarkJob.getName());
+        }
+
+        final PhaseStats total = timer.stop();
+        final Map<String, PhaseStats> tasks = TaskPhases.drain();
+        final PhaseStats map = tasks.containsKey(TaskPhases.MAP) ? tasks.get(TaskPhases.MAP) : new PhaseStats();
+        final PhaseStats reduce = tasks.containsKey(TaskPhases.REDUCE)
+                ? tasks.get(TaskPhases.REDUCE)
+                : new PhaseStats();
+        // Everything the tasks did not measure: Sorting, spilling, merging, committing and the job runner itself
+        final PhaseStats framework = total.minus(map).minus(reduce);
+
+        if (report != null) {
+            map.setRecords(getTaskCounter(job, "MAP_INPUT_RECORDS"));
+            reduce.setRecords(getTaskCounter(job, "REDUCE_INPUT_RECORDS"));
+            framework.setRecords(getTaskCounter(job, "MAP_OUTPUT_RECORDS"));
+            total.setRecords(map.getRecords());
+            total.includePeakHeapBytes(map.getPeakHeapBytes());
+            total.includePeakHeapBytes(reduce.getPeakHeapBytes());
+
+            report.addPhase(benchmarkJob.getName(), "setup", setup);
+            report.addPhase(benchmarkJob.getName(), TaskPhases.MAP, map);
+            report.addPhase(benchmarkJob.getName(), "framework", framework);
+
+            if (reduce.getTasks() > 0) {
+                report.addPhase(benchmarkJob.getName(), TaskPhases.REDUCE, reduce);
+            }
+
+            report.addPhase(benchmarkJob.getName(), "total", total);
+        }
+    }
+
+    /**
+     * @param benchmarkJob the job
+     *
+     * @return the location of the Node.js module of the job
+     *
+     * @throws URISyntaxException if the module location is invalid
+     */
+    private File getModulePath(final BenchmarkJob benchmarkJob) throws URISyntaxException {
+        if (benchmarkJob == BenchmarkJob.WORDCOUNT) {
+            return new File(examplesDir, "wordcount");
+        }
+
+        final URL moduleUrl = ThroughputBenchmark.class.getResource("/node_modules/" + benchmarkJob.getModuleName());
+
+        if (moduleUrl == null) {
+            throw new RuntimeException("Unable to find Node.js module: " + benchmarkJob.getModuleName());
+        }
+
+        return new File(moduleUrl.toURI());
+    }
+
+    /**
+     * @param job the completed job
+     * @param name the name of the Hadoop task counter
+     *
+     * @return the value of the counter
+     *
+     * @throws IOException if anything goes wrong
+     */
+    private static long getTaskCounter(final Job job, final String name) throws IOException {
+        return job.getCounters().findCounter(TASK_COUNTER_GROUP, name).getValue();
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks.throughput;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The throughput benchmarks report.  It is written both as a properties file, meant to be kept as the baseline of
+ * future runs, and as a Markdown table comparing the results to the baseline, if any.
+ */
+final class ThroughputReport {
+
+    /** The name of the properties file. */
+    static final String PROPERTIES_FILE_NAME = "throughput-report.properties";
+    /** The name of the Markdown file. */
+    static final String MARKDOWN_FILE_NAME = "throughput-report.md";
+
+    private final Map<String, String> environment = new LinkedHashMap<>();
+    private final Map<String, PhaseStats> phases = new LinkedHashMap<>();
+
+    /**
+     * Adds a description of the environment the benchmarks ran in.
+     *
+     * @param name the name
+     * @param value the value
+     */
+    void addEnvironment(final String name, final Object value) {
+        environment.put(name, String.valueOf(value));
+    }
+
+    /**
+     * Adds the measurements of a phase.
+     *
+     * @param job the job or dataset name
+     * @param phase the phase name
+     * @param stats the measurements
+     */
+    void addPhase(final String job, final String phase, final PhaseStats stats) {
+        phases.put(job + "." + phase, stats);
+    }
+
+    /**
+     * Writes the report.
+     *
+     * @param dir the directory to write the report to
+     * @param baseline the properties report of a previous run to compare to (can be null)
+     *
+     * @return the Markdown report
+     *
+     * @throws IOException if anything goes wrong
+     */
+    String write(final File dir, final Properties baseline) throws IOException {
+        final String markdown = toMarkdown(baseline);
+
+        try (final OutputStream out = new FileOutputStream(new File(dir, PROPERTIES_FILE_NAME))) {
+            toProperties().store(out, "Lembos throughput benchmarks");
+        }
+
+        Files.write(new File(dir, MARKDOWN_FILE_NAME).toPath(), markdown.getBytes(StandardCharsets.UTF_8));
+
+        return markdown;
+    }
+
+    /**
+     * Reads the properties report of a previous run.
+     *
+     * @param file the properties report
+     *
+     * @return the report
+     *
+     * @throws IOException if anything goes wrong
+     */
+    static Properties readBaseline(final File file) throws IOException {
+        final Properties baseline = new Properties();
+
+        try (final InputStream in = new FileInputStream(file)) {
+            baseline.load(in);
+        }
+
+        return baseline;
+    }
+
+    /**
+     * @return the report as properties
+     */
+    private Properties toProperties() {
+        final Properties properties = new Properties();
+
+        for (final Map.Entry<String, String> entry : environment.entrySet()) {
+            properties.setProperty("environment." + entry.getKey(), entry.getValue());
+        }
+
+        for (final Map.Entry<String, PhaseStats> entry : phases.entrySet()) {
+            final String prefix = entry.getKey() + ".";
+            final PhaseStats stats = entry.getValue();
+
+            properties.setProperty(prefix + "records", Long.toString(stats.getRecords()));
+            properties.setProperty(prefix + "millis", Long.toString(stats.getElapsedMillis()));
+            properties.setProperty(prefix + "recordsPerSecond", format(stats.getRecordsPerSecond()));
+            properties.setProperty(prefix + "tasks", Integer.toString(stats.getTasks()));
+            properties.setProperty(prefix + "startupMillis", Long.toString(stats.getStartupMillis()));
+            properties.setProperty(prefix + "gcMillis", Long.toString(stats.getGcMillis()));
+            properties.setProperty(prefix + "gcCount", Long.toString(stats.getGcCount()));
+            properties.setProperty(prefix + "peakHeapBytes", Long.toString(stats.getPeakHeapBytes()));
+        }
+
+        return properties;
+    }
+
+    /**
+     * @param baseline the baseline to compare to (can be null)
+     *
+     * @return the report as Markdown
+     */
+    private String toMarkdown(final Properties baseline) {
+        final StringWriter buffer = new StringWriter();
+        final PrintWriter out = new PrintWriter(buffer);
+
+        out.println("# Lembos Throughput Benchmarks");
+        out.println();
+
+        for (final Map.Entry<String, String> entry : environment.entrySet()) {
+            out.println("* " + entry.getKey() + ": " + entry.getValue());
+        }
+
+        if (baseline != null) {
+            out.println("* baseline: " + baseline.getProperty("environment.lembos.version", "unknown") + " ("
+                                + baseline.getProperty("environment.date", "unknown date") + ")");
+        }
+
+        out.println();
+        out.print("| Job | Phase | Records | Time (ms) | Records/sec | Task startup (ms) | GC (ms) | Peak heap (MB) |");
+        out.println(baseline == null ? "" : " Baseline records/sec | Change |");
+        out.print("| --- | --- | ---: | ---: | ---: | ---: | ---: | ---: |");
+        out.println(baseline == null ? "" : " ---: | ---: |");
+
+        for (final Map.Entry<String, PhaseStats> entry : phases.entrySet()) {
+            final String key = entry.getKey();
+            final int dot = key.lastIndexOf('.');
+            final PhaseStats stats = entry.getValue();
+
+            out.print("| " + key.substring(0, dot) + " | " + key.substring(dot + 1) + " | " + stats.getRecords()
+                              + " | " + stats.getElapsedMillis() + " | " + format(stats.getRecordsPerSecond())
+                              + " | " + stats.getStartupMillis() + " | " + stats.getGcMillis() + " | "
+                              + (stats.getPeakHeapBytes() == 0 ? "-" : format(stats.getPeakHeapBytes() / 1048576.0))
+                              + " |");
+
+            if (baseline != null) {
+                final String previous = baseline.getProperty(key + ".recordsPerSecond");
+
+                if (previous == null || stats.getRecords() == 0 || Double.parseDouble(previous) == 0) {
+                    out.print(" - | - |");
+                } else {
+                    final double change = (stats.getRecordsPerSecond() / Double.parseDouble(previous) - 1) * 100;
+
+                    out.print(" " + previous + " | " + (change > 0 ? "+" : "") + format(change) + "% |");
+                }
+            }
+
+            out.println();
+        }
+
+        out.flush();
+
+        return buffer.toString();
+    }
+
+    /**
+     * @param value the value to format
+     *
+     * @return the value with two decimals
+     */
+    private static String format(final double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks.throughput;
+
+import io.apigee.lembos.mapreduce.LembosReducer;
+
+import java.io.IOException;
+
+/**
+ * {@link LembosReducer} that records how long each of its tasks takes to start and to run.
+ */
+public class TimedLembosReducer extends LembosReducer {
+
+    private PhaseStats.Timer timer;
+    private long startupNanos;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setup(final Context context) throws IOException, InterruptedException {
+        timer = PhaseStats.start();
+
+        super.setup(context);
+
+        startupNanos = timer.elapsedNanos();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void cleanup(final Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+
+        final PhaseStats stats = timer.stop();
+
+        stats.setStartupNanos(startupNanos);
+
+        TaskPhases.record(TaskPhases.REDUCE, stats);
+    }
+
+}
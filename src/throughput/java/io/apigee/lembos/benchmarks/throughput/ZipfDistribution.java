@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apigee.lembos.benchmarks.throughput;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws integers in <code>[0, size)</code> following a Zipf distribution, used to generate skewed datasets.  An
+ * exponent of <code>0</code> draws uniformly and the larger the exponent, the more the first values dominate.
+ */
+final class ZipfDistribution {
+
+    private final double[] cdf;
+    private final Random random;
+
+    /**
+     * Constructor.
+     *
+     * @param size the number of distinct values
+     * @param exponent the skew exponent
+     * @param random the random number generator to use
+     */
+    ZipfDistribution(final int size, final double exponent, final Random random) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be greater than 0");
+        } else if (exponent < 0) {
+            throw new IllegalArgumentException("exponent cannot be negative");
+        }
+
+        double total = 0;
+
+        this.cdf = new double[size];
+        this.random = random;
+
+        for (int i = 0; i < size; i++) {
+            total += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = total;
+        }
+
+        for (int i = 0; i < size; i++) {
+            cdf[i] /= total;
+        }
+    }
+
+    /**
+     * @return the next value
+     */
+    int next() {
+        final int index = Arrays.binarySearch(cdf, random.nextDouble());
+
+        return index >= 0 ? index : Math.min(-index - 1, cdf.length - 1);
+    }
+
+}